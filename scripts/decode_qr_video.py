@@ -11,6 +11,7 @@ import os
 import subprocess
 import sys
 import tempfile
+import zlib
 from pathlib import Path
 
 try:
@@ -102,7 +103,79 @@ def decrypt_payload_aes_gcm(enc_data: bytes, pubkey_pem: bytes, privkey_pem: byt
     return aesgcm.decrypt(nonce, ciphertext, None)
 
 
-def recover_cross_frame_fec(chunks_dict: dict, original_count: int, total_count: int) -> list[bytes]:
+def decrypt_payload_aes_seg(enc_data: bytes, privkey_pem: bytes) -> bytes:
+    """
+    解密分段AES-256-GCM载荷（Java编码器） | Decrypt a segmented AES-256-GCM payload (Java encoder)
+    格式 | Layout: "AES256SEG" + salt(16) + nonce_prefix(7) + segment_size(4) + len(2) + enc_key + 分段密文 | sealed segments
+    """
+    if not enc_data.startswith(b"AES256SEG"):
+        raise ValueError("Invalid encrypted payload format")
+    
+    data = enc_data[9:]
+    if len(data) < 29:  # 16字节salt + 7字节nonce前缀 + 4字节段长 + 2字节长度 | salt + nonce prefix + segment size + length
+        raise ValueError("Invalid encrypted data length")
+    
+    nonce_prefix = data[16:23]
+    segment_size = int.from_bytes(data[23:27], 'big')
+    enc_key_len = int.from_bytes(data[27:29], 'big')
+    enc_key = data[29:29+enc_key_len]
+    header = enc_data[:9+29+enc_key_len]
+    body = enc_data[len(header):]
+    
+    # 用私钥解密AES密钥 | Decrypt AES key with private key
+    private_key = serialization.load_pem_private_key(privkey_pem, password=None)
+    aes_key = private_key.decrypt(enc_key, padding.OAEP(
+        mgf=padding.MGF1(algorithm=hashes.SHA256()), 
+        algorithm=hashes.SHA256(), 
+        label=None
+    ))
+    
+    # 逐段解密：nonce = 前缀 + 序号(4) + 末段标志(1)，头部作为附加数据 | Per segment: nonce = prefix + counter(4) + last flag(1), header as AAD
+    aesgcm = AESGCM(aes_key)
+    sealed_size = segment_size + 16
+    out = []
+    pos = 0
+    counter = 0
+    while True:
+        sealed = body[pos:pos+sealed_size]
+        pos += len(sealed)
+        last = pos >= len(body)
+        nonce = nonce_prefix + counter.to_bytes(4, 'big') + (b'\x01' if last else b'\x00')
+        out.append(aesgcm.decrypt(nonce, sealed, header))
+        counter += 1
+        if last:
+            return b''.join(out)
+
+
+def decrypt_payload(enc_data: bytes, pubkey_pem: bytes, privkey_pem: bytes) -> bytes:
+    """按信封标识选择解密方式 | Pick the decryption routine by envelope marker"""
+    if enc_data.startswith(b"AES256SEG"):
+        return decrypt_payload_aes_seg(enc_data, privkey_pem)
+    return decrypt_payload_aes_gcm(enc_data, pubkey_pem, privkey_pem)
+
+
+def parse_length_info(length_part: bytes, original_count: int):
+    """
+    解析长度头：JSON列表，或紧凑形式 {"chunk_size", "count", "last"} | Parse the length header: a JSON list, or the compact {"chunk_size", "count", "last"} form
+    """
+    info = json.loads(length_part.decode('utf-8'))
+    if isinstance(info, dict):
+        count = info.get('count', original_count)
+        return [info['chunk_size']] * (count - 1) + [info['last']]
+    return info
+
+
+def group_members(group: int, groups: int, original_count: int, parity_per_group: int) -> list[int]:
+    """
+    分组码字成员：数据块 i 属于组 i % groups，组 g 的冗余块紧随所有数据块之后 | Codeword members: data chunk i belongs to group i % groups, parity of group g follows all data chunks
+    """
+    data_idx = list(range(group, original_count, groups))
+    parity_idx = [original_count + group * parity_per_group + t for t in range(parity_per_group)]
+    return data_idx + parity_idx
+
+
+def recover_cross_frame_fec(chunks_dict: dict, original_count: int, total_count: int,
+                            groups: int = 1, parity_per_group: int = None) -> list[bytes]:
     """
     跨帧FEC恢复，支持15-30%丢帧 | Cross-frame FEC recovery supporting 15-30% frame loss
     """
@@ -114,6 +187,9 @@ def recover_cross_frame_fec(chunks_dict: dict, original_count: int, total_count:
     if recovery_rate > 0.35:
         raise ValueError(f"丢帧率过高({recovery_rate*100:.1f}%)，超出FEC恢复能力(35%)")
     
+    if parity_per_group is None:
+        parity_per_group = (total_count - original_count) // groups
+    
     # 提取长度信息（存储在第一个冗余块中） | Extract length information (stored in the first redundancy block)
     length_info = None
     first_fec_idx = original_count
@@ -122,9 +198,9 @@ def recover_cross_frame_fec(chunks_dict: dict, original_count: int, total_count:
         if b'|SPLIT|' in fec_data:
             length_part, fec_part = fec_data.split(b'|SPLIT|', 1)
             try:
-                length_info = json.loads(length_part.decode('utf-8'))
+                length_info = parse_length_info(length_part, original_count)
                 chunks_dict[first_fec_idx] = fec_part
-            except:
+            except Exception:
                 pass
     
     if length_info is None:
@@ -132,60 +208,52 @@ def recover_cross_frame_fec(chunks_dict: dict, original_count: int, total_count:
         length_info = [800] * original_count  # 默认块大小 | Default chunk size
     
     # 计算最大块大小 | Compute maximum chunk size
-    max_chunk_size = max(length_info) if length_info else 800
-    
-    # 准备恢复矩阵 | Prepare recovery matrix
-    available_chunks = []
-    available_indices = []
-    
-    # 按索引顺序收集可用块 | Collect available blocks by index order
-    for i in range(total_count):
-        if i in chunks_dict:
-            chunk = chunks_dict[i]
-            # 填充到最大长度 | Pad to maximum length
-            padded = chunk + b'\x00' * (max_chunk_size - len(chunk))
-            available_chunks.append(padded)
-            available_indices.append(i)
+    max_chunk_size = max(max(length_info) if length_info else 800,
+                         max((len(c) for i, c in chunks_dict.items() if i < total_count), default=0))
     
-    if len(available_chunks) < original_count:
-        raise ValueError(f"可用块数({len(available_chunks)})少于原始块数({original_count})，无法恢复 | Available blocks ({len(available_chunks)}) less than original ({original_count}), cannot recover")
-    
-    # 创建RS解码器 | Create RS decoder
-    parity_count = total_count - original_count
-    rs = RSCodec(parity_count)
-    
-    # 逐字节位置恢复 | Recover byte-by-byte positions
     recovered_chunks = [b''] * original_count
-    
-    for pos in range(max_chunk_size):
-        # 构建当前位置的编码序列 | Build encoded sequence for current position
-        encoded_sequence = bytearray(total_count)
-        mask = [False] * total_count
+    for g in range(groups):
+        members = group_members(g, groups, original_count, parity_per_group)
+        data_count = len(members) - parity_per_group
+        if all(idx in chunks_dict for idx in members[:data_count]):
+            for idx in members[:data_count]:
+                recovered_chunks[idx] = chunks_dict[idx]
+            continue
         
-        for j, idx in enumerate(available_indices):
-            if j < len(available_chunks):
-                encoded_sequence[idx] = available_chunks[j][pos]
-                mask[idx] = True
+        # 准备恢复矩阵 | Prepare recovery matrix
+        available = {}
+        for pos, idx in enumerate(members):
+            if idx in chunks_dict:
+                chunk = chunks_dict[idx]
+                # 填充到最大长度 | Pad to maximum length
+                available[pos] = chunk + b'\x00' * (max_chunk_size - len(chunk))
         
-        # 使用RS解码恢复丢失的字节 | Use RS decoding to recover missing bytes
-        try:
-            # 标记丢失的位置 | Mark missing positions
-            for i in range(total_count):
-                if not mask[i]:
-                    encoded_sequence[i] = 0  # RS库会忽略这些值 | RS lib ignores these values
-            
-            # 进行RS解码 | Perform RS decoding
-            decoded_sequence = rs.decode(encoded_sequence, erase_pos=[i for i in range(total_count) if not mask[i]])[0]
+        if len(available) < data_count:
+            raise ValueError(f"组{g}可用块数({len(available)})少于原始块数({data_count})，无法恢复 | Group {g}: available blocks ({len(available)}) less than original ({data_count}), cannot recover")
+        
+        # 创建RS解码器 | Create RS decoder
+        rs = RSCodec(parity_per_group)
+        erase_pos = [pos for pos in range(len(members)) if pos not in available]
+        group_data = [bytearray(max_chunk_size) for _ in range(data_count)]
+        
+        # 逐字节位置恢复 | Recover byte-by-byte positions
+        for col in range(max_chunk_size):
+            # 构建当前位置的编码序列，丢失位置置0 | Build encoded sequence for current position, zero at missing positions
+            encoded_sequence = bytearray(len(members))
+            for pos, chunk in available.items():
+                encoded_sequence[pos] = chunk[col]
             
-            # 提取原始数据部分 | Extract original data portion
-            for i in range(original_count):
-                recovered_chunks[i] += bytes([decoded_sequence[i]])
-                
-        except Exception as e:
-            print(f"位置{pos}恢复失败: {e}")
-            # 对于无法恢复的位置，使用0填充 | Use 0-padding for unrecoverable positions
-            for i in range(original_count):
-                recovered_chunks[i] += b'\x00'
+            try:
+                # 进行RS解码 | Perform RS decoding
+                decoded_sequence = rs.decode(encoded_sequence, erase_pos=erase_pos)[0]
+                for j in range(data_count):
+                    group_data[j][col] = decoded_sequence[j]
+            except Exception as e:
+                # 对于无法恢复的位置，保留0填充 | Keep 0-padding for unrecoverable positions
+                print(f"组{g}位置{col}恢复失败: {e}")
+        
+        for j, idx in enumerate(members[:data_count]):
+            recovered_chunks[idx] = bytes(group_data[j])
     
     # 根据原始长度信息去除填充 | Remove padding based on original length info
     final_chunks = []
@@ -283,20 +351,26 @@ def main():
                 crc_received = qr_data[15+length:15+length+4]
                 
                 # 验证CRC | Verify CRC
-                crc_calc = hashlib.crc32(payload).to_bytes(4, 'big')
+                crc_calc = (zlib.crc32(payload) & 0xFFFFFFFF).to_bytes(4, 'big')
                 if crc_calc == crc_received:
                     data_chunks[idx] = payload
                     if total_chunks is None:
                         total_chunks = total
     
     # 从FEC信息或清单中获取参数 | Get parameters from FEC info or manifest
+    fec_groups = 1
+    fec_parity_per_group = None
     if fec_info:
         original_chunks = fec_info.get('original_chunks')
         total_chunks = fec_info.get('total_chunks', total_chunks)
+        fec_groups = fec_info.get('fec_groups', 1)
+        fec_parity_per_group = fec_info.get('fec_parity_per_group')
     elif args.manifest and Path(args.manifest).exists():
         manifest = json.loads(Path(args.manifest).read_text())
         original_chunks = manifest.get('original_chunks')
         total_chunks = manifest.get('total_chunks', total_chunks)
+        fec_groups = manifest.get('fec_groups', 1)
+        fec_parity_per_group = manifest.get('fec_parity_per_group')
     
     if total_chunks is None or len(data_chunks) == 0:
         print("错误：没有找到有效的数据块 | Error: No valid data chunks found", file=sys.stderr)
@@ -309,11 +383,12 @@ def main():
     print(f"找到 {len(data_chunks)}/{total_chunks} 个数据块")
     
     # FEC恢复（如果需要且可能） | FEC recovery (if needed and possible)
-    if len(data_chunks) < original_chunks:
+    if any(i not in data_chunks for i in range(original_chunks)):
         if original_chunks < total_chunks:
             print("开始FEC恢复... | Starting FEC recovery...")
             try:
-                recovered_chunks = recover_cross_frame_fec(data_chunks, original_chunks, total_chunks)
+                recovered_chunks = recover_cross_frame_fec(data_chunks, original_chunks, total_chunks,
+                                                           fec_groups, fec_parity_per_group)
                 print("FEC恢复成功 | FEC recovery succeeded")
             except Exception as e:
                 print(f"FEC恢复失败: {e}", file=sys.stderr)
@@ -336,7 +411,7 @@ def main():
     
     # 解密数据 | Decrypt data
     try:
-        decrypted = decrypt_payload_aes_gcm(reassembled, pubkey_pem, privkey_pem)
+        decrypted = decrypt_payload(reassembled, pubkey_pem, privkey_pem)
         Path(args.output).write_bytes(decrypted)
         print(f"文件解密成功: {args.output} | File decrypted successfully: {args.output}")
         
@@ -1,7 +1,9 @@
 #!/usr/bin/env python3
 import argparse
 import base64
+import collections
 import hashlib
+import itertools
 import json
 import os
 import secrets
@@ -11,6 +13,8 @@ import concurrent.futures
 import shutil
 import sys
 import tempfile
+import time
+import zlib
 from pathlib import Path
 
 # 依赖：pip install qrcode[pil] pillow pyzbar reedsolo cryptography opencv-python moviepy | Dependencies: pip install qrcode[pil] pillow pyzbar reedsolo cryptography opencv-python moviepy
@@ -34,21 +38,38 @@ def chunk_bytes(data: bytes, size: int):
         yield data[i:i+size]
 
 
-def make_qr(data: bytes, box_size=10, border=4):
+MAX_QR_BYTES = 1663  # 40版Q级码的字节模式容量 | Byte-mode capacity of a version 40 code at ECC level Q
+
+ECC_LEVELS = {'L': qrcode.constants.ERROR_CORRECT_L, 'M': qrcode.constants.ERROR_CORRECT_M,
+              'Q': qrcode.constants.ERROR_CORRECT_Q, 'H': qrcode.constants.ERROR_CORRECT_H}
+
+
+def make_qr(data: bytes, box_size=10, border=4, ecc='Q', max_px=0):
+    """max_px>0 时超出该边长的码改用更小的模块 | With max_px > 0, a code larger than that side gets smaller modules"""
     qr = qrcode.QRCode(
         version=None,
-        error_correction=qrcode.constants.ERROR_CORRECT_Q,
+        error_correction=ECC_LEVELS[ecc],
         box_size=box_size,
         border=border,
     )
     qr.add_data(data)
     qr.make(fit=True)
+    if max_px:
+        qr.box_size = max(1, min(box_size, max_px // (qr.modules_count + 2 * border)))
     img = qr.make_image(fill_color="black", back_color="white").convert("RGB")
     return img
 
 
 def generate_keypair():
-    private_key = rsa.generate_private_key(public_exponent=65537, key_size=2048)
+    return keypair_pems(rsa.generate_private_key(public_exponent=65537, key_size=2048))
+
+
+def load_keypair(path: str):
+    """读取服务端预生成的私钥（PKCS#8 PEM） | Load a private key pre-generated by the service (PKCS#8 PEM)"""
+    return keypair_pems(serialization.load_pem_private_key(Path(path).read_bytes(), password=None))
+
+
+def keypair_pems(private_key):
     public_key = private_key.public_key()
     pem_priv = private_key.private_bytes(
         encoding=serialization.Encoding.PEM,
@@ -99,7 +120,8 @@ def encrypt_payload_aes_gcm(data: bytes, passphrase: str, pubkey_pem: bytes) ->
     return header + salt + nonce + len(enc_key).to_bytes(2, 'big') + enc_key + ciphertext
 
 
-def create_cross_frame_fec(data_chunks: list[bytes], fec_ratio: float = 0.3) -> list[bytes]:
+def create_cross_frame_fec(data_chunks: list[bytes], fec_ratio: float = 0.3, qr_bytes: int = MAX_QR_BYTES) -> list[bytes]:
+    """qr_bytes 为承载首个校验块的QR码容量 | qr_bytes is the capacity of the QR code that carries the first parity chunk"""
     chunk_count = len(data_chunks)
     parity_count = max(1, int(chunk_count * fec_ratio))
     rs = RSCodec(parity_count)
@@ -117,6 +139,10 @@ def create_cross_frame_fec(data_chunks: list[bytes], fec_ratio: float = 0.3) ->
                 encoded_chunks[idx] += bytes([b])
     length_info = [len(c) for c in data_chunks]
     length_data = json.dumps(length_info).encode("utf-8")
+    # 长度列表放不进规划的QR码时改写紧凑形式（与服务端 FecLengthHeader 一致，解码端两种都接受） | When the list would not fit the planned QR code, write the compact form instead (as the service's FecLengthHeader does; the decoder accepts both)
+    uniform = len(set(length_info[:-1])) <= 1
+    if length_info and uniform and len(length_data) + len(b"|SPLIT|") + max_chunk_size + 19 > qr_bytes:
+        length_data = json.dumps({'chunk_size': length_info[0], 'count': len(length_info), 'last': length_info[-1]}).encode("utf-8")
     if len(encoded_chunks) > chunk_count:
         encoded_chunks[chunk_count] = length_data + b"|SPLIT|" + encoded_chunks[chunk_count]
     return encoded_chunks
@@ -138,7 +164,86 @@ def build_obfuscation_frame(width: int, height: int, seed: int | None) -> Image.
     return img
 
 
-def main():
+class ProgressReporter:
+    """以每行一个JSON对象的形式向stdout报告进度，约每1%一条 | Report progress on stdout as one JSON object per line, roughly every 1%
+
+    {"event": "progress", "stage": "ENCRYPT|FEC|RENDER|FFMPEG|STREAM", "done": n, "total": m}
+    {"event": "timing", "stage": ..., "seconds": s, "amount": n}  # 阶段结束时：耗时与处理的字节/帧数 | at stage end: duration and bytes/frames handled
+    """
+
+    def __init__(self, enabled: bool):
+        self.enabled = enabled
+        self.last = {}
+
+    def __call__(self, stage: str, done: int, total: int):
+        if not self.enabled:
+            return
+        step = max(1, total // 100)
+        prev = self.last.get(stage)
+        if prev is not None and done < total and done - prev < step:
+            return
+        self.last[stage] = done
+        print(json.dumps({'event': 'progress', 'stage': stage, 'done': done, 'total': total}), flush=True)
+
+    def timing(self, stage: str, started: float, amount: int):
+        """报告阶段耗时，started 为 time.perf_counter() 起点 | Report a stage duration; started is a time.perf_counter() value"""
+        if not self.enabled:
+            return
+        seconds = time.perf_counter() - started
+        print(json.dumps({'event': 'timing', 'stage': stage, 'seconds': round(seconds, 6), 'amount': amount}), flush=True)
+
+
+def stream_frames_to_ffmpeg(cmd: list[str], frames: list, mode: str, max_workers: int, progress: ProgressReporter):
+    """按顺序渲染帧并写入ffmpeg stdin，内存中最多保留2*max_workers帧 | Render frames in order into ffmpeg stdin, holding at most 2*max_workers frames in memory"""
+    log_file = tempfile.TemporaryFile()
+    proc = subprocess.Popen(cmd, stdin=subprocess.PIPE, stdout=log_file, stderr=subprocess.STDOUT)
+    window = max_workers * 2
+    pending = collections.deque()
+    try:
+        with concurrent.futures.ThreadPoolExecutor(max_workers=max_workers) as ex:
+            it = iter(frames)
+            for render in itertools.islice(it, window):
+                pending.append(ex.submit(render))
+            written = 0
+            while pending:
+                img = pending.popleft().result()
+                proc.stdin.write(img.convert(mode).tobytes())
+                written += 1
+                progress('STREAM', written, len(frames))
+                nxt = next(it, None)
+                if nxt is not None:
+                    pending.append(ex.submit(nxt))
+        proc.stdin.close()
+    except BrokenPipeError:
+        pass
+    code = proc.wait()
+    if code != 0:
+        log_file.seek(0)
+        print(log_file.read().decode('utf-8', errors='ignore'))
+        sys.exit(3)
+
+
+def run_ffmpeg_with_progress(cmd: list[str], total_frames: int, progress: ProgressReporter):
+    """运行ffmpeg并把 -progress 输出中的 frame= 转为进度事件 | Run ffmpeg and turn frame= lines of its -progress output into progress events"""
+    log_file = tempfile.TemporaryFile()
+    full = cmd[:1] + ['-progress', 'pipe:1', '-nostats'] + cmd[1:]
+    proc = subprocess.Popen(full, stdout=subprocess.PIPE, stderr=log_file)
+    for raw in proc.stdout:
+        line = raw.decode('ascii', errors='ignore').strip()
+        if line.startswith('frame='):
+            try:
+                progress('FFMPEG', min(total_frames, int(line[6:])), total_frames)
+            except ValueError:
+                pass
+    code = proc.wait()
+    if code != 0:
+        log_file.seek(0)
+        print(log_file.read().decode('utf-8', errors='ignore'))
+        sys.exit(3)
+
+
+def main(argv=None):
+    """argv 为 None 时解析命令行；常驻工作进程（encode_worker.py）按请求传入 | Parses the command line when argv is None; the resident worker (encode_worker.py) passes one per request"""
     ap = argparse.ArgumentParser()
     ap.add_argument('--input', required=True)
     ap.add_argument('--output', required=True)
@@ -155,8 +260,23 @@ def main():
     ap.add_argument('--privkey-frame', type=int, default=0)
     ap.add_argument('--privkey-frame-pass', required=True)
     ap.add_argument('--obfuscation')
+    ap.add_argument('--private-key-file',
+                    help='使用预生成的RSA私钥而非现场生成 | Use a pre-generated RSA private key instead of generating one')
     ap.add_argument('--codec', default='libx264', help='Video codec (libx264, h264_nvenc, h264_qsv, etc.)')
-    args = ap.parse_args()
+    ap.add_argument('--stream-frames', action='store_true',
+                    help='按顺序渲染帧并以rawvideo写入ffmpeg stdin，不落盘PNG | Render frames in order and pipe them to ffmpeg stdin as rawvideo instead of writing PNGs')
+    ap.add_argument('--chunk-size', type=int, default=800,
+                    help='每个数据码的载荷字节数（服务端按单元格容量规划） | Payload bytes per data code (planned by the service from cell capacity)')
+    ap.add_argument('--box-size', type=int, default=0,
+                    help='数据码每模块像素数，0 表示单元格边长/50 | Pixels per module of data codes; 0 = cell side / 50')
+    ap.add_argument('--ecc', choices=sorted(ECC_LEVELS), default='Q',
+                    help='数据码纠错等级 | Error correction level of data codes')
+    ap.add_argument('--qr-bytes', type=int, default=MAX_QR_BYTES,
+                    help='规划的数据码字节容量，决定FEC长度头的形式 | Byte capacity of the planned data code; decides the form of the FEC length header')
+    ap.add_argument('--progress', action='store_true',
+                    help='在stdout逐行输出JSON进度事件 | Emit line-delimited JSON progress events on stdout')
+    args = ap.parse_args(argv)
+    progress = ProgressReporter(args.progress)
 
     # 分辨率 | Resolution
     if args.width and args.height:
@@ -175,27 +295,32 @@ def main():
     data = Path(args.input).read_bytes()
     file_sha256 = hashlib.sha256(data).hexdigest()
 
-    # 生成密钥对 | Generate key pair
-    pub_pem, priv_pem = generate_keypair()
+    # 密钥对：优先使用服务端密钥池提供的 | Key pair: prefer the one handed over from the service's pool
+    pub_pem, priv_pem = load_keypair(args.private_key_file) if args.private_key_file else generate_keypair()
 
     # 载荷加密（使用AES-256-GCM） | Payload encryption (using AES-256-GCM)
+    started = time.perf_counter()
     enc_payload = encrypt_payload_aes_gcm(data, args.passphrase, pub_pem)
+    progress('ENCRYPT', len(data), len(data))
+    progress.timing('ENCRYPT', started, len(data))
 
     # 切片 | Slicing
-    chunk_size = 800  # 减小块大小以适应QR码容量 | Reduce block size to fit QR code capacity
+    chunk_size = args.chunk_size  # 默认800，服务端会按分辨率与网格放大或缩小 | 800 by default; the service sizes it to resolution and grid
     chunks = list(chunk_bytes(enc_payload, chunk_size))
 
     # 跨帧FEC编码 | Cross-frame FEC encoding
+    started = time.perf_counter()
     if args.enable_fec:
         fec_ratio = max(0.15, min(0.35, args.fec_ratio))  # 限制在15-35% | Limit to 15-35%
-        fec_chunks = create_cross_frame_fec(chunks, fec_ratio)
+        fec_chunks = create_cross_frame_fec(chunks, fec_ratio, args.qr_bytes)
     else:
         fec_chunks = chunks
 
     print(f"数据分块完成: 原始{len(chunks)}块 -> FEC后{len(fec_chunks)}块")
+    progress('FEC', len(fec_chunks), len(fec_chunks))
+    progress.timing('FEC', started, len(enc_payload))
 
-    # 生成二维码帧图 | Generate QR code frame images
-    frames_dir = Path(tempfile.mkdtemp(prefix='qrframes_'))
+    # 帧序列中保存的是渲染函数而非图像，按需渲染 | The frame sequence holds render callables, not images; frames are rendered on demand
     frames = []
 
     # 私钥帧：使用AES-GCM保护私钥 | Private key frame: protect private key using AES-GCM
@@ -208,12 +333,24 @@ def main():
         return b"PRIVKEY_AES" + salt + nonce + ciphertext
 
     protected_priv = protect_privkey_aes(priv_pem, args.privkey_frame_pass)
-    priv_qr = make_qr(protected_priv, box_size=4, border=4)
+
+    def make_priv_frame() -> Image.Image:
+        # 受保护的2048位私钥约1760字节，超出Q级40版容量 | A protected 2048-bit key is ~1760 bytes, beyond a version 40 code at level Q
+        priv_qr = make_qr(protected_priv, box_size=4, border=4, ecc='M')
+        if not args.stream_frames:
+            return priv_qr
+        # rawvideo要求所有帧同尺寸，居中放入整帧 | rawvideo needs every frame at W x H, so center it on a full canvas
+        canvas = Image.new('RGB', (W, H), 'white')
+        canvas.paste(priv_qr, (max(0, (W - priv_qr.width) // 2), max(0, (H - priv_qr.height) // 2)))
+        return canvas
 
     # 帧布局：n*n 子码，先简单堆叠 | Frame layout: n*n sub-codes, simple stacking first
     n = max(1, args.grid)
     cell_w = W // n
     cell_h = H // n
+    # 指定模块尺寸时，放不下单元格的码（元数据码等）缩小模块 | With a planned module size, codes too big for the cell (meta codes etc.) shrink
+    box_size = args.box_size or max(3, min(cell_w, cell_h)//50)
+    fit_px = min(cell_w, cell_h) if args.box_size else 0
 
     def make_frame_with_codes(payload_blobs: list[bytes]) -> Image.Image:
         canvas = Image.new('RGB', (W, H), 'white')
@@ -222,7 +359,7 @@ def main():
         for i in range(n):
             for j in range(n):
                 if k < len(payload_blobs):
-                    qr_img = make_qr(payload_blobs[k], box_size=max(3, min(cell_w, cell_h)//50), border=2)
+                    qr_img = make_qr(payload_blobs[k], box_size=box_size, border=2, ecc=args.ecc, max_px=fit_px)
                     # 居中放入cell | Center in cell
                     x = j * cell_w + max(0, (cell_w - qr_img.width)//2)
                     y = i * cell_h + max(0, (cell_h - qr_img.height)//2)
@@ -238,7 +375,7 @@ def main():
             head += b"\x01"  # FEC标志 | FEC flag
         else:
             head += b"\x00"  # 普通数据标志 | Normal data flag
-        crc = hashlib.crc32(blob).to_bytes(4, 'big')
+        crc = (zlib.crc32(blob) & 0xFFFFFFFF).to_bytes(4, 'big')
         return head + blob + crc
 
     # 包装所有数据块 | Wrap all data blocks
@@ -249,15 +386,13 @@ def main():
 
     # 构造帧序列：插入私钥帧与可选混淆帧 | Construct frame sequence: insert private key frame and optional obfuscation frame
     idx = 0
-    batch = []
     while idx < len(wrapped):
         batch = wrapped[idx: idx + n*n]
-        frame_img = make_frame_with_codes(batch)
-        frames.append(frame_img)
+        frames.append(lambda batch=batch: make_frame_with_codes(batch))
         idx += n*n
 
     # 插入私钥帧和元数据帧 | Insert private key frame and metadata frame
-    meta_frame = make_frame_with_codes([
+    meta_blobs = [
         b"META2" + pub_pem,  # 公钥 | Public key
         b"FEC_INFO" + json.dumps({
             'original_chunks': len(chunks),
@@ -265,31 +400,23 @@ def main():
             'fec_ratio': args.fec_ratio if args.enable_fec else 0,
             'chunk_size': chunk_size
         }).encode('utf-8')
-    ])
-    
+    ]
+
     priv_frame_index = max(0, min(len(frames), args.privkey_frame))
-    frames.insert(priv_frame_index, meta_frame)
-    frames.insert(priv_frame_index + 1, priv_qr)
+    frames.insert(priv_frame_index, lambda: make_frame_with_codes(meta_blobs))
+    frames.insert(priv_frame_index + 1, make_priv_frame)
 
     # 混淆帧 | Obfuscation frame
     if args.obfuscation:
         try:
             obf_bytes = Path(args.obfuscation).read_bytes()
             seed = int.from_bytes(hashlib.sha256(obf_bytes).digest()[:4], 'big')
-            obf_frame = build_obfuscation_frame(W, H, seed)
-            frames.insert(0, obf_frame)
+            frames.insert(0, lambda: build_obfuscation_frame(W, H, seed))
             priv_frame_index += 1  # 调整私钥帧索引 | Adjust private key frame index
         except Exception:
             pass
 
-    # 将帧写盘 | Write frames to disk
-    tmp_out = frames_dir
-    def _save(idx_img):
-        i, im = idx_img
-        im.save(tmp_out / f"{i:06d}.png")
     max_workers = max(1, min(8, (os.cpu_count() or 4)))
-    with concurrent.futures.ThreadPoolExecutor(max_workers=max_workers) as ex:
-        list(ex.map(_save, enumerate(frames)))
 
     # 用ffmpeg合成视频 | Compose video using ffmpeg
     ffmpeg = os.environ.get('FFMPEG_CMD', 'ffmpeg')
@@ -305,19 +432,40 @@ def main():
     else:
         codec_args.extend(['-preset', preset, '-crf', crf])
 
-    cmd = [
-        ffmpeg, '-y', '-r', str(args.fps), '-i', str(tmp_out / '%06d.png')
-    ] + codec_args + ['-pix_fmt', 'yuv420p', args.output]
-    
-    try:
-        subprocess.run(cmd, check=True, stdout=subprocess.PIPE, stderr=subprocess.STDOUT)
-    except subprocess.CalledProcessError as e:
-        print(e.stdout.decode('utf-8', errors='ignore'))
-        sys.exit(3)
-    try:
-        shutil.rmtree(tmp_out, ignore_errors=True)
-    except Exception:
-        pass
+    if args.stream_frames:
+        # 二维码帧为纯黑白，用gray即可；混淆帧为彩色时使用rgb24 | QR frames are black/white so gray suffices; use rgb24 when a colour obfuscation frame is present
+        pix_fmt, mode = ('rgb24', 'RGB') if args.obfuscation else ('gray', 'L')
+        cmd = [
+            ffmpeg, '-y', '-f', 'rawvideo', '-pix_fmt', pix_fmt, '-s', f'{W}x{H}', '-r', str(args.fps), '-i', '-'
+        ] + codec_args + ['-pix_fmt', 'yuv420p', args.output]
+        started = time.perf_counter()
+        stream_frames_to_ffmpeg(cmd, frames, mode, max_workers, progress)
+        progress.timing('STREAM', started, len(frames))
+    else:
+        # 将帧写盘 | Write frames to disk
+        tmp_out = Path(tempfile.mkdtemp(prefix='qrframes_'))
+        def _save(idx_render):
+            i, render = idx_render
+            render().save(tmp_out / f"{i:06d}.png")
+        started = time.perf_counter()
+        with concurrent.futures.ThreadPoolExecutor(max_workers=max_workers) as ex:
+            futures = [ex.submit(_save, item) for item in enumerate(frames)]
+            for saved, fut in enumerate(concurrent.futures.as_completed(futures), 1):
+                fut.result()
+                progress('RENDER', saved, len(frames))
+        progress.timing('RENDER', started, len(frames))
+
+        cmd = [
+            ffmpeg, '-y', '-r', str(args.fps), '-i', str(tmp_out / '%06d.png')
+        ] + codec_args + ['-pix_fmt', 'yuv420p', args.output]
+
+        started = time.perf_counter()
+        run_ffmpeg_with_progress(cmd, len(frames), progress)
+        progress.timing('FFMPEG', started, len(frames))
+        try:
+            shutil.rmtree(tmp_out, ignore_errors=True)
+        except Exception:
+            pass
 
     # 生成清单（增强版） | Generate manifest (enhanced version)
     manifest = {
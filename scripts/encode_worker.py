@@ -0,0 +1,130 @@
+#!/usr/bin/env python3
+# 常驻编码工作进程：启动时只导入一次 encode_qr_video 及其依赖，之后通过stdin/stdout按请求反复执行编码 | Resident encode worker: imports encode_qr_video and its dependencies once at start-up, then runs encodes on request over stdin/stdout
+#
+# 协议：每帧为4字节大端长度 + UTF-8 JSON | Protocol: every frame is a 4-byte big-endian length + UTF-8 JSON
+#   请求 | requests:   {"op": "ping"}
+#                      {"op": "encode", "args": ["--input", ...]}  # 与 encode_qr_video.py 命令行参数相同 | same arguments as the encode_qr_video.py command line
+#   响应 | responses:  {"type": "pong", "rss": n}
+#                      {"type": "line", "text": "..."}  # 编码期间的每行输出（进度/耗时事件与日志） | each output line while encoding (progress/timing events and log)
+#                      {"type": "done", "code": n, "rss": n}  # code 同脚本退出码，rss 为常驻内存字节数 | code as the script's exit code, rss is resident memory in bytes
+# stdin 关闭时正常退出 | Exits cleanly when stdin is closed
+
+import gc
+import io
+import json
+import os
+import struct
+import sys
+import threading
+import traceback
+
+sys.path.insert(0, os.path.dirname(os.path.abspath(__file__)))
+
+import encode_qr_video  # noqa: E402  依赖缺失时以退出码2结束 | exits with code 2 when dependencies are missing
+
+MAX_FRAME = 16 * 1024 * 1024
+
+
+class Channel:
+    """长度前缀帧的读写 | Reads and writes length-prefixed frames"""
+
+    def __init__(self, rd, wr):
+        self.rd = rd
+        self.wr = wr
+        self.lock = threading.Lock()
+
+    def recv(self):
+        head = self.rd.read(4)
+        if len(head) < 4:
+            return None
+        (length,) = struct.unpack('>I', head)
+        if length > MAX_FRAME:
+            raise ValueError(f'frame too large: {length}')
+        body = self.rd.read(length)
+        if len(body) < length:
+            return None
+        return json.loads(body.decode('utf-8'))
+
+    def send(self, msg: dict):
+        body = json.dumps(msg, ensure_ascii=False).encode('utf-8')
+        with self.lock:
+            self.wr.write(struct.pack('>I', len(body)) + body)
+            self.wr.flush()
+
+
+class LineWriter(io.TextIOBase):
+    """把 print 输出按行转成 line 帧 | Turns printed output into line frames, one per line"""
+
+    def __init__(self, channel: Channel):
+        self.channel = channel
+        self.pending = ''
+
+    def writable(self):
+        return True
+
+    def write(self, s):
+        self.pending += s
+        while '\n' in self.pending:
+            line, self.pending = self.pending.split('\n', 1)
+            self.channel.send({'type': 'line', 'text': line})
+        return len(s)
+
+    def close_line(self):
+        if self.pending:
+            self.channel.send({'type': 'line', 'text': self.pending})
+            self.pending = ''
+
+
+def rss() -> int:
+    """当前常驻内存（字节）；无 /proc 时退回峰值 | Current resident memory in bytes; falls back to the peak without /proc"""
+    try:
+        with open('/proc/self/statm') as f:
+            return int(f.read().split()[1]) * os.sysconf('SC_PAGE_SIZE')
+    except (OSError, ValueError, IndexError):
+        import resource
+        peak = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+        return peak if sys.platform == 'darwin' else peak * 1024
+
+
+def encode(channel: Channel, args: list) -> int:
+    out = LineWriter(channel)
+    saved = sys.stdout, sys.stderr
+    sys.stdout = sys.stderr = out
+    try:
+        encode_qr_video.main(args)
+        return 0
+    except SystemExit as e:
+        if e.code is None or isinstance(e.code, int):
+            return e.code or 0
+        print(e.code)
+        return 1
+    except Exception:
+        traceback.print_exc()
+        return 1
+    finally:
+        out.close_line()
+        sys.stdout, sys.stderr = saved
+        gc.collect()
+
+
+def main():
+    # 协议独占原stdout；之后写到fd 1的内容（如子进程继承）改走stderr | The protocol owns the original stdout; anything later written to fd 1 (e.g. by inheriting children) goes to stderr
+    proto = os.fdopen(os.dup(1), 'wb', buffering=0)
+    os.dup2(2, 1)
+    channel = Channel(sys.stdin.buffer, proto)
+    while True:
+        req = channel.recv()
+        if req is None:
+            return
+        op = req.get('op')
+        if op == 'ping':
+            channel.send({'type': 'pong', 'rss': rss()})
+        elif op == 'encode':
+            code = encode(channel, [str(a) for a in req.get('args', [])])
+            channel.send({'type': 'done', 'code': code, 'rss': rss()})
+        else:
+            channel.send({'type': 'done', 'code': 2, 'rss': rss(), 'error': f'unknown op: {op}'})
+
+
+if __name__ == '__main__':
+    main()
@@ -0,0 +1,64 @@
+#!/usr/bin/env python3
+"""
+对比两份JMH JSON结果（-rf json），按基准名+参数匹配并标出回归 | Compare two JMH JSON result files (-rf json), matched by benchmark name + params, flagging regressions
+用法 | Usage: python scripts/jmh_compare.py baseline.json target/jmh-result.json [--threshold 10]
+"""
+import argparse
+import json
+import sys
+
+
+def load(path: str) -> dict:
+    """读取结果并以 (benchmark, params) 为键 | Load results keyed by (benchmark, params)"""
+    with open(path, encoding='utf-8') as f:
+        runs = json.load(f)
+    out = {}
+    for run in runs:
+        params = ','.join(f"{k}={v}" for k, v in sorted((run.get('params') or {}).items()))
+        out[(run['benchmark'], params)] = run
+    return out
+
+
+def change_percent(base: dict, cur: dict) -> float:
+    """正数表示变好：吞吐模式越高越好，其他模式（时间）越低越好 | Positive means better: higher is better for thrpt, lower for time modes"""
+    b = base['primaryMetric']['score']
+    c = cur['primaryMetric']['score']
+    if b == 0:
+        return 0.0
+    delta = (c - b) / b * 100
+    return delta if cur['mode'] == 'thrpt' else -delta
+
+
+def main():
+    ap = argparse.ArgumentParser()
+    ap.add_argument('baseline')
+    ap.add_argument('current')
+    ap.add_argument('--threshold', type=float, default=10.0,
+                    help='超过该百分比的变差视为回归 | Worsening beyond this percentage counts as a regression')
+    args = ap.parse_args()
+
+    base = load(args.baseline)
+    cur = load(args.current)
+    regressions = 0
+    for key in sorted(cur):
+        run = cur[key]
+        unit = run['primaryMetric']['scoreUnit']
+        score = run['primaryMetric']['score']
+        name = key[0].rsplit('.', 2)[-2] + '.' + key[0].rsplit('.', 1)[-1]
+        label = f"{name} [{key[1]}]" if key[1] else name
+        if key not in base:
+            print(f"NEW   {label}: {score:.3f} {unit}")
+            continue
+        change = change_percent(base[key], run)
+        flag = 'OK  '
+        if change < -args.threshold:
+            flag = 'SLOW'
+            regressions += 1
+        print(f"{flag}  {label}: {base[key]['primaryMetric']['score']:.3f} -> {score:.3f} {unit} ({change:+.1f}%)")
+    for key in sorted(set(base) - set(cur)):
+        print(f"GONE  {key[0]} [{key[1]}]")
+    sys.exit(1 if regressions else 0)
+
+
+if __name__ == '__main__':
+    main()
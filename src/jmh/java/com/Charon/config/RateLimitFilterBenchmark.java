@@ -0,0 +1,68 @@
+package com.Charon.config;
+
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission decisions per second with 8 threads sharing one filter. {@code clients=1} puts every
+ * thread on the same key (worst-case contention); larger values spread threads over distinct
+ * keys. Past the per-minute limit most calls take the 429 path, which is part of what is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    @Param({"1", "1000"})
+    public int clients;
+
+    private RateLimitFilter filter;
+    private final FilterChain chain = (req, resp) -> { };
+    private final AtomicInteger threadSeq = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filter = new RateLimitFilter(new RateLimitProperties());
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/video-code/status/x");
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(RateLimitFilterBenchmark bench) {
+            next = bench.threadSeq.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public int doFilter(Client client) throws Exception {
+        int key = client.next++ % clients;
+        client.request.setRemoteAddr("10.0." + (key >> 8) + "." + (key & 0xff));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(client.request, response, chain);
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,99 @@
+package com.Charon.infrastructure.fec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-frame FEC throughput over 15-35% parity. Each invocation processes {@code chunks * 800}
+ * bytes of payload, so MB/s = ops/s * chunks * 800 / 1e6 (about 8 MB per op at the default size).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrossFrameFecBenchmark {
+
+    @Param({"0.15", "0.20", "0.35"})
+    public double ratio;
+
+    @Param({"10000"})
+    public int chunks;
+
+    private List<byte[]> data;
+    private CrossFrameFecEncoder parallel;
+    private CrossFrameFecEncoder serial;
+    private FecLayout layout;
+    private Map<Integer, byte[]> damaged;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        data = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            byte[] chunk = new byte[800];
+            random.nextBytes(chunk);
+            data.add(chunk);
+        }
+        parallel = new CrossFrameFecEncoder();
+        serial = new CrossFrameFecEncoder(new ForkJoinPool(1));
+
+        CrossFrameFecEncoder.Result encoded = parallel.encode(data, ratio, FecLengthHeader.MAX_QR_BYTES);
+        layout = encoded.layout();
+        damaged = new HashMap<>();
+        for (int i = 0; i < encoded.chunks().size(); i++) {
+            damaged.put(i, encoded.chunks().get(i));
+        }
+        // Worst case the code still handles: every group loses as many data chunks as it has parity
+        for (int g = 0; g < layout.groups(); g++) {
+            int[] members = layout.members(g);
+            for (int lost = 0; lost < layout.parityPerGroup(); lost++) {
+                damaged.remove(members[lost]);
+            }
+        }
+    }
+
+    @Benchmark
+    public CrossFrameFecEncoder.Result encodeParallel() {
+        return parallel.encode(data, ratio, FecLengthHeader.MAX_QR_BYTES);
+    }
+
+    @Benchmark
+    public CrossFrameFecEncoder.Result encodeSingleThread() {
+        return serial.encode(data, ratio, FecLengthHeader.MAX_QR_BYTES);
+    }
+
+    @Benchmark
+    public void encodeStreaming(Blackhole bh) {
+        CrossFrameFecEncoder.Streaming streaming = CrossFrameFecEncoder.streaming(layout, 800, FecLengthHeader.MAX_QR_BYTES);
+        for (byte[] chunk : data) {
+            streaming.accept(chunk);
+        }
+        bh.consume(streaming.finish());
+    }
+
+    @Benchmark
+    public List<byte[]> recoverWorstCase() {
+        return CrossFrameFecDecoder.recover(layout, new HashMap<>(damaged));
+    }
+}
@@ -0,0 +1,78 @@
+package com.Charon.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request JWT work: {@link JwtAuthenticationFilter} validates the bearer token and then
+ * extracts its subject; {@link #cachedAuthenticate} is the same request through
+ * {@link JwtAuthenticationCache} with a token it has already seen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private JwtTokenProvider provider;
+    private JwtAuthenticationCache authCache;
+    private String token;
+    private String tampered;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", "9a02115a835ee03d5fb83cd8a468ea33e4090a6a2f4dd5a87b8738a41896d116");
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", 86_400_000);
+        token = provider.generateToken("bench-user");
+        authCache = new JwtAuthenticationCache(provider,
+                new InMemoryUserDetailsManager(User.withUsername("bench-user").password("x").roles("USER").build()),
+                new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(15), Duration.ofMinutes(1));
+        authCache.authenticate(token);
+        tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return provider.validateToken(token);
+    }
+
+    @Benchmark
+    public String getUsernameFromJwt() {
+        return provider.getUsernameFromJwt(token);
+    }
+
+    @Benchmark
+    public String validateThenGetUsername() {
+        return provider.validateToken(token) ? provider.getUsernameFromJwt(token) : null;
+    }
+
+    @Benchmark
+    public UserDetails cachedAuthenticate() {
+        return authCache.authenticate(token);
+    }
+
+    @Benchmark
+    public boolean rejectTampered() {
+        return provider.validateToken(tampered);
+    }
+}
@@ -0,0 +1,65 @@
+package com.Charon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress updates from encoder threads racing status reads, over {@code jobs} live entries:
+ * 2 writer and 6 reader threads, roughly the shape of a few running jobs polled by many clients.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobRegistryBenchmark {
+
+    @Param({"100", "10000"})
+    public int jobs;
+
+    private JobRegistry registry;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = new JobRegistry(new SimpleMeterRegistry(), Duration.ofHours(24), Duration.ofMinutes(10), 100_000);
+        ids = new String[jobs];
+        for (int i = 0; i < jobs; i++) {
+            ids[i] = "job-" + i;
+            registry.setProgress(ids[i], 10, "ENCODING");
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void setProgress() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        registry.setProgress(ids[random.nextInt(jobs)], random.nextInt(20, 58), "ENCODING");
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public JobRegistry.JobState snapshot() {
+        return registry.snapshot(ids[ThreadLocalRandom.current().nextInt(jobs)]);
+    }
+}
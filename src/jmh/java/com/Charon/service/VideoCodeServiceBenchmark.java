@@ -0,0 +1,103 @@
+package com.Charon.service;
+
+import com.Charon.dto.JobMessage;
+import com.Charon.repository.VideoRecordRepository;
+import com.Charon.service.command.SubmitJobCommand;
+import com.Charon.service.mq.JobProducer;
+import com.Charon.storage.LocalStorageBackend;
+import com.Charon.storage.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * {@link VideoCodeService#submit} up to the queue hand-off: streaming the upload into the job
+ * directory with SHA-256, building the record and message. The repository and producer are
+ * stubs, so database and broker latency are excluded; job directories are removed after each
+ * iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VideoCodeServiceBenchmark {
+
+    @Param({"65536", "4194304"})
+    public int inputBytes;
+
+    private final AtomicLong sent = new AtomicLong();
+    private Path workdir;
+    private VideoCodeService service;
+    private SubmitJobCommand command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workdir = Files.createTempDirectory("submit-bench");
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        VideoRecordRepository repo = (VideoRecordRepository) Proxy.newProxyInstance(
+                VideoRecordRepository.class.getClassLoader(), new Class<?>[]{VideoRecordRepository.class},
+                (proxy, method, args) -> method.getReturnType() == int.class ? 1 : null);
+        JobProducer producer = (JobMessage message) -> sent.incrementAndGet();
+        JobRegistry jobs = new JobRegistry(meters, Duration.ofHours(24), Duration.ofMinutes(10), 10_000);
+        service = new VideoCodeService(repo,
+                new VideoRecordCache(repo, meters, Duration.ofSeconds(2), Duration.ofMinutes(10), 20_000),
+                new StorageService(new LocalStorageBackend(workdir.resolve("store").toString())), jobs, producer,
+                new ResultCache(meters, true, 1 << 30, Duration.ofHours(1)),
+                List.of(), null, new PipelineMetrics(meters), new KeyPairPool(meters, 0, 1),
+                new QrCapacityPlanner(true, "Q", 3, 40));
+        ReflectionTestUtils.setField(service, "workdir", workdir.toString());
+
+        byte[] input = new byte[inputBytes];
+        new Random(42).nextBytes(input);
+        command = new SubmitJobCommand(new MockMultipartFile("file", "bench.zip", "application/zip", input),
+                2, 60, "1080p", null, null, true, 20, "pass", "hint", null, "pass", null, null, "CPU", true, false, null);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clean() throws IOException {
+        try (Stream<Path> paths = Files.walk(workdir)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .filter(p -> !p.equals(workdir))
+                    .forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        clean();
+        Files.deleteIfExists(workdir);
+    }
+
+    @Benchmark
+    public Map<String, Object> submit() throws IOException {
+        return service.submit(command);
+    }
+}
@@ -0,0 +1,122 @@
+package com.Charon.web.download;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ranged-download path behind {@code /download/**}: header parsing, {@code If-Range}
+ * validation and the body copy from a 64 MiB file into a discarding servlet stream.
+ * {@code sendfile=true} stands for Tomcat with sendfile, where only the response metadata is
+ * produced and the connector moves the bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileDownloadResponderBenchmark {
+
+    @Param({"bytes=1048576-2097151", "bytes=-65536", "bytes=0-1023,4096-8191,1048576-2097151"})
+    public String range;
+
+    @Param({"false", "true"})
+    public boolean sendfile;
+
+    private final FileDownloadResponder responder = new FileDownloadResponder();
+    private Path file;
+    private String etag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("download-bench", ".mp4");
+        byte[] block = new byte[1 << 20];
+        new Random(42).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < 64; i++) {
+                out.write(block);
+            }
+        }
+        etag = ByteRanges.etag(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int send() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/video-code/download/1");
+        request.addHeader("Range", range);
+        request.addHeader("If-Range", etag);
+        if (sendfile) {
+            request.setAttribute(FileDownloadResponder.SENDFILE_SUPPORT, Boolean.TRUE);
+        }
+        DiscardingResponse response = new DiscardingResponse();
+        responder.send(request, response, file, "bench.mp4", MediaType.APPLICATION_OCTET_STREAM);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public List<ByteRanges.Range> parseRange() {
+        return ByteRanges.parse(range, 64L << 20);
+    }
+
+    /**
+     * Counts body bytes instead of buffering them, like a socket would.
+     */
+    static final class DiscardingResponse extends MockHttpServletResponse {
+        long written;
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
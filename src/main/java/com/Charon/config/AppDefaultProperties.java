@@ -12,6 +12,7 @@ public class AppDefaultProperties {
     private String resolution = "1080p";
     private Boolean enableFec = true;
     private Integer fecParityPercent = 20;
+    private Boolean streamFrames = true;
 
     public Integer getGridN() {
         return gridN;
@@ -52,4 +53,12 @@ public class AppDefaultProperties {
     public void setFecParityPercent(Integer fecParityPercent) {
         this.fecParityPercent = fecParityPercent;
     }
+
+    public Boolean getStreamFrames() {
+        return streamFrames;
+    }
+
+    public void setStreamFrames(Boolean streamFrames) {
+        this.streamFrames = streamFrames;
+    }
 }
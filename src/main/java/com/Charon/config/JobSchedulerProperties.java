@@ -0,0 +1,68 @@
+package com.Charon.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "app.jobs")
+public class JobSchedulerProperties {
+
+    private Integer maxConcurrency = 2;
+    private Integer maxLargeConcurrency = 0;
+    private Long largeInputBytes = 256L * 1024 * 1024;
+    private Duration agingStep = Duration.ofSeconds(30);
+    private Integer queueCapacity = 1000;
+    private Map<String, Integer> userWeights = new HashMap<>();
+
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(Integer maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public Integer getMaxLargeConcurrency() {
+        return maxLargeConcurrency;
+    }
+
+    public void setMaxLargeConcurrency(Integer maxLargeConcurrency) {
+        this.maxLargeConcurrency = maxLargeConcurrency;
+    }
+
+    public Long getLargeInputBytes() {
+        return largeInputBytes;
+    }
+
+    public void setLargeInputBytes(Long largeInputBytes) {
+        this.largeInputBytes = largeInputBytes;
+    }
+
+    public Duration getAgingStep() {
+        return agingStep;
+    }
+
+    public void setAgingStep(Duration agingStep) {
+        this.agingStep = agingStep;
+    }
+
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(Integer queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Map<String, Integer> getUserWeights() {
+        return userWeights;
+    }
+
+    public void setUserWeights(Map<String, Integer> userWeights) {
+        this.userWeights = userWeights;
+    }
+}
@@ -6,57 +6,113 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.Instant;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
+/**
+ * Token-bucket rate limit per client: the JWT subject when the request is authenticated,
+ * otherwise the remote address. Runs inside the security chain right after
+ * {@link com.Charon.security.JwtAuthenticationFilter} (see {@link SecurityConfig}), so a
+ * rejected request is answered before anything reads its body.
+ * <p>
+ * Uploads, downloads and batch calls take more tokens than a status poll. A user's bucket size
+ * and refill rate come from the highest {@code role-limits} entry among its roles, falling back
+ * to {@code capacity}/{@code refill-per-minute}. Rejections carry {@code Retry-After}.
+ */
 @Component
 public class RateLimitFilter extends OncePerRequestFilter {
-    private static final int LIMIT_PER_MINUTE = 120;
-    
-    // Fix: Use Caffeine Cache to automatically evict old entries (Memory Leak Fix)
-    private final Cache<String, Window> windows = Caffeine.newBuilder()
-            .expireAfterAccess(5, TimeUnit.MINUTES) // Clean up inactive IPs
-            .maximumSize(10000) // Prevent DDoS from filling memory
+
+    private final RateLimitProperties props;
+    private final LongSupplier clock;
+    private final long epoch;
+
+    // Caffeine evicts idle clients and bounds memory against key floods
+    private final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .maximumSize(10000)
             .build();
 
+    @Autowired
+    public RateLimitFilter(RateLimitProperties props) {
+        this(props, System::currentTimeMillis);
+    }
+
+    RateLimitFilter(RateLimitProperties props, LongSupplier clock) {
+        this.props = props;
+        this.clock = clock;
+        // Bucket timestamps are relative to startup so they fit the 40-bit field
+        this.epoch = clock.getAsLong();
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        String ip = request.getRemoteAddr();
-        long now = Instant.now().getEpochSecond();
-        long currentWin = now / 60;
-
-        Window w = windows.get(ip, k -> new Window(currentWin));
-        
-        // Double check for null in case cache fails (unlikely)
-        if (w == null) {
-             filterChain.doFilter(request, response);
-             return;
+        long now = clock.getAsLong() - epoch;
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        boolean user = auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken);
+        String key = user ? "u:" + auth.getName() : "ip:" + request.getRemoteAddr();
+
+        TokenBucket bucket = buckets.get(key, k -> newBucket(user ? roleLimit(auth) : null, now));
+
+        long waitMillis = bucket.tryAcquire(cost(request), now);
+        if (waitMillis > 0) {
+            response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000));
+            response.setContentType("application/json");
+            response.getWriter().write("{\"code\":\"RATE_LIMIT\",\"message\":\"Too many requests\",\"data\":null,\"traceId\":null}");
+            return;
         }
+        filterChain.doFilter(request, response);
+    }
 
-        synchronized (w) {
-            if (w.win != currentWin) {
-                w.win = currentWin;
-                w.count.set(0);
-            }
-            if (w.count.incrementAndGet() > LIMIT_PER_MINUTE) {
-                response.setStatus(429);
-                response.setContentType("application/json");
-                response.getWriter().write("{\"code\":\"RATE_LIMIT\",\"message\":\"Too many requests\",\"data\":null,\"traceId\":null}");
-                return;
+    /**
+     * A role limit is both the burst size and the per-minute rate.
+     */
+    private TokenBucket newBucket(Integer roleLimit, long now) {
+        int capacity = roleLimit != null ? roleLimit : props.getCapacity();
+        int refill = roleLimit != null ? roleLimit : props.getRefillPerMinute();
+        return new TokenBucket(Math.min(capacity, TokenBucket.MAX_CAPACITY), refill, now);
+    }
+
+    /**
+     * Highest configured per-minute limit among the user's roles, or {@code null} if none is set.
+     */
+    private Integer roleLimit(Authentication auth) {
+        Integer limit = null;
+        for (GrantedAuthority authority : auth.getAuthorities()) {
+            String role = authority.getAuthority();
+            Integer roleLimit = props.getRoleLimits().get(role.startsWith("ROLE_") ? role.substring(5) : role);
+            if (roleLimit != null && roleLimit > 0 && (limit == null || roleLimit > limit)) {
+                limit = roleLimit;
             }
         }
-        filterChain.doFilter(request, response);
+        return limit;
     }
 
-    private static class Window {
-        long win;
-        final AtomicInteger count = new AtomicInteger(0);
-        Window(long w) { this.win = w; }
+    private int cost(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri == null) {
+            return 1;
+        }
+        if ("POST".equals(request.getMethod()) && (uri.endsWith("/encode") || uri.endsWith("/decode"))) {
+            return props.getUploadCost();
+        }
+        if (uri.endsWith(":batch")) {
+            return props.getBatchCost();
+        }
+        if (uri.contains("/download/")) {
+            return props.getDownloadCost();
+        }
+        return 1;
     }
 }
@@ -0,0 +1,67 @@
+package com.Charon.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private Integer capacity = 120;
+    private Integer refillPerMinute = 120;
+    private Map<String, Integer> roleLimits = new HashMap<>();
+    private Integer uploadCost = 10;
+    private Integer downloadCost = 2;
+    private Integer batchCost = 5;
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public Integer getRefillPerMinute() {
+        return refillPerMinute;
+    }
+
+    public void setRefillPerMinute(Integer refillPerMinute) {
+        this.refillPerMinute = refillPerMinute;
+    }
+
+    public Map<String, Integer> getRoleLimits() {
+        return roleLimits;
+    }
+
+    public void setRoleLimits(Map<String, Integer> roleLimits) {
+        this.roleLimits = roleLimits;
+    }
+
+    public Integer getUploadCost() {
+        return uploadCost;
+    }
+
+    public void setUploadCost(Integer uploadCost) {
+        this.uploadCost = uploadCost;
+    }
+
+    public Integer getDownloadCost() {
+        return downloadCost;
+    }
+
+    public void setDownloadCost(Integer downloadCost) {
+        this.downloadCost = downloadCost;
+    }
+
+    public Integer getBatchCost() {
+        return batchCost;
+    }
+
+    public void setBatchCost(Integer batchCost) {
+        this.batchCost = batchCost;
+    }
+}
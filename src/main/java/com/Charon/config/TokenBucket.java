@@ -0,0 +1,72 @@
+package com.Charon.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. The whole state is one {@code long}: the upper 40 bits are the
+ * refill timestamp in milliseconds, the lower 24 bits the token count in thousandths, so a
+ * refill-and-take is one compare-and-set. Capacity is bounded by {@link #MAX_CAPACITY}.
+ */
+final class TokenBucket {
+
+    static final int MAX_CAPACITY = (1 << 24) / 1000 - 1;
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI = 1000;
+
+    private final long capacityMilli;
+    private final long refillPerMinute;
+    private final AtomicLong state;
+
+    /**
+     * @param capacity        burst size in tokens
+     * @param refillPerMinute sustained rate in tokens per minute
+     * @param nowMillis       current time on the caller's clock (fits in 40 bits)
+     */
+    TokenBucket(int capacity, int refillPerMinute, long nowMillis) {
+        if (capacity < 1 || capacity > MAX_CAPACITY || refillPerMinute < 1) {
+            throw new IllegalArgumentException("capacity must be 1.." + MAX_CAPACITY + " and refill positive");
+        }
+        this.capacityMilli = capacity * MILLI;
+        this.refillPerMinute = refillPerMinute;
+        this.state = new AtomicLong(pack(nowMillis, capacityMilli));
+    }
+
+    /**
+     * Takes {@code cost} tokens if available.
+     *
+     * @return 0 when taken, otherwise milliseconds until enough tokens will have accumulated
+     */
+    long tryAcquire(int cost, long nowMillis) {
+        long need = Math.min(cost * MILLI, capacityMilli);
+        while (true) {
+            long s = state.get();
+            long last = s >>> TOKEN_BITS;
+            long tokens = s & TOKEN_MASK;
+            long time = last;
+            if (nowMillis > last) {
+                // milli-tokens per ms = refillPerMinute / 60; only whole milli-tokens are added and
+                // the clock advances by the time they took, so slow rates do not lose remainders
+                long added = (nowMillis - last) * refillPerMinute / 60;
+                if (tokens + added >= capacityMilli) {
+                    tokens = capacityMilli;
+                    time = nowMillis;
+                } else {
+                    tokens += added;
+                    time = last + added * 60 / refillPerMinute;
+                }
+            }
+            if (tokens < need) {
+                return Math.max(1, ((need - tokens) * 60 + refillPerMinute - 1) / refillPerMinute);
+            }
+            if (state.compareAndSet(s, pack(time, tokens - need))) {
+                return 0;
+            }
+        }
+    }
+
+    private static long pack(long millis, long milliTokens) {
+        return (millis << TOKEN_BITS) | milliTokens;
+    }
+}
@@ -9,8 +9,10 @@ import lombok.extern.jackson.Jacksonized;
 @Jacksonized
 public class JobMessage {
     private String jobId;
+    private String jobType; // ENCODE (default when absent) or DECODE
     private String jobDirPath;
     private String inputZipPath;
+    private String inputVideoPath;
     private String obfArg;
     private int gridN;
     private int fps;
@@ -24,4 +26,9 @@ public class JobMessage {
     private Integer width;
     private Integer height;
     private String processingMode;
+    private boolean streamFrames;
+    private String resultCacheKey; // set when the submitter opted into result reuse
+    private String owner; // submitting user, for fair sharing between users
+    private String priority; // INTERACTIVE (default when absent) or BATCH
+    private long inputSize;
 }
@@ -0,0 +1,47 @@
+package com.Charon.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@TableName("job_leases")
+@Data
+public class JobLease {
+
+    @TableId(value = "jobId", type = IdType.INPUT)
+    private String jobId;             // 任务ID | Job ID
+
+    @TableField("payload")
+    private String payload;           // 任务消息JSON（含口令，需限制数据库访问） | Job message as JSON (holds secrets; restrict database access)
+
+    @TableField("status")
+    private Status status = Status.QUEUED; // 租约状态 | Lease status
+
+    @TableField("nodeId")
+    private String nodeId;            // 持有租约的节点（排队时为空） | Node holding the lease (empty while queued)
+
+    @TableField("leaseUntil")
+    private LocalDateTime leaseUntil; // 租约到期时间，由心跳续期 | Lease expiry, extended by heartbeats
+
+    @TableField("attempts")
+    private Integer attempts = 0;     // 已开始执行的次数 | Times the job has been started
+
+    @TableField("inputSize")
+    private Long inputSize;           // 输入大小（字节） | Input size (bytes)
+
+    @TableField("createdAt")
+    private LocalDateTime createdAt = LocalDateTime.now(); // 入队时间 | Enqueued time
+
+    @TableField("updatedAt")
+    private LocalDateTime updatedAt = LocalDateTime.now(); // 最近一次状态变化 | Last state change
+
+    public enum Status {
+        QUEUED,  // 等待节点领取 | Waiting for a node
+        CLAIMED, // 已被节点领取，尚未开始（可被空闲节点窃取） | Taken by a node but not started (idle nodes may steal it)
+        RUNNING  // 执行中 | Executing
+    }
+}
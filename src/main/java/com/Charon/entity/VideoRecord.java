@@ -18,14 +18,20 @@ public class VideoRecord {
     @TableField("jobId")
     private String jobId;             // 任务ID（唯一作业标识） | Job ID (unique job identifier)
 
+    @TableField("jobType")
+    private JobType jobType = JobType.ENCODE; // 任务类型：编码或解码 | Job type: encode or decode
+
     @TableField("originalFileName")
-    private String originalFileName;  // 原始文件名 | Original file name
+    private String originalFileName;  // 原始文件名（解码任务为上传的视频） | Original file name (the uploaded video for decode jobs)
 
     @TableField("originalFileSize")
     private Long originalFileSize;    // 原始文件大小（字节） | Original file size (bytes)
 
+    @TableField("inputSha256")
+    private String inputSha256;       // 上传文件的SHA-256（接收时计算） | SHA-256 of the uploaded file (computed while receiving)
+
     @TableField("storagePath")
-    private String storagePath;       // 视频文件存储路径（对象存储Key或本地路径） | Video file storage path (object storage key or local path)
+    private String storagePath;       // 视频文件存储路径（对象存储Key或本地路径；解码任务为还原文件） | Video file storage path (object storage key or local path; restored file for decode jobs)
 
     @TableField("manifestPath")
     private String manifestPath;      // 清单文件存储路径 | Manifest file storage path
@@ -59,7 +65,7 @@ public class VideoRecord {
     private String obfuscationFilePath;   // 混淆文件存储路径（如果有） | Obfuscation file storage path (if any)
 
     @TableField("processingMode")
-    private String processingMode; // 处理模式 (CPU, GPU, CLOUD)
+    private String processingMode; // 处理模式 (CPU, GPU, CLOUD, JAVA)
 
     // 状态与时间 | Status and timestamps
     @TableField("status")
@@ -85,6 +91,10 @@ public class VideoRecord {
         PROCESSING, COMPLETED, FAILED
     }
 
+    public enum JobType {
+        ENCODE, DECODE
+    }
+
     public void complete(String storagePath, String manifestPath, Long outputVideoSize, Integer outputFrameCount) {
         this.storagePath = storagePath;
         this.manifestPath = manifestPath;
@@ -0,0 +1,41 @@
+package com.Charon.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@TableName("worker_nodes")
+@Data
+public class WorkerNode {
+
+    @TableId(value = "nodeId", type = IdType.INPUT)
+    private String nodeId;            // 节点ID | Node ID
+
+    @TableField("host")
+    private String host;              // 主机名 | Host name
+
+    @TableField("slots")
+    private Integer slots;            // 执行槽数 | Execution slots
+
+    @TableField("running")
+    private Integer running;          // 执行中的任务数 | Jobs executing
+
+    @TableField("queued")
+    private Integer queued;           // 已领取未开始的任务数 | Jobs claimed but not started
+
+    @TableField("cpus")
+    private Integer cpus;             // CPU 核数 | CPU cores
+
+    @TableField("freeDiskBytes")
+    private Long freeDiskBytes;       // 工作目录可用空间（字节） | Usable space in the working directory (bytes)
+
+    @TableField("startedAt")
+    private LocalDateTime startedAt;  // 节点启动时间 | Node start time
+
+    @TableField("heartbeatAt")
+    private LocalDateTime heartbeatAt; // 最近一次心跳 | Last heartbeat
+}
@@ -0,0 +1,255 @@
+package com.Charon.infrastructure.decoder;
+
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
+import com.Charon.infrastructure.encoder.qr.QdvChunks;
+import com.Charon.infrastructure.encoder.qr.SegmentedAesGcm;
+import com.Charon.infrastructure.fec.CrossFrameFecDecoder;
+import com.Charon.infrastructure.fec.FecLayout;
+import com.Charon.infrastructure.fec.FecLengthHeader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns received chunks into plaintext while frames are still being read. Data rows go to the
+ * decrypting output in index order as soon as they are contiguous; a row that arrives ahead of a
+ * gap is parked at its slot in a spool file, and the gap is filled from FEC as soon as its group
+ * has enough members. Every row is folded into its group's syndromes on arrival and then dropped,
+ * so memory stays at the syndrome state plus one envelope segment whatever the payload size.
+ * <p>
+ * The old single-shot {@code AES256GCM} envelope has one tag over everything and is still
+ * buffered whole before it is decrypted. Used from the decode thread only.
+ */
+final class ChunkAssembler implements AutoCloseable {
+
+    private final FecLayout layout;
+    private final PrivateKey privateKey;
+    private final OutputStream out;
+    private final Path spoolFile;
+    private final BitSet parked = new BitSet();
+    private final List<QdvChunks.Chunk> early = new ArrayList<>();
+    private CrossFrameFecDecoder.Streaming fec;
+    private FileChannel spool;
+    private int width = -1;
+    private int[] lengths;
+    private byte[] lastRow;
+    private SegmentedAesGcm.DecryptingStream segmented;
+    private ByteArrayOutputStream legacy;
+    private int next;
+    private int recovered;
+
+    /**
+     * @param out       receives the plaintext; not closed
+     * @param spoolFile where rows ahead of a gap are parked; must not exist, deleted on close
+     */
+    ChunkAssembler(FecLayout layout, PrivateKey privateKey, OutputStream out, Path spoolFile) {
+        this.layout = layout;
+        this.privateKey = privateKey;
+        this.out = out;
+        this.spoolFile = spoolFile;
+    }
+
+    FecLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Data rows rebuilt from parity so far.
+     */
+    int recovered() {
+        return recovered;
+    }
+
+    /**
+     * True once every data row has been passed on; only {@link #finish()} is left.
+     */
+    boolean complete() {
+        return next >= layout.original();
+    }
+
+    void accept(QdvChunks.Chunk chunk) throws IOException, GeneralSecurityException {
+        int index = chunk.index();
+        int total = layout.enabled() ? layout.total() : layout.original();
+        if (index < 0 || index >= total) {
+            return;
+        }
+        byte[] row = chunk.blob();
+        boolean data = index < layout.original();
+        if (!data && index == layout.firstParityIndex()) {
+            FecLengthHeader.Parsed header = FecLengthHeader.parse(row);
+            if (header != null) {
+                lengths = header.lengths();
+                row = header.parity();
+            }
+        }
+        if (width < 0) {
+            // Every row but the last data row has the full width
+            if (!data || index < layout.original() - 1 || layout.original() == 1) {
+                startRows(row.length);
+            } else {
+                early.add(new QdvChunks.Chunk(index, chunk.total(), chunk.fec(), row));
+                return;
+            }
+        }
+        if (fec != null) {
+            fec.accept(index, row);
+        }
+        if (data && index >= next && !parked(index)) {
+            if (index == next) {
+                emit(row);
+            } else {
+                park(index, row);
+            }
+        }
+        advance();
+    }
+
+    /**
+     * Called after the last frame: fills the remaining gaps from FEC and authenticates the end of
+     * the envelope.
+     *
+     * @throws IllegalStateException if a data row is lost beyond what its group's parity covers
+     */
+    void finish() throws IOException, GeneralSecurityException {
+        while (!complete()) {
+            if (fec == null) {
+                throw new IllegalStateException("Missing data chunk " + next + (layout.enabled() ? "" : " and no FEC"));
+            }
+            // Throws if the group lost too much
+            recover(fec.groupOf(next));
+            advance();
+        }
+        if (segmented != null) {
+            segmented.finish();
+        } else if (legacy != null) {
+            out.write(PayloadCrypto.decryptEnvelope(legacy.toByteArray(), privateKey));
+            legacy = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (spool != null) {
+                spool.close();
+            }
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    private void startRows(int rowWidth) throws IOException, GeneralSecurityException {
+        width = rowWidth;
+        fec = layout.enabled() ? CrossFrameFecDecoder.streaming(layout, width) : null;
+        List<QdvChunks.Chunk> waiting = new ArrayList<>(early);
+        early.clear();
+        for (QdvChunks.Chunk c : waiting) {
+            accept(c);
+        }
+    }
+
+    /**
+     * Passes on every contiguous row from the cursor, rebuilding the cursor's group from parity
+     * when it has become recoverable.
+     */
+    private void advance() throws IOException, GeneralSecurityException {
+        while (!complete()) {
+            if (parked(next)) {
+                emit(take(next));
+            } else if (fec != null && fec.recoverable(fec.groupOf(next))) {
+                recover(fec.groupOf(next));
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void recover(int group) throws IOException {
+        for (Map.Entry<Integer, byte[]> e : fec.recover(group).entrySet()) {
+            int index = e.getKey();
+            if (index < next || parked(index)) {
+                continue;
+            }
+            park(index, Arrays.copyOf(e.getValue(), rowLength(index)));
+            recovered++;
+        }
+    }
+
+    private int rowLength(int index) {
+        if (lengths != null && index < lengths.length) {
+            return lengths[index];
+        }
+        if (index == layout.original() - 1 && layout.original() > 1) {
+            throw new IllegalStateException("Last data chunk lost and no length header available");
+        }
+        return width;
+    }
+
+    private boolean parked(int index) {
+        return index == layout.original() - 1 ? lastRow != null : parked.get(index);
+    }
+
+    private void park(int index, byte[] row) throws IOException {
+        if (index == layout.original() - 1) {
+            lastRow = row;
+            return;
+        }
+        if (spool == null) {
+            spool = FileChannel.open(spoolFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(row, 0, Math.min(row.length, width));
+        long position = (long) index * width;
+        while (buf.hasRemaining()) {
+            spool.write(buf, position + buf.position());
+        }
+        parked.set(index);
+    }
+
+    private byte[] take(int index) throws IOException {
+        if (index == layout.original() - 1) {
+            byte[] row = lastRow;
+            lastRow = null;
+            return row;
+        }
+        parked.clear(index);
+        ByteBuffer row = ByteBuffer.allocate(rowLength(index));
+        long position = (long) index * width;
+        while (row.hasRemaining()) {
+            if (spool.read(row, position + row.position()) < 0) {
+                throw new EOFException("Spool ended at chunk " + index);
+            }
+        }
+        return row.array();
+    }
+
+    private void emit(byte[] row) throws IOException {
+        if (next == 0) {
+            if (row.length >= SegmentedAesGcm.MAGIC.length
+                    && Arrays.equals(row, 0, SegmentedAesGcm.MAGIC.length, SegmentedAesGcm.MAGIC, 0, SegmentedAesGcm.MAGIC.length)) {
+                segmented = SegmentedAesGcm.decrypting(out, privateKey);
+            } else {
+                legacy = new ByteArrayOutputStream();
+            }
+        }
+        if (segmented != null) {
+            segmented.write(row);
+        } else {
+            legacy.write(row);
+        }
+        next++;
+    }
+}
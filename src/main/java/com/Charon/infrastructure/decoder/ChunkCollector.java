@@ -0,0 +1,118 @@
+package com.Charon.infrastructure.decoder;
+
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
+import com.Charon.infrastructure.encoder.qr.QdvChunks;
+import com.Charon.infrastructure.fec.FecLayout;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread-safe sink for QR payloads coming out of the decode workers: new QDV2 chunks are queued
+ * for the decode thread, which {@link #drain() drains} them into a {@link ChunkAssembler}, and the
+ * META2 / FEC_INFO / private-key frames are kept. Duplicates (a code seen in several frames) are free.
+ */
+final class ChunkCollector {
+
+    private static final byte[] FEC_INFO = "FEC_INFO".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<Integer> seen = ConcurrentHashMap.newKeySet();
+    private final Queue<QdvChunks.Chunk> arrived = new ConcurrentLinkedQueue<>();
+    private volatile FecLayout layout;
+    private volatile byte[] protectedPrivateKey;
+    private volatile int announcedTotal = -1;
+
+    void accept(byte[] payload) {
+        if (startsWith(payload, QdvChunks.MAGIC)) {
+            QdvChunks.Chunk chunk = QdvChunks.parse(payload);
+            if (chunk != null && seen.add(chunk.index())) {
+                arrived.add(chunk);
+                announcedTotal = chunk.total();
+            }
+        } else if (startsWith(payload, FEC_INFO) && layout == null) {
+            try {
+                layout = toLayout(objectMapper.readTree(new String(payload, FEC_INFO.length,
+                        payload.length - FEC_INFO.length, StandardCharsets.UTF_8)));
+            } catch (IOException ignored) {
+                // damaged codes fail their own ECC; a parse error here means another encoder's frame
+            }
+        } else if (startsWith(payload, PayloadCrypto.PRIVKEY_MAGIC)) {
+            protectedPrivateKey = payload;
+        }
+        // META2 carries the public key, which decryption does not need
+    }
+
+    /**
+     * Chunks queued since the last call, in arrival order.
+     */
+    List<QdvChunks.Chunk> drain() {
+        List<QdvChunks.Chunk> batch = new ArrayList<>();
+        QdvChunks.Chunk chunk;
+        while ((chunk = arrived.poll()) != null) {
+            batch.add(chunk);
+        }
+        return batch;
+    }
+
+    int received() {
+        return seen.size();
+    }
+
+    /**
+     * Chunks expected before recovery can succeed, or -1 while still unknown.
+     */
+    int needed() {
+        FecLayout l = layout;
+        return l != null ? l.original() : -1;
+    }
+
+    byte[] protectedPrivateKey() {
+        return protectedPrivateKey;
+    }
+
+    /**
+     * The layout from FEC_INFO, or {@code null} while that frame has not been read.
+     */
+    FecLayout announcedLayout() {
+        return layout;
+    }
+
+    /**
+     * The announced layout; without FEC_INFO every chunk is taken to be data, as the script does.
+     */
+    FecLayout layout() {
+        FecLayout l = layout;
+        if (l != null) {
+            return l;
+        }
+        if (announcedTotal < 0) {
+            throw new IllegalStateException("No QDV2 chunks found in video");
+        }
+        return FecLayout.none(announcedTotal);
+    }
+
+    private static FecLayout toLayout(JsonNode info) {
+        int original = info.path("original_chunks").asInt();
+        int total = info.path("total_chunks").asInt(original);
+        if (total <= original) {
+            return FecLayout.none(original);
+        }
+        int groups = info.path("fec_groups").asInt(1);
+        int perGroup = info.path("fec_parity_per_group").asInt((total - original) / groups);
+        return new FecLayout(original, groups, perGroup);
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        return data.length >= prefix.length && Arrays.equals(data, 0, prefix.length, prefix, 0, prefix.length);
+    }
+}
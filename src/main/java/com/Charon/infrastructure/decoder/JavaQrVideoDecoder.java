@@ -0,0 +1,185 @@
+package com.Charon.infrastructure.decoder;
+
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
+import com.Charon.infrastructure.encoder.qr.QdvChunks;
+import com.Charon.infrastructure.encoder.qr.QrFrameReader;
+import com.Charon.infrastructure.encoder.qr.RawVideoSource;
+import com.Charon.infrastructure.fec.FecLayout;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.port.VideoDecoder;
+import com.Charon.service.port.VideoDecodingRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.util.ArrayDeque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process counterpart of {@code decode_qr_video.py}. ffmpeg decodes the video into grayscale
+ * frames on a pipe, QR detection runs on a worker pool, and chunks land in a shared collector.
+ * The decode thread feeds them to a {@link ChunkAssembler}, which decrypts rows into the output
+ * file in order and rebuilds lost ones group by group, so the payload is never held in memory.
+ * Reading stops as soon as every data row is written, so a clean video is usually done well
+ * before its last frame. Reads videos from both the Python and the {@code JAVA} encoder.
+ */
+@Component
+public class JavaQrVideoDecoder implements VideoDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(JavaQrVideoDecoder.class);
+
+    private final JobRegistry jobRegistry;
+    private final String ffmpegCmd;
+    private final int threads;
+    private final ExecutorService decodePool;
+    private final QrFrameReader reader = new QrFrameReader();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public JavaQrVideoDecoder(JobRegistry jobRegistry,
+                              @Value("${app.ffmpeg.cmd:ffmpeg}") String ffmpegCmd,
+                              @Value("${app.java-decoder.threads:0}") int threads) {
+        this.jobRegistry = jobRegistry;
+        this.ffmpegCmd = ffmpegCmd;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.decodePool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "qr-decode-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decodePool.shutdownNow();
+    }
+
+    @Override
+    public String decode(VideoDecodingRequest request) throws Exception {
+        String jid = request.jobId();
+        ChunkCollector collected = new ChunkCollector();
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        Path spoolFile = request.outputFile().resolveSibling("chunks.spool");
+        ChunkAssembler assembler = null;
+        boolean written = false;
+
+        jobRegistry.setProgress(jid, 10, "DECODING_FRAMES");
+        int frames = 0;
+        boolean earlyStop = false;
+        String ffmpegLog;
+        int window = threads * 2;
+        ArrayDeque<Future<?>> inFlight = new ArrayDeque<>(window);
+        try {
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(request.outputFile()), sha256)) {
+                try (RawVideoSource source = RawVideoSource.start(ffmpegCmd, request.inputVideo())) {
+                    jobRegistry.register(jid, source.process());
+                    try {
+                        RawVideoSource.Frame frame;
+                        while ((frame = source.next()) != null) {
+                            RawVideoSource.Frame f = frame;
+                            inFlight.add(decodePool.submit(() -> reader.read(f).forEach(collected::accept)));
+                            frames++;
+                            if (inFlight.size() >= window) {
+                                inFlight.poll().get();
+                            }
+                            if (frames % 16 == 0) {
+                                reportProgress(jid, collected);
+                                assembler = assemble(assembler, collected, request, out, spoolFile, false);
+                                if (assembler != null && assembler.complete()) {
+                                    earlyStop = true;
+                                    break;
+                                }
+                            }
+                        }
+                        while (!inFlight.isEmpty()) {
+                            inFlight.poll().get();
+                        }
+                        if (!earlyStop) {
+                            source.finish();
+                        }
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof Exception cause ? cause : e;
+                    } finally {
+                        inFlight.forEach(f -> f.cancel(true));
+                        jobRegistry.remove(jid);
+                    }
+                    ffmpegLog = source.log();
+                }
+
+                jobRegistry.setProgress(jid, 60, "RECOVERING");
+                assembler = assemble(assembler, collected, request, out, spoolFile, true);
+                assembler.finish();
+            }
+            written = true;
+        } finally {
+            if (assembler != null) {
+                assembler.close();
+            }
+            if (!written) {
+                Files.deleteIfExists(request.outputFile());
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("frames_read", frames);
+        stats.put("early_stop", earlyStop);
+        stats.put("chunks_received", collected.received());
+        stats.put("chunks_recovered", assembler.recovered());
+        stats.put("original_chunks", assembler.layout().original());
+        stats.put("file_sha256", HexFormat.of().formatHex(sha256.digest()));
+        stats.put("output_size", Files.size(request.outputFile()));
+        log.info("Java decoder finished job {}: {}", jid, stats);
+        return objectMapper.writeValueAsString(Map.of("ok", true, "stats", stats)) + "\n" + ffmpegLog;
+    }
+
+    /**
+     * Starts the assembler once the private key and the layout are known, then hands it the chunks
+     * collected so far. Chunks read before that wait in the collector. After the last frame
+     * ({@code last}) a missing FEC_INFO falls back to the layout implied by the chunk headers.
+     */
+    private ChunkAssembler assemble(ChunkAssembler assembler, ChunkCollector collected, VideoDecodingRequest request,
+                                    OutputStream out, Path spoolFile, boolean last) throws Exception {
+        if (assembler == null) {
+            if (collected.protectedPrivateKey() == null) {
+                if (last) {
+                    throw new IllegalStateException("Private key frame not found in video");
+                }
+                return null;
+            }
+            FecLayout layout = last ? collected.layout() : collected.announcedLayout();
+            if (layout == null) {
+                return null;
+            }
+            PrivateKey privateKey = PayloadCrypto.readPrivateKeyPem(
+                    PayloadCrypto.unprotectPrivateKey(collected.protectedPrivateKey(), request.privateKeyFramePassword()));
+            assembler = new ChunkAssembler(layout, privateKey, out, spoolFile);
+        }
+        for (QdvChunks.Chunk chunk : collected.drain()) {
+            assembler.accept(chunk);
+        }
+        return assembler;
+    }
+
+    private void reportProgress(String jid, ChunkCollector collected) {
+        int needed = collected.needed();
+        if (needed > 0) {
+            jobRegistry.setProgress(jid, 10 + (int) (50L * Math.min(needed, collected.received()) / needed), "DECODING_FRAMES");
+        }
+    }
+}
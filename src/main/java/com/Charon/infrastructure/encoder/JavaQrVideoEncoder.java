@@ -0,0 +1,446 @@
+package com.Charon.infrastructure.encoder;
+
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
+import com.Charon.infrastructure.encoder.qr.QdvChunkStream;
+import com.Charon.infrastructure.encoder.qr.QrFrameRenderer;
+import com.Charon.infrastructure.encoder.qr.RawVideoSink;
+import com.Charon.infrastructure.encoder.qr.SegmentedAesGcm;
+import com.Charon.infrastructure.encoder.qr.SpooledChunks;
+import com.Charon.infrastructure.fec.FecLayout;
+import com.Charon.infrastructure.fec.FecLengthHeader;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.port.QrPlan;
+import com.Charon.service.port.VideoEncoder;
+import com.Charon.service.port.VideoEncodingRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process replacement for {@code encode_qr_video.py}: encryption, chunking, QDV2 wrapping,
+ * cross-frame FEC and QR rendering all run in the JVM, frames are rendered in parallel and
+ * streamed in order into ffmpeg as raw video. The output is readable by {@code decode_qr_video.py}.
+ * <p>
+ * Envelopes of at least {@code app.java-encoder.split-threshold-bytes} are spooled to disk first,
+ * so any chunk can be read by index. The frame sequence is then cut into contiguous ranges, each
+ * encoded by its own ffmpeg process in parallel, and the parts are joined with the concat
+ * demuxer (stream copy). Chunk indices and frame order are exactly those of the single-process
+ * output, so the decoder sees one continuous stream.
+ */
+@Component
+public class JavaQrVideoEncoder implements VideoEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(JavaQrVideoEncoder.class);
+    private static final int CHUNK_SIZE = 800;
+
+    private final JobRegistry jobRegistry;
+    private final String ffmpegCmd;
+    private final int threads;
+    private final int segmentSize;
+    private final long splitThreshold;
+    private final int splitParts;
+    private final ExecutorService renderPool;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public JavaQrVideoEncoder(JobRegistry jobRegistry,
+                              @Value("${app.ffmpeg.cmd:ffmpeg}") String ffmpegCmd,
+                              @Value("${app.java-encoder.threads:0}") int threads,
+                              @Value("${app.java-encoder.segment-size:65536}") int segmentSize,
+                              @Value("${app.java-encoder.split-threshold-bytes:268435456}") long splitThreshold,
+                              @Value("${app.java-encoder.split-parts:4}") int splitParts) {
+        this.jobRegistry = jobRegistry;
+        this.ffmpegCmd = ffmpegCmd;
+        this.segmentSize = segmentSize > 0 ? Math.min(segmentSize, SegmentedAesGcm.MAX_SEGMENT_SIZE) : SegmentedAesGcm.DEFAULT_SEGMENT_SIZE;
+        this.splitThreshold = splitThreshold;
+        this.splitParts = Math.max(1, splitParts);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.renderPool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "qr-render-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+
+    @Override
+    public boolean supports(String mode) {
+        return "JAVA".equalsIgnoreCase(mode);
+    }
+
+    @Override
+    public String encode(VideoEncodingRequest request) throws Exception {
+        String jid = request.jobId();
+        int[] size = resolveSize(request);
+        QrPlan plan = request.qrPlan();
+        QrFrameRenderer renderer = plan == null
+                ? new QrFrameRenderer(size[0], size[1], request.gridN())
+                : new QrFrameRenderer(size[0], size[1], request.gridN(), plan.boxSize(), ErrorCorrectionLevel.valueOf(plan.ecc()));
+        int chunkSize = plan == null ? CHUNK_SIZE : plan.chunkSize();
+        int codeBytes = plan == null ? FecLengthHeader.MAX_QR_BYTES : plan.codeBytes();
+
+        KeyPair keyPair = request.keyPair() != null ? request.keyPair() : PayloadCrypto.generateKeyPair();
+        byte[] pubPem = PayloadCrypto.publicKeyPem(keyPair);
+        byte[] protectedPriv = PayloadCrypto.protectPrivateKey(PayloadCrypto.privateKeyPem(keyPair), request.privateKeyFramePassword());
+
+        long inputSize = Files.size(request.inputZip());
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        double fecRatio = fecRatio(request);
+
+        try (SegmentedAesGcm.EncryptingStream envelope = SegmentedAesGcm.encrypt(
+                new DigestInputStream(Files.newInputStream(request.inputZip()), sha256),
+                request.passphrase(), keyPair.getPublic(), segmentSize)) {
+            // Segment sizes are fixed, so the chunk count (and with it the FEC layout and every
+            // QDV2 header) is known before the first byte is encrypted.
+            long encryptedSize = envelope.envelopeLength(inputSize);
+            int original = QdvChunkStream.chunkCount(encryptedSize, chunkSize);
+            FecLayout layout = request.enableFec() ? FecLayout.plan(original, fecRatio) : FecLayout.none(original);
+            int totalChunks = layout.enabled() ? layout.total() : layout.original();
+
+            Map<String, Object> fecInfo = new LinkedHashMap<>();
+            fecInfo.put("original_chunks", original);
+            fecInfo.put("total_chunks", totalChunks);
+            fecInfo.put("fec_ratio", request.enableFec() ? fecRatio : 0);
+            fecInfo.put("chunk_size", chunkSize);
+            if (layout.groups() > 1) {
+                fecInfo.put("fec_groups", layout.groups());
+                fecInfo.put("fec_parity_per_group", layout.parityPerGroup());
+            }
+            byte[] metaPub = concat("META2".getBytes(StandardCharsets.US_ASCII), pubPem);
+            byte[] metaFec = concat("FEC_INFO".getBytes(StandardCharsets.US_ASCII), objectMapper.writeValueAsBytes(fecInfo));
+
+            // Frame sequence mirrors the script: data frames, then meta + private-key frames spliced in
+            // at privkey-frame, then an optional obfuscation frame in front.
+            int dataFrames = (totalChunks + renderer.codesPerFrame() - 1) / renderer.codesPerFrame();
+            int parts = encryptedSize >= splitThreshold ? Math.min(splitParts, Math.max(1, dataFrames)) : 1;
+            int requestedPriv = request.privateKeyFrameIndex() == null ? 0 : request.privateKeyFrameIndex();
+            int privFrameIndex = Math.max(0, Math.min(dataFrames, requestedPriv));
+            Callable<byte[]> obfuscationFrame = null;
+            if (request.obfPath() != null) {
+                try {
+                    byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(Path.of(request.obfPath())));
+                    long seed = ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8) | (digest[3] & 0xFFL);
+                    obfuscationFrame = () -> renderer.renderObfuscation(seed);
+                } catch (IOException e) {
+                    log.warn("Skipping obfuscation frame for job {}: {}", jid, e.getMessage());
+                }
+            }
+            boolean obfuscation = obfuscationFrame != null;
+
+            FrameSequence frames;
+            String ffmpegLog;
+            if (parts > 1) {
+                jobRegistry.setProgress(jid, 10, "ENCRYPTING");
+                try (SpooledChunks spool = SpooledChunks.spool(envelope, encryptedSize, chunkSize, layout, codeBytes,
+                        request.outputVideo().resolveSibling("envelope.spool"))) {
+                    frames = frames(renderer, spool::read, dataFrames, privFrameIndex, metaPub, metaFec,
+                            protectedPriv, obfuscationFrame);
+                    jobRegistry.setProgress(jid, 20, "RENDERING");
+                    ffmpegLog = writeVideoParts(jid, renderer, request, frames, parts);
+                }
+            } else {
+                QdvChunkStream chunks = new QdvChunkStream(envelope, encryptedSize, chunkSize, layout, codeBytes);
+                // Frames are requested in order on the writer thread, so the stream can ignore "first"
+                frames = frames(renderer, (first, count) -> chunks.next(count), dataFrames, privFrameIndex,
+                        metaPub, metaFec, protectedPriv, obfuscationFrame);
+                jobRegistry.setProgress(jid, 20, "RENDERING");
+                ffmpegLog = writeVideo(jid, renderer, request, frames);
+            }
+            if (obfuscation) {
+                privFrameIndex++;
+            }
+
+            Map<String, Object> manifest = new LinkedHashMap<>();
+            manifest.put("version", "2.0");
+            manifest.put("file_sha256", HexFormat.of().formatHex(sha256.digest()));
+            manifest.put("frames", frames.size());
+            manifest.put("grid", Math.max(1, request.gridN()));
+            manifest.put("fps", request.fps());
+            manifest.put("resolution", Map.of("w", size[0], "h", size[1]));
+            manifest.put("privkey_frame_index", privFrameIndex + 1);
+            manifest.put("pubkey_pem_b64", Base64.getEncoder().encodeToString(pubPem));
+            manifest.put("encryption", "AES-256-GCM-SEG");
+            manifest.put("segment_size", segmentSize);
+            manifest.put("fec_enabled", request.enableFec());
+            manifest.put("fec_ratio", request.enableFec() ? fecRatio : 0);
+            manifest.put("original_chunks", original);
+            manifest.put("total_chunks", totalChunks);
+            manifest.put("chunk_size", chunkSize);
+            manifest.put("obfuscation", obfuscation);
+            if (layout.groups() > 1) {
+                manifest.put("fec_groups", layout.groups());
+                manifest.put("fec_parity_per_group", layout.parityPerGroup());
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(request.manifestJson().toFile(), manifest);
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("encrypted_size", encryptedSize);
+            stats.put("chunks", original);
+            stats.put("fec_chunks", totalChunks);
+            stats.put("frames", frames.size());
+            stats.put("parts", parts);
+            log.info("Java encoder finished job {}: {}", jid, stats);
+            return objectMapper.writeValueAsString(Map.of("ok", true, "stats", stats)) + "\n" + ffmpegLog;
+        }
+    }
+
+    private static FrameSequence frames(QrFrameRenderer renderer, ChunkSource chunks, int dataFrames, int privFrameIndex,
+                                        byte[] metaPub, byte[] metaFec, byte[] protectedPriv,
+                                        Callable<byte[]> obfuscationFrame) {
+        return new FrameSequence(renderer, chunks, dataFrames, privFrameIndex,
+                () -> renderer.renderGrid(List.of(metaPub, metaFec)),
+                () -> renderer.renderCentered(protectedPriv, 4, 4),
+                obfuscationFrame);
+    }
+
+    /**
+     * Renders frames on the shared pool while writing them to ffmpeg strictly in order; at most
+     * {@code 2 * threads} rendered frames are held in memory at any time.
+     */
+    private String writeVideo(String jid, QrFrameRenderer renderer, VideoEncodingRequest request,
+                              FrameSequence frames) throws Exception {
+        try (RawVideoSink sink = startSink(renderer, request, request.outputVideo())) {
+            jobRegistry.register(jid, sink.process());
+            try {
+                feed(jid, sink, frames, 0, frames.size(), threads * 2, new AtomicInteger());
+                sink.finish();
+            } finally {
+                jobRegistry.remove(jid);
+            }
+            return sink.log();
+        }
+    }
+
+    /**
+     * Encodes {@code parts} contiguous frame ranges with one ffmpeg process each, all fed at once
+     * and sharing the render pool, then joins the parts without re-encoding. The first failure
+     * kills every process; cancelling the job kills a running part, which fails the rest.
+     */
+    private String writeVideoParts(String jid, QrFrameRenderer renderer, VideoEncodingRequest request,
+                                   FrameSequence frames, int parts) throws Exception {
+        Path output = request.outputVideo();
+        int window = Math.max(2, threads * 2 / parts);
+        List<Path> files = new ArrayList<>(parts);
+        List<RawVideoSink> sinks = new ArrayList<>(parts);
+        AtomicInteger written = new AtomicInteger();
+        ExecutorService feeders = Executors.newFixedThreadPool(parts, r -> {
+            Thread t = new Thread(r, "qr-part-" + jid);
+            t.setDaemon(true);
+            return t;
+        });
+        StringBuilder ffmpegLog = new StringBuilder();
+        try {
+            CompletionService<RawVideoSink> done = new ExecutorCompletionService<>(feeders);
+            for (int k = 0; k < parts; k++) {
+                int from = (int) ((long) frames.size() * k / parts);
+                int to = (int) ((long) frames.size() * (k + 1) / parts);
+                Path file = output.resolveSibling("part-" + k + ".mp4");
+                RawVideoSink sink = startSink(renderer, request, file);
+                files.add(file);
+                sinks.add(sink);
+                done.submit(() -> {
+                    feed(jid, sink, frames, from, to, window, written);
+                    sink.finish();
+                    return sink;
+                });
+            }
+            jobRegistry.register(jid, sinks.get(0).process());
+            for (int k = 0; k < parts; k++) {
+                RawVideoSink finished = done.take().get();
+                ffmpegLog.append(finished.log());
+                // Keep a live process registered so a cancel still reaches this job
+                sinks.stream().filter(s -> s.process().isAlive()).findFirst()
+                        .ifPresent(s -> jobRegistry.register(jid, s.process()));
+            }
+            jobRegistry.setProgress(jid, 60, "CONCATENATING");
+            ffmpegLog.append(concat(jid, files, output));
+            return ffmpegLog.toString();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            sinks.forEach(RawVideoSink::close);
+            feeders.shutdownNow();
+            jobRegistry.remove(jid);
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Writes frames {@code [from, to)} into {@code sink}, keeping up to {@code window} renders in flight.
+     */
+    private void feed(String jid, RawVideoSink sink, FrameSequence frames, int from, int to, int window,
+                      AtomicInteger written) throws Exception {
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>(window);
+        int total = frames.size();
+        int next = from;
+        try {
+            for (int p = from; p < to; p++) {
+                while (next < to && inFlight.size() < window) {
+                    inFlight.add(renderPool.submit(frames.frame(next)));
+                    next++;
+                }
+                sink.write(inFlight.poll().get());
+                int n = written.incrementAndGet();
+                if (n % 64 == 0 || n == total) {
+                    jobRegistry.setProgress(jid, 20 + (int) (40L * n / total), "RENDERING");
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private RawVideoSink startSink(QrFrameRenderer renderer, VideoEncodingRequest request, Path output) throws IOException {
+        String codec = "GPU".equalsIgnoreCase(request.processingMode()) ? "h264_nvenc" : "libx264";
+        return RawVideoSink.start(ffmpegCmd, renderer.width(), renderer.height(), request.fps(), codec, output);
+    }
+
+    /**
+     * Joins equally encoded parts with the concat demuxer; packets are copied, not re-encoded.
+     */
+    private String concat(String jid, List<Path> files, Path output) throws IOException, InterruptedException {
+        StringBuilder list = new StringBuilder("ffconcat version 1.0\n");
+        for (Path file : files) {
+            list.append("file '").append(file.toAbsolutePath().toString().replace("'", "'\\''")).append("'\n");
+        }
+        Path listFile = Files.writeString(output.resolveSibling("parts.ffconcat"), list);
+        try {
+            ProcessBuilder pb = new ProcessBuilder(ffmpegCmd, "-y", "-f", "concat", "-safe", "0",
+                    "-i", listFile.toString(), "-c", "copy", output.toString());
+            pb.redirectErrorStream(true);
+            Process process = pb.start();
+            jobRegistry.register(jid, process);
+            String out = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            int code = process.waitFor();
+            if (code != 0) {
+                throw new IOException("ffmpeg concat failed with code " + code + ": " + out);
+            }
+            return out;
+        } finally {
+            Files.deleteIfExists(listFile);
+        }
+    }
+
+    /**
+     * Chunks {@code [first, first + count)}, fewer at the end of the index space.
+     */
+    @FunctionalInterface
+    private interface ChunkSource {
+        List<byte[]> read(int first, int count) throws IOException;
+    }
+
+    /**
+     * Frames in output order. A data frame's chunks are read when the frame is requested (on the
+     * feeding thread); rendering itself happens on the pool. Frames may be requested in any order
+     * if the chunk source allows it.
+     */
+    private static final class FrameSequence {
+        private final QrFrameRenderer renderer;
+        private final ChunkSource chunks;
+        private final int privFrameIndex;
+        private final Callable<byte[]> metaFrame;
+        private final Callable<byte[]> privFrame;
+        private final Callable<byte[]> obfuscationFrame;
+        private final int size;
+
+        FrameSequence(QrFrameRenderer renderer, ChunkSource chunks, int dataFrames, int privFrameIndex,
+                      Callable<byte[]> metaFrame, Callable<byte[]> privFrame, Callable<byte[]> obfuscationFrame) {
+            this.renderer = renderer;
+            this.chunks = chunks;
+            this.privFrameIndex = privFrameIndex;
+            this.metaFrame = metaFrame;
+            this.privFrame = privFrame;
+            this.obfuscationFrame = obfuscationFrame;
+            this.size = dataFrames + 2 + (obfuscationFrame != null ? 1 : 0);
+        }
+
+        int size() {
+            return size;
+        }
+
+        Callable<byte[]> frame(int position) {
+            int p = position;
+            if (obfuscationFrame != null) {
+                if (p == 0) {
+                    return obfuscationFrame;
+                }
+                p--;
+            }
+            if (p == privFrameIndex) {
+                return metaFrame;
+            }
+            if (p == privFrameIndex + 1) {
+                return privFrame;
+            }
+            int dataFrame = p > privFrameIndex ? p - 2 : p;
+            try {
+                List<byte[]> batch = chunks.read(dataFrame * renderer.codesPerFrame(), renderer.codesPerFrame());
+                return () -> renderer.renderGrid(batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static double fecRatio(VideoEncodingRequest request) {
+        return request.fecParityPercent() == null ? 0.2
+                : Math.max(0.15, Math.min(0.35, request.fecParityPercent() / 100.0));
+    }
+
+    private static int[] resolveSize(VideoEncodingRequest request) {
+        if (request.width() != null && request.height() != null) {
+            return new int[]{request.width(), request.height()};
+        }
+        String res = request.resolution() == null ? "" : request.resolution().toLowerCase();
+        return switch (res) {
+            case "720p" -> new int[]{1280, 720};
+            case "4k", "2160p" -> new int[]{3840, 2160};
+            default -> new int[]{1920, 1080};
+        };
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = new byte[a.length + b.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+}
@@ -1,29 +1,51 @@
 package com.Charon.infrastructure.encoder;
 
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
 import com.Charon.service.JobRegistry;
+import com.Charon.service.PipelineMetrics;
 import com.Charon.service.port.VideoEncoder;
 import com.Charon.service.port.VideoEncodingRequest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class PythonScriptVideoEncoder implements VideoEncoder {
 
+    /**
+     * Progress band and registry stage for each script stage; STREAM renders and encodes in one pass.
+     */
+    private static final Map<String, Band> BANDS = Map.of(
+            "ENCRYPT", new Band(20, 25, "ENCRYPTING"),
+            "FEC", new Band(25, 30, "FEC"),
+            "RENDER", new Band(30, 45, "RENDERING"),
+            "FFMPEG", new Band(45, 58, "ENCODING"),
+            "STREAM", new Band(30, 58, "ENCODING"));
+
+    private record Band(int from, int to, String stage) {}
+
     private final JobRegistry jobRegistry;
+    private final PipelineMetrics metrics;
+    private final PythonWorkerPool workers;
     private final String pythonCmd;
     private final String ffmpegCmd;
 
     public PythonScriptVideoEncoder(JobRegistry jobRegistry,
+                                    PipelineMetrics metrics,
+                                    PythonWorkerPool workers,
                                     @Value("${app.python.cmd:python}") String pythonCmd,
                                     @Value("${app.ffmpeg.cmd:ffmpeg}") String ffmpegCmd) {
         this.jobRegistry = jobRegistry;
+        this.metrics = metrics;
+        this.workers = workers;
         this.pythonCmd = pythonCmd;
         this.ffmpegCmd = ffmpegCmd;
     }
@@ -35,11 +57,7 @@ public class PythonScriptVideoEncoder implements VideoEncoder {
 
     @Override
     public String encode(VideoEncodingRequest request) throws Exception {
-        String scriptPath = Path.of("scripts", "encode_qr_video.py").toAbsolutePath().toString();
-        
         List<String> cmd = new ArrayList<>();
-        cmd.add(pythonCmd);
-        cmd.add(scriptPath);
         cmd.add("--input"); cmd.add(request.inputZip().toString());
         cmd.add("--output"); cmd.add(request.outputVideo().toString());
         cmd.add("--manifest"); cmd.add(request.manifestJson().toString());
@@ -77,6 +95,36 @@ public class PythonScriptVideoEncoder implements VideoEncoder {
             cmd.add("--obfuscation"); cmd.add(request.obfPath());
         }
 
+        if (request.streamFrames()) {
+            cmd.add("--stream-frames");
+        }
+        if (request.qrPlan() != null) {
+            cmd.add("--chunk-size"); cmd.add(String.valueOf(request.qrPlan().chunkSize()));
+            cmd.add("--box-size"); cmd.add(String.valueOf(request.qrPlan().boxSize()));
+            cmd.add("--ecc"); cmd.add(request.qrPlan().ecc());
+            cmd.add("--qr-bytes"); cmd.add(String.valueOf(request.qrPlan().codeBytes()));
+        }
+        cmd.add("--progress");
+
+        Path keyFile = request.keyPair() == null ? null : writePrivateKey(request);
+        if (keyFile != null) {
+            cmd.add("--private-key-file"); cmd.add(keyFile.toString());
+        }
+        try {
+            return workers.enabled() ? runPooled(request, cmd) : run(request, cmd);
+        } finally {
+            if (keyFile != null) {
+                Files.deleteIfExists(keyFile);
+            }
+        }
+    }
+
+    private String run(VideoEncodingRequest request, List<String> args) throws Exception {
+        String scriptPath = Path.of("scripts", "encode_qr_video.py").toAbsolutePath().toString();
+        List<String> cmd = new ArrayList<>();
+        cmd.add(pythonCmd);
+        cmd.add(scriptPath);
+        cmd.addAll(args);
         ProcessBuilder pb = new ProcessBuilder(cmd);
         pb.environment().put("FFMPEG_CMD", ffmpegCmd);
         pb.directory(java.nio.file.Paths.get("").toAbsolutePath().toFile());
@@ -86,7 +134,7 @@ public class PythonScriptVideoEncoder implements VideoEncoder {
         jobRegistry.register(request.jobId(), p);
         jobRegistry.setProgress(request.jobId(), 20, "ENCODING");
         
-        String logStr = readProcessOutputLimited(p.getInputStream(), 32768);
+        String logStr = ScriptProgressReader.read(p.getInputStream(), collector(request));
         int code = p.waitFor();
         jobRegistry.remove(request.jobId());
 
@@ -97,18 +145,58 @@ public class PythonScriptVideoEncoder implements VideoEncoder {
         return logStr;
     }
 
-    private String readProcessOutputLimited(InputStream in, int maxBytes) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(maxBytes, 8192));
-        byte[] chunk = new byte[4096];
-        int total = 0;
-        int n;
-        while ((n = in.read(chunk)) != -1) {
-            if (total < maxBytes) {
-                int toWrite = Math.min(n, maxBytes - total);
-                buffer.write(chunk, 0, toWrite);
-                total += toWrite;
+    /**
+     * Same as {@link #run} on a warm worker. The worker process is registered for the duration, so
+     * cancelling the job kills it and the pool starts a fresh one for the next job.
+     */
+    private String runPooled(VideoEncodingRequest request, List<String> args) throws Exception {
+        PythonWorkerPool.Worker worker = workers.borrow();
+        boolean completed = false;
+        try {
+            jobRegistry.register(request.jobId(), worker.process());
+            jobRegistry.setProgress(request.jobId(), 20, "ENCODING");
+            ScriptProgressReader.Collector output = collector(request);
+            int code = worker.encode(args, output);
+            completed = true;
+            if (code != 0) {
+                throw new RuntimeException("Encoding failed with code " + code + ": " + output.log());
             }
+            return output.log();
+        } finally {
+            jobRegistry.remove(request.jobId());
+            workers.release(worker, completed);
+        }
+    }
+
+    private ScriptProgressReader.Collector collector(VideoEncodingRequest request) {
+        PipelineMetrics.Labels labels = metrics.labels(request.processingMode(), request.resolution(), request.gridN());
+        return new ScriptProgressReader.Collector(32768, progress -> {
+            Band band = BANDS.get(progress.stage());
+            if (band != null) {
+                jobRegistry.setProgress(request.jobId(),
+                        band.from() + (int) ((band.to() - band.from()) * progress.fraction()), band.stage());
+            }
+        }, timing -> {
+            PipelineMetrics.Stage stage = PipelineMetrics.Stage.of(timing.stage());
+            if (stage != null) {
+                metrics.record(stage, labels, timing.nanos(), timing.amount());
+            }
+        });
+    }
+
+    /**
+     * The job's private key as PKCS#8 PEM next to its outputs, readable by the owner only; the
+     * script derives the public key from it.
+     */
+    private static Path writePrivateKey(VideoEncodingRequest request) throws IOException {
+        Path file = request.outputVideo().resolveSibling("private-key.pem");
+        Files.deleteIfExists(file);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
         }
-        return buffer.toString();
+        Files.write(file, PayloadCrypto.privateKeyPem(request.keyPair()));
+        return file;
     }
 }
@@ -0,0 +1,292 @@
+package com.Charon.infrastructure.encoder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived {@code scripts/encode_worker.py} processes that have already imported the encoder
+ * and its dependencies, so a job skips interpreter start-up. Requests and responses are JSON
+ * frames behind a 4-byte big-endian length on the worker's stdin and stdout.
+ * <p>
+ * Workers are started on demand up to {@code size} and serve one job at a time, most recently
+ * returned first. A worker is replaced after {@code maxJobs} jobs, once it reports more than
+ * {@code maxRssBytes} resident memory, when a job ends without a result (a cancel kills the
+ * process), or when it misses a health-check ping while idle. Size 0 disables the pool.
+ */
+@Slf4j
+@Component
+public class PythonWorkerPool {
+
+    static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Starts one worker process.
+     */
+    @FunctionalInterface
+    public interface Launcher {
+        Process start() throws IOException;
+    }
+
+    private final Launcher launcher;
+    private final int size;
+    private final int maxJobs;
+    private final long maxRssBytes;
+    private final Duration pingTimeout;
+    private final Semaphore permits;
+    private final BlockingDeque<Worker> idle = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "python-pool");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean closed;
+
+    @Autowired
+    public PythonWorkerPool(@Value("${app.python.cmd:python}") String pythonCmd,
+                            @Value("${app.ffmpeg.cmd:ffmpeg}") String ffmpegCmd,
+                            @Value("${app.python.pool.size:2}") int size,
+                            @Value("${app.python.pool.max-jobs:200}") int maxJobs,
+                            @Value("${app.python.pool.max-rss-bytes:1073741824}") long maxRssBytes,
+                            @Value("${app.python.pool.health-interval:PT30S}") Duration healthInterval,
+                            @Value("${app.python.pool.ping-timeout:PT30S}") Duration pingTimeout) {
+        this(() -> launch(pythonCmd, ffmpegCmd), size, maxJobs, maxRssBytes, healthInterval, pingTimeout);
+    }
+
+    public PythonWorkerPool(Launcher launcher, int size, int maxJobs, long maxRssBytes,
+                            Duration healthInterval, Duration pingTimeout) {
+        this.launcher = launcher;
+        this.size = Math.max(0, size);
+        this.maxJobs = Math.max(1, maxJobs);
+        this.maxRssBytes = maxRssBytes;
+        this.pingTimeout = pingTimeout;
+        this.permits = new Semaphore(this.size, true);
+        if (this.size > 0 && healthInterval.toMillis() > 0) {
+            long ms = healthInterval.toMillis();
+            ticker.scheduleWithFixedDelay(this::checkIdle, ms, ms, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Process launch(String pythonCmd, String ffmpegCmd) throws IOException {
+        String scriptPath = Path.of("scripts", "encode_worker.py").toAbsolutePath().toString();
+        ProcessBuilder pb = new ProcessBuilder(pythonCmd, scriptPath);
+        pb.environment().put("FFMPEG_CMD", ffmpegCmd);
+        pb.directory(Paths.get("").toAbsolutePath().toFile());
+        // stdout carries the protocol; start-up failures such as missing dependencies go to the service log
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return pb.start();
+    }
+
+    public boolean enabled() {
+        return size > 0;
+    }
+
+    /**
+     * Waits for a free slot and takes an idle worker, starting one if none is idle. Every worker
+     * borrowed must be handed back with {@link #release(Worker, boolean)}.
+     */
+    public Worker borrow() throws IOException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Python worker pool is shut down");
+        }
+        permits.acquire();
+        try {
+            Worker worker;
+            while ((worker = idle.pollFirst()) != null) {
+                if (worker.process.isAlive()) {
+                    return worker;
+                }
+                worker.destroy();
+            }
+            return start();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a worker back. {@code reusable} is false when its last request did not complete, in
+     * which case the process is killed; a worker past its job or memory limit is stopped too.
+     */
+    public void release(Worker worker, boolean reusable) {
+        try {
+            if (reusable && !closed && worker.process.isAlive() && worker.jobs < maxJobs && worker.rss <= maxRssBytes) {
+                idle.offerFirst(worker);
+                return;
+            }
+            if (reusable && !closed) {
+                log.info("Recycling Python worker {} after {} jobs at {} bytes resident", worker.pid(), worker.jobs, worker.rss);
+            }
+            worker.destroy();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Worker start() throws IOException {
+        Process process = launcher.start();
+        Worker worker = new Worker(process);
+        // The first answer also means the imports are done
+        if (!worker.ping()) {
+            worker.destroy();
+            throw new IOException("Python worker " + worker.pid() + " did not start within " + pingTimeout);
+        }
+        log.info("Started Python worker {} ({} bytes resident)", worker.pid(), worker.rss);
+        return worker;
+    }
+
+    /**
+     * Pings each idle worker once, taking it out of the pool meanwhile; a worker that misses the
+     * ping or has outgrown the memory limit is stopped and replaced on the next borrow.
+     */
+    void checkIdle() {
+        for (int n = idle.size(); n > 0 && permits.tryAcquire(); n--) {
+            Worker worker = idle.pollLast();
+            if (worker == null) {
+                permits.release();
+                return;
+            }
+            boolean healthy = worker.ping();
+            if (!healthy) {
+                log.warn("Python worker {} failed its health check", worker.pid());
+            }
+            release(worker, healthy);
+        }
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        ticker.shutdownNow();
+        Worker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            worker.destroy();
+        }
+    }
+
+    /**
+     * One worker process, used by a single thread at a time.
+     */
+    public final class Worker {
+        private final Process process;
+        private final DataOutputStream in;
+        private final DataInputStream out;
+        private int jobs;
+        private long rss;
+
+        private Worker(Process process) {
+            this.process = process;
+            this.in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.out = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        /**
+         * The process to register with the job registry; killing it fails the running request.
+         */
+        public Process process() {
+            return process;
+        }
+
+        /**
+         * Runs {@code encode_qr_video.py} with {@code args}, handing each line it prints to
+         * {@code lines} as it arrives.
+         *
+         * @return the script's exit code
+         * @throws IOException if the worker died or broke the protocol; it must not be reused
+         */
+        public int encode(List<String> args, Consumer<String> lines) throws IOException {
+            jobs++;
+            send(Map.of("op", "encode", "args", args));
+            while (true) {
+                JsonNode message = receive();
+                switch (message.path("type").asText()) {
+                    case "line" -> lines.accept(message.path("text").asText());
+                    case "done" -> {
+                        rss = message.path("rss").asLong();
+                        return message.path("code").asInt();
+                    }
+                    default -> throw new IOException("Unexpected message from Python worker: " + message);
+                }
+            }
+        }
+
+        /**
+         * Round trip within the ping timeout; a worker that does not answer in time is killed.
+         */
+        boolean ping() {
+            ScheduledFuture<?> kill = ticker.schedule(process::destroyForcibly, pingTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                send(Map.of("op", "ping"));
+                JsonNode reply = receive();
+                rss = reply.path("rss").asLong();
+                return "pong".equals(reply.path("type").asText());
+            } catch (IOException e) {
+                return false;
+            } finally {
+                kill.cancel(false);
+            }
+        }
+
+        private void send(Map<String, ?> request) throws IOException {
+            byte[] body = MAPPER.writeValueAsBytes(request);
+            in.writeInt(body.length);
+            in.write(body);
+            in.flush();
+        }
+
+        private JsonNode receive() throws IOException {
+            int length = out.readInt();
+            if (length < 0 || length > MAX_FRAME) {
+                throw new IOException("Bad frame length from Python worker: " + length);
+            }
+            byte[] body = out.readNBytes(length);
+            if (body.length < length) {
+                throw new EOFException("Python worker exited mid-frame");
+            }
+            return MAPPER.readTree(body);
+        }
+
+        private long pid() {
+            try {
+                return process.pid();
+            } catch (UnsupportedOperationException e) {
+                return -1;
+            }
+        }
+
+        private void destroy() {
+            process.destroyForcibly();
+        }
+    }
+}
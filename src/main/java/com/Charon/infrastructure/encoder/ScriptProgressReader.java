@@ -0,0 +1,129 @@
+package com.Charon.infrastructure.encoder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Consumes a script's stdout while it runs. Lines of the form
+ * {@code {"event": "progress", "stage": ..., "done": n, "total": m}} are handed to a listener as
+ * they arrive, as are {@code {"event": "timing", "stage": ..., "seconds": s, "amount": n}} lines
+ * sent when a stage ends; everything else is kept, up to a limit, as the job log.
+ */
+public final class ScriptProgressReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public record Progress(String stage, long done, long total) {
+        /**
+         * Completed fraction in [0, 1].
+         */
+        public double fraction() {
+            return total <= 0 ? 1.0 : Math.min(1.0, Math.max(0.0, (double) done / total));
+        }
+    }
+
+    /**
+     * Duration of a finished script stage and the bytes or frames it handled.
+     */
+    public record Timing(String stage, double seconds, long amount) {
+        public long nanos() {
+            return (long) (seconds * 1e9);
+        }
+    }
+
+    private ScriptProgressReader() {
+    }
+
+    /**
+     * Reads until end of stream.
+     *
+     * @return the non-progress output, truncated to {@code maxLogChars}
+     */
+    public static String read(InputStream in, int maxLogChars, Consumer<Progress> listener) throws IOException {
+        return read(in, maxLogChars, listener, timing -> { });
+    }
+
+    /**
+     * Like {@link #read(InputStream, int, Consumer)}, also reporting stage timings.
+     */
+    public static String read(InputStream in, int maxLogChars, Consumer<Progress> listener,
+                              Consumer<Timing> timings) throws IOException {
+        return read(in, new Collector(maxLogChars, listener, timings));
+    }
+
+    /**
+     * Feeds every line to {@code collector} until end of stream.
+     *
+     * @return the collector's log
+     */
+    public static String read(InputStream in, Collector collector) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            collector.accept(line);
+        }
+        return collector.log();
+    }
+
+    /**
+     * The same handling one line at a time, for output that arrives already split into lines.
+     */
+    public static final class Collector implements Consumer<String> {
+        private final int maxLogChars;
+        private final Consumer<Progress> listener;
+        private final Consumer<Timing> timings;
+        private final StringBuilder log;
+
+        public Collector(int maxLogChars, Consumer<Progress> listener, Consumer<Timing> timings) {
+            this.maxLogChars = maxLogChars;
+            this.listener = listener;
+            this.timings = timings;
+            this.log = new StringBuilder(Math.min(maxLogChars, 8192));
+        }
+
+        @Override
+        public void accept(String line) {
+            Object event = parse(line);
+            if (event instanceof Progress progress) {
+                listener.accept(progress);
+            } else if (event instanceof Timing timing) {
+                timings.accept(timing);
+            } else if (log.length() < maxLogChars) {
+                log.append(line, 0, Math.min(line.length(), maxLogChars - log.length())).append('\n');
+            }
+        }
+
+        /**
+         * The non-progress output so far, truncated to {@code maxLogChars}.
+         */
+        public String log() {
+            return log.toString();
+        }
+    }
+
+    /**
+     * A {@link Progress} or {@link Timing}, or {@code null} for a log line.
+     */
+    static Object parse(String line) {
+        if (!line.startsWith("{\"event\"")) {
+            return null;
+        }
+        try {
+            JsonNode node = MAPPER.readTree(line);
+            return switch (node.path("event").asText()) {
+                case "progress" -> new Progress(node.path("stage").asText(), node.path("done").asLong(), node.path("total").asLong());
+                case "timing" -> new Timing(node.path("stage").asText(), node.path("seconds").asDouble(), node.path("amount").asLong());
+                default -> null;
+            };
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
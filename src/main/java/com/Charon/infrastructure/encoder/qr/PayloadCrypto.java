@@ -0,0 +1,167 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * JCE counterpart of the crypto helpers in {@code scripts/encode_qr_video.py} and
+ * {@code decode_qr_video.py}. Layouts are byte-for-byte what the scripts read and write.
+ */
+public final class PayloadCrypto {
+
+    public static final byte[] AES_ENVELOPE_MAGIC = "AES256GCM".getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] PRIVKEY_MAGIC = "PRIVKEY_AES".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int PBKDF2_ITERATIONS = 100_000;
+    private static final int GCM_TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PayloadCrypto() {}
+
+    public static KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
+        gen.initialize(new RSAKeyGenParameterSpec(2048, RSAKeyGenParameterSpec.F4), RANDOM);
+        return gen.generateKeyPair();
+    }
+
+    public static byte[] publicKeyPem(KeyPair keyPair) {
+        return pem("PUBLIC KEY", keyPair.getPublic().getEncoded());
+    }
+
+    public static byte[] privateKeyPem(KeyPair keyPair) {
+        return pem("PRIVATE KEY", keyPair.getPrivate().getEncoded());
+    }
+
+    public static byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        RANDOM.nextBytes(b);
+        return b;
+    }
+
+    /**
+     * PBKDF2-HMAC-SHA256, 100k iterations, 256-bit output (same as the scripts).
+     */
+    public static byte[] deriveKey(String passphrase, byte[] salt) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(passphrase.toCharArray(), salt, PBKDF2_ITERATIONS, 256);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Protects the PEM private key for the private-key frame:
+     * "PRIVKEY_AES" + salt(16) + nonce(12) + ciphertext||tag.
+     */
+    public static byte[] protectPrivateKey(byte[] privatePem, String password) throws GeneralSecurityException {
+        byte[] salt = randomBytes(16);
+        byte[] nonce = randomBytes(12);
+        byte[] key = deriveKey(password, salt);
+        byte[] ciphertext = aesGcm(Cipher.ENCRYPT_MODE, key, nonce).doFinal(privatePem);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(PRIVKEY_MAGIC.length + 28 + ciphertext.length);
+        out.writeBytes(PRIVKEY_MAGIC);
+        out.writeBytes(salt);
+        out.writeBytes(nonce);
+        out.writeBytes(ciphertext);
+        return out.toByteArray();
+    }
+
+    /**
+     * Inverse of {@link #protectPrivateKey}; returns the PEM private key.
+     */
+    public static byte[] unprotectPrivateKey(byte[] protectedKey, String password) throws GeneralSecurityException {
+        if (protectedKey.length < PRIVKEY_MAGIC.length + 28 + 16
+                || !Arrays.equals(protectedKey, 0, PRIVKEY_MAGIC.length, PRIVKEY_MAGIC, 0, PRIVKEY_MAGIC.length)) {
+            throw new GeneralSecurityException("Invalid private key frame");
+        }
+        int off = PRIVKEY_MAGIC.length;
+        byte[] salt = Arrays.copyOfRange(protectedKey, off, off + 16);
+        byte[] nonce = Arrays.copyOfRange(protectedKey, off + 16, off + 28);
+        byte[] key = deriveKey(password, salt);
+        return aesGcm(Cipher.DECRYPT_MODE, key, nonce).doFinal(protectedKey, off + 28, protectedKey.length - off - 28);
+    }
+
+    /**
+     * Parses an unencrypted PKCS#8 PEM private key, as written by both encoders.
+     */
+    public static PrivateKey readPrivateKeyPem(byte[] pem) throws GeneralSecurityException {
+        String text = new String(pem, StandardCharsets.US_ASCII)
+                .replaceAll("-----(BEGIN|END) PRIVATE KEY-----", "")
+                .replaceAll("\\s", "");
+        return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(text)));
+    }
+
+    /**
+     * Decrypts the single-shot {@code AES256GCM} envelope written by {@code encode_qr_video.py}:
+     * magic(9) + salt(16) + nonce(12) + len(encKey)(2) + encKey + ciphertext||tag.
+     */
+    public static byte[] decryptEnvelope(byte[] envelope, PrivateKey privateKey) throws GeneralSecurityException {
+        int off = AES_ENVELOPE_MAGIC.length;
+        if (envelope.length < off + 30
+                || !Arrays.equals(envelope, 0, off, AES_ENVELOPE_MAGIC, 0, off)) {
+            throw new GeneralSecurityException("Invalid AES256GCM envelope");
+        }
+        byte[] nonce = Arrays.copyOfRange(envelope, off + 16, off + 28);
+        int encKeyLength = ((envelope[off + 28] & 0xFF) << 8) | (envelope[off + 29] & 0xFF);
+        int ctStart = off + 30 + encKeyLength;
+        if (ctStart > envelope.length) {
+            throw new GeneralSecurityException("Truncated AES256GCM envelope");
+        }
+        byte[] aesKey = unwrapKey(Arrays.copyOfRange(envelope, off + 30, ctStart), privateKey);
+        return aesGcm(Cipher.DECRYPT_MODE, aesKey, nonce).doFinal(envelope, ctStart, envelope.length - ctStart);
+    }
+
+    /**
+     * RSA-OAEP with SHA-256 for both the digest and MGF1, matching the
+     * {@code cryptography} defaults used by the scripts (the JCE default MGF1 is SHA-1).
+     */
+    public static byte[] wrapKey(byte[] aesKey, PublicKey publicKey) throws GeneralSecurityException {
+        Cipher rsa = Cipher.getInstance("RSA/ECB/OAEPPadding");
+        rsa.init(Cipher.ENCRYPT_MODE, publicKey, new OAEPParameterSpec(
+                "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT));
+        return rsa.doFinal(aesKey);
+    }
+
+    /**
+     * Inverse of {@link #wrapKey}.
+     */
+    public static byte[] unwrapKey(byte[] encKey, PrivateKey privateKey) throws GeneralSecurityException {
+        Cipher rsa = Cipher.getInstance("RSA/ECB/OAEPPadding");
+        rsa.init(Cipher.DECRYPT_MODE, privateKey, new OAEPParameterSpec(
+                "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT));
+        return rsa.doFinal(encKey);
+    }
+
+    public static Cipher aesGcm(int mode, byte[] key, byte[] nonce) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(GCM_TAG_BITS, nonce));
+        return cipher;
+    }
+
+    private static byte[] pem(String type, byte[] der) {
+        String body = Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(der);
+        String pem = "-----BEGIN " + type + "-----\n" + body + "\n-----END " + type + "-----\n";
+        return pem.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,83 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import com.Charon.infrastructure.fec.CrossFrameFecEncoder;
+import com.Charon.infrastructure.fec.FecLayout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuts an envelope stream of known length into wrapped QDV2 chunks on demand. Data chunks are
+ * fed to a streaming FEC encoder as they are read; parity chunks follow once the input is
+ * exhausted. Only the FEC state is retained, never the payload.
+ */
+public final class QdvChunkStream {
+
+    private final InputStream envelope;
+    private final int chunkSize;
+    private final FecLayout layout;
+    private final int total;
+    private final CrossFrameFecEncoder.Streaming fec;
+    private List<byte[]> parity;
+    private int next;
+
+    /**
+     * @param codeBytes byte capacity of the QR code chunks are rendered in; see {@link CrossFrameFecEncoder#streaming}
+     */
+    public QdvChunkStream(InputStream envelope, long envelopeLength, int chunkSize, FecLayout layout, int codeBytes) {
+        this.envelope = envelope;
+        this.chunkSize = chunkSize;
+        this.layout = layout;
+        this.total = layout.enabled() ? layout.total() : layout.original();
+        this.fec = layout.enabled()
+                ? CrossFrameFecEncoder.streaming(layout, (int) Math.min(chunkSize, envelopeLength), codeBytes)
+                : null;
+    }
+
+    public static int chunkCount(long envelopeLength, int chunkSize) {
+        return (int) ((envelopeLength + chunkSize - 1) / chunkSize);
+    }
+
+    public int total() {
+        return total;
+    }
+
+    public boolean hasNext() {
+        return next < total;
+    }
+
+    public byte[] next() throws IOException {
+        if (next < layout.original()) {
+            byte[] blob = envelope.readNBytes(chunkSize);
+            if (blob.length == 0 || (blob.length < chunkSize && next < layout.original() - 1)) {
+                throw new EOFException("Envelope ended at chunk " + next + " of " + layout.original());
+            }
+            if (fec != null) {
+                fec.accept(blob);
+            }
+            return QdvChunks.wrap(next++, total, blob, false);
+        }
+        if (parity == null) {
+            if (envelope.read() >= 0) {
+                throw new IOException("Envelope longer than announced");
+            }
+            parity = fec.finish();
+        }
+        byte[] blob = parity.get(next - layout.firstParityIndex());
+        return QdvChunks.wrap(next++, total, blob, true);
+    }
+
+    /**
+     * Up to {@code n} next chunks (fewer at the end of the stream).
+     */
+    public List<byte[]> next(int n) throws IOException {
+        List<byte[]> batch = new ArrayList<>(n);
+        while (batch.size() < n && hasNext()) {
+            batch.add(next());
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,75 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Chunking and the {@code QDV2} chunk header read by {@code decode_qr_video.py}:
+ * "QDV2" + index(4) + total(4) + length(2) + fecFlag(1) + blob + crc32(4), big-endian.
+ */
+public final class QdvChunks {
+
+    public static final byte[] MAGIC = "QDV2".getBytes(StandardCharsets.US_ASCII);
+    public static final int HEADER_BYTES = MAGIC.length + 4 + 4 + 2 + 1;
+    public static final int OVERHEAD_BYTES = HEADER_BYTES + 4;
+
+    private QdvChunks() {}
+
+    public static List<byte[]> split(byte[] data, int chunkSize) {
+        List<byte[]> chunks = new ArrayList<>((data.length + chunkSize - 1) / chunkSize);
+        for (int off = 0; off < data.length; off += chunkSize) {
+            chunks.add(Arrays.copyOfRange(data, off, Math.min(data.length, off + chunkSize)));
+        }
+        return chunks;
+    }
+
+    public static byte[] wrap(int index, int total, byte[] blob, boolean fec) {
+        if (blob.length > 0xFFFF) {
+            throw new IllegalArgumentException("Chunk too large for QDV2 header: " + blob.length);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(blob);
+        return ByteBuffer.allocate(OVERHEAD_BYTES + blob.length)
+                .put(MAGIC)
+                .putInt(index)
+                .putInt(total)
+                .putShort((short) blob.length)
+                .put((byte) (fec ? 1 : 0))
+                .put(blob)
+                .putInt((int) crc.getValue())
+                .array();
+    }
+
+    /**
+     * A received QDV2 chunk.
+     */
+    public record Chunk(int index, int total, boolean fec, byte[] blob) {}
+
+    /**
+     * Parses a decoded QR payload; returns {@code null} for anything that is not an intact QDV2 chunk.
+     */
+    public static Chunk parse(byte[] payload) {
+        if (payload.length < OVERHEAD_BYTES || !Arrays.equals(payload, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(payload, MAGIC.length, payload.length - MAGIC.length);
+        int index = buf.getInt();
+        int total = buf.getInt();
+        int length = buf.getShort() & 0xFFFF;
+        boolean fec = buf.get() == 1;
+        if (HEADER_BYTES + length + 4 != payload.length) {
+            return null;
+        }
+        byte[] blob = Arrays.copyOfRange(payload, HEADER_BYTES, HEADER_BYTES + length);
+        CRC32 crc = new CRC32();
+        crc.update(blob);
+        if ((int) crc.getValue() != ByteBuffer.wrap(payload, HEADER_BYTES + length, 4).getInt()) {
+            return null;
+        }
+        return new Chunk(index, total, fec, blob);
+    }
+}
@@ -0,0 +1,49 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds and decodes every QR code in a grayscale frame. Stateless apart from the hints, so one
+ * instance is shared by all decode workers (ZXing readers are created per call).
+ * <p>
+ * Payloads are binary; decoding the text as ISO-8859-1 maps every byte back to itself, which also
+ * holds for numeric/alphanumeric segments the Python {@code qrcode} package may choose.
+ */
+public final class QrFrameReader {
+
+    private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+
+    public QrFrameReader() {
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, List.of(BarcodeFormat.QR_CODE));
+        hints.put(DecodeHintType.CHARACTER_SET, StandardCharsets.ISO_8859_1.name());
+    }
+
+    public List<byte[]> read(RawVideoSource.Frame frame) {
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(frame.gray(), frame.width(), frame.height(),
+                0, 0, frame.width(), frame.height(), false);
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+        try {
+            Result[] results = new QRCodeMultiReader().decodeMultiple(bitmap, hints);
+            List<byte[]> payloads = new ArrayList<>(results.length);
+            for (Result result : results) {
+                payloads.add(result.getText().getBytes(StandardCharsets.ISO_8859_1));
+            }
+            return payloads;
+        } catch (NotFoundException e) {
+            return List.of();
+        }
+    }
+}
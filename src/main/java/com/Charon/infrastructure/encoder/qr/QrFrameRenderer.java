@@ -0,0 +1,167 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Renders 8-bit grayscale frames (one byte per pixel, row-major) with the same geometry as
+ * {@code make_frame_with_codes}: an N×N grid of codes (ECC Q unless planned otherwise), each
+ * centred in its cell.
+ * Instances are immutable and safe to share between render threads.
+ */
+public final class QrFrameRenderer {
+
+    private static final byte WHITE = (byte) 0xFF;
+    private static final byte BLACK = 0;
+
+    private final int width;
+    private final int height;
+    private final int grid;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int boxSize;
+    private final ErrorCorrectionLevel ecc;
+    private final boolean fitToCell;
+
+    public QrFrameRenderer(int width, int height, int grid) {
+        this(width, height, grid, 0, ErrorCorrectionLevel.Q);
+    }
+
+    /**
+     * Grid codes with {@code boxSize} pixels per module at level {@code ecc}; a code too large for
+     * its cell at that size (the meta codes, the first parity chunk) gets smaller modules instead.
+     * A {@code boxSize} of 0 keeps the script's default of a 50th of the cell and never shrinks.
+     */
+    public QrFrameRenderer(int width, int height, int grid, int boxSize, ErrorCorrectionLevel ecc) {
+        this.width = width;
+        this.height = height;
+        this.grid = Math.max(1, grid);
+        this.cellWidth = width / this.grid;
+        this.cellHeight = height / this.grid;
+        this.fitToCell = boxSize > 0;
+        this.boxSize = fitToCell ? boxSize : Math.max(3, Math.min(cellWidth, cellHeight) / 50);
+        this.ecc = ecc;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int codesPerFrame() {
+        return grid * grid;
+    }
+
+    public int frameBytes() {
+        return width * height;
+    }
+
+    public byte[] renderGrid(List<byte[]> payloads) throws WriterException {
+        byte[] frame = blank();
+        for (int k = 0; k < payloads.size() && k < codesPerFrame(); k++) {
+            ByteMatrix qr = encode(payloads.get(k), ecc);
+            int box = fitToCell
+                    ? Math.max(1, Math.min(boxSize, Math.min(cellWidth, cellHeight) / (qr.getWidth() + 4)))
+                    : boxSize;
+            int size = (qr.getWidth() + 4) * box;
+            int row = k / grid;
+            int col = k % grid;
+            int x = col * cellWidth + Math.max(0, (cellWidth - size) / 2);
+            int y = row * cellHeight + Math.max(0, (cellHeight - size) / 2);
+            paint(frame, qr, x, y, box, 2);
+        }
+        return frame;
+    }
+
+    /**
+     * Single code centred on a full frame (used for the private-key frame, box 4 / border 4).
+     * Level M: a protected 2048-bit PKCS#8 key is about 1760 bytes, more than a version 40 code
+     * holds at level Q.
+     */
+    public byte[] renderCentered(byte[] payload, int box, int border) throws WriterException {
+        byte[] frame = blank();
+        ByteMatrix qr = encode(payload, ErrorCorrectionLevel.M);
+        int size = (qr.getWidth() + 2 * border) * box;
+        paint(frame, qr, Math.max(0, (width - size) / 2), Math.max(0, (height - size) / 2), box, border);
+        return frame;
+    }
+
+    /**
+     * Noise frame of random grey rectangles, deterministic for a given seed.
+     */
+    public byte[] renderObfuscation(long seed) {
+        byte[] frame = blank();
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = 0; i < 2000; i++) {
+            int x1 = rnd.nextInt(width);
+            int y1 = rnd.nextInt(height);
+            int x2 = Math.min(width - 1, x1 + rnd.nextInt(5, 50));
+            int y2 = Math.min(height - 1, y1 + rnd.nextInt(5, 50));
+            fill(frame, x1, y1, x2 + 1, y2 + 1, (byte) rnd.nextInt(256));
+        }
+        return frame;
+    }
+
+    private byte[] blank() {
+        byte[] frame = new byte[width * height];
+        Arrays.fill(frame, WHITE);
+        return frame;
+    }
+
+    private static ByteMatrix encode(byte[] payload, ErrorCorrectionLevel ecc) throws WriterException {
+        // No CHARACTER_SET hint: ZXing then emits plain byte mode without an ECI header,
+        // which is what the qrcode package produces and what pyzbar expects.
+        String content = new String(payload, StandardCharsets.ISO_8859_1);
+        return Encoder.encode(content, ecc).getMatrix();
+    }
+
+    /**
+     * Pastes the code (quiet zone included) at (x, y), clipping at the frame edges like PIL's paste.
+     */
+    private void paint(byte[] frame, ByteMatrix qr, int x, int y, int box, int border) {
+        int modules = qr.getWidth();
+        int size = (modules + 2 * border) * box;
+        fill(frame, x, y, x + size, y + size, WHITE);
+        for (int my = 0; my < modules; my++) {
+            int py = y + (my + border) * box;
+            int mx = 0;
+            while (mx < modules) {
+                if (qr.get(mx, my) != 1) {
+                    mx++;
+                    continue;
+                }
+                int run = mx;
+                while (run < modules && qr.get(run, my) == 1) {
+                    run++;
+                }
+                int px = x + (mx + border) * box;
+                fill(frame, px, py, px + (run - mx) * box, py + box, BLACK);
+                mx = run;
+            }
+        }
+    }
+
+    private void fill(byte[] frame, int x0, int y0, int x1, int y1, byte value) {
+        int left = Math.max(0, x0);
+        int right = Math.min(width, x1);
+        int top = Math.max(0, y0);
+        int bottom = Math.min(height, y1);
+        if (left >= right) {
+            return;
+        }
+        for (int y = top; y < bottom; y++) {
+            int base = y * width;
+            Arrays.fill(frame, base + left, base + right, value);
+        }
+    }
+}
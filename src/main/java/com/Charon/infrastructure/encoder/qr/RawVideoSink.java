@@ -0,0 +1,105 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An ffmpeg process fed with raw grayscale frames on stdin. Output (stdout+stderr) is drained on
+ * a background thread so a chatty encoder can never block the writer.
+ */
+public final class RawVideoSink implements AutoCloseable {
+
+    private static final int MAX_LOG_BYTES = 32768;
+
+    private final Process process;
+    private final OutputStream stdin;
+    private final Thread drainer;
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+    private RawVideoSink(Process process) {
+        this.process = process;
+        this.stdin = process.getOutputStream();
+        this.drainer = Thread.ofPlatform().daemon().name("ffmpeg-drain-" + process.pid()).start(this::drain);
+    }
+
+    public static RawVideoSink start(String ffmpegCmd, int width, int height, int fps,
+                                     String codec, Path output) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(ffmpegCmd);
+        cmd.add("-y");
+        cmd.add("-f"); cmd.add("rawvideo");
+        cmd.add("-pix_fmt"); cmd.add("gray");
+        cmd.add("-s"); cmd.add(width + "x" + height);
+        cmd.add("-r"); cmd.add(String.valueOf(fps));
+        cmd.add("-i"); cmd.add("-");
+        cmd.add("-c:v"); cmd.add(codec);
+        if (codec.contains("nvenc")) {
+            cmd.add("-preset"); cmd.add("p4");
+            cmd.add("-rc"); cmd.add("vbr");
+        } else {
+            cmd.add("-preset"); cmd.add("medium");
+            cmd.add("-crf"); cmd.add("20");
+        }
+        cmd.add("-pix_fmt"); cmd.add("yuv420p");
+        cmd.add(output.toString());
+
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        return new RawVideoSink(pb.start());
+    }
+
+    public Process process() {
+        return process;
+    }
+
+    public void write(byte[] frame) throws IOException {
+        stdin.write(frame);
+    }
+
+    /**
+     * Closes stdin and waits for ffmpeg to finish muxing.
+     */
+    public void finish() throws IOException, InterruptedException {
+        stdin.close();
+        int code = process.waitFor();
+        drainer.join();
+        if (code != 0) {
+            throw new IOException("ffmpeg failed with code " + code + ": " + log());
+        }
+    }
+
+    public String log() {
+        synchronized (log) {
+            return log.toString();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (process.isAlive()) {
+            process.destroyForcibly();
+        }
+    }
+
+    private void drain() {
+        byte[] chunk = new byte[4096];
+        try (InputStream in = process.getInputStream()) {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                synchronized (log) {
+                    int room = MAX_LOG_BYTES - log.size();
+                    if (room > 0) {
+                        log.write(chunk, 0, Math.min(n, room));
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // process was killed; nothing left to collect
+        }
+    }
+}
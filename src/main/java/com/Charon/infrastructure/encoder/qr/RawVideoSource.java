@@ -0,0 +1,132 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * An ffmpeg process decoding a video into grayscale frames on stdout. Frames are requested as a
+ * PGM stream ({@code image2pipe}/{@code pgm}) so every frame carries its own dimensions and no
+ * separate probe is needed. Stderr is drained on a background thread.
+ */
+public final class RawVideoSource implements AutoCloseable {
+
+    private static final int MAX_LOG_BYTES = 32768;
+
+    private final Process process;
+    private final InputStream stdout;
+    private final Thread drainer;
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private int index;
+
+    public record Frame(int index, int width, int height, byte[] gray) {}
+
+    private RawVideoSource(Process process) {
+        this.process = process;
+        this.stdout = new BufferedInputStream(process.getInputStream(), 1 << 20);
+        this.drainer = Thread.ofPlatform().daemon().name("ffmpeg-drain-" + process.pid()).start(this::drain);
+    }
+
+    public static RawVideoSource start(String ffmpegCmd, Path input) throws IOException {
+        List<String> cmd = List.of(ffmpegCmd, "-v", "error", "-i", input.toString(),
+                "-f", "image2pipe", "-pix_fmt", "gray", "-c:v", "pgm", "-");
+        return new RawVideoSource(new ProcessBuilder(cmd).start());
+    }
+
+    public Process process() {
+        return process;
+    }
+
+    /**
+     * Next decoded frame, or {@code null} at end of stream.
+     */
+    public Frame next() throws IOException {
+        int first = stdout.read();
+        if (first < 0) {
+            return null;
+        }
+        if (first != 'P' || stdout.read() != '5') {
+            throw new IOException("Unexpected frame format from ffmpeg");
+        }
+        int width = headerInt();
+        int height = headerInt();
+        int maxVal = headerInt();
+        if (maxVal > 255) {
+            throw new IOException("16-bit PGM not supported");
+        }
+        byte[] gray = stdout.readNBytes(width * height);
+        if (gray.length < width * height) {
+            throw new EOFException("Truncated frame " + index);
+        }
+        return new Frame(index++, width, height, gray);
+    }
+
+    /**
+     * Waits for ffmpeg after the last frame has been read.
+     */
+    public void finish() throws IOException, InterruptedException {
+        int code = process.waitFor();
+        drainer.join();
+        if (code != 0) {
+            throw new IOException("ffmpeg failed with code " + code + ": " + log());
+        }
+    }
+
+    public String log() {
+        synchronized (log) {
+            return log.toString();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (process.isAlive()) {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Reads one whitespace-terminated decimal header field, skipping comments.
+     */
+    private int headerInt() throws IOException {
+        int c = stdout.read();
+        while (c == '#' || Character.isWhitespace(c)) {
+            if (c == '#') {
+                while (c != '\n' && c >= 0) {
+                    c = stdout.read();
+                }
+            }
+            c = stdout.read();
+        }
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = stdout.read();
+        }
+        if (c < 0) {
+            throw new EOFException("Truncated PGM header");
+        }
+        return value;
+    }
+
+    private void drain() {
+        byte[] chunk = new byte[4096];
+        try (InputStream in = process.getErrorStream()) {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                synchronized (log) {
+                    int room = MAX_LOG_BYTES - log.size();
+                    if (room > 0) {
+                        log.write(chunk, 0, Math.min(n, room));
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // process was killed; nothing left to collect
+        }
+    }
+}
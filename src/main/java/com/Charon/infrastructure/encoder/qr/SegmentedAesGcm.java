@@ -0,0 +1,375 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * Streaming successor of the {@code AES256GCM} envelope. The payload is cut into fixed-size
+ * segments, each sealed on its own with AES-256-GCM (STREAM construction), so neither side ever
+ * holds more than one segment:
+ * <pre>
+ * "AES256SEG" + salt(16) + noncePrefix(7) + segmentSize(4) + len(encKey)(2) + encKey
+ *   + seal(segment 0) + seal(segment 1) + ... + seal(last segment)
+ * </pre>
+ * Segment {@code i} uses nonce {@code noncePrefix || i (4, big-endian) || lastFlag (1)} and the
+ * header as associated data, which rules out reordering, truncation and header tampering. Key
+ * derivation and wrapping are unchanged from the old envelope, which decoders still accept.
+ * The JCE GCM provider uses the AES-NI / carry-less multiply intrinsics where available.
+ */
+public final class SegmentedAesGcm {
+
+    public static final byte[] MAGIC = "AES256SEG".getBytes(StandardCharsets.US_ASCII);
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    /**
+     * Largest segment accepted. The size comes from the not yet authenticated header and sets the
+     * decrypt buffers, so an envelope cannot make a decoder allocate more than this.
+     */
+    public static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    static final int SALT_BYTES = 16;
+    static final int NONCE_PREFIX_BYTES = 7;
+    static final int TAG_BYTES = 16;
+    private static final int FIXED_HEADER_BYTES = MAGIC.length + SALT_BYTES + NONCE_PREFIX_BYTES + 4 + 2;
+
+    private SegmentedAesGcm() {}
+
+    /**
+     * Starts encrypting {@code plaintext}; reading the returned stream yields the whole envelope.
+     * The AES key is derived from {@code passphrase} and wrapped for {@code publicKey} as in
+     * {@link PayloadCrypto}.
+     */
+    public static EncryptingStream encrypt(InputStream plaintext, String passphrase, PublicKey publicKey,
+                                           int segmentSize) throws GeneralSecurityException {
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be in 1.." + MAX_SEGMENT_SIZE + ": " + segmentSize);
+        }
+        byte[] salt = PayloadCrypto.randomBytes(SALT_BYTES);
+        byte[] noncePrefix = PayloadCrypto.randomBytes(NONCE_PREFIX_BYTES);
+        byte[] aesKey = PayloadCrypto.deriveKey(passphrase, salt);
+        byte[] encKey = PayloadCrypto.wrapKey(aesKey, publicKey);
+        if (encKey.length > 0xFFFF) {
+            throw new IllegalArgumentException("Wrapped key too large: " + encKey.length);
+        }
+        byte[] header = ByteBuffer.allocate(FIXED_HEADER_BYTES + encKey.length)
+                .put(MAGIC)
+                .put(salt)
+                .put(noncePrefix)
+                .putInt(segmentSize)
+                .putShort((short) encKey.length)
+                .put(encKey)
+                .array();
+        return new EncryptingStream(plaintext, new SecretKeySpec(aesKey, "AES"), header, noncePrefix, segmentSize);
+    }
+
+    /**
+     * Envelope size for a plaintext of {@code plaintextLength} bytes; an empty plaintext still
+     * produces one (empty, authenticated) segment.
+     */
+    public static long envelopeLength(long plaintextLength, int headerLength, int segmentSize) {
+        long segments = Math.max(1, (plaintextLength + segmentSize - 1) / segmentSize);
+        return headerLength + plaintextLength + segments * TAG_BYTES;
+    }
+
+    /**
+     * Decrypts an envelope read from {@code envelope} into {@code out}, one segment at a time.
+     *
+     * @throws GeneralSecurityException if any segment fails authentication or the stream is truncated
+     */
+    public static void decrypt(InputStream envelope, OutputStream out, PrivateKey privateKey)
+            throws IOException, GeneralSecurityException {
+        DecryptingStream sink = decrypting(out, privateKey);
+        try {
+            envelope.transferTo(sink);
+            sink.finish();
+        } catch (IOException e) {
+            if (e.getCause() instanceof GeneralSecurityException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Push-based decryptor writing plaintext to {@code out}; envelope bytes may be written in
+     * pieces of any size as they become available. See {@link DecryptingStream}.
+     */
+    public static DecryptingStream decrypting(OutputStream out, PrivateKey privateKey) {
+        return new DecryptingStream(out, privateKey);
+    }
+
+    private static GCMParameterSpec nonce(byte[] prefix, int counter, boolean last) {
+        byte[] nonce = ByteBuffer.allocate(12)
+                .put(prefix)
+                .putInt(counter)
+                .put((byte) (last ? 1 : 0))
+                .array();
+        return new GCMParameterSpec(TAG_BYTES * 8, nonce);
+    }
+
+    /**
+     * A short read means end of input; a full read is the last one only if nothing follows it.
+     */
+    private static boolean isLast(PushbackInputStream in, int read, int full) throws IOException {
+        if (read < full) {
+            return true;
+        }
+        int peek = in.read();
+        if (peek < 0) {
+            return true;
+        }
+        in.unread(peek);
+        return false;
+    }
+
+    /**
+     * Pull-based encryptor: the header first, then sealed segments produced on demand, so callers
+     * can chunk ciphertext while the input is still being read.
+     */
+    public static final class EncryptingStream extends InputStream {
+        private final PushbackInputStream source;
+        private final SecretKeySpec key;
+        private final byte[] header;
+        private final byte[] noncePrefix;
+        private final int segmentSize;
+        private final Cipher cipher;
+        private final byte[] plain;
+        private byte[] buffer;
+        private int bufferPos;
+        private int bufferLen;
+        private int counter;
+        private boolean headerSent;
+        private boolean finished;
+
+        private EncryptingStream(InputStream source, SecretKeySpec key, byte[] header, byte[] noncePrefix,
+                                 int segmentSize) throws GeneralSecurityException {
+            this.source = new PushbackInputStream(source, 1);
+            this.key = key;
+            this.header = header;
+            this.noncePrefix = noncePrefix;
+            this.segmentSize = segmentSize;
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            this.plain = new byte[segmentSize];
+            this.buffer = new byte[segmentSize + TAG_BYTES];
+        }
+
+        public int headerLength() {
+            return header.length;
+        }
+
+        public int segmentSize() {
+            return segmentSize;
+        }
+
+        /**
+         * Total bytes this stream will yield for a plaintext of the given length.
+         */
+        public long envelopeLength(long plaintextLength) {
+            return SegmentedAesGcm.envelopeLength(plaintextLength, header.length, segmentSize);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (bufferPos == bufferLen && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, bufferLen - bufferPos);
+            System.arraycopy(buffer, bufferPos, b, off, n);
+            bufferPos += n;
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            if (!headerSent) {
+                headerSent = true;
+                buffer = Arrays.copyOf(header, Math.max(header.length, segmentSize + TAG_BYTES));
+                bufferPos = 0;
+                bufferLen = header.length;
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            int n = source.readNBytes(plain, 0, segmentSize);
+            boolean last = isLast(source, n, segmentSize);
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, nonce(noncePrefix, counter++, last));
+                cipher.updateAAD(header);
+                bufferLen = cipher.doFinal(plain, 0, n, buffer, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Segment encryption failed", e);
+            }
+            bufferPos = 0;
+            finished = last;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Arrays.fill(plain, (byte) 0);
+            source.close();
+        }
+    }
+
+    /**
+     * Push-based decryptor: holds one sealed segment and releases its plaintext once the next byte
+     * (or {@link #finish()}) shows whether it was the last one. Authentication failures surface as
+     * {@link IOException}s caused by a {@link GeneralSecurityException}; nothing unauthenticated is
+     * ever written to the target.
+     */
+    public static final class DecryptingStream extends OutputStream {
+        private final OutputStream out;
+        private final PrivateKey privateKey;
+        private byte[] header = new byte[FIXED_HEADER_BYTES];
+        private int headerLen;
+        private boolean fixedParsed;
+        private byte[] noncePrefix;
+        private int segmentSize;
+        private SecretKeySpec key;
+        private Cipher cipher;
+        private byte[] sealed;
+        private byte[] plain;
+        private int sealedLen;
+        private int counter;
+        private boolean finished;
+
+        private DecryptingStream(OutputStream out, PrivateKey privateKey) {
+            this.out = out;
+            this.privateKey = privateKey;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Envelope already finished");
+            }
+            while (len > 0) {
+                int n;
+                if (key == null) {
+                    n = Math.min(len, header.length - headerLen);
+                    System.arraycopy(b, off, header, headerLen, n);
+                    headerLen += n;
+                    if (headerLen == header.length) {
+                        readHeader();
+                    }
+                } else {
+                    if (sealedLen == sealed.length) {
+                        // More input follows, so the buffered segment is not the last one
+                        open(false);
+                    }
+                    n = Math.min(len, sealed.length - sealedLen);
+                    System.arraycopy(b, off, sealed, sealedLen, n);
+                    sealedLen += n;
+                }
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Authenticates and writes the final segment without closing the target.
+         *
+         * @throws IOException caused by a {@link GeneralSecurityException} if the envelope is truncated
+         */
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            if (key == null) {
+                throw failure(new GeneralSecurityException("Truncated AES256SEG header"));
+            }
+            open(true);
+            finished = true;
+            Arrays.fill(plain, (byte) 0);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void readHeader() throws IOException {
+            if (!fixedParsed) {
+                if (!Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+                    throw failure(new GeneralSecurityException("Not an AES256SEG envelope"));
+                }
+                ByteBuffer fields = ByteBuffer.wrap(header, MAGIC.length + SALT_BYTES, NONCE_PREFIX_BYTES + 6);
+                noncePrefix = new byte[NONCE_PREFIX_BYTES];
+                fields.get(noncePrefix);
+                segmentSize = fields.getInt();
+                int encKeyLength = fields.getShort() & 0xFFFF;
+                if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+                    throw failure(new GeneralSecurityException("Invalid AES256SEG segment size " + segmentSize));
+                }
+                fixedParsed = true;
+                header = Arrays.copyOf(header, FIXED_HEADER_BYTES + encKeyLength);
+                if (encKeyLength > 0) {
+                    return;
+                }
+            }
+            try {
+                byte[] encKey = Arrays.copyOfRange(header, FIXED_HEADER_BYTES, header.length);
+                key = new SecretKeySpec(PayloadCrypto.unwrapKey(encKey, privateKey), "AES");
+                cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw failure(e);
+            }
+            sealed = new byte[segmentSize + TAG_BYTES];
+            plain = new byte[segmentSize];
+        }
+
+        private void open(boolean last) throws IOException {
+            if (sealedLen < TAG_BYTES) {
+                throw failure(new GeneralSecurityException("Truncated AES256SEG segment " + counter));
+            }
+            int n;
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key, nonce(noncePrefix, counter, last));
+                cipher.updateAAD(header);
+                n = cipher.doFinal(sealed, 0, sealedLen, plain, 0);
+            } catch (GeneralSecurityException e) {
+                throw failure(e);
+            }
+            counter++;
+            sealedLen = 0;
+            out.write(plain, 0, n);
+        }
+
+        private static IOException failure(GeneralSecurityException e) {
+            return new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import com.Charon.infrastructure.fec.CrossFrameFecEncoder;
+import com.Charon.infrastructure.fec.FecLayout;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The same wrapped QDV2 chunks as {@link QdvChunkStream}, but addressable by index from any
+ * thread. The envelope is written once to a spool file (feeding the FEC encoder on the way) and
+ * data chunks are read back with positional reads; parity chunks are held in memory, as the
+ * streaming encoder holds them anyway. The spool file is deleted on {@link #close()}.
+ */
+public final class SpooledChunks implements AutoCloseable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long envelopeLength;
+    private final int chunkSize;
+    private final FecLayout layout;
+    private final int total;
+    private final List<byte[]> parity;
+
+    private SpooledChunks(Path file, long envelopeLength, int chunkSize, FecLayout layout, List<byte[]> parity)
+            throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.envelopeLength = envelopeLength;
+        this.chunkSize = chunkSize;
+        this.layout = layout;
+        this.total = layout.enabled() ? layout.total() : layout.original();
+        this.parity = parity;
+    }
+
+    /**
+     * Reads {@code envelope} to the end into {@code file}, which must not exist yet.
+     *
+     * @param codeBytes byte capacity of the QR code chunks are rendered in; see {@link CrossFrameFecEncoder#streaming}
+     */
+    public static SpooledChunks spool(InputStream envelope, long envelopeLength, int chunkSize, FecLayout layout,
+                                      int codeBytes, Path file) throws IOException {
+        CrossFrameFecEncoder.Streaming fec = layout.enabled()
+                ? CrossFrameFecEncoder.streaming(layout, (int) Math.min(chunkSize, envelopeLength), codeBytes)
+                : null;
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE_NEW), 1 << 20)) {
+                for (int i = 0; i < layout.original(); i++) {
+                    byte[] blob = envelope.readNBytes(chunkSize);
+                    if (blob.length == 0 || (blob.length < chunkSize && i < layout.original() - 1)) {
+                        throw new EOFException("Envelope ended at chunk " + i + " of " + layout.original());
+                    }
+                    if (fec != null) {
+                        fec.accept(blob);
+                    }
+                    out.write(blob);
+                }
+            }
+            if (envelope.read() >= 0) {
+                throw new IOException("Envelope longer than announced");
+            }
+            return new SpooledChunks(file, envelopeLength, chunkSize, layout, fec != null ? fec.finish() : List.of());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    public int total() {
+        return total;
+    }
+
+    /**
+     * Chunks {@code [first, first + count)}, fewer at the end of the index space.
+     */
+    public List<byte[]> read(int first, int count) throws IOException {
+        int end = Math.min(total, first + count);
+        List<byte[]> batch = new ArrayList<>(Math.max(0, end - first));
+        for (int i = first; i < end; i++) {
+            batch.add(chunk(i));
+        }
+        return batch;
+    }
+
+    private byte[] chunk(int index) throws IOException {
+        if (index >= layout.original()) {
+            return QdvChunks.wrap(index, total, parity.get(index - layout.firstParityIndex()), true);
+        }
+        long position = (long) index * chunkSize;
+        ByteBuffer blob = ByteBuffer.allocate((int) Math.min(chunkSize, envelopeLength - position));
+        while (blob.hasRemaining()) {
+            if (channel.read(blob, position + blob.position()) < 0) {
+                throw new EOFException("Spool ended at chunk " + index);
+            }
+        }
+        return QdvChunks.wrap(index, total, blob.array(), false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
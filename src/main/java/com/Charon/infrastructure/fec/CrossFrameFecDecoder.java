@@ -0,0 +1,287 @@
+package com.Charon.infrastructure.fec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Erasure recovery for chunk streams produced by {@link CrossFrameFecEncoder} or the script.
+ * Each group needs at least {@code dataCount(g)} of its codeword members; the recovery map for
+ * a group's erasure pattern is computed once and applied to whole rows.
+ * <p>
+ * {@link #recover} is the bulk path over a map of every received chunk. {@link #streaming} folds
+ * rows into per-group syndromes as they arrive, so a decoder can pass rows on and drop them.
+ */
+public final class CrossFrameFecDecoder {
+
+    private CrossFrameFecDecoder() {}
+
+    /**
+     * True once every group has enough chunks to rebuild its data (used to stop reading early).
+     */
+    public static boolean recoverable(FecLayout layout, Map<Integer, byte[]> chunks) {
+        if (!layout.enabled()) {
+            for (int i = 0; i < layout.original(); i++) {
+                if (!chunks.containsKey(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int g = 0; g < layout.groups(); g++) {
+            int present = 0;
+            for (int idx : layout.members(g)) {
+                if (chunks.containsKey(idx)) {
+                    present++;
+                }
+            }
+            if (present < layout.dataCount(g)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the data chunks {@code [0, original)} in order, trimmed to their original lengths.
+     *
+     * @throws IllegalStateException if some group lost more chunks than it has parity
+     */
+    public static List<byte[]> recover(FecLayout layout, Map<Integer, byte[]> chunks) {
+        int original = layout.original();
+        byte[][] data = new byte[original][];
+        for (int i = 0; i < original; i++) {
+            data[i] = chunks.get(i);
+        }
+        if (!layout.enabled()) {
+            for (int i = 0; i < original; i++) {
+                if (data[i] == null) {
+                    throw new IllegalStateException("Missing data chunk " + i + " and no FEC");
+                }
+            }
+            return Arrays.asList(data);
+        }
+
+        FecLengthHeader.Parsed header = null;
+        byte[] firstParity = chunks.get(layout.firstParityIndex());
+        if (firstParity != null) {
+            header = FecLengthHeader.parse(firstParity);
+        }
+        int width = 0;
+        for (Map.Entry<Integer, byte[]> e : chunks.entrySet()) {
+            if (e.getKey() == layout.firstParityIndex() && header != null) {
+                width = Math.max(width, header.parity().length);
+            } else if (e.getKey() < layout.total()) {
+                width = Math.max(width, e.getValue().length);
+            }
+        }
+
+        ReedSolomon rs = new ReedSolomon(layout.parityPerGroup());
+        for (int g = 0; g < layout.groups(); g++) {
+            int[] members = layout.members(g);
+            int k = layout.dataCount(g);
+            List<Integer> erased = new ArrayList<>();
+            List<Integer> received = new ArrayList<>();
+            for (int pos = 0; pos < members.length; pos++) {
+                if (chunks.containsKey(members[pos])) {
+                    received.add(pos);
+                } else if (pos < k) {
+                    erased.add(pos);
+                }
+            }
+            if (erased.isEmpty()) {
+                continue;
+            }
+            int missingTotal = members.length - received.size();
+            if (missingTotal > layout.parityPerGroup()) {
+                throw new IllegalStateException("FEC group " + g + " lost " + missingTotal
+                        + " chunks, can recover at most " + layout.parityPerGroup());
+            }
+            // Unreceived parity positions are erasures too; their values are simply not needed.
+            int[] erasedPositions = new int[missingTotal];
+            int n = 0;
+            for (int pos = 0; pos < members.length; pos++) {
+                if (!chunks.containsKey(members[pos])) {
+                    erasedPositions[n++] = pos;
+                }
+            }
+            int[] receivedPositions = received.stream().mapToInt(Integer::intValue).toArray();
+            int[][] coeff = rs.erasureCoefficients(members.length, erasedPositions, receivedPositions);
+
+            for (int e = 0; e < erasedPositions.length; e++) {
+                int pos = erasedPositions[e];
+                if (pos >= k) {
+                    continue;
+                }
+                byte[] out = new byte[width];
+                for (int j = 0; j < receivedPositions.length; j++) {
+                    int c = coeff[e][j];
+                    if (c == 0) {
+                        continue;
+                    }
+                    byte[] row = rowOf(members[receivedPositions[j]], chunks, layout, header);
+                    byte[] m = GaloisField.MUL[c];
+                    int len = Math.min(width, row.length);
+                    for (int x = 0; x < len; x++) {
+                        out[x] ^= m[row[x] & 0xFF];
+                    }
+                }
+                data[members[pos]] = out;
+            }
+        }
+
+        int[] lengths = header != null ? header.lengths() : null;
+        for (int i = 0; i < original; i++) {
+            int len;
+            if (lengths != null && i < lengths.length) {
+                len = lengths[i];
+            } else if (chunks.containsKey(i)) {
+                len = chunks.get(i).length;
+            } else if (i < original - 1) {
+                len = width;
+            } else {
+                throw new IllegalStateException("Last data chunk lost and no length header available");
+            }
+            if (data[i].length != len) {
+                data[i] = Arrays.copyOf(data[i], len);
+            }
+        }
+        return Arrays.asList(data);
+    }
+
+    /**
+     * Incremental decoder: feed every received row (data or parity, any order, bare parity without
+     * the length header), then rebuild a group's lost data rows once it has enough members.
+     * {@code width} is the length of a full data row. Memory is {@code groups * parityPerGroup *
+     * width} bytes of syndromes, released group by group as they are recovered.
+     */
+    public static Streaming streaming(FecLayout layout, int width) {
+        return new Streaming(layout, width);
+    }
+
+    public static final class Streaming {
+        private final FecLayout layout;
+        private final int width;
+        private final ReedSolomon rs;
+        private final byte[][][] syndromes;
+        private final int[] present;
+        private final boolean[] recovered;
+        private final BitSet received;
+
+        private Streaming(FecLayout layout, int width) {
+            if (!layout.enabled()) {
+                throw new IllegalArgumentException("Layout has no FEC");
+            }
+            this.layout = layout;
+            this.width = width;
+            this.rs = new ReedSolomon(layout.parityPerGroup());
+            this.syndromes = new byte[layout.groups()][][];
+            this.present = new int[layout.groups()];
+            this.recovered = new boolean[layout.groups()];
+            this.received = new BitSet(layout.total());
+        }
+
+        /**
+         * Adds the row at chunk {@code index}; repeated indices and groups already recovered are
+         * ignored.
+         */
+        public void accept(int index, byte[] row) {
+            if (index < 0 || index >= layout.total() || received.get(index)) {
+                return;
+            }
+            received.set(index);
+            int g = groupOf(index);
+            if (recovered[g]) {
+                return;
+            }
+            present[g]++;
+            if (syndromes[g] == null) {
+                syndromes[g] = new byte[layout.parityPerGroup()][width];
+            }
+            int[] members = layout.members(g);
+            rs.addToSyndromes(syndromes[g], members.length, positionOf(index, g), row);
+        }
+
+        public boolean received(int index) {
+            return received.get(index);
+        }
+
+        public int groupOf(int index) {
+            return index < layout.original() ? layout.groupOf(index)
+                    : (index - layout.original()) / layout.parityPerGroup();
+        }
+
+        /**
+         * True once the group has at least as many members as data rows and was not recovered yet.
+         */
+        public boolean recoverable(int group) {
+            return !recovered[group] && present[group] >= layout.dataCount(group);
+        }
+
+        /**
+         * Rebuilds the data rows of {@code group} that were not received, full width and keyed by
+         * chunk index, and releases the group's syndromes.
+         *
+         * @throws IllegalStateException if the group lost more chunks than it has parity or was
+         *                               already recovered
+         */
+        public Map<Integer, byte[]> recover(int group) {
+            if (recovered[group]) {
+                throw new IllegalStateException("FEC group " + group + " already recovered");
+            }
+            int[] members = layout.members(group);
+            int k = layout.dataCount(group);
+            int missing = members.length - present[group];
+            if (missing > layout.parityPerGroup()) {
+                throw new IllegalStateException("FEC group " + group + " lost " + missing
+                        + " chunks, can recover at most " + layout.parityPerGroup());
+            }
+            int[] erased = new int[missing];
+            int n = 0;
+            for (int pos = 0; pos < members.length; pos++) {
+                if (!received.get(members[pos])) {
+                    erased[n++] = pos;
+                }
+            }
+            Map<Integer, byte[]> rows = new HashMap<>();
+            byte[][] s = syndromes[group] != null ? syndromes[group] : new byte[layout.parityPerGroup()][width];
+            int[][] coeff = rs.syndromeCoefficients(members.length, erased);
+            for (int e = 0; e < erased.length; e++) {
+                if (erased[e] >= k) {
+                    continue;
+                }
+                byte[] out = new byte[width];
+                for (int j = 0; j < s.length; j++) {
+                    int c = coeff[e][j];
+                    if (c == 0) {
+                        continue;
+                    }
+                    byte[] m = GaloisField.MUL[c];
+                    byte[] row = s[j];
+                    for (int x = 0; x < width; x++) {
+                        out[x] ^= m[row[x] & 0xFF];
+                    }
+                }
+                rows.put(members[erased[e]], out);
+            }
+            syndromes[group] = null;
+            recovered[group] = true;
+            return rows;
+        }
+
+        private int positionOf(int index, int group) {
+            return index < layout.original() ? index / layout.groups()
+                    : layout.dataCount(group) + (index - layout.original()) % layout.parityPerGroup();
+        }
+    }
+
+    private static byte[] rowOf(int index, Map<Integer, byte[]> chunks, FecLayout layout, FecLengthHeader.Parsed header) {
+        if (index == layout.firstParityIndex() && header != null) {
+            return header.parity();
+        }
+        return chunks.get(index);
+    }
+}
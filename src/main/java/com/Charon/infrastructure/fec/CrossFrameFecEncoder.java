@@ -0,0 +1,174 @@
+package com.Charon.infrastructure.fec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cross-frame erasure coding for QDV2 chunk streams, wire-compatible with
+ * {@code create_cross_frame_fec}: parity rows per {@link FecLayout}, the first one prefixed
+ * with the chunk-length header.
+ * <p>
+ * {@link #encode} is the bulk path: every (group, column stripe) pair is an independent
+ * unit of work and the units are spread over a {@link ForkJoinPool}.
+ * {@link #streaming} is the incremental path used when chunks are produced on the fly.
+ */
+public final class CrossFrameFecEncoder {
+
+    /** Columns per work unit; one unit's parity rows stay cache-resident while rows stream by. */
+    static final int STRIPE = 256;
+
+    private final ForkJoinPool pool;
+
+    public CrossFrameFecEncoder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public CrossFrameFecEncoder(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public record Result(List<byte[]> chunks, FecLayout layout) {}
+
+    /**
+     * @param codeBytes byte capacity of the planned QR code, which decides the length header's form
+     */
+    public Result encode(List<byte[]> data, double ratio, int codeBytes) {
+        FecLayout layout = FecLayout.plan(data.size(), ratio);
+        if (!layout.enabled()) {
+            return new Result(List.copyOf(data), layout);
+        }
+        int width = 0;
+        int[] lengths = new int[data.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = data.get(i).length;
+            width = Math.max(width, lengths[i]);
+        }
+
+        ReedSolomon rs = new ReedSolomon(layout.parityPerGroup());
+        byte[][][] state = new byte[layout.groups()][layout.parityPerGroup()][width];
+        int stripes = Math.max(1, (width + STRIPE - 1) / STRIPE);
+        pool.invoke(new StripeTask(data, layout, rs, state, width, stripes, 0, layout.groups() * stripes));
+
+        List<byte[]> out = new ArrayList<>(layout.total());
+        out.addAll(data);
+        for (int g = 0; g < layout.groups(); g++) {
+            for (byte[] row : rs.parityRows(state[g], layout.dataCount(g))) {
+                out.add(row);
+            }
+        }
+        out.set(layout.firstParityIndex(),
+                FecLengthHeader.prefix(FecLengthHeader.encode(lengths, width, codeBytes), out.get(layout.firstParityIndex())));
+        return new Result(out, layout);
+    }
+
+    /**
+     * Incremental encoder: feed data chunks in index order, then collect parity. {@code width} is
+     * the length of the widest data chunk (every chunk but the last must be exactly that). Memory is
+     * {@code groups * parityPerGroup * width} bytes regardless of input size. {@code codeBytes} is
+     * the byte capacity of the planned QR code, which decides the length header's form.
+     */
+    public static Streaming streaming(FecLayout layout, int width, int codeBytes) {
+        return new Streaming(layout, width, codeBytes);
+    }
+
+    public static final class Streaming {
+        private final FecLayout layout;
+        private final int width;
+        private final int codeBytes;
+        private final ReedSolomon rs;
+        private final byte[][][] state;
+        private final ReedSolomon.Accumulator[] accumulators;
+        private int next;
+        private int lastLength;
+
+        private Streaming(FecLayout layout, int width, int codeBytes) {
+            this.layout = layout;
+            this.width = width;
+            this.codeBytes = codeBytes;
+            this.rs = new ReedSolomon(layout.parityPerGroup());
+            this.state = new byte[layout.groups()][layout.parityPerGroup()][width];
+            this.accumulators = new ReedSolomon.Accumulator[layout.groups()];
+            for (int g = 0; g < accumulators.length; g++) {
+                accumulators[g] = rs.accumulator(state[g], 0, width);
+            }
+        }
+
+        public void accept(byte[] chunk) {
+            if (next >= layout.original()) {
+                throw new IllegalStateException("More data chunks than planned: " + layout.original());
+            }
+            if (next < layout.original() - 1 && chunk.length != width) {
+                throw new IllegalArgumentException("Only the last chunk may be short");
+            }
+            accumulators[layout.groupOf(next)].feed(chunk);
+            lastLength = chunk.length;
+            next++;
+        }
+
+        /**
+         * Parity chunks in index order starting at {@link FecLayout#firstParityIndex()}.
+         */
+        public List<byte[]> finish() {
+            if (next != layout.original()) {
+                throw new IllegalStateException("Expected " + layout.original() + " chunks, got " + next);
+            }
+            List<byte[]> out = new ArrayList<>(layout.groups() * layout.parityPerGroup());
+            for (int g = 0; g < layout.groups(); g++) {
+                for (byte[] row : rs.parityRows(state[g], layout.dataCount(g))) {
+                    out.add(row);
+                }
+            }
+            int[] lengths = new int[layout.original()];
+            Arrays.fill(lengths, width);
+            lengths[lengths.length - 1] = lastLength;
+            out.set(0, FecLengthHeader.prefix(FecLengthHeader.encode(lengths, width, codeBytes), out.get(0)));
+            return out;
+        }
+    }
+
+    private static final class StripeTask extends RecursiveAction {
+        private final List<byte[]> data;
+        private final FecLayout layout;
+        private final ReedSolomon rs;
+        private final byte[][][] state;
+        private final int width;
+        private final int stripes;
+        private final int lo;
+        private final int hi;
+
+        StripeTask(List<byte[]> data, FecLayout layout, ReedSolomon rs, byte[][][] state,
+                   int width, int stripes, int lo, int hi) {
+            this.data = data;
+            this.layout = layout;
+            this.rs = rs;
+            this.state = state;
+            this.width = width;
+            this.stripes = stripes;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new StripeTask(data, layout, rs, state, width, stripes, lo, mid),
+                        new StripeTask(data, layout, rs, state, width, stripes, mid, hi));
+                return;
+            }
+            int group = lo / stripes;
+            int from = (lo % stripes) * STRIPE;
+            int to = Math.min(width, from + STRIPE);
+            if (from >= to) {
+                return;
+            }
+            ReedSolomon.Accumulator acc = rs.accumulator(state[group], from, to);
+            for (int i = group; i < data.size(); i += layout.groups()) {
+                acc.feed(data.get(i));
+            }
+        }
+    }
+}
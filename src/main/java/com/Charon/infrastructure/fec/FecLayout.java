@@ -0,0 +1,74 @@
+package com.Charon.infrastructure.fec;
+
+/**
+ * Placement of data and parity chunks in the QDV2 chunk index space.
+ * <p>
+ * With {@code groups == 1} this is exactly the script's layout: data chunks {@code [0, original)}
+ * followed by one RS codeword worth of parity. When the input is too large for a single
+ * 255-symbol codeword, data chunk {@code i} belongs to group {@code i % groups} (so a burst of lost
+ * frames is spread across codewords) and the parity of group {@code g} occupies
+ * {@code [original + g * parityPerGroup, original + (g + 1) * parityPerGroup)}.
+ * Multi-group layouts are announced in FEC_INFO as {@code fec_groups} / {@code fec_parity_per_group}.
+ */
+public record FecLayout(int original, int groups, int parityPerGroup) {
+
+    public static FecLayout none(int original) {
+        return new FecLayout(original, 0, 0);
+    }
+
+    /**
+     * Same parity count as the script ({@code max(1, int(k * ratio))}) whenever that fits in one
+     * codeword; otherwise the smallest number of interleaved groups that does.
+     */
+    public static FecLayout plan(int original, double ratio) {
+        if (original == 0) {
+            return none(0);
+        }
+        int parity = Math.max(1, (int) (original * ratio));
+        if (original + parity <= ReedSolomon.MAX_CODEWORD) {
+            return new FecLayout(original, 1, parity);
+        }
+        int perGroup = (int) (ReedSolomon.MAX_CODEWORD / (1 + ratio));
+        while (perGroup + Math.max(1, (int) (perGroup * ratio)) > ReedSolomon.MAX_CODEWORD) {
+            perGroup--;
+        }
+        int groups = (original + perGroup - 1) / perGroup;
+        int largest = (original + groups - 1) / groups;
+        return new FecLayout(original, groups, Math.max(1, (int) (largest * ratio)));
+    }
+
+    public boolean enabled() {
+        return groups > 0;
+    }
+
+    public int total() {
+        return original + groups * parityPerGroup;
+    }
+
+    public int firstParityIndex() {
+        return original;
+    }
+
+    public int dataCount(int group) {
+        return original / groups + (group < original % groups ? 1 : 0);
+    }
+
+    public int groupOf(int dataIndex) {
+        return dataIndex % groups;
+    }
+
+    /**
+     * Chunk indices forming the codeword of {@code group}: its data chunks in order, then its parity.
+     */
+    public int[] members(int group) {
+        int k = dataCount(group);
+        int[] members = new int[k + parityPerGroup];
+        for (int j = 0; j < k; j++) {
+            members[j] = group + j * groups;
+        }
+        for (int t = 0; t < parityPerGroup; t++) {
+            members[k + t] = original + group * parityPerGroup + t;
+        }
+        return members;
+    }
+}
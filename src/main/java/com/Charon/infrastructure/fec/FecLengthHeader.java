@@ -0,0 +1,104 @@
+package com.Charon.infrastructure.fec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * The chunk-length prefix carried by the first parity chunk: {@code <json>|SPLIT|<parity>}.
+ * <p>
+ * The script writes every length as a JSON list. That list outgrows the code it is rendered in
+ * after a few dozen chunks in a small planned code, or a couple of hundred in a version 40 one, so
+ * when it would not fit the compact object {@code {"chunk_size": n, "count": k, "last": m}} is
+ * written instead (every chunk but the last is full-size). {@code decode_qr_video.py} accepts both
+ * forms.
+ */
+public final class FecLengthHeader {
+
+    public static final byte[] SPLIT = "|SPLIT|".getBytes(StandardCharsets.US_ASCII);
+
+    /** Byte-mode capacity of a version 40 code at ECC level Q, for encodes without a QR plan. */
+    public static final int MAX_QR_BYTES = 1663;
+    /** QDV2 header plus CRC around every chunk. */
+    private static final int CHUNK_OVERHEAD = 19;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private FecLengthHeader() {}
+
+    /**
+     * @param codeBytes byte capacity of the code the first parity chunk is rendered in
+     */
+    public static byte[] encode(int[] lengths, int parityWidth, int codeBytes) {
+        String list = Arrays.stream(lengths).mapToObj(String::valueOf).collect(Collectors.joining(", ", "[", "]"));
+        boolean uniform = lengths.length < 2
+                || Arrays.stream(lengths, 0, lengths.length - 1).allMatch(l -> l == lengths[0]);
+        if (!uniform || list.length() + SPLIT.length + parityWidth + CHUNK_OVERHEAD <= codeBytes) {
+            return list.getBytes(StandardCharsets.UTF_8);
+        }
+        return compact(lengths[0], lengths.length, lengths[lengths.length - 1]);
+    }
+
+    public static byte[] compact(int chunkSize, int count, int last) {
+        return ("{\"chunk_size\": " + chunkSize + ", \"count\": " + count + ", \"last\": " + last + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] prefix(byte[] header, byte[] parity) {
+        byte[] out = new byte[header.length + SPLIT.length + parity.length];
+        System.arraycopy(header, 0, out, 0, header.length);
+        System.arraycopy(SPLIT, 0, out, header.length, SPLIT.length);
+        System.arraycopy(parity, 0, out, header.length + SPLIT.length, parity.length);
+        return out;
+    }
+
+    /**
+     * Splits a first-parity chunk into its lengths and the bare parity row, or returns
+     * {@code null} when the chunk carries no (readable) header.
+     */
+    public static Parsed parse(byte[] chunk) {
+        int at = indexOf(chunk, SPLIT);
+        if (at < 0) {
+            return null;
+        }
+        try {
+            JsonNode node = MAPPER.readTree(new String(chunk, 0, at, StandardCharsets.UTF_8));
+            int[] lengths;
+            if (node.isArray()) {
+                lengths = new int[node.size()];
+                for (int i = 0; i < lengths.length; i++) {
+                    lengths[i] = node.get(i).asInt();
+                }
+            } else {
+                int count = node.path("count").asInt();
+                lengths = new int[count];
+                Arrays.fill(lengths, node.path("chunk_size").asInt());
+                if (count > 0) {
+                    lengths[count - 1] = node.path("last").asInt();
+                }
+            }
+            return new Parsed(lengths, Arrays.copyOfRange(chunk, at + SPLIT.length, chunk.length));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public record Parsed(int[] lengths, byte[] parity) {}
+
+    private static int indexOf(byte[] data, byte[] needle) {
+        outer:
+        for (int i = 0; i <= data.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
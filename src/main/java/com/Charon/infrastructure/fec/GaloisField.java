@@ -0,0 +1,68 @@
+package com.Charon.infrastructure.fec;
+
+/**
+ * GF(2^8) arithmetic with the reedsolo defaults (primitive polynomial 0x11d, generator 2).
+ * Besides log/exp tables it keeps a full 256x256 product table so the column kernels can
+ * multiply a whole row by a constant with one table row and no branches.
+ */
+public final class GaloisField {
+
+    static final int[] EXP = new int[512];
+    static final int[] LOG = new int[256];
+    static final byte[][] MUL = new byte[256][256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if ((x & 0x100) != 0) {
+                x ^= 0x11d;
+            }
+        }
+        for (int i = 255; i < 512; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+        for (int a = 1; a < 256; a++) {
+            for (int b = 1; b < 256; b++) {
+                MUL[a][b] = (byte) EXP[LOG[a] + LOG[b]];
+            }
+        }
+    }
+
+    private GaloisField() {}
+
+    public static int mul(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    public static int div(int a, int b) {
+        if (b == 0) {
+            throw new ArithmeticException("GF(256) division by zero");
+        }
+        return a == 0 ? 0 : EXP[(LOG[a] + 255 - LOG[b]) % 255];
+    }
+
+    public static int inverse(int a) {
+        return div(1, a);
+    }
+
+    public static int pow(int a, int power) {
+        if (a == 0) {
+            return power == 0 ? 1 : 0;
+        }
+        return EXP[Math.floorMod(LOG[a] * power, 255)];
+    }
+
+    /**
+     * Evaluates a polynomial given highest-degree coefficient first.
+     */
+    static int evaluate(int[] poly, int x) {
+        int y = poly[0];
+        for (int i = 1; i < poly.length; i++) {
+            y = mul(y, x) ^ poly[i];
+        }
+        return y;
+    }
+}
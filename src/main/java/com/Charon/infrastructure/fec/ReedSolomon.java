@@ -0,0 +1,210 @@
+package com.Charon.infrastructure.fec;
+
+/**
+ * Systematic Reed-Solomon code over GF(2^8) with {@code parity} check symbols, bit-compatible with
+ * {@code reedsolo.RSCodec(parity)} for codewords of up to 255 symbols.
+ * <p>
+ * Cross-frame FEC treats every byte column of a chunk group as its own codeword, so the kernels
+ * here work on whole rows: one data row updates the parity of every column in a stripe at once.
+ */
+public final class ReedSolomon {
+
+    public static final int MAX_CODEWORD = 255;
+
+    private final int parity;
+    private final int[] generator;
+    private final byte[][] generatorRows;
+
+    public ReedSolomon(int parity) {
+        if (parity < 1 || parity >= MAX_CODEWORD) {
+            throw new IllegalArgumentException("parity must be in [1, 254]: " + parity);
+        }
+        this.parity = parity;
+        int[] g = {1};
+        for (int i = 0; i < parity; i++) {
+            int[] next = new int[g.length + 1];
+            for (int j = 0; j < g.length; j++) {
+                next[j] ^= g[j];
+                next[j + 1] ^= GaloisField.mul(g[j], GaloisField.EXP[i]);
+            }
+            g = next;
+        }
+        this.generator = g;
+        this.generatorRows = new byte[parity + 1][];
+        for (int t = 1; t <= parity; t++) {
+            generatorRows[t] = GaloisField.MUL[g[t]];
+        }
+    }
+
+    public int parity() {
+        return parity;
+    }
+
+    int[] generator() {
+        return generator.clone();
+    }
+
+    /**
+     * Creates an LFSR accumulator over columns {@code [from, to)} of {@code state}, which must have
+     * {@code parity} rows. Accumulators over disjoint column ranges may share one state array and
+     * run concurrently.
+     */
+    public Accumulator accumulator(byte[][] state, int from, int to) {
+        if (state.length != parity) {
+            throw new IllegalArgumentException("state must have " + parity + " rows");
+        }
+        return new Accumulator(state, from, to);
+    }
+
+    /**
+     * Synthetic division by the generator, fed one data row at a time. After the last row,
+     * {@link #parity()} yields the check rows in codeword order.
+     */
+    public final class Accumulator {
+        private final byte[][] state;
+        private final int from;
+        private final int to;
+        private final byte[] feedback;
+        private int ring;
+
+        private Accumulator(byte[][] state, int from, int to) {
+            this.state = state;
+            this.from = from;
+            this.to = to;
+            this.feedback = new byte[to - from];
+        }
+
+        public void feed(byte[] row) {
+            byte[] head = state[ring];
+            int end = Math.min(to, row.length);
+            int c = from;
+            for (; c < end; c++) {
+                feedback[c - from] = (byte) (row[c] ^ head[c]);
+            }
+            for (; c < to; c++) {
+                feedback[c - from] = head[c];
+            }
+            for (int t = 1; t < parity; t++) {
+                byte[] target = state[(ring + t) % parity];
+                byte[] m = generatorRows[t];
+                for (int k = 0, col = from; col < to; k++, col++) {
+                    target[col] ^= m[feedback[k] & 0xFF];
+                }
+            }
+            byte[] last = generatorRows[parity];
+            for (int k = 0, col = from; col < to; k++, col++) {
+                head[col] = last[feedback[k] & 0xFF];
+            }
+            ring = (ring + 1) % parity;
+        }
+
+        /**
+         * Check rows in codeword order. Shares storage with the state array.
+         */
+        public byte[][] parity() {
+            return parityRows(state, ring);
+        }
+    }
+
+    /**
+     * Check rows in codeword order for a state that has been fed {@code rowsFed} data rows.
+     */
+    public byte[][] parityRows(byte[][] state, int rowsFed) {
+        byte[][] ordered = new byte[parity][];
+        int ring = rowsFed % parity;
+        for (int t = 0; t < parity; t++) {
+            ordered[t] = state[(ring + t) % parity];
+        }
+        return ordered;
+    }
+
+    /**
+     * Linear recovery map for an erasure pattern: for each position in {@code erased},
+     * {@code value = XOR over j of mul(coeff[e][j], codeword[received[j]])}.
+     * Positions are indices into a codeword of length {@code n} (data first, then parity).
+     * Derived with Forney's algorithm applied to unit received words.
+     */
+    public int[][] erasureCoefficients(int n, int[] erased, int[] received) {
+        int[][] bySyndrome = syndromeCoefficients(n, erased);
+        int[][] coeff = new int[erased.length][received.length];
+        for (int j = 0; j < received.length; j++) {
+            int degree = n - 1 - received[j];
+            for (int s = 0; s < parity; s++) {
+                int unit = GaloisField.pow(2, s * degree);
+                for (int i = 0; i < erased.length; i++) {
+                    coeff[i][j] ^= GaloisField.mul(bySyndrome[i][s], unit);
+                }
+            }
+        }
+        return coeff;
+    }
+
+    /**
+     * Adds a received row at {@code position} of a codeword of length {@code n} to the syndrome
+     * rows, {@code S_s ^= row * 2^(s * (n - 1 - position))}. Rows may arrive in any order; erased
+     * positions simply never contribute, and shorter rows count as zero-padded.
+     */
+    public void addToSyndromes(byte[][] syndromes, int n, int position, byte[] row) {
+        if (syndromes.length != parity) {
+            throw new IllegalArgumentException("syndromes must have " + parity + " rows");
+        }
+        int degree = n - 1 - position;
+        for (int s = 0; s < parity; s++) {
+            byte[] target = syndromes[s];
+            byte[] m = GaloisField.MUL[GaloisField.pow(2, s * degree)];
+            int len = Math.min(target.length, row.length);
+            for (int x = 0; x < len; x++) {
+                target[x] ^= m[row[x] & 0xFF];
+            }
+        }
+    }
+
+    /**
+     * Recovery map from syndromes: for each position in {@code erased},
+     * {@code value = XOR over s of mul(coeff[e][s], S_s)}, where the syndromes were accumulated
+     * over every received position with {@link #addToSyndromes}. Forney's algorithm, which is
+     * linear in the syndromes once the erasure locators are fixed.
+     */
+    public int[][] syndromeCoefficients(int n, int[] erased) {
+        if (n > MAX_CODEWORD) {
+            throw new IllegalArgumentException("codeword longer than 255: " + n);
+        }
+        if (erased.length > parity) {
+            throw new IllegalArgumentException("Too many erasures: " + erased.length + " > " + parity);
+        }
+        int e = erased.length;
+        int[] locators = new int[e];
+        int[] locatorInverses = new int[e];
+        // Λ(x) = Π (1 + X_i x), lowest degree first
+        int[] lambda = new int[e + 1];
+        lambda[0] = 1;
+        for (int i = 0; i < e; i++) {
+            locators[i] = GaloisField.pow(2, n - 1 - erased[i]);
+            locatorInverses[i] = GaloisField.inverse(locators[i]);
+            for (int k = i + 1; k > 0; k--) {
+                lambda[k] ^= GaloisField.mul(lambda[k - 1], locators[i]);
+            }
+        }
+
+        // value_i = X_i * Ω(X_i^-1) / Λ'(X_i^-1) with Ω(x) = S(x)Λ(x) mod x^parity
+        int[][] coeff = new int[e][parity];
+        for (int i = 0; i < e; i++) {
+            int denominator = 0;
+            int xp = 1;
+            int inverseSquared = GaloisField.mul(locatorInverses[i], locatorInverses[i]);
+            for (int k = 1; k <= e; k += 2) {
+                denominator ^= GaloisField.mul(lambda[k], xp);
+                xp = GaloisField.mul(xp, inverseSquared);
+            }
+            int scale = GaloisField.div(locators[i], denominator);
+            for (int s = 0; s < parity; s++) {
+                int sum = 0;
+                for (int k = 0; k <= e && s + k < parity; k++) {
+                    sum ^= GaloisField.mul(lambda[k], GaloisField.pow(locatorInverses[i], s + k));
+                }
+                coeff[i][s] = GaloisField.mul(scale, sum);
+            }
+        }
+        return coeff;
+    }
+}
@@ -0,0 +1,149 @@
+package com.Charon.repository;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.Charon.entity.JobLease;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Every state change is a conditional UPDATE or DELETE on the expected current state, so when
+ * several nodes race for the same row exactly one of them sees an affected row.
+ */
+@Mapper
+public interface JobLeaseRepository extends BaseMapper<JobLease> {
+
+    default List<JobLease> findQueued(int limit) {
+        LambdaQueryWrapper<JobLease> qw = new LambdaQueryWrapper<>();
+        qw.eq(JobLease::getStatus, JobLease.Status.QUEUED)
+                .orderByAsc(JobLease::getCreatedAt)
+                .last("LIMIT " + limit);
+        return this.selectList(qw);
+    }
+
+    /**
+     * Claims made by other nodes before {@code claimedBefore} and still not started.
+     */
+    default List<JobLease> findStealable(String nodeId, LocalDateTime claimedBefore, int limit) {
+        LambdaQueryWrapper<JobLease> qw = new LambdaQueryWrapper<>();
+        qw.eq(JobLease::getStatus, JobLease.Status.CLAIMED)
+                .ne(JobLease::getNodeId, nodeId)
+                .lt(JobLease::getUpdatedAt, claimedBefore)
+                .orderByAsc(JobLease::getCreatedAt)
+                .last("LIMIT " + limit);
+        return this.selectList(qw);
+    }
+
+    default List<JobLease> findExpired(LocalDateTime now, int limit) {
+        LambdaQueryWrapper<JobLease> qw = new LambdaQueryWrapper<>();
+        qw.in(JobLease::getStatus, JobLease.Status.CLAIMED, JobLease.Status.RUNNING)
+                .lt(JobLease::getLeaseUntil, now)
+                .last("LIMIT " + limit);
+        return this.selectList(qw);
+    }
+
+    default List<String> findHeld(String nodeId) {
+        LambdaQueryWrapper<JobLease> qw = new LambdaQueryWrapper<>();
+        qw.select(JobLease::getJobId).eq(JobLease::getNodeId, nodeId);
+        return this.selectList(qw).stream().map(JobLease::getJobId).toList();
+    }
+
+    default boolean claim(String jobId, String nodeId, LocalDateTime until) {
+        LambdaUpdateWrapper<JobLease> uw = new LambdaUpdateWrapper<>();
+        uw.eq(JobLease::getJobId, jobId)
+                .eq(JobLease::getStatus, JobLease.Status.QUEUED)
+                .set(JobLease::getStatus, JobLease.Status.CLAIMED)
+                .set(JobLease::getNodeId, nodeId)
+                .set(JobLease::getLeaseUntil, until)
+                .set(JobLease::getUpdatedAt, LocalDateTime.now());
+        return this.update(null, uw) == 1;
+    }
+
+    default boolean steal(JobLease lease, String nodeId, LocalDateTime until) {
+        LambdaUpdateWrapper<JobLease> uw = new LambdaUpdateWrapper<>();
+        uw.eq(JobLease::getJobId, lease.getJobId())
+                .eq(JobLease::getStatus, JobLease.Status.CLAIMED)
+                .eq(JobLease::getNodeId, lease.getNodeId())
+                .set(JobLease::getNodeId, nodeId)
+                .set(JobLease::getLeaseUntil, until)
+                .set(JobLease::getUpdatedAt, LocalDateTime.now());
+        return this.update(null, uw) == 1;
+    }
+
+    /**
+     * Turns this node's claim into a running lease; false if the claim was stolen or reclaimed.
+     */
+    default boolean start(String jobId, String nodeId, LocalDateTime until) {
+        LambdaUpdateWrapper<JobLease> uw = new LambdaUpdateWrapper<>();
+        uw.eq(JobLease::getJobId, jobId)
+                .eq(JobLease::getNodeId, nodeId)
+                .eq(JobLease::getStatus, JobLease.Status.CLAIMED)
+                .set(JobLease::getStatus, JobLease.Status.RUNNING)
+                .set(JobLease::getLeaseUntil, until)
+                .set(JobLease::getUpdatedAt, LocalDateTime.now())
+                .setSql("attempts = attempts + 1");
+        return this.update(null, uw) == 1;
+    }
+
+    default int renew(String nodeId, Collection<String> jobIds, LocalDateTime until) {
+        LambdaUpdateWrapper<JobLease> uw = new LambdaUpdateWrapper<>();
+        uw.eq(JobLease::getNodeId, nodeId)
+                .in(JobLease::getJobId, jobIds)
+                .set(JobLease::getLeaseUntil, until);
+        return this.update(null, uw);
+    }
+
+    /**
+     * Puts an expired lease back in the queue, unless its holder renewed it in the meantime.
+     */
+    default boolean requeue(JobLease expired, LocalDateTime now) {
+        LambdaUpdateWrapper<JobLease> uw = new LambdaUpdateWrapper<>();
+        uw.eq(JobLease::getJobId, expired.getJobId())
+                .eq(JobLease::getNodeId, expired.getNodeId())
+                .lt(JobLease::getLeaseUntil, now)
+                .set(JobLease::getStatus, JobLease.Status.QUEUED)
+                .set(JobLease::getNodeId, null)
+                .set(JobLease::getLeaseUntil, null)
+                .set(JobLease::getUpdatedAt, now);
+        return this.update(null, uw) == 1;
+    }
+
+    /**
+     * Removes an expired lease for good, unless its holder renewed it in the meantime.
+     */
+    default boolean dropExpired(JobLease expired, LocalDateTime now) {
+        LambdaQueryWrapper<JobLease> qw = new LambdaQueryWrapper<>();
+        qw.eq(JobLease::getJobId, expired.getJobId())
+                .eq(JobLease::getNodeId, expired.getNodeId())
+                .lt(JobLease::getLeaseUntil, now);
+        return this.delete(qw) == 1;
+    }
+
+    /**
+     * Removes a finished job's lease if this node still holds it.
+     */
+    default boolean release(String jobId, String nodeId) {
+        LambdaQueryWrapper<JobLease> qw = new LambdaQueryWrapper<>();
+        qw.eq(JobLease::getJobId, jobId).eq(JobLease::getNodeId, nodeId);
+        return this.delete(qw) == 1;
+    }
+
+    /**
+     * Hands everything this node holds back to the queue (on shutdown), except the given jobs
+     * whose runs have not ended; those leases are left to expire.
+     */
+    default int requeueAll(String nodeId, Collection<String> except) {
+        LambdaUpdateWrapper<JobLease> uw = new LambdaUpdateWrapper<>();
+        uw.eq(JobLease::getNodeId, nodeId)
+                .notIn(!except.isEmpty(), JobLease::getJobId, except)
+                .set(JobLease::getStatus, JobLease.Status.QUEUED)
+                .set(JobLease::getNodeId, null)
+                .set(JobLease::getLeaseUntil, null)
+                .set(JobLease::getUpdatedAt, LocalDateTime.now());
+        return this.update(null, uw);
+    }
+}
@@ -1,10 +1,13 @@
 package com.Charon.repository;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.Charon.entity.VideoRecord;
 import org.apache.ibatis.annotations.Mapper;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Mapper
@@ -14,4 +17,26 @@ public interface VideoRecordRepository extends BaseMapper<VideoRecord> {
         qw.eq(VideoRecord::getJobId, jobId);
         return Optional.ofNullable(this.selectOne(qw));
     }
+
+    default List<VideoRecord> findByJobIds(Collection<String> jobIds) {
+        if (jobIds.isEmpty()) {
+            return List.of();
+        }
+        LambdaQueryWrapper<VideoRecord> qw = new LambdaQueryWrapper<>();
+        qw.in(VideoRecord::getJobId, jobIds);
+        return this.selectList(qw);
+    }
+
+    /**
+     * Stores the outcome of a run unless the record has left {@code PROCESSING} meanwhile
+     * (it was cancelled), so a late run cannot overwrite the cancellation.
+     *
+     * @return whether the record was updated
+     */
+    default boolean finishProcessing(VideoRecord vr) {
+        LambdaUpdateWrapper<VideoRecord> uw = new LambdaUpdateWrapper<>();
+        uw.eq(VideoRecord::getJobId, vr.getJobId())
+                .eq(VideoRecord::getStatus, VideoRecord.ProcessStatus.PROCESSING);
+        return this.update(vr, uw) == 1;
+    }
 }
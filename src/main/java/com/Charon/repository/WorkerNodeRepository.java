@@ -0,0 +1,24 @@
+package com.Charon.repository;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.Charon.entity.WorkerNode;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface WorkerNodeRepository extends BaseMapper<WorkerNode> {
+
+    default void heartbeat(WorkerNode node) {
+        if (this.updateById(node) == 0) {
+            this.insert(node);
+        }
+    }
+
+    default int removeStale(LocalDateTime heartbeatBefore) {
+        LambdaQueryWrapper<WorkerNode> qw = new LambdaQueryWrapper<>();
+        qw.lt(WorkerNode::getHeartbeatAt, heartbeatBefore);
+        return this.delete(qw);
+    }
+}
@@ -0,0 +1,116 @@
+package com.Charon.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers bearer tokens that already passed signature verification, so a client polling with
+ * the same token pays for HS512 and the user lookup once rather than on every request.
+ * <p>
+ * Entries are keyed by the SHA-256 of the token (the token itself is not kept) and expire at the
+ * token's own {@code exp}, or after {@code max-ttl} if that comes first. Invalid tokens are not
+ * cached. A token entry holds only the subject; user details are resolved on every hit from a
+ * separate cache that keeps them for {@code user-ttl}, which bounds how long a role or account
+ * change takes to apply to tokens that are already cached.
+ */
+@Component
+public class JwtAuthenticationCache {
+
+    private record Verified(String subject, long expiresAtMillis) {}
+
+    private final JwtTokenProvider tokenProvider;
+    private final UserDetailsService userDetailsService;
+    private final Cache<String, Verified> tokens;
+    private final Cache<String, UserDetails> users;
+
+    public JwtAuthenticationCache(JwtTokenProvider tokenProvider,
+                                  UserDetailsService userDetailsService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.security.auth-cache.max-entries:10000}") long maxEntries,
+                                  @Value("${app.security.auth-cache.max-ttl:PT15M}") Duration maxTtl,
+                                  @Value("${app.security.auth-cache.user-ttl:PT1M}") Duration userTtl) {
+        this.tokenProvider = tokenProvider;
+        this.userDetailsService = userDetailsService;
+        long maxTtlNanos = maxTtl.toNanos();
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String key, Verified v, long currentTime) {
+                        long left = TimeUnit.MILLISECONDS.toNanos(v.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(left, maxTtlNanos));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(userTtl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tokens, "jwt.auth");
+    }
+
+    /**
+     * The user a valid token belongs to, or {@code null} if the token is invalid or expired.
+     *
+     * @throws org.springframework.security.core.userdetails.UsernameNotFoundException if the
+     *         token's subject no longer exists
+     */
+    public UserDetails authenticate(String token) {
+        String key = hash(token);
+        Verified verified = tokens.getIfPresent(key);
+        // exp is wall-clock time while Caffeine runs on nanoTime; re-check so a hit never outlives it
+        if (verified != null && verified.expiresAtMillis() > System.currentTimeMillis()) {
+            return user(verified.subject());
+        }
+        Claims claims = tokenProvider.parseClaims(token);
+        if (claims == null) {
+            return null;
+        }
+        UserDetails user = user(claims.getSubject());
+        Date exp = claims.getExpiration();
+        if (exp != null) {
+            tokens.put(key, new Verified(claims.getSubject(), exp.getTime()));
+        }
+        return user;
+    }
+
+    private UserDetails user(String username) {
+        return users.get(username, userDetailsService::loadUserByUsername);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
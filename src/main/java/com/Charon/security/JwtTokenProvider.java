@@ -18,8 +18,21 @@ public class JwtTokenProvider {
     @Value("${app.security.jwt.expiration}")
     private int jwtExpirationMs;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Key and parser are immutable and thread-safe; built once on first use.
+     */
+    private record Signer(Key key, JwtParser parser) {}
+
+    private volatile Signer signer;
+
+    private Signer signer() {
+        Signer s = signer;
+        if (s == null) {
+            Key key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+            s = new Signer(key, Jwts.parserBuilder().setSigningKey(key).build());
+            signer = s;
+        }
+        return s;
     }
 
     public String generateToken(String username) {
@@ -27,25 +40,29 @@ public class JwtTokenProvider {
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .signWith(signer().key(), SignatureAlgorithm.HS512)
                 .compact();
     }
 
     public String getUsernameFromJwt(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
+        return signer().parser()
                 .parseClaimsJws(token)
                 .getBody()
                 .getSubject();
     }
 
     public boolean validateToken(String authToken) {
+        return parseClaims(authToken) != null;
+    }
+
+    /**
+     * Verifies the token once and returns its claims, or {@code null} if it is invalid or expired.
+     */
+    public Claims parseClaims(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(authToken);
-            return true;
+            return signer().parser().parseClaimsJws(authToken).getBody();
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return null;
         }
     }
 }
@@ -1,54 +1,149 @@
 package com.Charon.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+/**
+ * Live state of jobs on this node: one immutable {@link JobState} per job, replaced atomically,
+ * so progress and stage are always read as a pair. Entries expire instead of accumulating:
+ * finished jobs ({@code DONE}/{@code FAILED}) are kept for {@code app.jobs.state.retain}, other
+ * entries for {@code app.jobs.state.ttl} after their last update, and entries with a running
+ * process only when the size bound forces it.
+ */
 @Component
 public class JobRegistry {
-    private final Map<String, Process> processes = new ConcurrentHashMap<>();
-    private final Map<String, Integer> progresses = new ConcurrentHashMap<>();
-    private final Map<String, String> stages = new ConcurrentHashMap<>();
+
+    private static final Set<String> TERMINAL = Set.of("DONE", "FAILED");
+
+    /**
+     * @param process the external process to kill on cancel, if any
+     */
+    public record JobState(int progress, String stage, Process process) {
+        static final JobState EMPTY = new JobState(0, "PENDING", null);
+
+        public boolean terminal() {
+            return TERMINAL.contains(stage);
+        }
+    }
+
+    private final Cache<String, JobState> states;
+    private final ConcurrentMap<String, JobState> map;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    public JobRegistry(MeterRegistry meterRegistry,
+                       @Value("${app.jobs.state.ttl:PT24H}") Duration ttl,
+                       @Value("${app.jobs.state.retain:PT10M}") Duration retain,
+                       @Value("${app.jobs.state.max-entries:10000}") long maxEntries) {
+        long ttlNanos = ttl.toNanos();
+        long retainNanos = retain.toNanos();
+        this.states = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, JobState>() {
+                    @Override
+                    public long expireAfterCreate(String key, JobState value, long currentTime) {
+                        return value.process() != null ? Long.MAX_VALUE : value.terminal() ? retainNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, JobState value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, JobState value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .scheduler(Scheduler.systemScheduler())
+                .build();
+        this.map = states.asMap();
+        gauge(meterRegistry, "active", "Jobs with a running external process", s -> s.process() != null);
+        gauge(meterRegistry, "queued", "Jobs waiting for a worker slot", s -> "QUEUED".equals(s.stage()));
+        gauge(meterRegistry, "retained", "Finished jobs kept for status queries", JobState::terminal);
+    }
+
+    /**
+     * Called with the job id after every progress change, on the thread making the change;
+     * listeners must return quickly.
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
 
     public void register(String jobId, Process p) {
-        processes.put(jobId, p);
+        map.compute(jobId, (k, s) -> s == null ? new JobState(0, JobState.EMPTY.stage(), p) : new JobState(s.progress(), s.stage(), p));
     }
 
     public Process get(String jobId) {
-        return processes.get(jobId);
+        JobState s = map.get(jobId);
+        return s != null ? s.process() : null;
     }
 
+    /**
+     * Detaches the process once it has exited; the progress stays visible until the entry expires.
+     */
     public void remove(String jobId) {
-        processes.remove(jobId);
-        progresses.remove(jobId);
-        stages.remove(jobId);
+        map.computeIfPresent(jobId, (k, s) -> s.process() == null ? s : new JobState(s.progress(), s.stage(), null));
     }
 
     public boolean cancel(String jobId) {
-        Process p = processes.get(jobId);
-        if (p != null) {
-            p.destroyForcibly();
-            processes.remove(jobId);
-            progresses.remove(jobId);
-            stages.remove(jobId);
-            return true;
+        JobState s = map.get(jobId);
+        if (s == null || s.process() == null) {
+            return false;
         }
-        return false;
+        s.process().destroyForcibly();
+        remove(jobId);
+        return true;
     }
 
     public void setProgress(String jobId, int percent, String stage) {
-        progresses.put(jobId, Math.max(0, Math.min(100, percent)));
-        if (stage != null) {
-            stages.put(jobId, stage);
-        }
+        int clamped = Math.max(0, Math.min(100, percent));
+        map.compute(jobId, (k, s) -> {
+            JobState base = s != null ? s : JobState.EMPTY;
+            return new JobState(clamped, stage != null ? stage : base.stage(), base.process());
+        });
+        listeners.forEach(l -> l.accept(jobId));
+    }
+
+    /**
+     * Consistent progress/stage pair; {@code 0/PENDING} for unknown or expired jobs.
+     */
+    public JobState snapshot(String jobId) {
+        JobState s = map.get(jobId);
+        return s != null ? s : JobState.EMPTY;
     }
 
     public int getProgress(String jobId) {
-        return progresses.getOrDefault(jobId, 0);
+        return snapshot(jobId).progress();
     }
 
     public String getStage(String jobId) {
-        return stages.getOrDefault(jobId, "PENDING");
+        return snapshot(jobId).stage();
+    }
+
+    private void gauge(MeterRegistry meterRegistry, String state, String description, Predicate<JobState> filter) {
+        Gauge.builder("video.job.registry.entries", map, m -> count(m, filter))
+                .description(description)
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+
+    private static long count(Map<String, JobState> m, Predicate<JobState> filter) {
+        return m.values().stream().filter(filter).count();
     }
 }
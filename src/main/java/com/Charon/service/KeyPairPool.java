@@ -0,0 +1,126 @@
+package com.Charon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * RSA-2048 key pairs (e = 65537, as the encoders generate them) made ahead of time, so a job
+ * does not start with tens to hundreds of milliseconds of key generation.
+ * <p>
+ * Low-priority daemon threads keep up to {@code size} pairs ready and block while the pool is
+ * full. Every pair is handed out once. When the pool is empty {@link #take} generates inline, so
+ * a burst of jobs is never slower than without the pool; {@code size = 0} turns the pool off and
+ * leaves key generation to the encoders.
+ */
+@Component
+@Slf4j
+public class KeyPairPool {
+
+    private final BlockingQueue<KeyPair> pool;
+    private final int refillThreads;
+    private final SecureRandom random = new SecureRandom();
+    private final Timer generation;
+    private final Counter hits;
+    private final Counter misses;
+    private final List<Thread> refillers = new ArrayList<>();
+
+    public KeyPairPool(MeterRegistry meterRegistry,
+                       @Value("${app.keypool.size:16}") int size,
+                       @Value("${app.keypool.refill-threads:1}") int refillThreads) {
+        this.pool = size > 0 ? new ArrayBlockingQueue<>(size) : null;
+        this.refillThreads = Math.max(1, refillThreads);
+        this.generation = Timer.builder("video.keypool.generate")
+                .description("Time to generate one RSA key pair")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+        this.hits = Counter.builder("video.keypool.take").tag("result", "hit")
+                .description("Key pairs handed to jobs, from the pool or generated inline")
+                .register(meterRegistry);
+        this.misses = Counter.builder("video.keypool.take").tag("result", "miss")
+                .description("Key pairs handed to jobs, from the pool or generated inline")
+                .register(meterRegistry);
+        Gauge.builder("video.keypool.available", this, KeyPairPool::available)
+                .description("Key pairs ready in the pool")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (pool == null) {
+            return;
+        }
+        for (int i = 0; i < refillThreads; i++) {
+            Thread t = Thread.ofPlatform().name("keypool-refill-" + i).daemon()
+                    .priority(Thread.MIN_PRIORITY).start(this::refill);
+            refillers.add(t);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        refillers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * A fresh key pair for one job, or {@code null} if the pool is disabled.
+     */
+    public KeyPair take() throws GeneralSecurityException {
+        if (pool == null) {
+            return null;
+        }
+        KeyPair keyPair = pool.poll();
+        if (keyPair != null) {
+            hits.increment();
+            return keyPair;
+        }
+        misses.increment();
+        return generate();
+    }
+
+    public int available() {
+        return pool == null ? 0 : pool.size();
+    }
+
+    KeyPair generate() throws GeneralSecurityException {
+        long start = System.nanoTime();
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
+        gen.initialize(new RSAKeyGenParameterSpec(2048, RSAKeyGenParameterSpec.F4), random);
+        KeyPair keyPair = gen.generateKeyPair();
+        generation.record(Duration.ofNanos(System.nanoTime() - start));
+        return keyPair;
+    }
+
+    private void refill() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                pool.put(generate());
+            } catch (InterruptedException e) {
+                return;
+            } catch (GeneralSecurityException e) {
+                log.error("Key pair generation failed; pool refill stopped", e);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.Charon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job and per-stage pipeline meters. Job counters and duration timers are registered up front;
+ * stage timers are built once per label combination and then served from a local map, so
+ * recording never goes through the registry.
+ * <p>
+ * {@code video.pipeline.stage} is a histogram per stage, tagged by mode, resolution and gridN
+ * (all normalised to small fixed sets). {@code video.pipeline.throughput} holds the rate of the
+ * most recent run of each stage, in bytes or frames per second.
+ */
+@Component
+public class PipelineMetrics {
+
+    public enum Stage {
+        UPLOAD("bytes"),      // 上传写盘与哈希 | Upload copy and hashing
+        ENCRYPT("bytes"),     // 载荷加密（脚本） | Payload encryption (script)
+        FEC("bytes"),         // 跨帧FEC（脚本） | Cross-frame FEC (script)
+        RENDER("frames"),     // 二维码渲染与PNG写盘（脚本） | QR rendering and PNG writes (script)
+        FFMPEG("frames"),     // ffmpeg读PNG编码（脚本） | ffmpeg encoding from PNGs (script)
+        STREAM("frames"),     // 渲染并以管道送入ffmpeg（脚本） | Rendering piped into ffmpeg (script)
+        ENCODE("frames"),     // 编码器整体耗时 | Whole encoder run
+        DECODE("bytes"),      // 解码器整体耗时 | Whole decoder run
+        PERSIST("bytes"),     // StorageService.promote
+        DB_UPDATE(null);      // 完成/失败状态写库 | Final record update
+
+        private final String unit;
+
+        Stage(String unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * Stage for a name reported by the encoder script, or {@code null} if unknown.
+         */
+        public static Stage of(String name) {
+            try {
+                return valueOf(name);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Normalised tag values of one job; build once per job and pass to every {@link #record} call.
+     */
+    public record Labels(String mode, String resolution, String gridN) {}
+
+    private static final Set<String> MODES = Set.of("CPU", "GPU", "CLOUD", "JAVA", "DECODE");
+    private static final String OTHER = "OTHER";
+    private static final Set<String> RESOLUTIONS = Set.of("1080p", "720p", "4k");
+
+    private record TimerKey(Stage stage, Labels labels) {}
+
+    private final MeterRegistry registry;
+    private final Counter submitted;
+    private final Counter failed;
+    private final Map<String, Timer> jobSuccess = new HashMap<>();
+    private final Map<String, Timer> jobFailure = new HashMap<>();
+    private final Map<TimerKey, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<Stage, AtomicLong> throughput = new EnumMap<>(Stage.class);
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.submitted = Counter.builder("video.job.submit")
+                .description("Total number of submitted video encoding jobs")
+                .register(registry);
+        this.failed = Counter.builder("video.job.failure")
+                .description("Total number of failed jobs")
+                .register(registry);
+        for (String mode : MODES) {
+            jobSuccess.put(mode, jobTimer("success", mode));
+            jobFailure.put(mode, jobTimer("failure", mode));
+        }
+        jobSuccess.put(OTHER, jobTimer("success", OTHER));
+        jobFailure.put(OTHER, jobTimer("failure", OTHER));
+        for (Stage stage : Stage.values()) {
+            if (stage.unit == null) {
+                continue;
+            }
+            AtomicLong rate = new AtomicLong();
+            throughput.put(stage, rate);
+            Gauge.builder("video.pipeline.throughput", rate, r -> Double.longBitsToDouble(r.get()))
+                    .description("Throughput of the most recent run of a pipeline stage")
+                    .tag("stage", stage.name())
+                    .tag("unit", stage.unit)
+                    .baseUnit(stage.unit + "/s")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Tag values for a job; decode jobs pass {@code null} and 0 for resolution and grid.
+     */
+    public Labels labels(String mode, String resolution, int gridN) {
+        String m = mode == null ? "CPU" : mode.toUpperCase(Locale.ROOT);
+        String r = resolution == null ? "none" : resolution.toLowerCase(Locale.ROOT);
+        if ("2160p".equals(r)) {
+            r = "4k";
+        }
+        return new Labels(MODES.contains(m) ? m : OTHER,
+                RESOLUTIONS.contains(r) || "none".equals(r) ? r : "custom",
+                gridN <= 0 ? "none" : gridN <= 8 ? String.valueOf(gridN) : "other");
+    }
+
+    public void submitted() {
+        submitted.increment();
+    }
+
+    /**
+     * Records the total duration of a finished job; failures also count towards {@code video.job.failure}.
+     */
+    public void jobFinished(String mode, boolean success, long nanos) {
+        Timer timer = (success ? jobSuccess : jobFailure).get(mode != null && MODES.contains(mode) ? mode : OTHER);
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        if (!success) {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Records one run of a stage; {@code amount} is bytes or frames depending on the stage
+     * (ignored when not positive).
+     */
+    public void record(Stage stage, Labels labels, long nanos, long amount) {
+        Timer timer = stageTimers.get(new TimerKey(stage, labels));
+        if (timer == null) {
+            timer = stageTimers.computeIfAbsent(new TimerKey(stage, labels), this::stageTimer);
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        AtomicLong rate = throughput.get(stage);
+        if (rate != null && amount > 0 && nanos > 0) {
+            rate.set(Double.doubleToRawLongBits(amount * 1e9 / nanos));
+        }
+    }
+
+    private Timer jobTimer(String status, String mode) {
+        return Timer.builder("video.job.duration")
+                .description("Time taken to process video encoding job")
+                .tag("status", status)
+                .tag("mode", mode)
+                .register(registry);
+    }
+
+    private Timer stageTimer(TimerKey key) {
+        return Timer.builder("video.pipeline.stage")
+                .description("Duration of one pipeline stage of a job")
+                .tag("stage", key.stage().name())
+                .tag("mode", key.labels().mode())
+                .tag("resolution", key.labels().resolution())
+                .tag("gridN", key.labels().gridN())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofHours(2))
+                .register(registry);
+    }
+}
@@ -0,0 +1,112 @@
+package com.Charon.service;
+
+import com.Charon.dto.JobMessage;
+import com.Charon.service.port.QrPlan;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Sizes the data codes of a job to its frame geometry instead of using one chunk size for every
+ * resolution and grid. A code of version v with its 2-module quiet zone is 21 + 4v modules wide,
+ * so the largest version whose modules still get {@code minModulePx} pixels in a grid cell is
+ * chosen, the chunk fills that version's byte-mode capacity at the configured ECC level, and the
+ * modules are then scaled up to fill the cell.
+ */
+@Component
+public class QrCapacityPlanner {
+
+    /** QDV2 header plus CRC around every chunk. */
+    static final int CHUNK_OVERHEAD = 19;
+    /** Room kept in the first parity chunk, which also carries the compact length header and |SPLIT|. */
+    static final int LENGTH_HEADER_RESERVE = 64;
+    /** Smaller chunks would be mostly header; such a grid is refused rather than encoded. */
+    static final int MIN_CHUNK = 32;
+    private static final int QUIET_ZONE = 2;
+
+    private final boolean enabled;
+    private final ErrorCorrectionLevel ecc;
+    private final int minModulePx;
+    private final int maxVersion;
+
+    public QrCapacityPlanner(@Value("${app.qr.plan.enabled:true}") boolean enabled,
+                             @Value("${app.qr.ecc:Q}") String ecc,
+                             @Value("${app.qr.min-module-px:3}") int minModulePx,
+                             @Value("${app.qr.max-version:40}") int maxVersion) {
+        this.enabled = enabled;
+        this.ecc = ErrorCorrectionLevel.valueOf(ecc.trim().toUpperCase(Locale.ROOT));
+        this.minModulePx = Math.max(1, minModulePx);
+        this.maxVersion = Math.max(1, Math.min(40, maxVersion));
+    }
+
+    /**
+     * Plan for an encode job, or {@code null} when planning is off and the encoders keep their defaults.
+     *
+     * @param inputBytes size of the file to encode, for the frame estimate
+     * @throws IllegalArgumentException if the grid leaves cells too small for a useful code
+     */
+    public QrPlan plan(JobMessage msg, long inputBytes) {
+        if (!enabled) {
+            return null;
+        }
+        int[] size = frameSize(msg.getResolution(), msg.getWidth(), msg.getHeight());
+        int grid = Math.max(1, msg.getGridN());
+        int cell = Math.min(size[0], size[1]) / grid;
+        int version = Math.min(maxVersion, (cell / minModulePx - QUIET_ZONE * 2 - 17) / 4);
+        int codeBytes = version < 1 ? 0 : byteCapacity(version, ecc);
+        int chunkSize = codeBytes - CHUNK_OVERHEAD - (msg.isEnableFec() ? LENGTH_HEADER_RESERVE : 0);
+        if (chunkSize < MIN_CHUNK) {
+            throw new IllegalArgumentException("Grid " + grid + " at " + size[0] + "x" + size[1]
+                    + " leaves " + cell + "px cells, too small for readable codes with "
+                    + minModulePx + "px modules; use a smaller gridN or a higher resolution");
+        }
+        int boxSize = cell / (17 + 4 * version + QUIET_ZONE * 2);
+        return new QrPlan(version, ecc.name(), chunkSize, codeBytes, boxSize,
+                expectedFrames(msg, inputBytes, chunkSize, grid * grid));
+    }
+
+    /**
+     * Bytes a code of this version holds in byte mode.
+     */
+    static int byteCapacity(int version, ErrorCorrectionLevel ecc) {
+        Version v = Version.getVersionForNumber(version);
+        int dataCodewords = v.getTotalCodewords() - v.getECBlocksForLevel(ecc).getTotalECCodewords();
+        return (dataCodewords * 8 - 4 - Mode.BYTE.getCharacterCountBits(v)) / 8;
+    }
+
+    /**
+     * Same resolution names as the encoders; explicit width and height win.
+     */
+    static int[] frameSize(String resolution, Integer width, Integer height) {
+        if (width != null && height != null) {
+            return new int[]{width, height};
+        }
+        String res = resolution == null ? "" : resolution.toLowerCase(Locale.ROOT);
+        return switch (res) {
+            case "720p" -> new int[]{1280, 720};
+            case "4k", "2160p" -> new int[]{3840, 2160};
+            default -> new int[]{1920, 1080};
+        };
+    }
+
+    /**
+     * Data frames for the encrypted payload and its parity, plus the meta and private-key frames
+     * and the optional obfuscation frame. The envelope adds a fixed header and a GCM tag per
+     * segment; both are rounded up, so this is an estimate, not a promise.
+     */
+    private static int expectedFrames(JobMessage msg, long inputBytes, int chunkSize, int codesPerFrame) {
+        long envelope = inputBytes + inputBytes / 4096 + 1024;
+        long chunks = (envelope + chunkSize - 1) / chunkSize;
+        if (msg.isEnableFec()) {
+            double ratio = msg.getFecParityPercent() == null ? 0.2
+                    : Math.max(0.15, Math.min(0.35, msg.getFecParityPercent() / 100.0));
+            chunks += Math.max(1, (long) (chunks * ratio));
+        }
+        long frames = (chunks + codesPerFrame - 1) / codesPerFrame + 2 + (msg.getObfArg() != null ? 1 : 0);
+        return (int) Math.min(Integer.MAX_VALUE, frames);
+    }
+}
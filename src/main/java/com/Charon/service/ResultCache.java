@@ -0,0 +1,133 @@
+package com.Charon.service;
+
+import com.Charon.service.command.SubmitJobCommand;
+import com.Charon.storage.StorageService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Finished encode results keyed by input digest and every parameter that changes the output, so
+ * an identical re-submission completes without running the pipeline again.
+ * <p>
+ * The passphrase, frame password and key hint are baked into the video, so a stored result is
+ * only correct for a caller holding the same secrets. They enter the key as an HMAC under a
+ * per-process random key (no plaintext secret is kept), and lookups only happen when the client
+ * opts in with {@code reuseCrypto}: the returned video is then byte-identical to the earlier one,
+ * including its embedded key pair, instead of freshly keyed.
+ */
+@Component
+public class ResultCache {
+
+    public record Entry(String videoPath, String manifestPath, long videoSize, Integer frameCount) {}
+
+    private final boolean enabled;
+    private final Cache<String, Entry> cache;
+    private final SecretKeySpec secretKey;
+    private final Predicate<String> stored;
+
+    /**
+     * Entries are checked against local files.
+     */
+    public ResultCache(MeterRegistry meterRegistry, boolean enabled, long maxBytes, Duration ttl) {
+        this(meterRegistry, location -> Files.exists(Path.of(location)), enabled, maxBytes, ttl);
+    }
+
+    @Autowired
+    public ResultCache(MeterRegistry meterRegistry,
+                       StorageService storage,
+                       @Value("${app.result-cache.enabled:true}") boolean enabled,
+                       @Value("${app.result-cache.max-bytes:10737418240}") long maxBytes,
+                       @Value("${app.result-cache.ttl:PT24H}") Duration ttl) {
+        this(meterRegistry, storage::exists, enabled, maxBytes, ttl);
+    }
+
+    private ResultCache(MeterRegistry meterRegistry, Predicate<String> stored, boolean enabled, long maxBytes, Duration ttl) {
+        this.stored = stored;
+        this.enabled = enabled;
+        // Weighed in KiB so multi-GB videos stay within the int weigher
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxBytes / 1024))
+                .weigher((String key, Entry e) -> (int) Math.min(Integer.MAX_VALUE, e.videoSize() / 1024 + 1))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.secretKey = new SecretKeySpec(key, "HmacSHA256");
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "video.result");
+    }
+
+    /**
+     * Cache key for a submission, or {@code null} when it cannot be cached (disabled, or an
+     * obfuscation file is attached, which is not part of the digest).
+     */
+    public String key(String inputSha256, SubmitJobCommand cmd) {
+        if (!enabled || (cmd.obfuscationFile() != null && !cmd.obfuscationFile().isEmpty())) {
+            return null;
+        }
+        String params = String.join("|",
+                inputSha256,
+                String.valueOf(cmd.gridN()),
+                String.valueOf(cmd.fps()),
+                String.valueOf(cmd.resolution()).toLowerCase(),
+                String.valueOf(cmd.width()),
+                String.valueOf(cmd.height()),
+                String.valueOf(cmd.enableFec()),
+                String.valueOf(cmd.fecParityPercent()),
+                String.valueOf(cmd.processingMode()));
+        return params + "|" + secretsMac(cmd);
+    }
+
+    /**
+     * Cached result whose objects are still stored; stale entries are dropped.
+     */
+    public Entry get(String key) {
+        Entry e = cache.getIfPresent(key);
+        if (e == null) {
+            return null;
+        }
+        if (!stored.test(e.videoPath()) || (e.manifestPath() != null && !stored.test(e.manifestPath()))) {
+            cache.invalidate(key);
+            return null;
+        }
+        return e;
+    }
+
+    public void put(String key, Entry entry) {
+        cache.put(key, entry);
+    }
+
+    private String secretsMac(SubmitJobCommand cmd) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secretKey);
+            // NUL separators keep ("ab","c") and ("a","bc") apart
+            String secrets = String.join("\0",
+                    Objects.toString(cmd.passphrase(), ""),
+                    Objects.toString(cmd.privateKeyFramePassword(), ""),
+                    Objects.toString(cmd.publicKeyHint(), ""),
+                    String.valueOf(cmd.privateKeyFrameIndex()),
+                    String.valueOf(cmd.obfuscationSeed()));
+            return HexFormat.of().formatHex(mac.doFinal(secrets.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.Charon.service;
+
+import com.Charon.common.BusinessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Copies an upload body straight into the job directory, hashing and counting on the way, so the
+ * file is written exactly once and its SHA-256 is known without a second read.
+ */
+public final class StreamingUpload {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Size and SHA-256 (lower-case hex) of what was written.
+     */
+    public record Result(long size, String sha256) {}
+
+    private StreamingUpload() {
+    }
+
+    /**
+     * @param maxBytes upper bound enforced while reading; 0 or less means unlimited. On overflow
+     *                 the partial file is removed and {@code UPLOAD_TOO_LARGE} is thrown.
+     */
+    public static Result copy(InputStream in, Path target, long maxBytes) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        long size = 0;
+        boolean ok = false;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                size += n;
+                if (maxBytes > 0 && size > maxBytes) {
+                    throw tooLarge(maxBytes);
+                }
+                sha256.update(buf, 0, n);
+                out.write(buf, 0, n);
+            }
+            ok = true;
+        } finally {
+            if (!ok) {
+                Files.deleteIfExists(target);
+            }
+        }
+        return new Result(size, HexFormat.of().formatHex(sha256.digest()));
+    }
+
+    /**
+     * Rejects up front when the client already declared a length over the limit.
+     */
+    public static void checkDeclaredLength(long declared, long maxBytes) {
+        if (maxBytes > 0 && declared > maxBytes) {
+            throw tooLarge(maxBytes);
+        }
+    }
+
+    private static BusinessException tooLarge(long maxBytes) {
+        return new BusinessException("UPLOAD_TOO_LARGE", "Upload exceeds the limit of " + maxBytes + " bytes");
+    }
+}
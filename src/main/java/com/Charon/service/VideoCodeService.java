@@ -3,20 +3,23 @@ package com.Charon.service;
 import com.Charon.dto.JobMessage;
 import com.Charon.entity.VideoRecord;
 import com.Charon.repository.VideoRecordRepository;
+import com.Charon.service.command.SubmitDecodeCommand;
 import com.Charon.service.command.SubmitJobCommand;
 import com.Charon.service.mq.JobProducer;
+import com.Charon.service.port.QrPlan;
+import com.Charon.service.port.VideoDecoder;
+import com.Charon.service.port.VideoDecodingRequest;
 import com.Charon.service.port.VideoEncoder;
 import com.Charon.service.port.VideoEncodingRequest;
 import com.Charon.storage.StorageService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -26,10 +29,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
 
 @Service
 @RequiredArgsConstructor
@@ -38,27 +43,58 @@ public class VideoCodeService {
     @Value("${app.workdir:${user.home}/video-qrcode}")
     private String workdir;
 
+    @Value("${app.upload.max-bytes:0}")
+    private long maxUploadBytes;
+
     private final VideoRecordRepository repo;
+    private final VideoRecordCache records;
     private final StorageService storage;
     private final JobRegistry jobs;
     private final JobProducer jobProducer;
+    private final ResultCache resultCache;
     private final List<VideoEncoder> videoEncoders;
-    private final MeterRegistry meterRegistry;
+    private final VideoDecoder videoDecoder;
+    private final PipelineMetrics metrics;
+    private final KeyPairPool keyPairs;
+    private final QrCapacityPlanner qrPlanner;
     private static final Logger log = LoggerFactory.getLogger(VideoCodeService.class);
 
     public Map<String, Object> submit(SubmitJobCommand cmd) throws IOException {
-        Counter.builder("video.job.submit")
-                .description("Total number of submitted video encoding jobs")
-                .register(meterRegistry)
-                .increment();
+        MultipartFile file = cmd.file();
+        try (InputStream in = file.getInputStream()) {
+            return submitStream(in, file.getSize(), file.getOriginalFilename(), cmd);
+        }
+    }
+
+    /**
+     * Streams the request body into {@code <workdir>/<jobId>/input.zip}, hashing it on the way,
+     * then enqueues the job. {@code cmd.file()} is not used here.
+     *
+     * @param declaredLength Content-Length from the client, or -1 when unknown
+     */
+    public Map<String, Object> submitStream(InputStream body, long declaredLength, String fileName,
+                                            SubmitJobCommand cmd) throws IOException {
+        StreamingUpload.checkDeclaredLength(declaredLength, maxUploadBytes);
+        metrics.submitted();
 
         String jobId = UUID.randomUUID().toString();
         Path jobDir = Path.of(workdir, jobId);
         Files.createDirectories(jobDir);
 
-        MultipartFile file = cmd.file();
         Path inputZip = jobDir.resolve("input.zip");
-        Files.copy(file.getInputStream(), inputZip, StandardCopyOption.REPLACE_EXISTING);
+        StreamingUpload.Result upload;
+        long uploadStart = System.nanoTime();
+        try {
+            upload = StreamingUpload.copy(body, inputZip, maxUploadBytes);
+            metrics.record(PipelineMetrics.Stage.UPLOAD, metrics.labels(cmd.processingMode(), cmd.resolution(), cmd.gridN()),
+                    System.nanoTime() - uploadStart, upload.size());
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(jobDir);
+            throw e;
+        }
+
+        String cacheKey = cmd.reuseCrypto() ? resultCache.key(upload.sha256(), cmd) : null;
+        ResultCache.Entry cached = cacheKey != null ? resultCache.get(cacheKey) : null;
 
         Path obfPath = null;
         MultipartFile obfuscationFile = cmd.obfuscationFile();
@@ -70,8 +106,9 @@ public class VideoCodeService {
 
         VideoRecord vr = new VideoRecord();
         vr.setJobId(jobId);
-        vr.setOriginalFileName(file.getOriginalFilename());
-        vr.setOriginalFileSize(file.getSize());
+        vr.setOriginalFileName(fileName);
+        vr.setOriginalFileSize(upload.size());
+        vr.setInputSha256(upload.sha256());
         vr.setGridN(cmd.gridN());
         vr.setFps(cmd.fps());
         vr.setResolution(cmd.resolution());
@@ -83,7 +120,12 @@ public class VideoCodeService {
         vr.setProcessingMode(cmd.processingMode() != null ? cmd.processingMode() : "CPU");
         vr.setStatus(VideoRecord.ProcessStatus.PROCESSING);
         vr.setCreatedAt(LocalDateTime.now());
+
+        if (cached != null) {
+            return completeFromCache(jobId, jobDir, vr, cached, upload);
+        }
         repo.insert(vr);
+        records.put(vr);
 
         JobMessage msg = JobMessage.builder()
                 .jobId(jobId)
@@ -102,114 +144,380 @@ public class VideoCodeService {
                 .width(cmd.width())
                 .height(cmd.height())
                 .processingMode(vr.getProcessingMode())
+                .streamFrames(cmd.streamFrames())
+                .resultCacheKey(cacheKey)
+                .owner(currentUser())
+                .priority(cmd.priority())
+                .inputSize(upload.size())
                 .build();
 
-        jobProducer.sendJob(msg);
+        enqueue(msg, vr, jobDir);
 
         Map<String, Object> res = new HashMap<>();
         res.put("jobId", jobId);
+        res.put("inputSize", upload.size());
+        res.put("inputSha256", upload.sha256());
         return res;
     }
 
+    /**
+     * Completes a submission from an earlier identical one: the stored files are linked under the
+     * new job id and no job is queued.
+     */
+    private Map<String, Object> completeFromCache(String jobId, Path jobDir, VideoRecord vr, ResultCache.Entry cached,
+                                                  StreamingUpload.Result upload) throws IOException {
+        String videoStorePath = storage.link(cached.videoPath(), jobId, jobId + ".mp4");
+        String manifestStorePath = cached.manifestPath() != null
+                ? storage.link(cached.manifestPath(), jobId, jobId + "-manifest.json")
+                : null;
+        vr.complete(videoStorePath, manifestStorePath, cached.videoSize(), cached.frameCount());
+        repo.insert(vr);
+        records.put(vr);
+        deleteQuietly(jobDir);
+        jobs.setProgress(jobId, 100, "DONE");
+        log.info("job {} served from result cache", jobId);
+
+        Map<String, Object> res = new HashMap<>();
+        res.put("jobId", jobId);
+        res.put("inputSize", upload.size());
+        res.put("inputSha256", upload.sha256());
+        res.put("cached", true);
+        return res;
+    }
+
+    /**
+     * Streams the uploaded video into {@code <workdir>/<jobId>/input.mp4} under the same size limit
+     * as encode uploads, then enqueues the decode job.
+     */
+    public Map<String, Object> submitDecode(SubmitDecodeCommand cmd) throws IOException {
+        MultipartFile file = cmd.file();
+        StreamingUpload.checkDeclaredLength(file.getSize(), maxUploadBytes);
+        metrics.submitted();
+
+        String jobId = UUID.randomUUID().toString();
+        Path jobDir = Path.of(workdir, jobId);
+        Files.createDirectories(jobDir);
+
+        Path inputVideo = jobDir.resolve("input.mp4");
+        StreamingUpload.Result upload;
+        long uploadStart = System.nanoTime();
+        try (InputStream in = file.getInputStream()) {
+            upload = StreamingUpload.copy(in, inputVideo, maxUploadBytes);
+            metrics.record(PipelineMetrics.Stage.UPLOAD, metrics.labels("DECODE", null, 0),
+                    System.nanoTime() - uploadStart, upload.size());
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(jobDir);
+            throw e;
+        }
+
+        VideoRecord vr = new VideoRecord();
+        vr.setJobId(jobId);
+        vr.setJobType(VideoRecord.JobType.DECODE);
+        vr.setOriginalFileName(file.getOriginalFilename());
+        vr.setOriginalFileSize(upload.size());
+        vr.setInputSha256(upload.sha256());
+        vr.setProcessingMode("JAVA");
+        vr.setStatus(VideoRecord.ProcessStatus.PROCESSING);
+        vr.setCreatedAt(LocalDateTime.now());
+        repo.insert(vr);
+        records.put(vr);
+
+        JobMessage msg = JobMessage.builder()
+                .jobId(jobId)
+                .jobType(VideoRecord.JobType.DECODE.name())
+                .jobDirPath(jobDir.toString())
+                .inputVideoPath(inputVideo.toString())
+                .privateKeyFramePassword(cmd.privateKeyFramePassword())
+                .processingMode(vr.getProcessingMode())
+                .owner(currentUser())
+                .inputSize(upload.size())
+                .build();
+
+        enqueue(msg, vr, jobDir);
+
+        Map<String, Object> res = new HashMap<>();
+        res.put("jobId", jobId);
+        return res;
+    }
+
+    /**
+     * Hands the job to the queue. When the queue refuses it (full, interrupted, broker down) the
+     * record is failed and the job directory removed, so the rejected job neither stays
+     * PROCESSING nor leaves its input on disk.
+     */
+    private void enqueue(JobMessage msg, VideoRecord vr, Path jobDir) {
+        try {
+            jobProducer.sendJob(msg);
+        } catch (RuntimeException e) {
+            vr.fail("Not queued: " + e.getMessage());
+            repo.updateById(vr);
+            records.put(vr);
+            deleteQuietly(jobDir);
+            throw e;
+        }
+    }
+
     public void executeJob(JobMessage msg) {
+        executeJob(msg, () -> true, null);
+    }
+
+    /**
+     * @param owned   whether this node still owns the job; once it returns {@code false} (the job's
+     *                lease moved to another node) the record and job directory are left to the new
+     *                owner, and whatever this run already stored is removed again
+     * @param attempt name of this run when other nodes may run the same job, else {@code null};
+     *                outputs are then written to {@code <jobDir>/<attempt>} and stored under names
+     *                carrying the attempt, so two runs never share a file or a storage key
+     */
+    public void executeJob(JobMessage msg, BooleanSupplier owned, String attempt) {
         String jid = msg.getJobId();
         
-        Timer.Sample sample = Timer.start(meterRegistry);
+        long start = System.nanoTime();
+        PipelineMetrics.Labels labels = metrics.labels(metricMode(msg), msg.getResolution(), msg.getGridN());
 
         Path jobDirFinal = Path.of(msg.getJobDirPath());
+        Path runDir = attempt == null ? jobDirFinal : jobDirFinal.resolve(attempt);
         VideoRecord vr = repo.findByJobId(jid).orElse(null);
         if (vr == null) {
             log.error("Job record not found: {}", jid);
             return;
         }
+        if (vr.getStatus() != VideoRecord.ProcessStatus.PROCESSING) {
+            // Cancelled (or finished elsewhere) while it was waiting
+            log.info("job {} is {}; not running it", jid, vr.getStatus());
+            if (owned.getAsBoolean()) {
+                deleteQuietly(jobDirFinal);
+            }
+            return;
+        }
 
+        Outputs outputs = new Outputs(jid, attempt, owned);
         try {
             log.info("job start {}", jid);
             jobs.setProgress(jid, 5, "SAVED_INPUT");
+            Files.createDirectories(runDir);
 
-            Path outputVideo = jobDirFinal.resolve("output.mp4");
-            Path manifestJson = jobDirFinal.resolve("manifest.json");
-
-            VideoEncodingRequest request = new VideoEncodingRequest(
-                    jid,
-                    Path.of(msg.getInputZipPath()),
-                    outputVideo,
-                    manifestJson,
-                    msg.getObfArg(),
-                    msg.getGridN(),
-                    msg.getFps(),
-                    msg.getResolution(),
-                    msg.getWidth(),
-                    msg.getHeight(),
-                    msg.isEnableFec(),
-                    msg.getFecParityPercent(),
-                    msg.getPassphrase(),
-                    msg.getPublicKeyHint(),
-                    msg.getPrivateKeyFrameIndex(),
-                    msg.getPrivateKeyFramePassword(),
-                    msg.getProcessingMode()
-            );
-
-            // Select strategy
-            VideoEncoder encoder = videoEncoders.stream()
-                    .filter(e -> e.supports(msg.getProcessingMode()))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException("No encoder found for mode: " + msg.getProcessingMode()));
-
-            // Encoder handles process execution
-            encoder.encode(request);
-
-            jobs.setProgress(jid, 60, "PERSISTING");
-            String videoStorePath;
-            String manifestStorePath;
-            try (InputStream vin = Files.newInputStream(outputVideo);
-                 InputStream min = Files.newInputStream(manifestJson)) {
-                videoStorePath = storage.store(vin, jid + ".mp4");
-                manifestStorePath = storage.store(min, jid + "-manifest.json");
+            boolean decode = VideoRecord.JobType.DECODE.name().equals(msg.getJobType());
+            if (decode) {
+                runDecode(jid, runDir, msg, vr, labels, outputs);
+            } else {
+                runEncode(jid, runDir, msg, vr, labels, outputs);
+            }
+            if (!owned.getAsBoolean()) {
+                log.warn("job {} finished after losing its lease; leaving the record to its new owner", jid);
+                outputs.discard();
+                deleteQuietly(runDir);
+                return;
+            }
+            if (!finishRecord(vr, labels)) {
+                dropCancelled(jid, outputs, jobDirFinal, labels, start);
+                return;
+            }
+            if (!decode && msg.getResultCacheKey() != null) {
+                resultCache.put(msg.getResultCacheKey(), new ResultCache.Entry(vr.getStoragePath(),
+                        vr.getManifestPath(), vr.getOutputVideoSize(), vr.getOutputFrameCount()));
             }
-
-            Integer outputFrameCount = null;
-            try {
-                ObjectMapper om = new ObjectMapper();
-                JsonNode node = om.readTree(Files.readString(manifestJson));
-                if (node.has("frames")) {
-                    outputFrameCount = node.get("frames").asInt();
-                }
-            } catch (Exception ignored) {}
-
-            vr.complete(videoStorePath, manifestStorePath, Files.size(outputVideo), outputFrameCount);
-            repo.updateById(vr);
             jobs.setProgress(jid, 100, "DONE");
             deleteQuietly(jobDirFinal);
-            
-            sample.stop(Timer.builder("video.job.duration")
-                    .description("Time taken to process video encoding job")
-                    .tag("status", "success")
-                    .tag("mode", msg.getProcessingMode())
-                    .register(meterRegistry));
-                    
+            metrics.jobFinished(labels.mode(), true, System.nanoTime() - start);
+
             log.info("job done {}", jid);
 
         } catch (Exception e) {
+            if (!owned.getAsBoolean()) {
+                log.warn("job {} stopped after losing its lease: {}", jid, e.getMessage());
+                outputs.discard();
+                deleteQuietly(runDir);
+                return;
+            }
             vr.fail(e.getMessage());
-            repo.updateById(vr);
+            if (!finishRecord(vr, labels)) {
+                dropCancelled(jid, outputs, jobDirFinal, labels, start);
+                return;
+            }
+            jobs.setProgress(jid, jobs.snapshot(jid).progress(), "FAILED");
             deleteQuietly(jobDirFinal);
-            
-            sample.stop(Timer.builder("video.job.duration")
-                    .description("Time taken to process video encoding job")
-                    .tag("status", "failure")
-                    .tag("mode", msg.getProcessingMode())
-                    .register(meterRegistry));
-            
-            Counter.builder("video.job.failure")
-                    .description("Total number of failed jobs")
-                    .register(meterRegistry)
-                    .increment();
+            metrics.jobFinished(labels.mode(), false, System.nanoTime() - start);
 
             log.error("job error {} {}", jid, e.getMessage());
         }
     }
 
+    /**
+     * Removes the work directory of a job that was cancelled before it started.
+     */
+    public void discard(JobMessage msg) {
+        deleteQuietly(Path.of(msg.getJobDirPath()));
+    }
+
+    /**
+     * @return {@code false} if the record was cancelled while the job ran; it is then left as is
+     */
+    private boolean finishRecord(VideoRecord vr, PipelineMetrics.Labels labels) {
+        long t = System.nanoTime();
+        boolean stored = repo.finishProcessing(vr);
+        if (stored) {
+            records.put(vr);
+        }
+        metrics.record(PipelineMetrics.Stage.DB_UPDATE, labels, System.nanoTime() - t, 0);
+        return stored;
+    }
+
+    /**
+     * Nothing a cancelled run produced is kept: stored outputs and the job directory are removed.
+     */
+    private void dropCancelled(String jid, Outputs outputs, Path jobDir, PipelineMetrics.Labels labels, long start) {
+        log.info("job {} was cancelled while running; discarding its output", jid);
+        outputs.discard();
+        jobs.setProgress(jid, jobs.snapshot(jid).progress(), "FAILED");
+        deleteQuietly(jobDir);
+        metrics.jobFinished(labels.mode(), false, System.nanoTime() - start);
+    }
+
+    /**
+     * What one run has moved into storage. Ownership is checked before every promotion; a run
+     * that loses the job later removes these again, so the new owner's record never points at
+     * another run's files.
+     */
+    private final class Outputs {
+        private final String jobId;
+        private final String attempt;
+        private final BooleanSupplier owned;
+        private final List<String> promoted = new ArrayList<>();
+
+        Outputs(String jobId, String attempt, BooleanSupplier owned) {
+            this.jobId = jobId;
+            this.attempt = attempt;
+            this.owned = owned;
+        }
+
+        /**
+         * @param suffix stored as {@code <jobId><suffix>}, or {@code <jobId>-<attempt><suffix>} for a named run
+         */
+        String promote(Path file, String suffix) throws IOException {
+            if (!owned.getAsBoolean()) {
+                throw new IllegalStateException("Job " + jobId + " is no longer owned by this node");
+            }
+            String location = storage.promote(file, jobId, jobId + (attempt != null ? "-" + attempt : "") + suffix);
+            promoted.add(location);
+            return location;
+        }
+
+        void discard() {
+            for (String location : promoted) {
+                try {
+                    storage.delete(location);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("job {}: could not remove {} stored before losing the lease", jobId, location, e);
+                }
+            }
+            promoted.clear();
+        }
+    }
+
+    private void runEncode(String jid, Path runDir, JobMessage msg, VideoRecord vr, PipelineMetrics.Labels labels,
+                           Outputs outputs) throws Exception {
+        Path outputVideo = runDir.resolve("output.mp4");
+        Path manifestJson = runDir.resolve("manifest.json");
+        Path inputZip = Path.of(msg.getInputZipPath());
+
+        QrPlan plan = qrPlanner.plan(msg, Files.size(inputZip));
+        if (plan != null) {
+            log.info("job {} QR plan: version {} ECC {}, {} bytes per code, {}px modules, ~{} frames",
+                    jid, plan.version(), plan.ecc(), plan.chunkSize(), plan.boxSize(), plan.expectedFrames());
+        }
+
+        VideoEncodingRequest request = new VideoEncodingRequest(
+                jid,
+                inputZip,
+                outputVideo,
+                manifestJson,
+                msg.getObfArg(),
+                msg.getGridN(),
+                msg.getFps(),
+                msg.getResolution(),
+                msg.getWidth(),
+                msg.getHeight(),
+                msg.isEnableFec(),
+                msg.getFecParityPercent(),
+                msg.getPassphrase(),
+                msg.getPublicKeyHint(),
+                msg.getPrivateKeyFrameIndex(),
+                msg.getPrivateKeyFramePassword(),
+                msg.getProcessingMode(),
+                msg.isStreamFrames(),
+                keyPairs.take(),
+                plan
+        );
+
+        // Select strategy
+        VideoEncoder encoder = videoEncoders.stream()
+                .filter(e -> e.supports(msg.getProcessingMode()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No encoder found for mode: " + msg.getProcessingMode()));
+
+        // Encoder handles process execution
+        long encodeStart = System.nanoTime();
+        encoder.encode(request);
+        long encodeNanos = System.nanoTime() - encodeStart;
+
+        Integer outputFrameCount = null;
+        try {
+            ObjectMapper om = new ObjectMapper();
+            JsonNode node = om.readTree(Files.readString(manifestJson));
+            if (node.has("frames")) {
+                outputFrameCount = node.get("frames").asInt();
+            }
+        } catch (Exception ignored) {}
+        metrics.record(PipelineMetrics.Stage.ENCODE, labels, encodeNanos, outputFrameCount != null ? outputFrameCount : 0);
+
+        jobs.setProgress(jid, 60, "PERSISTING");
+        // Outputs are moved into storage, so measure them first
+        long videoSize = Files.size(outputVideo);
+        long manifestSize = Files.size(manifestJson);
+        long persistStart = System.nanoTime();
+        String videoStorePath = outputs.promote(outputVideo, ".mp4");
+        String manifestStorePath = outputs.promote(manifestJson, "-manifest.json");
+        metrics.record(PipelineMetrics.Stage.PERSIST, labels, System.nanoTime() - persistStart, videoSize + manifestSize);
+
+        vr.complete(videoStorePath, manifestStorePath, videoSize, outputFrameCount);
+    }
+
+    /**
+     * Restores the original file; the record's storage path then points at the decoded file and
+     * no manifest is produced.
+     */
+    private void runDecode(String jid, Path runDir, JobMessage msg, VideoRecord vr, PipelineMetrics.Labels labels,
+                           Outputs outputs) throws Exception {
+        Path outputFile = runDir.resolve("output.zip");
+        VideoDecodingRequest request = new VideoDecodingRequest(
+                jid,
+                Path.of(msg.getInputVideoPath()),
+                outputFile,
+                msg.getPrivateKeyFramePassword()
+        );
+        long decodeStart = System.nanoTime();
+        videoDecoder.decode(request);
+        metrics.record(PipelineMetrics.Stage.DECODE, labels, System.nanoTime() - decodeStart,
+                Files.size(request.inputVideo()));
+
+        jobs.setProgress(jid, 90, "PERSISTING");
+        long outputSize = Files.size(outputFile);
+        long persistStart = System.nanoTime();
+        String storePath = outputs.promote(outputFile, ".zip");
+        metrics.record(PipelineMetrics.Stage.PERSIST, labels, System.nanoTime() - persistStart, outputSize);
+        vr.complete(storePath, null, outputSize, null);
+    }
+
+    private static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.isAuthenticated() ? auth.getName() : null;
+    }
+
+    private static String metricMode(JobMessage msg) {
+        return VideoRecord.JobType.DECODE.name().equals(msg.getJobType()) ? "DECODE" : msg.getProcessingMode();
+    }
+
     private static void deleteQuietly(Path dir) {
         try {
             if (dir != null && Files.exists(dir)) {
@@ -0,0 +1,138 @@
+package com.Charon.service;
+
+import com.Charon.entity.VideoRecord;
+import com.Charon.repository.VideoRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache of {@link VideoRecord}s for the status and download endpoints, which are
+ * polled far more often than records change.
+ * <p>
+ * Records are cached by job id; the numeric id only maps to the job id, which never changes.
+ * Finished records are immutable and kept for {@code terminal-ttl}. PROCESSING records are kept
+ * for the short {@code processing-ttl} only, because writers on this node replace them through
+ * {@link #put} but a record may also be finished elsewhere (another node, a manual fix).
+ * <p>
+ * Returned records are shared between callers and must not be modified; code that updates a
+ * record loads it from the repository, writes it, then calls {@link #put}.
+ */
+@Component
+public class VideoRecordCache {
+
+    private final VideoRecordRepository repo;
+    private final Cache<String, VideoRecord> byJobId;
+    private final Cache<Long, String> jobIdById;
+
+    public VideoRecordCache(VideoRecordRepository repo,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.record-cache.processing-ttl:PT2S}") Duration processingTtl,
+                            @Value("${app.record-cache.terminal-ttl:PT10M}") Duration terminalTtl,
+                            @Value("${app.record-cache.max-entries:20000}") long maxEntries) {
+        this.repo = repo;
+        long processingNanos = processingTtl.toNanos();
+        long terminalNanos = terminalTtl.toNanos();
+        this.byJobId = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, VideoRecord>() {
+                    @Override
+                    public long expireAfterCreate(String key, VideoRecord vr, long currentTime) {
+                        return vr.getStatus() == VideoRecord.ProcessStatus.PROCESSING ? processingNanos : terminalNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VideoRecord vr, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, vr, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VideoRecord vr, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.jobIdById = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(terminalTtl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byJobId, "video.record");
+    }
+
+    public Optional<VideoRecord> findByJobId(String jobId) {
+        VideoRecord vr = byJobId.getIfPresent(jobId);
+        if (vr != null) {
+            return Optional.of(vr);
+        }
+        // Misses are not cached: an unknown id costs one query, as before
+        return repo.findByJobId(jobId).map(this::cache);
+    }
+
+    public Optional<VideoRecord> findById(Long id) {
+        String jobId = jobIdById.getIfPresent(id);
+        if (jobId != null) {
+            VideoRecord vr = byJobId.getIfPresent(jobId);
+            if (vr != null) {
+                return Optional.of(vr);
+            }
+        }
+        return Optional.ofNullable(repo.selectById(id)).map(this::cache);
+    }
+
+    /**
+     * Records for the given job ids; cache misses are resolved together with one {@code IN} query.
+     * Unknown ids are absent from the result.
+     */
+    public Map<String, VideoRecord> findByJobIds(Collection<String> jobIds) {
+        Map<String, VideoRecord> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String jobId : jobIds) {
+            VideoRecord vr = byJobId.getIfPresent(jobId);
+            if (vr != null) {
+                found.put(jobId, vr);
+            } else {
+                missing.add(jobId);
+            }
+        }
+        for (VideoRecord vr : repo.findByJobIds(missing)) {
+            found.put(vr.getJobId(), cache(vr));
+        }
+        return found;
+    }
+
+    /**
+     * Write-through after the record was inserted or updated; a copy is stored, so the caller
+     * may keep using its instance.
+     */
+    public void put(VideoRecord vr) {
+        VideoRecord copy = new VideoRecord();
+        BeanUtils.copyProperties(vr, copy);
+        cache(copy);
+    }
+
+    public void invalidate(String jobId) {
+        byJobId.invalidate(jobId);
+    }
+
+    private VideoRecord cache(VideoRecord vr) {
+        byJobId.put(vr.getJobId(), vr);
+        if (vr.getId() != null) {
+            jobIdById.put(vr.getId(), vr.getJobId());
+        }
+        return vr;
+    }
+}
@@ -0,0 +1,8 @@
+package com.Charon.service.command;
+
+import org.springframework.web.multipart.MultipartFile;
+
+public record SubmitDecodeCommand(
+    MultipartFile file,
+    String privateKeyFramePassword
+) {}
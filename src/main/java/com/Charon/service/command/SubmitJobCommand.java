@@ -17,5 +17,8 @@ public record SubmitJobCommand(
     String privateKeyFramePassword,
     Integer obfuscationSeed,
     MultipartFile obfuscationFile,
-    String processingMode // CPU, GPU, CLOUD
+    String processingMode, // CPU, GPU, CLOUD, JAVA
+    boolean streamFrames,
+    boolean reuseCrypto, // may be answered with an earlier result encoded under the same secrets
+    String priority // INTERACTIVE or BATCH
 ) {}
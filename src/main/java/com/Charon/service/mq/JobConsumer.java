@@ -1,30 +1,34 @@
 package com.Charon.service.mq;
 
 import com.Charon.dto.JobMessage;
-import com.Charon.service.VideoCodeService;
+import com.Charon.service.scheduler.JobScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Service;
 
 @Service
-@ConditionalOnProperty(name = "app.rocketmq.consumer.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnExpression("'${app.queue.type:rocketmq}' == 'rocketmq' and '${app.rocketmq.consumer.enabled:true}' == 'true'")
 @RocketMQMessageListener(topic = "video-code-topic", consumerGroup = "video-code-consumer-group")
 @RequiredArgsConstructor
 @Slf4j
 public class JobConsumer implements RocketMQListener<JobMessage> {
 
-    private final VideoCodeService videoCodeService;
+    private final JobScheduler jobScheduler;
 
+    /**
+     * Hands the job to the local scheduler; blocks while its queue is full.
+     */
     @Override
     public void onMessage(JobMessage message) {
         log.info("Received job from MQ: {}", message.getJobId());
         try {
-            videoCodeService.executeJob(message);
-        } catch (Exception e) {
-            log.error("Error processing job {}", message.getJobId(), e);
+            jobScheduler.submit(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing job " + message.getJobId(), e);
         }
     }
 }
@@ -1,21 +1,14 @@
 package com.Charon.service.mq;
 
 import com.Charon.dto.JobMessage;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.apache.rocketmq.spring.core.RocketMQTemplate;
-import org.springframework.messaging.support.MessageBuilder;
-import org.springframework.stereotype.Service;
 
-@Service
-@RequiredArgsConstructor
-@Slf4j
-public class JobProducer {
+/**
+ * Queue a submitted job for execution. Selected by {@code app.queue.type}: {@code rocketmq}
+ * (default, {@link RocketMqJobProducer}), {@code embedded}
+ * ({@link com.Charon.service.queue.EmbeddedJobQueue}) or {@code database}
+ * ({@link com.Charon.service.queue.DatabaseJobQueue}).
+ */
+public interface JobProducer {
 
-    private final RocketMQTemplate rocketMQTemplate;
-
-    public void sendJob(JobMessage message) {
-        log.info("Sending job to MQ: {}", message.getJobId());
-        rocketMQTemplate.send("video-code-topic", MessageBuilder.withPayload(message).build());
-    }
+    void sendJob(JobMessage message);
 }
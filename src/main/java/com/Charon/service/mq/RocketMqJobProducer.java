@@ -0,0 +1,24 @@
+package com.Charon.service.mq;
+
+import com.Charon.dto.JobMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+@Service
+@ConditionalOnProperty(name = "app.queue.type", havingValue = "rocketmq", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class RocketMqJobProducer implements JobProducer {
+
+    private final RocketMQTemplate rocketMQTemplate;
+
+    @Override
+    public void sendJob(JobMessage message) {
+        log.info("Sending job to MQ: {}", message.getJobId());
+        rocketMQTemplate.send("video-code-topic", MessageBuilder.withPayload(message).build());
+    }
+}
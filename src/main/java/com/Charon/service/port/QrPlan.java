@@ -0,0 +1,15 @@
+package com.Charon.service.port;
+
+/**
+ * QR layout chosen for a job's frame geometry: the largest code that still fits a grid cell with
+ * modules of at least the configured pixel size.
+ *
+ * @param version        QR version (1-40) of a full data code
+ * @param ecc            error correction level, {@code L}, {@code M}, {@code Q} or {@code H}
+ * @param chunkSize      payload bytes per data code, before the QDV2 header and CRC
+ * @param codeBytes      byte-mode capacity of a code of {@code version} at {@code ecc}; whatever
+ *                       goes into one code, such as the FEC length header, has to fit it
+ * @param boxSize        pixels per module
+ * @param expectedFrames estimated frame count, including the meta, private-key and obfuscation frames
+ */
+public record QrPlan(int version, String ecc, int chunkSize, int codeBytes, int boxSize, int expectedFrames) {}
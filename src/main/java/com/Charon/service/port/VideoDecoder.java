@@ -0,0 +1,11 @@
+package com.Charon.service.port;
+
+public interface VideoDecoder {
+    /**
+     * Restores the original file from a QR video.
+     * @param request The decoding parameters
+     * @return A short log / statistics summary
+     * @throws Exception if decoding fails
+     */
+    String decode(VideoDecodingRequest request) throws Exception;
+}
@@ -0,0 +1,10 @@
+package com.Charon.service.port;
+
+import java.nio.file.Path;
+
+public record VideoDecodingRequest(
+    String jobId,
+    Path inputVideo,
+    Path outputFile,
+    String privateKeyFramePassword
+) {}
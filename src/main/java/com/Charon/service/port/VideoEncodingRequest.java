@@ -1,6 +1,7 @@
 package com.Charon.service.port;
 
 import java.nio.file.Path;
+import java.security.KeyPair;
 
 public record VideoEncodingRequest(
     String jobId,
@@ -19,5 +20,8 @@ public record VideoEncodingRequest(
     String publicKeyHint,
     Integer privateKeyFrameIndex,
     String privateKeyFramePassword,
-    String processingMode // CPU, GPU, CLOUD
+    String processingMode, // CPU, GPU, CLOUD, JAVA
+    boolean streamFrames, // pipe raw frames into ffmpeg instead of writing PNGs
+    KeyPair keyPair, // pre-generated RSA pair for this job; null = encoder generates its own
+    QrPlan qrPlan // chunk size, module size and ECC level for the cell size; null = encoder defaults
 ) {}
@@ -0,0 +1,449 @@
+package com.Charon.service.queue;
+
+import com.Charon.config.JobSchedulerProperties;
+import com.Charon.dto.JobMessage;
+import com.Charon.entity.JobLease;
+import com.Charon.entity.VideoRecord;
+import com.Charon.entity.WorkerNode;
+import com.Charon.repository.JobLeaseRepository;
+import com.Charon.repository.VideoRecordRepository;
+import com.Charon.repository.WorkerNodeRepository;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.VideoRecordCache;
+import com.Charon.service.mq.JobProducer;
+import com.Charon.service.scheduler.JobScheduler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker mode for several nodes sharing one database and one work directory
+ * ({@code app.queue.type=database}). Submitted jobs become {@code QUEUED} rows in
+ * {@code job_leases}; every node polls the table and takes time-bounded leases on as many jobs
+ * as it has free slots (plus {@code prefetch}), so work is pulled by whoever has capacity.
+ * <p>
+ * Each poll is also the node's heartbeat: it records the node's capacity in
+ * {@code worker_nodes} and extends the leases of the jobs it holds. A lease that is not renewed
+ * for {@code lease-ttl} (the node died or lost the database) is put back in the queue by
+ * whichever node notices first, and a job that keeps losing its lease is failed after
+ * {@code max-attempts} starts. A node that finds one of its running leases gone kills the local
+ * process and leaves the record to the new owner. Claimed jobs that are still waiting for a slot
+ * after {@code steal-after} may be stolen by a node with an idle slot; the original node notices
+ * when it tries to start them.
+ * <p>
+ * Every start of a job is a separate attempt ({@code <nodeId>-<n>}) with its own output
+ * directory and storage names, so a run that has lost its lease cannot overwrite what the new
+ * owner writes, and removes what it stored itself. On shutdown running jobs are stopped first and
+ * only handed back once their runs have ended, or left to expire if they do not end within
+ * {@code shutdown-grace}.
+ * <p>
+ * The rows hold the job parameters including secrets, so access to the database must be
+ * restricted, as for the embedded queue's journal.
+ */
+@Component
+@ConditionalOnProperty(name = "app.queue.type", havingValue = "database")
+@Slf4j
+public class DatabaseJobQueue implements JobProducer {
+
+    private static final int RECLAIM_BATCH = 100;
+
+    private enum Held { CLAIMED, RUNNING }
+
+    private final JobLeaseRepository leases;
+    private final WorkerNodeRepository nodes;
+    private final VideoRecordRepository records;
+    private final VideoRecordCache recordCache;
+    private final ObjectProvider<JobScheduler> scheduler;
+    private final JobRegistry jobRegistry;
+    private final Path workdir;
+    private final String nodeId;
+    private final int slots;
+    private final int prefetch;
+    private final Duration heartbeat;
+    private final Duration leaseTtl;
+    private final Duration stealAfter;
+    private final int maxAttempts;
+    private final long minFreeDiskBytes;
+    private final Duration shutdownGrace;
+    private final Map<String, Held> held = new ConcurrentHashMap<>();
+    /** Runs in progress on this node, counted down when they end. */
+    private final Map<String, CountDownLatch> runs = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private Thread poller;
+
+    public DatabaseJobQueue(JobLeaseRepository leases, WorkerNodeRepository nodes,
+                            VideoRecordRepository records, VideoRecordCache recordCache,
+                            ObjectProvider<JobScheduler> scheduler, JobRegistry jobRegistry,
+                            JobSchedulerProperties props,
+                            @Value("${app.workdir:${user.home}/video-qrcode}") String workdir,
+                            @Value("${app.cluster.node-id:}") String nodeId,
+                            @Value("${app.cluster.prefetch:1}") int prefetch,
+                            @Value("${app.cluster.heartbeat:PT5S}") Duration heartbeat,
+                            @Value("${app.cluster.lease-ttl:PT1M}") Duration leaseTtl,
+                            @Value("${app.cluster.steal-after:PT15S}") Duration stealAfter,
+                            @Value("${app.cluster.max-attempts:3}") int maxAttempts,
+                            @Value("${app.cluster.min-free-disk-bytes:1073741824}") long minFreeDiskBytes,
+                            @Value("${app.cluster.shutdown-grace:PT10S}") Duration shutdownGrace) {
+        this.leases = leases;
+        this.nodes = nodes;
+        this.records = records;
+        this.recordCache = recordCache;
+        // The scheduler depends on the service, which depends on this producer: resolve it late
+        this.scheduler = scheduler;
+        this.jobRegistry = jobRegistry;
+        this.workdir = Path.of(workdir);
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.slots = Math.max(1, props.getMaxConcurrency());
+        this.prefetch = Math.max(0, prefetch);
+        this.heartbeat = heartbeat;
+        this.leaseTtl = leaseTtl;
+        this.stealAfter = stealAfter;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.minFreeDiskBytes = minFreeDiskBytes;
+        this.shutdownGrace = shutdownGrace;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        poller = Thread.ofPlatform().name("cluster-worker").daemon().start(this::run);
+        log.info("Worker node {} polling for jobs: {} slots, prefetch {}", nodeId, slots, prefetch);
+    }
+
+    /**
+     * Hands the leases this node holds back to the queue so other nodes can start them right away.
+     * Running jobs are cancelled first and handed back only once their runs have ended; one that
+     * is still running after {@code shutdown-grace} keeps its lease until it expires.
+     */
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.interrupt();
+        }
+        Map<String, CountDownLatch> running = Map.copyOf(runs);
+        // Claimed jobs are no longer started and running ones no longer owned, so neither
+        // touches its record or lease again
+        held.clear();
+        running.keySet().forEach(jobRegistry::cancel);
+        Set<String> unfinished = awaitRuns(running);
+        try {
+            int released = leases.requeueAll(nodeId, unfinished);
+            if (unfinished.isEmpty()) {
+                nodes.deleteById(nodeId);
+            }
+            if (released > 0) {
+                log.info("Worker node {} returned {} jobs to the queue", nodeId, released);
+            }
+            if (!unfinished.isEmpty()) {
+                log.warn("Worker node {} jobs {} did not stop within {}; their leases expire after {}",
+                        nodeId, unfinished, shutdownGrace, leaseTtl);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Worker node {} could not release its leases; they expire after {}", nodeId, leaseTtl, e);
+        }
+    }
+
+    /**
+     * Waits up to {@code shutdown-grace} in total for the given runs to end.
+     *
+     * @return the jobs whose runs are still going
+     */
+    private Set<String> awaitRuns(Map<String, CountDownLatch> running) {
+        long deadline = System.nanoTime() + shutdownGrace.toNanos();
+        Set<String> unfinished = new HashSet<>();
+        for (Map.Entry<String, CountDownLatch> run : running.entrySet()) {
+            try {
+                if (!run.getValue().await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    unfinished.add(run.getKey());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unfinished.add(run.getKey());
+            }
+        }
+        return unfinished;
+    }
+
+    @Override
+    public void sendJob(JobMessage message) {
+        JobLease lease = new JobLease();
+        lease.setJobId(message.getJobId());
+        try {
+            lease.setPayload(objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        lease.setInputSize(message.getInputSize());
+        leases.insert(lease);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                log.warn("Worker node {} poll failed", nodeId, e);
+            }
+            try {
+                Thread.sleep(heartbeat.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * One heartbeat: renew, advertise capacity, reclaim expired leases, then claim or steal work.
+     */
+    void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(leaseTtl);
+        renew(until);
+        long freeDisk = freeDiskBytes();
+        advertise(now, freeDisk);
+        reclaim(now);
+
+        int capacity = slots + prefetch - held.size();
+        if (capacity <= 0) {
+            return;
+        }
+        if (freeDisk >= 0 && freeDisk < minFreeDiskBytes) {
+            log.debug("Worker node {} not taking jobs: {} bytes free", nodeId, freeDisk);
+            return;
+        }
+        int claimed = claim(capacity, until);
+        int idle = slots - held.size();
+        if (claimed < capacity && idle > 0) {
+            steal(Math.min(capacity - claimed, idle), now, until);
+        }
+    }
+
+    private void renew(LocalDateTime until) {
+        if (held.isEmpty()) {
+            return;
+        }
+        leases.renew(nodeId, Set.copyOf(held.keySet()), until);
+        Set<String> stillHeld = new HashSet<>(leases.findHeld(nodeId));
+        for (Map.Entry<String, Held> e : held.entrySet()) {
+            String jobId = e.getKey();
+            if (stillHeld.contains(jobId) || !held.remove(jobId, e.getValue())) {
+                continue;
+            }
+            if (e.getValue() == Held.RUNNING) {
+                log.warn("Worker node {} lost the lease on running job {}; stopping it", nodeId, jobId);
+                jobRegistry.cancel(jobId);
+            } else {
+                log.info("Claimed job {} was taken over by another node", jobId);
+            }
+        }
+    }
+
+    private void advertise(LocalDateTime now, long freeDisk) {
+        int running = (int) held.values().stream().filter(h -> h == Held.RUNNING).count();
+        WorkerNode node = new WorkerNode();
+        node.setNodeId(nodeId);
+        node.setHost(host());
+        node.setSlots(slots);
+        node.setRunning(running);
+        node.setQueued(held.size() - running);
+        node.setCpus(Runtime.getRuntime().availableProcessors());
+        node.setFreeDiskBytes(freeDisk);
+        node.setStartedAt(startedAt);
+        node.setHeartbeatAt(now);
+        nodes.heartbeat(node);
+        nodes.removeStale(now.minus(leaseTtl.multipliedBy(10)));
+    }
+
+    private void reclaim(LocalDateTime now) {
+        for (JobLease lease : leases.findExpired(now, RECLAIM_BATCH)) {
+            if (lease.getStatus() == JobLease.Status.RUNNING && lease.getAttempts() >= maxAttempts) {
+                if (leases.dropExpired(lease, now)) {
+                    log.warn("Job {} lost its lease {} times; giving up", lease.getJobId(), lease.getAttempts());
+                    fail(lease.getJobId(), "Job abandoned after " + lease.getAttempts() + " attempts: worker lease expired");
+                }
+            } else if (leases.requeue(lease, now)) {
+                log.info("Reclaimed job {} from unresponsive node {}", lease.getJobId(), lease.getNodeId());
+            }
+        }
+    }
+
+    private int claim(int capacity, LocalDateTime until) {
+        int claimed = 0;
+        // Ask for a few extra rows: other nodes may win some of them
+        for (JobLease lease : leases.findQueued(capacity * 2)) {
+            if (claimed == capacity) {
+                break;
+            }
+            if (leases.claim(lease.getJobId(), nodeId, until)) {
+                enqueue(lease);
+                claimed++;
+            }
+        }
+        return claimed;
+    }
+
+    private void steal(int count, LocalDateTime now, LocalDateTime until) {
+        for (JobLease lease : leases.findStealable(nodeId, now.minus(stealAfter), count)) {
+            if (leases.steal(lease, nodeId, until)) {
+                log.info("Worker node {} took queued job {} from busy node {}", nodeId, lease.getJobId(), lease.getNodeId());
+                enqueue(lease);
+            }
+        }
+    }
+
+    private void enqueue(JobLease lease) {
+        String jobId = lease.getJobId();
+        JobMessage message;
+        try {
+            message = objectMapper.readValue(lease.getPayload(), JobMessage.class);
+        } catch (JsonProcessingException e) {
+            log.error("Unreadable job payload for {}", jobId, e);
+            leases.release(jobId, nodeId);
+            fail(jobId, "Unreadable job payload");
+            return;
+        }
+        held.put(jobId, Held.CLAIMED);
+        try {
+            // Starting the claim increments attempts, and only the claim holder can start it
+            int attempt = (lease.getAttempts() == null ? 0 : lease.getAttempts()) + 1;
+            scheduler.getObject().submit(message, new LeaseHooks(jobId, nodeId + "-" + attempt));
+        } catch (InterruptedException e) {
+            // Shutting down: stop() hands the claim back to the queue
+            Thread.currentThread().interrupt();
+            held.remove(jobId);
+        }
+    }
+
+    /**
+     * Ties the local run of a job to its lease.
+     */
+    private final class LeaseHooks implements JobScheduler.Hooks {
+        private final String jobId;
+        private final String attempt;
+        private final CountDownLatch ended = new CountDownLatch(1);
+
+        LeaseHooks(String jobId, String attempt) {
+            this.jobId = jobId;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public boolean beforeRun() {
+            if (held.get(jobId) != Held.CLAIMED) {
+                return false;
+            }
+            VideoRecord vr = records.findByJobId(jobId).orElse(null);
+            if (vr != null && vr.getStatus() != VideoRecord.ProcessStatus.PROCESSING) {
+                // Finished by a node that died before removing the lease
+                held.remove(jobId);
+                leases.release(jobId, nodeId);
+                return false;
+            }
+            if (!leases.start(jobId, nodeId, LocalDateTime.now().plus(leaseTtl))) {
+                held.remove(jobId);
+                return false;
+            }
+            runs.put(jobId, ended);
+            if (held.replace(jobId, Held.CLAIMED, Held.RUNNING)) {
+                return true;
+            }
+            // stop() cleared the claim meanwhile and hands the lease back
+            runs.remove(jobId, ended);
+            ended.countDown();
+            return false;
+        }
+
+        @Override
+        public boolean owned() {
+            return held.get(jobId) == Held.RUNNING;
+        }
+
+        @Override
+        public String attempt() {
+            return attempt;
+        }
+
+        @Override
+        public void afterRun() {
+            runs.remove(jobId, ended);
+            ended.countDown();
+            if (held.remove(jobId) == null) {
+                return;
+            }
+            try {
+                leases.release(jobId, nodeId);
+            } catch (RuntimeException e) {
+                log.warn("Could not release lease on job {}; it expires after {}", jobId, leaseTtl, e);
+            }
+        }
+    }
+
+    /**
+     * Fails a job no node will run again and removes its job directory, as a failed run does.
+     */
+    private void fail(String jobId, String message) {
+        records.findByJobId(jobId).ifPresent(vr -> {
+            if (vr.getStatus() == VideoRecord.ProcessStatus.PROCESSING) {
+                vr.fail(message);
+                records.updateById(vr);
+                recordCache.put(vr);
+            }
+        });
+        try {
+            FileSystemUtils.deleteRecursively(workdir.resolve(jobId));
+        } catch (IOException e) {
+            log.warn("Could not remove work directory of abandoned job {}", jobId, e);
+        }
+    }
+
+    /**
+     * Usable bytes in the work directory, or -1 if it cannot be determined.
+     */
+    private long freeDiskBytes() {
+        try {
+            Files.createDirectories(workdir);
+            return Files.getFileStore(workdir).getUsableSpace();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String host() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static String defaultNodeId() {
+        return host() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,138 @@
+package com.Charon.service.queue;
+
+import com.Charon.common.BusinessException;
+import com.Charon.dto.JobMessage;
+import com.Charon.service.mq.JobProducer;
+import com.Charon.service.scheduler.JobScheduler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process replacement for RocketMQ ({@code app.queue.type=embedded}): jobs go into a bounded
+ * queue and a dispatcher thread feeds them to the {@link JobScheduler}, so submitting is a
+ * method call with no broker, no network hop and no serialization.
+ * <p>
+ * When the queue stays full for {@code offer-timeout}, {@link #sendJob} fails with
+ * {@code QUEUE_FULL} so the client backs off instead of the request thread piling up. With
+ * {@code journal-dir} set, every job is also appended to a {@link JobJournal} and acknowledged
+ * once it has run; jobs still outstanding after a crash are queued again on startup. The journal
+ * holds the job parameters including secrets, so the directory must be private to the service.
+ */
+@Component
+@ConditionalOnProperty(name = "app.queue.type", havingValue = "embedded")
+@Slf4j
+public class EmbeddedJobQueue implements JobProducer {
+
+    private final ObjectProvider<JobScheduler> scheduler;
+    private final BlockingQueue<JobMessage> queue;
+    private final long offerTimeoutMillis;
+    private final JobJournal journal;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Thread dispatcher;
+
+    public EmbeddedJobQueue(ObjectProvider<JobScheduler> scheduler,
+                            @Value("${app.queue.embedded.capacity:1000}") int capacity,
+                            @Value("${app.queue.embedded.offer-timeout:PT5S}") Duration offerTimeout,
+                            @Value("${app.queue.embedded.journal-dir:}") String journalDir,
+                            @Value("${app.queue.embedded.journal-size:67108864}") int journalSize,
+                            @Value("${app.queue.embedded.journal-fsync:false}") boolean fsync) throws IOException {
+        // The scheduler depends on the service, which depends on this producer: resolve it late
+        this.scheduler = scheduler;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.offerTimeoutMillis = offerTimeout.toMillis();
+        if (journalDir == null || journalDir.isBlank()) {
+            this.journal = null;
+        } else {
+            Path dir = Path.of(journalDir);
+            Files.createDirectories(dir);
+            this.journal = JobJournal.open(dir.resolve("jobs.journal"), journalSize, fsync);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException, InterruptedException {
+        dispatcher = Thread.ofPlatform().name("embedded-queue-dispatcher").daemon().start(this::dispatch);
+        if (journal != null) {
+            List<byte[]> unfinished = journal.pending();
+            for (byte[] payload : unfinished) {
+                queue.put(objectMapper.readValue(payload, JobMessage.class));
+            }
+            if (!unfinished.isEmpty()) {
+                log.info("Re-queued {} unfinished jobs from the journal", unfinished.size());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Override
+    public void sendJob(JobMessage message) {
+        try {
+            if (journal != null) {
+                journal.append(message.getJobId(), objectMapper.writeValueAsBytes(message));
+            }
+            if (!queue.offer(message, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                ack(message);
+                throw new BusinessException("QUEUE_FULL", "Job queue is full, retry later");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ack(message);
+            throw new IllegalStateException("Interrupted while queueing job " + message.getJobId(), e);
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private void dispatch() {
+        JobScheduler jobScheduler = scheduler.getObject();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                JobMessage message = queue.take();
+                jobScheduler.submit(message, () -> ack(message));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void ack(JobMessage message) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.ack(message.getJobId());
+        } catch (IOException e) {
+            log.warn("Could not acknowledge job {} in the journal", message.getJobId(), e);
+        }
+    }
+}
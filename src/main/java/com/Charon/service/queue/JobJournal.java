@@ -0,0 +1,226 @@
+package com.Charon.service.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped record of queued jobs: an ENQUEUE record when a job is accepted and
+ * an ACK once it has finished, so reopening yields exactly the jobs that were still outstanding.
+ * <p>
+ * Two files alternate ({@code <name>.0} / {@code <name>.1}), each starting with a magic and a
+ * generation. When the active one is full, the outstanding jobs are rewritten into the other
+ * under the next generation, which only becomes current once its header is written; a crash
+ * mid-compaction leaves the old file in charge. Records are {@code len, crc32, body} with body
+ * {@code type, idLen, id, payload}; a zero length ends the log, and a bad CRC (torn write) ends
+ * replay at that point.
+ * <p>
+ * Writes land in the page cache and survive a process crash; {@code fsync} additionally forces
+ * every record to disk to survive power loss. Not thread-safe beyond its synchronized methods.
+ */
+public final class JobJournal implements Closeable {
+
+    private static final int MAGIC = 0x514A4E4C; // "QJNL"
+    private static final int HEADER = 16;        // magic, reserved, generation
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+
+    private final Path[] files;
+    private final int minSize;
+    private final boolean fsync;
+    private final Map<String, byte[]> pending = new LinkedHashMap<>();
+    private MappedByteBuffer buf;
+    private int active;
+    private long generation;
+    private int position;
+
+    private JobJournal(Path base, int minSize, boolean fsync) {
+        this.files = new Path[]{base.resolveSibling(base.getFileName() + ".0"), base.resolveSibling(base.getFileName() + ".1")};
+        this.minSize = Math.max(4096, minSize);
+        this.fsync = fsync;
+    }
+
+    /**
+     * Opens (or creates) the journal and replays it.
+     *
+     * @param base file name prefix; {@code .0} and {@code .1} are appended
+     */
+    public static JobJournal open(Path base, int minSize, boolean fsync) throws IOException {
+        JobJournal journal = new JobJournal(base, minSize, fsync);
+        journal.recover();
+        return journal;
+    }
+
+    /**
+     * Payloads of jobs enqueued but not yet acknowledged, in enqueue order.
+     */
+    public synchronized List<byte[]> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized void append(String id, byte[] payload) throws IOException {
+        write(ENQUEUE, id, payload);
+        pending.put(id, payload);
+    }
+
+    public synchronized void ack(String id) throws IOException {
+        if (pending.remove(id) != null) {
+            write(ACK, id, new byte[0]);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (buf != null) {
+            buf.force();
+            buf = null;
+        }
+    }
+
+    private void recover() throws IOException {
+        int best = -1;
+        long bestGen = -1;
+        for (int i = 0; i < 2; i++) {
+            long gen = readGeneration(files[i]);
+            if (gen > bestGen) {
+                best = i;
+                bestGen = gen;
+            }
+        }
+        if (best < 0) {
+            active = 0;
+            generation = 1;
+            buf = map(files[0], minSize);
+            writeHeader(buf, generation);
+            position = HEADER;
+            buf.putInt(position, 0);
+            buf.force();
+            return;
+        }
+        active = best;
+        generation = bestGen;
+        buf = map(files[best], (int) Files.size(files[best]));
+        position = replay(buf, pending);
+    }
+
+    private void write(byte type, String id, byte[] payload) throws IOException {
+        byte[] body = body(type, id, payload);
+        if (position + 8 + body.length + 4 > buf.capacity()) {
+            compact(8 + body.length + 4);
+        }
+        position = put(buf, position, body);
+        if (fsync) {
+            buf.force();
+        }
+    }
+
+    /**
+     * Rewrites the outstanding jobs into the other file under the next generation.
+     */
+    private void compact(int extra) throws IOException {
+        List<byte[]> bodies = new ArrayList<>(pending.size());
+        long live = HEADER + extra;
+        for (Map.Entry<String, byte[]> e : pending.entrySet()) {
+            byte[] body = body(ENQUEUE, e.getKey(), e.getValue());
+            bodies.add(body);
+            live += 8 + body.length;
+        }
+        int size = (int) Math.min(Integer.MAX_VALUE, Math.max(minSize, live * 2));
+        int target = 1 - active;
+        MappedByteBuffer next = map(files[target], size);
+        int pos = HEADER;
+        next.putInt(pos, 0);
+        for (byte[] body : bodies) {
+            pos = put(next, pos, body);
+        }
+        next.force();
+        writeHeader(next, generation + 1);
+        next.force();
+        buf = next;
+        active = target;
+        generation++;
+        position = pos;
+    }
+
+    private static int put(MappedByteBuffer b, int pos, byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        b.put(pos + 8, body);
+        b.putInt(pos + 4, (int) crc.getValue());
+        b.putInt(pos, body.length);
+        int end = pos + 8 + body.length;
+        if (end + 4 <= b.capacity()) {
+            b.putInt(end, 0);
+        }
+        return end;
+    }
+
+    private static int replay(MappedByteBuffer b, Map<String, byte[]> pending) {
+        int pos = HEADER;
+        while (pos + 8 <= b.capacity()) {
+            int len = b.getInt(pos);
+            if (len <= 0 || pos + 8 + len > b.capacity()) {
+                break;
+            }
+            byte[] body = new byte[len];
+            b.get(pos + 8, body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != b.getInt(pos + 4)) {
+                break;
+            }
+            int idLen = ((body[1] & 0xFF) << 8) | (body[2] & 0xFF);
+            String id = new String(body, 3, idLen, StandardCharsets.UTF_8);
+            if (body[0] == ENQUEUE) {
+                byte[] payload = new byte[len - 3 - idLen];
+                System.arraycopy(body, 3 + idLen, payload, 0, payload.length);
+                pending.put(id, payload);
+            } else {
+                pending.remove(id);
+            }
+            pos += 8 + len;
+        }
+        return pos;
+    }
+
+    private static byte[] body(byte type, String id, byte[] payload) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[3 + idBytes.length + payload.length];
+        body[0] = type;
+        body[1] = (byte) (idBytes.length >>> 8);
+        body[2] = (byte) idBytes.length;
+        System.arraycopy(idBytes, 0, body, 3, idBytes.length);
+        System.arraycopy(payload, 0, body, 3 + idBytes.length, payload.length);
+        return body;
+    }
+
+    private static long readGeneration(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER) {
+            return -1;
+        }
+        MappedByteBuffer b = map(file, HEADER);
+        return b.getInt(0) == MAGIC ? b.getLong(8) : -1;
+    }
+
+    private static void writeHeader(MappedByteBuffer b, long generation) {
+        b.putLong(8, generation);
+        b.putInt(4, 0);
+        b.putInt(0, MAGIC);
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.Charon.service.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Dispatch order for pending jobs. Not thread-safe; {@link JobScheduler} guards it.
+ * <p>
+ * Each job has a class level: interactive before batch, small before large. Waiting lowers the
+ * level by one per aging step, so a large batch job eventually outranks fresh small ones. Among
+ * jobs on the best level, owners are served by stride scheduling: every dispatch advances the
+ * owner's pass by cost / weight and the lowest pass goes next, so an owner with ten 4K jobs gets
+ * its share, not the whole pool. An owner that was idle rejoins at the current virtual time
+ * instead of cashing in credit. Queues hold at most a few thousand entries, so selection is a
+ * linear scan.
+ */
+public final class FairJobQueue<T> {
+
+    public enum Priority { INTERACTIVE, BATCH }
+
+    /**
+     * Stride cost of a large job relative to a small one.
+     */
+    static final int LARGE_COST = 4;
+
+    public record Entry<T>(T job, String owner, Priority priority, boolean large, long enqueuedAt, long seq) {
+        int baseLevel() {
+            return (priority == Priority.BATCH ? 2 : 0) + (large ? 1 : 0);
+        }
+    }
+
+    private final long agingStepMillis;
+    private final ToIntFunction<String> weights;
+    private final List<Entry<T>> pending = new ArrayList<>();
+    private final Map<String, Double> passes = new HashMap<>();
+    private final Map<String, Integer> pendingPerOwner = new HashMap<>();
+    private double virtualTime;
+    private long seq;
+
+    public FairJobQueue(long agingStepMillis, ToIntFunction<String> weights) {
+        this.agingStepMillis = Math.max(1, agingStepMillis);
+        this.weights = weights;
+    }
+
+    public void offer(T job, String owner, Priority priority, boolean large, long now) {
+        if (pendingPerOwner.merge(owner, 1, Integer::sum) == 1) {
+            passes.merge(owner, virtualTime, Math::max);
+        }
+        pending.add(new Entry<>(job, owner, priority, large, now, seq++));
+    }
+
+    /**
+     * Removes and returns the next job, or {@code null} when nothing is eligible.
+     *
+     * @param allowLarge false while the large-job slots are all taken
+     */
+    public Entry<T> poll(long now, boolean allowLarge) {
+        Entry<T> best = null;
+        long bestLevel = 0;
+        double bestPass = 0;
+        for (Entry<T> e : pending) {
+            if (e.large() && !allowLarge) {
+                continue;
+            }
+            long level = e.baseLevel() - (now - e.enqueuedAt()) / agingStepMillis;
+            double pass = passes.get(e.owner());
+            if (best == null || level < bestLevel
+                    || (level == bestLevel && (pass < bestPass || (pass == bestPass && e.seq() < best.seq())))) {
+                best = e;
+                bestLevel = level;
+                bestPass = pass;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        pending.remove(best);
+        virtualTime = Math.max(virtualTime, bestPass);
+        int weight = Math.max(1, weights.applyAsInt(best.owner()));
+        double next = bestPass + (double) (best.large() ? LARGE_COST : 1) / weight;
+        if (pendingPerOwner.merge(best.owner(), -1, Integer::sum) == 0) {
+            pendingPerOwner.remove(best.owner());
+            passes.remove(best.owner());
+        } else {
+            passes.put(best.owner(), next);
+        }
+        return best;
+    }
+
+    /**
+     * Removes the first pending job matching {@code filter}; its owner is not charged for it.
+     *
+     * @return the removed entry, or {@code null} if no pending job matches
+     */
+    public Entry<T> remove(Predicate<T> filter) {
+        for (Iterator<Entry<T>> it = pending.iterator(); it.hasNext(); ) {
+            Entry<T> e = it.next();
+            if (filter.test(e.job())) {
+                it.remove();
+                if (pendingPerOwner.merge(e.owner(), -1, Integer::sum) == 0) {
+                    pendingPerOwner.remove(e.owner());
+                    passes.remove(e.owner());
+                }
+                return e;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,274 @@
+package com.Charon.service.scheduler;
+
+import com.Charon.config.JobSchedulerProperties;
+import com.Charon.dto.JobMessage;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.VideoCodeService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs jobs on {@code app.jobs.maxConcurrency} worker threads in {@link FairJobQueue} order.
+ * Large inputs (by size, or 4K output) are further capped at {@code app.jobs.maxLargeConcurrency}
+ * (default: half the slots) so a batch of heavy encodes cannot take every core from ffmpeg.
+ * {@link #submit} blocks once {@code app.jobs.queueCapacity} jobs are waiting, which pushes back
+ * on the message consumer instead of buffering without bound.
+ */
+@Component
+@Slf4j
+public class JobScheduler {
+
+    private final VideoCodeService videoCodeService;
+    private final JobRegistry jobRegistry;
+    private final JobSchedulerProperties props;
+    private final Timer queueWait;
+    private final int slots;
+    private final int largeSlots;
+    private final FairJobQueue<Queued> queue;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<Thread> workers = new ArrayList<>();
+    /** Worker thread of every running job, guarded by {@link #lock}. */
+    private final Map<String, Thread> active = new HashMap<>();
+    private volatile boolean stopped;
+    private int running;
+    private int runningLarge;
+
+    private record Queued(JobMessage msg, Hooks hooks) {}
+
+    /**
+     * Callbacks around one job, all invoked on the worker thread that picks it up.
+     */
+    public interface Hooks {
+        Hooks NONE = new Hooks() {};
+
+        /**
+         * Checked right before the job runs; {@code false} skips it (e.g. another node took it over).
+         */
+        default boolean beforeRun() {
+            return true;
+        }
+
+        /**
+         * Whether this node still owns the job; a job that lost ownership leaves its record alone.
+         */
+        default boolean owned() {
+            return true;
+        }
+
+        /**
+         * Name of this run, unique across nodes and retries, or {@code null} for a job only this
+         * node can run. A named run writes into its own subdirectory of the job directory and
+         * stores its outputs under its own names, so a run that lost the job cannot overwrite
+         * the new owner's files.
+         */
+        default String attempt() {
+            return null;
+        }
+
+        /**
+         * Run once the job has finished, successfully or not, or was skipped.
+         */
+        default void afterRun() {
+        }
+    }
+
+    public JobScheduler(VideoCodeService videoCodeService, JobRegistry jobRegistry,
+                        JobSchedulerProperties props, MeterRegistry meterRegistry) {
+        this.videoCodeService = videoCodeService;
+        this.jobRegistry = jobRegistry;
+        this.props = props;
+        this.slots = Math.max(1, props.getMaxConcurrency());
+        this.largeSlots = props.getMaxLargeConcurrency() > 0
+                ? Math.min(slots, props.getMaxLargeConcurrency())
+                : Math.max(1, slots / 2);
+        this.queue = new FairJobQueue<>(props.getAgingStep().toMillis(),
+                owner -> props.getUserWeights().getOrDefault(owner, 1));
+        this.queueWait = Timer.builder("video.job.queue.wait")
+                .description("Time jobs spend waiting for a worker slot")
+                .register(meterRegistry);
+        Gauge.builder("video.job.queue.size", this, s -> s.snapshot(false))
+                .description("Jobs waiting for a worker slot")
+                .register(meterRegistry);
+        Gauge.builder("video.job.running", this, s -> s.snapshot(true))
+                .description("Jobs currently executing")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < slots; i++) {
+            workers.add(Thread.ofPlatform().name("job-worker-" + (i + 1)).daemon().start(this::work));
+        }
+        log.info("Job scheduler started: {} slots, {} for large jobs", slots, largeSlots);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        workers.forEach(Thread::interrupt);
+    }
+
+    public void submit(JobMessage msg) throws InterruptedException {
+        submit(msg, Hooks.NONE);
+    }
+
+    /**
+     * @param onDone run on the worker once the job has finished, successfully or not
+     */
+    public void submit(JobMessage msg, Runnable onDone) throws InterruptedException {
+        submit(msg, onDone == null ? Hooks.NONE : new Hooks() {
+            @Override
+            public void afterRun() {
+                onDone.run();
+            }
+        });
+    }
+
+    public void submit(JobMessage msg, Hooks hooks) throws InterruptedException {
+        FairJobQueue.Priority priority = "BATCH".equalsIgnoreCase(msg.getPriority())
+                ? FairJobQueue.Priority.BATCH
+                : FairJobQueue.Priority.INTERACTIVE;
+        String owner = msg.getOwner() != null ? msg.getOwner() : "anonymous";
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() >= props.getQueueCapacity()) {
+                changed.await();
+            }
+            queue.offer(new Queued(msg, hooks), owner, priority, isLarge(msg), System.currentTimeMillis());
+            jobRegistry.setProgress(msg.getJobId(), 0, "QUEUED");
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops a job on this node. A job still waiting for a slot is dropped together with its job
+     * directory, and its {@link Hooks#afterRun()} runs on the calling thread. A running job's
+     * worker is interrupted, which ends in-process (JAVA) work; an external process is killed
+     * through {@link JobRegistry#cancel}. Mark the record first: the run then discards its
+     * result instead of storing it.
+     *
+     * @return whether the job was queued or running here
+     */
+    public boolean cancel(String jobId) {
+        FairJobQueue.Entry<Queued> removed;
+        lock.lock();
+        try {
+            removed = queue.remove(q -> jobId.equals(q.msg().getJobId()));
+            if (removed != null) {
+                changed.signalAll();
+            } else {
+                Thread worker = active.get(jobId);
+                if (worker != null) {
+                    worker.interrupt();
+                    return true;
+                }
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.info("Removed queued job {}", jobId);
+        jobRegistry.setProgress(jobId, 0, "FAILED");
+        try {
+            videoCodeService.discard(removed.job().msg());
+        } finally {
+            removed.job().hooks().afterRun();
+        }
+        return true;
+    }
+
+    boolean isLarge(JobMessage msg) {
+        String res = msg.getResolution();
+        return msg.getInputSize() >= props.getLargeInputBytes()
+                || "4k".equalsIgnoreCase(res) || "2160p".equalsIgnoreCase(res);
+    }
+
+    private void work() {
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+            FairJobQueue.Entry<Queued> next;
+            try {
+                next = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            queueWait.record(Duration.ofMillis(System.currentTimeMillis() - next.enqueuedAt()));
+            JobMessage msg = next.job().msg();
+            Hooks hooks = next.job().hooks();
+            try {
+                if (hooks.beforeRun()) {
+                    videoCodeService.executeJob(msg, hooks::owned, hooks.attempt());
+                } else {
+                    log.info("Skipping job {}: no longer assigned to this node", msg.getJobId());
+                }
+            } catch (Exception e) {
+                log.error("Error processing job {}", msg.getJobId(), e);
+            } finally {
+                lock.lock();
+                try {
+                    active.remove(msg.getJobId());
+                } finally {
+                    lock.unlock();
+                }
+                if (!stopped) {
+                    // A cancel that arrived as the job ended must not reach the next one
+                    Thread.interrupted();
+                }
+                hooks.afterRun();
+                lock.lock();
+                try {
+                    running--;
+                    if (next.large()) {
+                        runningLarge--;
+                    }
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private FairJobQueue.Entry<Queued> take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            FairJobQueue.Entry<Queued> next;
+            while ((next = queue.poll(System.currentTimeMillis(), runningLarge < largeSlots)) == null) {
+                changed.await();
+            }
+            running++;
+            if (next.large()) {
+                runningLarge++;
+            }
+            active.put(next.job().msg().getJobId(), Thread.currentThread());
+            changed.signalAll();
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int snapshot(boolean runningJobs) {
+        lock.lock();
+        try {
+            return runningJobs ? running : queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
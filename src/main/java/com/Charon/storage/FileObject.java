@@ -0,0 +1,47 @@
+package com.Charon.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A stored object that is a local file.
+ */
+public record FileObject(Path file, long size, long lastModified) implements StoredObject {
+
+    /**
+     * The file's current size and modification time, or {@code null} if it does not exist.
+     */
+    public static FileObject of(Path file) throws IOException {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileObject(file, attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String name() {
+        return file.getFileName().toString();
+    }
+
+    @Override
+    public Path localFile() {
+        return file;
+    }
+
+    @Override
+    public InputStream openRange(long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(start);
+        InputStream in = Channels.newInputStream(channel);
+        return new BoundedInputStream(in, end - start + 1);
+    }
+}
@@ -0,0 +1,85 @@
+package com.Charon.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores objects under {@code base-dir}; the location is the absolute file path, so records
+ * written before sharding (one {@code yyyyMMdd} directory per day) still resolve.
+ * <p>
+ * Outputs are promoted with a rename, which costs nothing when the work directory is on the same
+ * file system. Otherwise the file is copied next to its target and then renamed into place, so a
+ * reader never sees a partial object either way.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+
+    private final Path baseDir;
+
+    public LocalStorageBackend(@Value("${app.storage.local.base-dir:${user.home}/video-store}") String baseDir) {
+        this.baseDir = Paths.get(baseDir).toAbsolutePath();
+    }
+
+    @Override
+    public String putFile(Path file, String key) throws IOException {
+        Path target = target(key);
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path tmp = Files.createTempFile(target.getParent(), ".incoming-", ".tmp");
+            try {
+                Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            Files.delete(file);
+        }
+        return target.toString();
+    }
+
+    /**
+     * A hard link, falling back to a copy where links are not possible (e.g. across file systems).
+     */
+    @Override
+    public String copy(String location, String key) throws IOException {
+        Path target = target(key);
+        Path source = Paths.get(location);
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target.toString();
+    }
+
+    @Override
+    public StoredObject stat(String location) throws IOException {
+        return FileObject.of(Paths.get(location));
+    }
+
+    @Override
+    public void delete(String location) throws IOException {
+        Files.deleteIfExists(Paths.get(location));
+    }
+
+    private Path target(String key) throws IOException {
+        Path target = baseDir.resolve(key).normalize();
+        if (!target.startsWith(baseDir)) {
+            throw new IllegalArgumentException("Key escapes the storage directory: " + key);
+        }
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+}
@@ -0,0 +1,334 @@
+package com.Charon.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores objects in an S3-compatible service (AWS S3, MinIO, ...) through the JDK HTTP client
+ * with Signature V4 and path-style addressing. Locations are {@code s3://<bucket>/<key>}.
+ * <p>
+ * Files up to {@code part-size} go up in one PUT; larger ones as a multipart upload whose parts
+ * are sent {@code upload-threads} at a time straight from the file, and the upload is aborted on
+ * failure. Copies are server-side (multipart above 5 GiB). Reads are ranged GETs, so downloads
+ * stream only the requested bytes. Bodies are sent as {@code UNSIGNED-PAYLOAD} so parts are not
+ * read twice; use an {@code https} endpoint outside trusted networks.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+    private static final Pattern ETAG = Pattern.compile("<ETag>([^<]+)</ETag>");
+    private static final String SCHEME = "s3://";
+
+    private final URI endpoint;
+    private final String bucket;
+    private final S3Signer signer;
+    private final long partSize;
+    private final HttpClient http;
+    private final ExecutorService uploads;
+
+    public S3StorageBackend(@Value("${app.storage.s3.endpoint}") String endpoint,
+                            @Value("${app.storage.s3.region:us-east-1}") String region,
+                            @Value("${app.storage.s3.bucket}") String bucket,
+                            @Value("${app.storage.s3.access-key}") String accessKey,
+                            @Value("${app.storage.s3.secret-key}") String secretKey,
+                            @Value("${app.storage.s3.part-size:16777216}") long partSize,
+                            @Value("${app.storage.s3.upload-threads:4}") int uploadThreads) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.signer = new S3Signer(accessKey, secretKey, region);
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.uploads = Executors.newFixedThreadPool(Math.max(1, uploadThreads),
+                Thread.ofPlatform().name("s3-upload-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploads.shutdownNow();
+    }
+
+    @Override
+    public String putFile(Path file, String key) throws IOException {
+        long size = Files.size(file);
+        if (size <= partSize) {
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofFile(file);
+            expect(send("PUT", uri(bucket, key, null), Map.of(), body), 200);
+        } else {
+            multipart(key, size, (uploadId, part, start, end) -> {
+                HttpResponse<byte[]> response = send("PUT", uri(bucket, key, partQuery(part, uploadId)), Map.of(),
+                        HttpRequest.BodyPublishers.fromPublisher(
+                                HttpRequest.BodyPublishers.ofInputStream(() -> openFile(file, start, end)),
+                                end - start + 1));
+                expect(response, 200);
+                return response.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("No ETag for part " + part + " of " + key));
+            });
+        }
+        Files.delete(file);
+        return SCHEME + bucket + "/" + key;
+    }
+
+    @Override
+    public String copy(String location, String key) throws IOException {
+        String[] source = parse(location);
+        StoredObject existing = stat(location);
+        if (existing == null) {
+            throw new IOException("Object not found: " + location);
+        }
+        String copySource = "/" + source[0] + "/" + S3Signer.encode(source[1], true);
+        if (existing.size() <= MAX_COPY_SIZE) {
+            checkBody(expect(send("PUT", uri(bucket, key, null), Map.of("x-amz-copy-source", copySource),
+                    HttpRequest.BodyPublishers.noBody()), 200));
+        } else {
+            multipart(key, existing.size(), (uploadId, part, start, end) -> {
+                HttpResponse<byte[]> response = checkBody(expect(send("PUT", uri(bucket, key, partQuery(part, uploadId)),
+                        Map.of("x-amz-copy-source", copySource, "x-amz-copy-source-range", "bytes=" + start + "-" + end),
+                        HttpRequest.BodyPublishers.noBody()), 200));
+                return match(ETAG, response, "ETag");
+            });
+        }
+        return SCHEME + bucket + "/" + key;
+    }
+
+    @Override
+    public StoredObject stat(String location) throws IOException {
+        String[] parsed = parse(location);
+        HttpResponse<byte[]> response = send("HEAD", uri(parsed[0], parsed[1], null), Map.of(),
+                HttpRequest.BodyPublishers.noBody());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        expect(response, 200);
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(v -> ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new S3Object(this, parsed[0], parsed[1], size, lastModified);
+    }
+
+    /**
+     * S3 answers 204 whether or not the key existed.
+     */
+    @Override
+    public void delete(String location) throws IOException {
+        String[] parsed = parse(location);
+        expect(send("DELETE", uri(parsed[0], parsed[1], null), Map.of(), HttpRequest.BodyPublishers.noBody()), 204);
+    }
+
+    /**
+     * A stored S3 object; bytes are fetched on demand.
+     */
+    record S3Object(S3StorageBackend backend, String bucket, String key, long size, long lastModified)
+            implements StoredObject {
+
+        @Override
+        public String name() {
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public Path localFile() {
+            return null;
+        }
+
+        @Override
+        public InputStream openRange(long start, long end) throws IOException {
+            return backend.get(bucket, key, start, end);
+        }
+    }
+
+    InputStream get(String bucket, String key, long start, long end) throws IOException {
+        URI uri = uri(bucket, key, null);
+        Map<String, String> headers = Map.of("Range", "bytes=" + start + "-" + end);
+        HttpRequest.Builder builder = request("GET", uri, headers, HttpRequest.BodyPublishers.noBody());
+        HttpResponse<InputStream> response;
+        try {
+            response = http.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted reading " + key);
+        }
+        InputStream body = response.body();
+        if (response.statusCode() == 206) {
+            return body;
+        }
+        if (response.statusCode() == 200) {
+            // Server ignored the range: skip to it and stop at its end
+            body.skipNBytes(start);
+            return new BoundedInputStream(body, end - start + 1);
+        }
+        try (body) {
+            throw new IOException("GET " + key + " failed with HTTP " + response.statusCode() + ": "
+                    + new String(body.readNBytes(512), StandardCharsets.UTF_8));
+        }
+    }
+
+    @FunctionalInterface
+    private interface PartUpload {
+        /**
+         * Sends bytes {@code start}..{@code end} as part {@code part} and returns its ETag.
+         */
+        String upload(String uploadId, int part, long start, long end) throws IOException;
+    }
+
+    private void multipart(String key, long size, PartUpload parts) throws IOException {
+        HttpResponse<byte[]> created = expect(send("POST", uri(bucket, key, "uploads"), Map.of(),
+                HttpRequest.BodyPublishers.noBody()), 200);
+        String uploadId = match(UPLOAD_ID, created, "UploadId");
+        List<Future<String>> etags = new ArrayList<>();
+        try {
+            int part = 1;
+            for (long start = 0; start < size; start += partSize, part++) {
+                long from = start;
+                long to = Math.min(size, start + partSize) - 1;
+                int number = part;
+                etags.add(uploads.submit(() -> parts.upload(uploadId, number, from, to)));
+            }
+            StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(await(etags.get(i))).append("</ETag></Part>");
+            }
+            xml.append("</CompleteMultipartUpload>");
+            // S3 may answer 200 and still report an error in the body
+            checkBody(expect(send("POST", uri(bucket, key, "uploadId=" + S3Signer.encode(uploadId, false)), Map.of(),
+                    HttpRequest.BodyPublishers.ofString(xml.toString())), 200));
+        } catch (IOException | RuntimeException e) {
+            etags.forEach(f -> f.cancel(true));
+            try {
+                send("DELETE", uri(bucket, key, "uploadId=" + S3Signer.encode(uploadId, false)), Map.of(),
+                        HttpRequest.BodyPublishers.noBody());
+            } catch (IOException abort) {
+                e.addSuppressed(abort);
+            }
+            throw e;
+        }
+    }
+
+    private static String await(Future<String> etag) throws IOException {
+        try {
+            return etag.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during multipart upload");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static InputStream openFile(Path file, long start, long end) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channel.position(start);
+            return new BoundedInputStream(Channels.newInputStream(channel), end - start + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpResponse<byte[]> send(String method, URI uri, Map<String, String> headers,
+                                      HttpRequest.BodyPublisher body) throws IOException {
+        try {
+            return http.send(request(method, uri, headers, body).build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(method + " " + uri + " interrupted");
+        }
+    }
+
+    private HttpRequest.Builder request(String method, URI uri, Map<String, String> headers,
+                                        HttpRequest.BodyPublisher body) {
+        Map<String, String> all = new LinkedHashMap<>(headers);
+        all.putAll(signer.sign(method, uri, headers, S3Signer.UNSIGNED_PAYLOAD, Instant.now()));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .method(method, body);
+        all.forEach(builder::header);
+        return builder;
+    }
+
+    private URI uri(String bucket, String key, String query) {
+        return URI.create(endpoint + "/" + bucket + "/" + S3Signer.encode(key, true)
+                + (query == null ? "" : "?" + query));
+    }
+
+    private static String partQuery(int part, String uploadId) {
+        return "partNumber=" + part + "&uploadId=" + S3Signer.encode(uploadId, false);
+    }
+
+    /**
+     * {@code [bucket, key]} of an {@code s3://} location.
+     */
+    private static String[] parse(String location) {
+        int slash = location.indexOf('/', SCHEME.length());
+        if (!location.startsWith(SCHEME) || slash < 0) {
+            throw new IllegalArgumentException("Not an S3 location: " + location);
+        }
+        return new String[]{location.substring(SCHEME.length(), slash), location.substring(slash + 1)};
+    }
+
+    private static HttpResponse<byte[]> expect(HttpResponse<byte[]> response, int status) throws IOException {
+        if (response.statusCode() != status) {
+            throw new IOException(response.request().method() + " " + response.uri() + " failed with HTTP "
+                    + response.statusCode() + ": " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        return response;
+    }
+
+    private static HttpResponse<byte[]> checkBody(HttpResponse<byte[]> response) throws IOException {
+        String body = new String(response.body(), StandardCharsets.UTF_8);
+        if (body.contains("<Error>")) {
+            throw new IOException(response.request().method() + " " + response.uri() + " failed: " + body);
+        }
+        return response;
+    }
+
+    private static String match(Pattern pattern, HttpResponse<byte[]> response, String what) throws IOException {
+        Matcher m = pattern.matcher(new String(response.body(), StandardCharsets.UTF_8));
+        if (!m.find()) {
+            throw new IOException("No " + what + " in response from " + response.uri());
+        }
+        return m.group(1);
+    }
+}
@@ -0,0 +1,38 @@
+package com.Charon.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Where finished outputs live. Keys are relative paths chosen by {@link StorageService}; each
+ * backend turns a key into a location string that is stored on the job record and handed back
+ * for later reads, so records written by one backend stay readable while it is configured.
+ */
+public interface StorageBackend {
+
+    /**
+     * Takes ownership of a finished file in the work directory and stores it under {@code key}.
+     * The file is gone from its original path afterwards.
+     *
+     * @return the location of the stored object
+     */
+    String putFile(Path file, String key) throws IOException;
+
+    /**
+     * Stores an existing object again under {@code key}, without moving bytes through this
+     * process where the backend allows it.
+     *
+     * @return the location of the new object
+     */
+    String copy(String location, String key) throws IOException;
+
+    /**
+     * The object at {@code location}, or {@code null} if it does not exist.
+     */
+    StoredObject stat(String location) throws IOException;
+
+    /**
+     * Removes the object at {@code location}; a missing object is not an error.
+     */
+    void delete(String location) throws IOException;
+}
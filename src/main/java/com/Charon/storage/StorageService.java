@@ -1,40 +1,76 @@
 package com.Charon.storage;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
+/**
+ * Entry point to object storage; the {@link StorageBackend} is chosen by {@code app.storage.type}
+ * ({@code local} or {@code s3}).
+ * <p>
+ * Objects are keyed {@code <h0>/<h1>/<filename>}, where {@code h0}/{@code h1} are the first two
+ * bytes of the SHA-256 of the job id in hex, so no directory or key prefix grows with the number
+ * of jobs per day.
+ */
 @Service
 public class StorageService {
 
-    @Value("${app.storage.type:local}")
-    private String storageType; // local|minio (预留) | reserved for future use
+    private final StorageBackend backend;
 
-    @Value("${app.storage.local.base-dir:${user.home}/video-store}")
-    private String baseDir;
+    public StorageService(StorageBackend backend) {
+        this.backend = backend;
+    }
 
-    public String store(InputStream input, String filename) throws IOException {
-        if ("local".equalsIgnoreCase(storageType)) {
-            Path dir = buildTodayDir();
-            Files.createDirectories(dir);
-            Path target = dir.resolve(filename);
-            Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
-            return target.toString();
-        }
-        throw new UnsupportedOperationException("Unsupported storage type: " + storageType);
+    /**
+     * Moves a finished output of {@code jobId} from the work directory into storage.
+     *
+     * @return the location to record
+     */
+    public String promote(Path file, String jobId, String filename) throws IOException {
+        return backend.putFile(file, key(jobId, filename));
+    }
+
+    /**
+     * Stores an already stored object under a new job's name without rewriting it where possible.
+     */
+    public String link(String location, String jobId, String filename) throws IOException {
+        return backend.copy(location, key(jobId, filename));
+    }
+
+    /**
+     * The object at a recorded location, or {@code null} if it no longer exists.
+     */
+    public StoredObject stat(String location) throws IOException {
+        return backend.stat(location);
     }
 
-    public Path loadAsPath(String path) {
-        return Paths.get(path);
+    /**
+     * Removes a stored object, e.g. one promoted by a run that then lost its job to another node.
+     */
+    public void delete(String location) throws IOException {
+        backend.delete(location);
     }
 
-    private Path buildTodayDir() {
-        String day = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        return Paths.get(baseDir, day);
+    public boolean exists(String location) {
+        try {
+            return location != null && backend.stat(location) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static String key(String jobId, String filename) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(jobId.getBytes(StandardCharsets.UTF_8));
+            HexFormat hex = HexFormat.of();
+            return hex.toHexDigits(digest[0]) + "/" + hex.toHexDigits(digest[1]) + "/" + filename;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
@@ -0,0 +1,31 @@
+package com.Charon.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Metadata of a stored object and access to its bytes, whichever backend holds it.
+ */
+public interface StoredObject {
+
+    /**
+     * Last segment of the object's key, used as the download filename.
+     */
+    String name();
+
+    long size();
+
+    long lastModified();
+
+    /**
+     * The file holding the object when it is on the local file system, otherwise {@code null};
+     * callers use it for zero-copy transfers.
+     */
+    Path localFile();
+
+    /**
+     * Streams bytes {@code start} to {@code end}, both inclusive.
+     */
+    InputStream openRange(long start, long end) throws IOException;
+}
@@ -0,0 +1,129 @@
+package com.Charon.web;
+
+import com.Charon.service.JobRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes {@link JobRegistry} progress to Server-Sent Event watchers. Registry changes only mark
+ * the job dirty; a single ticker thread sends the latest snapshot every 250 ms, so job workers
+ * never block on a slow client and bursts of updates collapse into one event. Streams end after
+ * the {@code DONE} or {@code FAILED} event, and idle streams get a comment every 15 s so dead
+ * connections are noticed.
+ */
+@Component
+@Slf4j
+public class JobProgressBroadcaster {
+
+    private final JobRegistry jobRegistry;
+    private final long timeoutMillis;
+    private final Map<String, List<SseEmitter>> watchers = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-progress");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public JobProgressBroadcaster(JobRegistry jobRegistry, @Value("${app.sse.timeout:PT30M}") Duration timeout) {
+        this.jobRegistry = jobRegistry;
+        this.timeoutMillis = timeout.toMillis();
+        jobRegistry.addListener(jobId -> {
+            if (watchers.containsKey(jobId)) {
+                dirty.add(jobId);
+            }
+        });
+        ticker.scheduleWithFixedDelay(this::flush, 250, 250, TimeUnit.MILLISECONDS);
+        ticker.scheduleWithFixedDelay(this::heartbeat, 15, 15, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        watchers.values().forEach(list -> list.forEach(SseEmitter::complete));
+    }
+
+    /**
+     * Opens a stream for a running job; the current state is sent on the next tick.
+     */
+    public SseEmitter watch(String jobId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        watchers.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>()).add(emitter);
+        Runnable drop = () -> remove(jobId, emitter);
+        emitter.onCompletion(drop);
+        emitter.onTimeout(drop);
+        emitter.onError(e -> drop.run());
+        dirty.add(jobId);
+        return emitter;
+    }
+
+    public static SseEmitter.SseEventBuilder event(Map<String, Object> snapshot) {
+        return SseEmitter.event().name("progress").data(snapshot, MediaType.APPLICATION_JSON);
+    }
+
+    private void flush() {
+        try {
+            for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+                String jobId = it.next();
+                it.remove();
+                List<SseEmitter> emitters = watchers.get(jobId);
+                if (emitters == null) {
+                    continue;
+                }
+                JobRegistry.JobState state = jobRegistry.snapshot(jobId);
+                Map<String, Object> snapshot = Map.of(
+                        "jobId", jobId, "progress", state.progress(), "stage", state.stage());
+                boolean terminal = state.terminal();
+                for (SseEmitter emitter : emitters) {
+                    try {
+                        emitter.send(event(snapshot));
+                        if (terminal) {
+                            emitter.complete();
+                        }
+                    } catch (Exception e) {
+                        remove(jobId, emitter);
+                    }
+                }
+                if (terminal) {
+                    watchers.remove(jobId);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Progress broadcast failed", e);
+        }
+    }
+
+    private void heartbeat() {
+        watchers.forEach((jobId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } catch (Exception e) {
+                    remove(jobId, emitter);
+                }
+            }
+        });
+    }
+
+    private void remove(String jobId, SseEmitter emitter) {
+        watchers.computeIfPresent(jobId, (k, list) -> {
+            list.remove(emitter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+}
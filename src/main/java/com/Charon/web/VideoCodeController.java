@@ -4,21 +4,31 @@ import com.Charon.config.AppDefaultProperties;
 import com.Charon.entity.VideoRecord;
 import com.Charon.repository.VideoRecordRepository;
 import com.Charon.service.VideoCodeService;
+import com.Charon.service.VideoRecordCache;
+import com.Charon.service.scheduler.JobScheduler;
 import com.Charon.storage.StorageService;
+import com.Charon.storage.StoredObject;
+import com.Charon.web.download.FileDownloadResponder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.Charon.service.command.SubmitDecodeCommand;
 import com.Charon.service.command.SubmitJobCommand;
 
-import java.nio.file.Path;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -26,18 +36,32 @@ import java.util.Map;
 @Validated
 public class VideoCodeController {
 
+    /** Upper bound of job ids per batch call. */
+    static final int MAX_BATCH = 500;
+    /** Secrets of a raw-body encode, kept out of the query string. */
+    static final String PASSPHRASE_HEADER = "X-Passphrase";
+    static final String FRAME_PASSWORD_HEADER = "X-Private-Key-Frame-Password";
+
     private final VideoCodeService service;
     private final VideoRecordRepository repo;
+    private final VideoRecordCache records;
     private final StorageService storageService;
     private final AppDefaultProperties appDefaults;
     private final com.Charon.service.JobRegistry jobRegistry;
+    private final FileDownloadResponder downloadResponder;
+    private final JobProgressBroadcaster progressBroadcaster;
+    private final JobScheduler jobScheduler;
 
-    public VideoCodeController(VideoCodeService service, VideoRecordRepository repo, StorageService storageService, AppDefaultProperties appDefaults, com.Charon.service.JobRegistry jobRegistry) {
+    public VideoCodeController(VideoCodeService service, VideoRecordRepository repo, VideoRecordCache records, StorageService storageService, AppDefaultProperties appDefaults, com.Charon.service.JobRegistry jobRegistry, FileDownloadResponder downloadResponder, JobProgressBroadcaster progressBroadcaster, JobScheduler jobScheduler) {
         this.service = service;
         this.repo = repo;
+        this.records = records;
         this.storageService = storageService;
         this.appDefaults = appDefaults;
         this.jobRegistry = jobRegistry;
+        this.downloadResponder = downloadResponder;
+        this.progressBroadcaster = progressBroadcaster;
+        this.jobScheduler = jobScheduler;
     }
 
     public record EncodeRequest(
@@ -55,86 +79,193 @@ public class VideoCodeController {
             @NotBlank String privateKeyFramePassword, // 私钥帧的保护密码（解密私钥） | Password protecting the private key frame (decrypts private key)
             @Min(0) Integer obfuscationSeed, // 混淆种子（若启用混淆） | Obfuscation seed (if enabled)
             @RequestParam(required = false) MultipartFile obfuscationFile, // 混淆验证文件（可选） | Obfuscation verification file (optional)
-            @Pattern(regexp = "(?i)CPU|GPU|CLOUD") String processingMode // 处理模式：CPU, GPU, CLOUD | Processing mode: CPU, GPU, CLOUD
+            @Pattern(regexp = "(?i)CPU|GPU|CLOUD|JAVA") String processingMode, // 处理模式：CPU, GPU, CLOUD, JAVA | Processing mode: CPU, GPU, CLOUD, JAVA
+            Boolean streamFrames, // 以rawvideo管道送入ffmpeg而非写PNG | Pipe raw frames into ffmpeg instead of writing PNGs
+            Boolean reuseCrypto, // 允许复用相同输入、参数与口令的已有结果 | Allow reusing an earlier result with the same input, parameters and secrets
+            @Pattern(regexp = "(?i)INTERACTIVE|BATCH") String priority // 调度优先级 | Scheduling priority class
     ) {}
 
     @PostMapping(value = "/encode", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Map<String, Object>> encode(@ModelAttribute @Validated EncodeRequest req) throws Exception {
+        Map<String, Object> result = service.submit(toCommand(req));
+        return ResponseEntity.ok(result);
+    }
+
+    public record StreamEncodeRequest(
+            String fileName, // 原始文件名（请求体即文件内容） | Original file name (the request body is the file)
+            @Min(1) @Max(8) Integer gridN,
+            @Min(1) @Max(120) Integer fps,
+            @Pattern(regexp = "(?i)1080p|720p|4k|2160p|custom") String resolution,
+            @Min(64) @Max(4096) Integer width,
+            @Min(64) @Max(4096) Integer height,
+            Boolean enableFec,
+            @Min(0) @Max(100) Integer fecParityPercent,
+            @NotBlank String publicKeyHint,
+            @Min(0) Integer privateKeyFrameIndex,
+            @Min(0) Integer obfuscationSeed,
+            @Pattern(regexp = "(?i)CPU|GPU|CLOUD|JAVA") String processingMode,
+            Boolean streamFrames,
+            Boolean reuseCrypto,
+            @Pattern(regexp = "(?i)INTERACTIVE|BATCH") String priority
+    ) {}
+
+    /**
+     * Raw-body upload: parameters travel in the query string and the body is streamed into the
+     * job directory as it arrives, skipping the multipart spool. No obfuscation file in this form.
+     * The passphrase and the private-key frame password come in headers so they stay out of
+     * access logs, proxies and browser history, which record the URL.
+     */
+    @PostMapping(value = "/encode", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> encodeStream(@ModelAttribute @Validated StreamEncodeRequest req,
+                                                            @RequestHeader(PASSPHRASE_HEADER) @NotBlank String passphrase,
+                                                            @RequestHeader(FRAME_PASSWORD_HEADER) @NotBlank String privateKeyFramePassword,
+                                                            HttpServletRequest request) throws Exception {
+        EncodeRequest params = new EncodeRequest(null, req.gridN(), req.fps(), req.resolution(), req.width(), req.height(),
+                req.enableFec(), req.fecParityPercent(), passphrase, req.publicKeyHint(), req.privateKeyFrameIndex(),
+                privateKeyFramePassword, req.obfuscationSeed(), null, req.processingMode(), req.streamFrames(),
+                req.reuseCrypto(), req.priority());
+        String fileName = req.fileName() == null || req.fileName().isBlank() ? "input.zip" : req.fileName();
+        Map<String, Object> result = service.submitStream(request.getInputStream(), request.getContentLengthLong(),
+                fileName, toCommand(params));
+        return ResponseEntity.ok(result);
+    }
+
+    private SubmitJobCommand toCommand(EncodeRequest req) {
         int gridN = req.gridN() == null ? appDefaults.getGridN() : req.gridN();
         int fps = req.fps() == null ? appDefaults.getFps() : req.fps();
         String resolution = req.resolution() == null ? appDefaults.getResolution() : req.resolution();
         boolean enableFec = req.enableFec() == null ? appDefaults.getEnableFec() : req.enableFec();
         Integer fecParityPercent = req.fecParityPercent() == null ? appDefaults.getFecParityPercent() : req.fecParityPercent();
         String processingMode = req.processingMode() == null ? "CPU" : req.processingMode().toUpperCase();
+        boolean streamFrames = req.streamFrames() == null ? appDefaults.getStreamFrames() : req.streamFrames();
 
-        SubmitJobCommand cmd = new SubmitJobCommand(
+        return new SubmitJobCommand(
                 req.file(), gridN, fps, resolution, req.width(), req.height(),
                 enableFec, fecParityPercent, req.passphrase(), req.publicKeyHint(),
                 req.privateKeyFrameIndex(), req.privateKeyFramePassword(), req.obfuscationSeed(), req.obfuscationFile(),
-                processingMode
+                processingMode, streamFrames, Boolean.TRUE.equals(req.reuseCrypto()),
+                req.priority() == null ? null : req.priority().toUpperCase()
         );
+    }
 
-        Map<String, Object> result = service.submit(cmd);
+    public record DecodeRequest(
+            @NotNull MultipartFile file, // 待解码的二维码视频 | QR video to decode
+            @NotBlank String privateKeyFramePassword // 私钥帧的保护密码 | Password protecting the private key frame
+    ) {}
+
+    @PostMapping(value = "/decode", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> decode(@ModelAttribute @Validated DecodeRequest req) throws Exception {
+        Map<String, Object> result = service.submitDecode(new SubmitDecodeCommand(req.file(), req.privateKeyFramePassword()));
         return ResponseEntity.ok(result);
     }
 
     @GetMapping("/download/{id}")
-    public ResponseEntity<Resource> downloadById(@PathVariable("id") Long id,
-                                                 @RequestParam(defaultValue = "video") String type,
-                                                 @RequestHeader(value = "Range", required = false) String range) {
-        VideoRecord vr = repo.selectById(id);
-        if (vr == null) {
-            return ResponseEntity.notFound().build();
-        }
-        String path = "manifest".equalsIgnoreCase(type) ? vr.getManifestPath() : vr.getStoragePath();
-        Path p = storageService.loadAsPath(path);
-        Resource res = new FileSystemResource(p);
-        String filename = p.getFileName().toString();
-        return buildDownloadResponse(res, p, filename, "manifest".equalsIgnoreCase(type), range);
+    public void downloadById(@PathVariable("id") Long id,
+                             @RequestParam(defaultValue = "video") String type,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        sendDownload(records.findById(id).orElse(null), type, request, response);
     }
 
     @GetMapping("/download/by-job/{jobId}")
-    public ResponseEntity<Resource> downloadByJobId(@PathVariable("jobId") String jobId,
-                                                    @RequestParam(defaultValue = "video") String type,
-                                                    @RequestHeader(value = "Range", required = false) String range) {
-        VideoRecord vr = repo.findByJobId(jobId).orElse(null);
-        if (vr == null) {
-            return ResponseEntity.notFound().build();
-        }
-        String path = "manifest".equalsIgnoreCase(type) ? vr.getManifestPath() : vr.getStoragePath();
-        Path p = storageService.loadAsPath(path);
-        Resource res = new FileSystemResource(p);
-        String filename = p.getFileName().toString();
-        return buildDownloadResponse(res, p, filename, "manifest".equalsIgnoreCase(type), range);
+    public void downloadByJobId(@PathVariable("jobId") String jobId,
+                                @RequestParam(defaultValue = "video") String type,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        sendDownload(records.findByJobId(jobId).orElse(null), type, request, response);
     }
 
     @GetMapping("/status/{jobId}")
     public ResponseEntity<Map<String, Object>> status(@PathVariable("jobId") String jobId) {
-        VideoRecord vr = repo.findByJobId(jobId).orElse(null);
+        VideoRecord vr = records.findByJobId(jobId).orElse(null);
         if (vr == null) {
             return ResponseEntity.notFound().build();
         }
-        Map<String, Object> body = new java.util.HashMap<>();
-        body.put("jobId", jobId);
-        body.put("status", vr.getStatus().name());
-        body.put("id", vr.getId());
-        body.put("error", vr.getErrorMessage());
-        body.put("progress", jobRegistry.getProgress(jobId));
-        body.put("stage", jobRegistry.getStage(jobId));
+        return ResponseEntity.ok(statusBody(vr));
+    }
+
+    public record BatchRequest(
+            @NotEmpty @Size(max = MAX_BATCH) List<@NotBlank String> jobIds // 任务ID列表（最多 MAX_BATCH 个） | Job IDs (at most MAX_BATCH)
+    ) {}
+
+    /**
+     * Status of many jobs in one call: records come from one {@code IN} query (minus cache hits),
+     * progress from the in-memory registry. Unknown ids are answered with status {@code NOT_FOUND}.
+     */
+    @PostMapping("/status:batch")
+    public ResponseEntity<List<Map<String, Object>>> statusBatch(@RequestBody @Valid BatchRequest req) {
+        Map<String, VideoRecord> found = records.findByJobIds(new LinkedHashSet<>(req.jobIds()));
+        List<Map<String, Object>> body = new ArrayList<>(req.jobIds().size());
+        for (String jobId : req.jobIds()) {
+            VideoRecord vr = found.get(jobId);
+            body.add(vr != null ? statusBody(vr) : notFound(jobId));
+        }
         return ResponseEntity.ok(body);
     }
 
+    /**
+     * Output metadata (storage paths, video size, frame count) of many jobs; only COMPLETED jobs
+     * carry it, others report their status.
+     */
+    @PostMapping("/download:batch")
+    public ResponseEntity<List<Map<String, Object>>> downloadBatch(@RequestBody @Valid BatchRequest req) {
+        Map<String, VideoRecord> found = records.findByJobIds(new LinkedHashSet<>(req.jobIds()));
+        List<Map<String, Object>> body = new ArrayList<>(req.jobIds().size());
+        for (String jobId : req.jobIds()) {
+            VideoRecord vr = found.get(jobId);
+            if (vr == null) {
+                body.add(notFound(jobId));
+                continue;
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put("jobId", jobId);
+            item.put("id", vr.getId());
+            item.put("status", vr.getStatus().name());
+            if (vr.getStatus() == VideoRecord.ProcessStatus.COMPLETED) {
+                item.put("storagePath", vr.getStoragePath());
+                item.put("manifestPath", vr.getManifestPath());
+                item.put("outputVideoSize", vr.getOutputVideoSize());
+                item.put("outputFrameCount", vr.getOutputFrameCount());
+            }
+            body.add(item);
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Progress as Server-Sent Events ({@code event: progress}, data {@code {jobId, progress, stage}})
+     * until the job is DONE or FAILED; finished jobs get their final state and the stream closes.
+     */
+    @GetMapping(value = "/status/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> statusStream(@PathVariable("jobId") String jobId) throws IOException {
+        VideoRecord vr = records.findByJobId(jobId).orElse(null);
+        if (vr == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (vr.getStatus() == VideoRecord.ProcessStatus.PROCESSING) {
+            return ResponseEntity.ok(progressBroadcaster.watch(jobId));
+        }
+        boolean done = vr.getStatus() == VideoRecord.ProcessStatus.COMPLETED;
+        SseEmitter emitter = new SseEmitter();
+        emitter.send(JobProgressBroadcaster.event(Map.of("jobId", jobId,
+                "progress", done ? 100 : jobRegistry.getProgress(jobId), "stage", done ? "DONE" : "FAILED")));
+        emitter.complete();
+        return ResponseEntity.ok(emitter);
+    }
+
     @PostMapping("/cancel/{jobId}")
     public ResponseEntity<Map<String, Object>> cancel(@PathVariable("jobId") String jobId) {
         VideoRecord vr = repo.findByJobId(jobId).orElse(null);
         if (vr == null) {
             return ResponseEntity.notFound().build();
         }
-        boolean ok = jobRegistry.cancel(jobId);
+        boolean ok = vr.getStatus() == VideoRecord.ProcessStatus.PROCESSING;
         if (ok) {
-            vr.setStatus(VideoRecord.ProcessStatus.FAILED);
-            vr.setErrorMessage("Cancelled");
+            // Marked first, so wherever the job is (an upstream queue, this node or another one)
+            // it is skipped or its result discarded
+            vr.fail("Cancelled");
             repo.updateById(vr);
+            records.put(vr);
+            jobScheduler.cancel(jobId);
+            jobRegistry.cancel(jobId);
         }
         Map<String, Object> body = new java.util.HashMap<>();
         body.put("jobId", jobId);
@@ -142,47 +273,35 @@ public class VideoCodeController {
         return ResponseEntity.ok(body);
     }
 
-    private ResponseEntity<Resource> buildDownloadResponse(Resource res, Path p, String filename, boolean isManifest, String rangeHeader) {
-        try {
-            long fileSize = java.nio.file.Files.size(p);
-            MediaType mediaType = isManifest ? MediaType.APPLICATION_JSON : MediaType.APPLICATION_OCTET_STREAM;
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                String r = rangeHeader.substring(6);
-                String[] parts = r.split("-");
-                long start = Long.parseLong(parts[0]);
-                long end = parts.length > 1 && !parts[1].isEmpty() ? Long.parseLong(parts[1]) : (fileSize - 1);
-                if (start < 0 || end >= fileSize || start > end) {
-                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
-                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize)
-                            .build();
-                }
-                long length = end - start + 1;
-                byte[] data;
-                try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(p.toFile(), "r")) {
-                    raf.seek(start);
-                    data = new byte[(int) Math.min(length, 5 * 1024 * 1024)];
-                    int read = raf.read(data);
-                    if (read < data.length) {
-                        data = java.util.Arrays.copyOf(data, read);
-                    }
-                }
-                org.springframework.core.io.ByteArrayResource part = new org.springframework.core.io.ByteArrayResource(data);
-                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                        .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + data.length - 1) + "/" + fileSize)
-                        .contentType(mediaType)
-                        .contentLength(data.length)
-                        .body(part);
-            }
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename + "; filename*=UTF-8''" + java.net.URLEncoder.encode(filename, java.nio.charset.StandardCharsets.UTF_8))
-                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                .contentType(mediaType)
-                .contentLength(fileSize)
-                .body(res);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    private Map<String, Object> statusBody(VideoRecord vr) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("jobId", vr.getJobId());
+        body.put("jobType", vr.getJobType() != null ? vr.getJobType().name() : VideoRecord.JobType.ENCODE.name());
+        body.put("status", vr.getStatus().name());
+        body.put("id", vr.getId());
+        body.put("error", vr.getErrorMessage());
+        com.Charon.service.JobRegistry.JobState state = jobRegistry.snapshot(vr.getJobId());
+        body.put("progress", state.progress());
+        body.put("stage", state.stage());
+        return body;
+    }
+
+    private static Map<String, Object> notFound(String jobId) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("jobId", jobId);
+        body.put("status", "NOT_FOUND");
+        return body;
+    }
+
+    private void sendDownload(VideoRecord vr, String type, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean isManifest = "manifest".equalsIgnoreCase(type);
+        String path = vr == null ? null : isManifest ? vr.getManifestPath() : vr.getStoragePath();
+        if (path == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
         }
+        StoredObject object = storageService.stat(path);
+        MediaType mediaType = isManifest ? MediaType.APPLICATION_JSON : MediaType.APPLICATION_OCTET_STREAM;
+        downloadResponder.send(request, response, object, object == null ? null : object.name(), mediaType);
     }
 }
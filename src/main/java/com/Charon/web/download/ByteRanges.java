@@ -0,0 +1,153 @@
+package com.Charon.web.download;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * RFC 7233 byte-range parsing: {@code first-last}, open-ended {@code first-} and suffix
+ * {@code -length} specs, comma separated. Follows the RFC's split between a header that is
+ * ignored (malformed, unknown unit, too many specs: serve the whole file) and one that is
+ * unsatisfiable (well formed but no spec overlaps the file: 416).
+ */
+public final class ByteRanges {
+
+    /**
+     * More specs than this is not a real client; the header is ignored rather than served.
+     */
+    public static final int MAX_RANGES = 64;
+
+    private static final String UNIT = "bytes=";
+
+    /**
+     * Inclusive byte range within a file.
+     */
+    public record Range(long start, long end) {
+        public long length() {
+            return end - start + 1;
+        }
+
+        public String contentRange(long fileSize) {
+            return "bytes " + start + "-" + end + "/" + fileSize;
+        }
+    }
+
+    private ByteRanges() {
+    }
+
+    /**
+     * Parses a {@code Range} header against a file of {@code fileSize} bytes.
+     *
+     * @return {@code null} when the header is absent or must be ignored, an empty list when it is
+     * unsatisfiable, otherwise the ranges to send; several ranges come back sorted with
+     * overlapping or adjacent ones coalesced
+     */
+    public static List<Range> parse(String header, long fileSize) {
+        if (header == null || !header.regionMatches(true, 0, UNIT, 0, UNIT.length())) {
+            return null;
+        }
+        String[] specs = header.substring(UNIT.length()).split(",", MAX_RANGES + 1);
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<Range> ranges = new ArrayList<>(specs.length);
+        boolean any = false;
+        for (String raw : specs) {
+            String spec = raw.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            any = true;
+            try {
+                if (dash == 0) {
+                    long suffix = digits(spec.substring(1));
+                    if (suffix > 0 && fileSize > 0) {
+                        ranges.add(new Range(Math.max(0, fileSize - suffix), fileSize - 1));
+                    }
+                    continue;
+                }
+                long first = digits(spec.substring(0, dash));
+                String lastPart = spec.substring(dash + 1);
+                long last = lastPart.isEmpty() ? Long.MAX_VALUE : digits(lastPart);
+                if (last < first) {
+                    return null;
+                }
+                if (first < fileSize) {
+                    ranges.add(new Range(first, Math.min(last, fileSize - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        return ranges.size() > 1 ? coalesce(ranges) : ranges;
+    }
+
+    /**
+     * Evaluates {@code If-Range}: an absent header always matches; an entity tag must match
+     * strongly (weak tags never do); an HTTP-date must equal the last modification time to the
+     * second. Anything else means the representation changed and the full file is sent.
+     */
+    public static boolean ifRangeMatches(String ifRange, String etag, long lastModifiedMillis) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.startsWith("\"") && value.equals(etag);
+        }
+        try {
+            long since = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return since == lastModifiedMillis / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Strong validator derived from size and modification time; stored results are written once
+     * and never modified in place, so the pair identifies the content.
+     */
+    public static String etag(long fileSize, long lastModifiedMillis) {
+        return "\"" + Long.toHexString(fileSize) + "-" + Long.toHexString(lastModifiedMillis) + "\"";
+    }
+
+    private static long digits(String s) {
+        if (s.isEmpty()) {
+            throw new NumberFormatException("empty");
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(s);
+            }
+        }
+        return s.length() > 18 ? Long.MAX_VALUE : Long.parseLong(s);
+    }
+
+    private static List<Range> coalesce(List<Range> ranges) {
+        ranges.sort(Comparator.comparingLong(Range::start));
+        List<Range> merged = new ArrayList<>(ranges.size());
+        Range current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            Range next = ranges.get(i);
+            if (next.start() <= current.end() + 1) {
+                current = new Range(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
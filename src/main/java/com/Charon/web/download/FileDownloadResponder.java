@@ -0,0 +1,179 @@
+package com.Charon.web.download;
+
+import com.Charon.storage.FileObject;
+import com.Charon.storage.StoredObject;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Serves a stored object with full RFC 7233 semantics (single, suffix and multiple ranges,
+ * {@code If-Range}) without buffering content on the heap. For a local file a single region goes
+ * out through Tomcat's sendfile when the connector offers it; otherwise, and for every part of a
+ * {@code multipart/byteranges} body, bytes move with {@link FileChannel#transferTo}. Remote
+ * objects are streamed with one ranged read per region.
+ */
+@Component
+public class FileDownloadResponder {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Below this a plain channel copy is cheaper than handing the socket to the poller (Tomcat's own default).
+     */
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    public void send(HttpServletRequest request, HttpServletResponse response,
+                     Path file, String filename, MediaType mediaType) throws IOException {
+        send(request, response, FileObject.of(file), filename, mediaType);
+    }
+
+    /**
+     * Answers 404 when {@code object} is {@code null}.
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response,
+                     StoredObject object, String filename, MediaType mediaType) throws IOException {
+        if (object == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        long size = object.size();
+        long lastModified = object.lastModified();
+        String etag = ByteRanges.etag(size, lastModified);
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename
+                + "; filename*=UTF-8''" + URLEncoder.encode(filename, StandardCharsets.UTF_8));
+
+        List<ByteRanges.Range> ranges = ByteRanges.ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)
+                ? ByteRanges.parse(request.getHeader(HttpHeaders.RANGE), size)
+                : null;
+        boolean head = "HEAD".equals(request.getMethod());
+
+        if (ranges == null) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(mediaType.toString());
+            response.setContentLengthLong(size);
+            if (!head && size > 0) {
+                sendRegion(request, response, object, new ByteRanges.Range(0, size - 1));
+            }
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            response.setContentLength(0);
+        } else if (ranges.size() == 1) {
+            ByteRanges.Range range = ranges.get(0);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(size));
+            response.setContentType(mediaType.toString());
+            response.setContentLengthLong(range.length());
+            if (!head) {
+                sendRegion(request, response, object, range);
+            }
+        } else {
+            sendMultipart(response, object, mediaType, ranges, size, head);
+        }
+    }
+
+    private void sendRegion(HttpServletRequest request, HttpServletResponse response,
+                            StoredObject object, ByteRanges.Range range) throws IOException {
+        Path file = object.localFile();
+        if (file == null) {
+            copyRemote(object, range, response.getOutputStream());
+            return;
+        }
+        if (range.length() >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The connector writes the region straight from the page cache once the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, range, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private void sendMultipart(HttpServletResponse response, StoredObject object, MediaType mediaType,
+                               List<ByteRanges.Range> ranges, long size, boolean head) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long length = closing.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRanges.Range range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + mediaType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.contentRange(size) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            length += partHeaders[i].length + range.length();
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(length);
+        if (head) {
+            return;
+        }
+        ServletOutputStream out = response.getOutputStream();
+        if (object.localFile() == null) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders[i]);
+                copyRemote(object, ranges.get(i), out);
+            }
+        } else {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(object.localFile(), StandardOpenOption.READ)) {
+                for (int i = 0; i < ranges.size(); i++) {
+                    out.write(partHeaders[i]);
+                    transfer(channel, ranges.get(i), target);
+                }
+            }
+        }
+        out.write(closing);
+    }
+
+    private static void copyRemote(StoredObject object, ByteRanges.Range range, ServletOutputStream out) throws IOException {
+        try (InputStream in = object.openRange(range.start(), range.end())) {
+            long copied = in.transferTo(out);
+            if (copied != range.length()) {
+                throw new EOFException("Object ended early while serving bytes " + range.start() + "-" + range.end());
+            }
+        }
+    }
+
+    private static void transfer(FileChannel channel, ByteRanges.Range range, WritableByteChannel target) throws IOException {
+        long position = range.start();
+        long remaining = range.length();
+        while (remaining > 0) {
+            long n = channel.transferTo(position, remaining, target);
+            if (n <= 0) {
+                throw new EOFException("File shrank while serving bytes " + position + "-" + range.end());
+            }
+            position += n;
+            remaining -= n;
+        }
+    }
+}
@@ -0,0 +1 @@
+ALTER TABLE video_records ADD COLUMN jobType VARCHAR(16) DEFAULT 'ENCODE';
@@ -0,0 +1 @@
+ALTER TABLE video_records ADD COLUMN inputSha256 VARCHAR(64);
@@ -0,0 +1,26 @@
+CREATE TABLE IF NOT EXISTS job_leases (
+  jobId VARCHAR(64) NOT NULL PRIMARY KEY,
+  payload TEXT NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  nodeId VARCHAR(128),
+  leaseUntil TIMESTAMP NULL,
+  attempts INT NOT NULL DEFAULT 0,
+  inputSize BIGINT,
+  createdAt TIMESTAMP NOT NULL,
+  updatedAt TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_job_leases_status ON job_leases(status, createdAt);
+CREATE INDEX IF NOT EXISTS idx_job_leases_nodeId ON job_leases(nodeId);
+
+CREATE TABLE IF NOT EXISTS worker_nodes (
+  nodeId VARCHAR(128) NOT NULL PRIMARY KEY,
+  host VARCHAR(255),
+  slots INT,
+  running INT,
+  queued INT,
+  cpus INT,
+  freeDiskBytes BIGINT,
+  startedAt TIMESTAMP,
+  heartbeatAt TIMESTAMP
+);
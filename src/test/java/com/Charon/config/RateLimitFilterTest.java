@@ -3,13 +3,19 @@ package com.Charon.config;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
@@ -28,7 +34,12 @@ class RateLimitFilterTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        rateLimitFilter = new RateLimitFilter();
+        rateLimitFilter = new RateLimitFilter(new RateLimitProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
     @Test
@@ -61,4 +72,63 @@ class RateLimitFilterTest {
         verify(response).setStatus(429);
         assertTrue(stringWriter.toString().contains("RATE_LIMIT"));
     }
+
+    @Test
+    void shouldSendRetryAfterAndRefill() throws Exception {
+        AtomicLong now = new AtomicLong(1_000_000);
+        RateLimitProperties props = new RateLimitProperties();
+        props.setCapacity(1);
+        props.setRefillPerMinute(6);
+        RateLimitFilter filter = new RateLimitFilter(props, now::get);
+        when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+        filter.doFilterInternal(request, response, filterChain);
+        filter.doFilterInternal(request, response, filterChain);
+        verify(response).setHeader("Retry-After", "10");
+
+        now.addAndGet(10_000);
+        filter.doFilterInternal(request, response, filterChain);
+        verify(filterChain, times(2)).doFilter(request, response);
+    }
+
+    @Test
+    void shouldKeyByUserAndApplyRoleLimit() throws Exception {
+        RateLimitProperties props = new RateLimitProperties();
+        props.setCapacity(2);
+        props.getRoleLimits().put("ADMIN", 5);
+        RateLimitFilter filter = new RateLimitFilter(props, () -> 0L);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "alice", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+
+        // Different addresses, same user: one bucket of 5
+        for (int i = 0; i < 6; i++) {
+            when(request.getRemoteAddr()).thenReturn("10.0.0." + i);
+            filter.doFilterInternal(request, response, filterChain);
+        }
+
+        verify(filterChain, times(5)).doFilter(request, response);
+        verify(response).setStatus(429);
+    }
+
+    @Test
+    void shouldChargeUploadsMoreThanPolls() throws Exception {
+        RateLimitProperties props = new RateLimitProperties();
+        props.setCapacity(10);
+        props.setUploadCost(10);
+        RateLimitFilter filter = new RateLimitFilter(props, () -> 0L);
+        when(request.getRemoteAddr()).thenReturn("10.0.0.2");
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestURI()).thenReturn("/api/video-code/encode");
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+        filter.doFilterInternal(request, response, filterChain);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/api/video-code/status/job-1");
+        filter.doFilterInternal(request, response, filterChain);
+
+        verify(filterChain, times(1)).doFilter(request, response);
+        verify(response).setStatus(429);
+    }
 }
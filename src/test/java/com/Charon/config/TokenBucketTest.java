@@ -0,0 +1,96 @@
+package com.Charon.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(5, 60, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(1, 0));
+        }
+        assertTrue(bucket.tryAcquire(1, 0) > 0);
+    }
+
+    @Test
+    void refillsOverTime() {
+        // 60 per minute = one token per second
+        TokenBucket bucket = new TokenBucket(2, 60, 0);
+        bucket.tryAcquire(2, 0);
+
+        assertEquals(1000, bucket.tryAcquire(1, 0));
+        assertEquals(500, bucket.tryAcquire(1, 500));
+        assertEquals(0, bucket.tryAcquire(1, 1000));
+        assertTrue(bucket.tryAcquire(1, 1000) > 0);
+    }
+
+    @Test
+    void neverExceedsCapacityAfterIdle() {
+        TokenBucket bucket = new TokenBucket(3, 60, 0);
+
+        assertEquals(0, bucket.tryAcquire(3, 3_600_000));
+        assertTrue(bucket.tryAcquire(1, 3_600_000) > 0);
+    }
+
+    @Test
+    void weightedCostTakesSeveralTokens() {
+        TokenBucket bucket = new TokenBucket(10, 60, 0);
+
+        assertEquals(0, bucket.tryAcquire(10, 0));
+        assertEquals(4000, bucket.tryAcquire(4, 0));
+    }
+
+    @Test
+    void slowRateKeepsFractionalRefill() {
+        // 1 per minute; many short polls must still add up to a token after a minute
+        TokenBucket bucket = new TokenBucket(1, 1, 0);
+        bucket.tryAcquire(1, 0);
+
+        for (long t = 7; t < 60_000; t += 7) {
+            assertTrue(bucket.tryAcquire(1, t) > 0);
+        }
+        assertEquals(0, bucket.tryAcquire(1, 60_000));
+    }
+
+    @Test
+    void concurrentCallersNeverOverdraw() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 1, 0);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < 8; i++) {
+            pool.submit(() -> {
+                start.await();
+                for (int j = 0; j < 500; j++) {
+                    if (bucket.tryAcquire(1, 0) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, granted.get());
+    }
+
+    @Test
+    void rejectsCapacityOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 60, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(TokenBucket.MAX_CAPACITY + 1, 60, 0));
+    }
+}
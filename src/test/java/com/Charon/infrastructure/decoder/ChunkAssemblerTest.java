@@ -0,0 +1,132 @@
+package com.Charon.infrastructure.decoder;
+
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
+import com.Charon.infrastructure.encoder.qr.QdvChunkStream;
+import com.Charon.infrastructure.encoder.qr.QdvChunks;
+import com.Charon.infrastructure.encoder.qr.SegmentedAesGcm;
+import com.Charon.infrastructure.fec.FecLayout;
+import com.Charon.infrastructure.fec.FecLengthHeader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkAssemblerTest {
+
+    private static final int CHUNK = 200;
+    private static final int SEGMENT = 1024;
+
+    private static KeyPair keyPair;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        keyPair = PayloadCrypto.generateKeyPair();
+    }
+
+    @Test
+    void shouldCompleteFromDataRowsBeforeAnyParity() throws Exception {
+        byte[] input = input(20_000);
+        Encoded encoded = encode(input);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Path spool = dir.resolve("chunks.spool");
+
+        try (ChunkAssembler assembler = new ChunkAssembler(encoded.layout, keyPair.getPrivate(), out, spool)) {
+            for (int i = 0; i < encoded.layout.original(); i++) {
+                assertFalse(assembler.complete());
+                assembler.accept(encoded.chunks.get(i));
+            }
+            // A decoder may stop reading here: the parity frames are not needed
+            assertTrue(assembler.complete());
+            assembler.finish();
+            assertEquals(0, assembler.recovered());
+        }
+        assertArrayEquals(input, out.toByteArray());
+        assertFalse(Files.exists(spool));
+    }
+
+    @Test
+    void shouldFillLostRowsFromParityAndParkRowsAheadOfTheGap() throws Exception {
+        byte[] input = input(20_000);
+        Encoded encoded = encode(input);
+        FecLayout layout = encoded.layout;
+        // Lose an early data row and the short last one; the other data rows arrive out of order,
+        // the parity rows last as in a video
+        List<QdvChunks.Chunk> chunks = new ArrayList<>(encoded.chunks.subList(0, layout.original()));
+        chunks.remove(layout.original() - 1);
+        chunks.remove(3);
+        Collections.shuffle(chunks, new Random(5));
+        chunks.addAll(encoded.chunks.subList(layout.original(), layout.total()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Path spool = dir.resolve("chunks.spool");
+
+        try (ChunkAssembler assembler = new ChunkAssembler(layout, keyPair.getPrivate(), out, spool)) {
+            for (QdvChunks.Chunk chunk : chunks) {
+                if (chunk.index() == layout.original()) {
+                    assertFalse(assembler.complete());
+                }
+                assembler.accept(chunk);
+            }
+            assertTrue(assembler.complete());
+            assertEquals(2, assembler.recovered());
+            assembler.finish();
+        }
+        assertArrayEquals(input, out.toByteArray());
+        assertFalse(Files.exists(spool));
+    }
+
+    @Test
+    void shouldFailWhenAGroupLostMoreThanItsParity() throws Exception {
+        Encoded encoded = encode(input(20_000));
+        FecLayout layout = encoded.layout;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (ChunkAssembler assembler = new ChunkAssembler(layout, keyPair.getPrivate(), out, dir.resolve("chunks.spool"))) {
+            for (int i = layout.parityPerGroup() + 1; i < layout.total(); i++) {
+                assembler.accept(encoded.chunks.get(i));
+            }
+            assertFalse(assembler.complete());
+            assertThrows(IllegalStateException.class, assembler::finish);
+        }
+        assertEquals(0, out.size());
+    }
+
+    private record Encoded(FecLayout layout, List<QdvChunks.Chunk> chunks) {}
+
+    private static Encoded encode(byte[] input) throws Exception {
+        try (SegmentedAesGcm.EncryptingStream envelope = SegmentedAesGcm.encrypt(
+                new ByteArrayInputStream(input), "passphrase", keyPair.getPublic(), SEGMENT)) {
+            long length = envelope.envelopeLength(input.length);
+            FecLayout layout = FecLayout.plan(QdvChunkStream.chunkCount(length, CHUNK), 0.2);
+            QdvChunkStream stream = new QdvChunkStream(envelope, length, CHUNK, layout, FecLengthHeader.MAX_QR_BYTES);
+            List<QdvChunks.Chunk> chunks = new ArrayList<>();
+            while (stream.hasNext()) {
+                chunks.add(QdvChunks.parse(stream.next()));
+            }
+            return new Encoded(layout, chunks);
+        }
+    }
+
+    private static byte[] input(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,162 @@
+package com.Charon.infrastructure.decoder;
+
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
+import com.Charon.infrastructure.encoder.qr.QdvChunkStream;
+import com.Charon.infrastructure.encoder.qr.QdvChunks;
+import com.Charon.infrastructure.encoder.qr.SegmentedAesGcm;
+import com.Charon.infrastructure.fec.FecLayout;
+import com.Charon.infrastructure.fec.FecLengthHeader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkCollectorTest {
+
+    private static final int CHUNK = 200;
+
+    private static KeyPair keyPair;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        keyPair = PayloadCrypto.generateKeyPair();
+    }
+
+    @Test
+    void shouldQueueEachChunkOnceWhateverHowOftenItIsRead() throws Exception {
+        byte[] input = input(5_000);
+        List<byte[]> payloads = encode(input, plan(input));
+        ChunkCollector collector = new ChunkCollector();
+
+        // Every code is seen in two frames
+        for (byte[] payload : payloads) {
+            collector.accept(payload);
+            collector.accept(payload);
+        }
+
+        assertEquals(payloads.size(), collector.received());
+        List<QdvChunks.Chunk> drained = collector.drain();
+        assertEquals(payloads.size(), drained.size());
+        for (int i = 0; i < drained.size(); i++) {
+            assertEquals(i, drained.get(i).index());
+        }
+        assertTrue(collector.drain().isEmpty());
+        collector.accept(payloads.get(0));
+        assertTrue(collector.drain().isEmpty());
+    }
+
+    @Test
+    void shouldReadLayoutFromFecInfoAndFallBackToAllData() {
+        ChunkCollector collector = new ChunkCollector();
+        assertThrows(IllegalStateException.class, collector::layout);
+        assertEquals(-1, collector.needed());
+
+        collector.accept(QdvChunks.wrap(0, 12, new byte[CHUNK], false));
+        assertNull(collector.announcedLayout());
+        assertEquals(FecLayout.none(12), collector.layout());
+
+        collector.accept(fecInfo(10, 12, 2, 1));
+        assertEquals(new FecLayout(10, 2, 1), collector.announcedLayout());
+        assertEquals(10, collector.needed());
+        // The first FEC_INFO read wins
+        collector.accept(fecInfo(20, 30, 2, 5));
+        assertEquals(new FecLayout(10, 2, 1), collector.layout());
+    }
+
+    @Test
+    void shouldKeepPrivateKeyFrame() {
+        ChunkCollector collector = new ChunkCollector();
+        byte[] frame = new byte[PayloadCrypto.PRIVKEY_MAGIC.length + 8];
+        System.arraycopy(PayloadCrypto.PRIVKEY_MAGIC, 0, frame, 0, PayloadCrypto.PRIVKEY_MAGIC.length);
+
+        collector.accept("META2{}".getBytes(StandardCharsets.US_ASCII));
+        assertNull(collector.protectedPrivateKey());
+        collector.accept(frame);
+
+        assertSame(frame, collector.protectedPrivateKey());
+        assertEquals(0, collector.received());
+    }
+
+    @Test
+    void shouldBeCompleteBeforeParityFramesAreRead() throws Exception {
+        byte[] input = input(20_000);
+        FecLayout layout = plan(input);
+        List<byte[]> payloads = encode(input, layout);
+        ChunkCollector collector = new ChunkCollector();
+        collector.accept(fecInfo(layout.original(), layout.total(), layout.groups(), layout.parityPerGroup()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int read = 0;
+        try (ChunkAssembler assembler = new ChunkAssembler(collector.announcedLayout(), keyPair.getPrivate(), out,
+                dir.resolve("chunks.spool"))) {
+            // Frames in video order, drained in batches as the decoder does, until nothing is missing
+            while (!assembler.complete()) {
+                for (int i = 0; i < 3 && read < payloads.size(); i++) {
+                    collector.accept(payloads.get(read++));
+                }
+                for (QdvChunks.Chunk chunk : collector.drain()) {
+                    assembler.accept(chunk);
+                }
+            }
+            assembler.finish();
+        }
+
+        assertTrue(read < layout.total(), "read " + read + " of " + layout.total());
+        assertFalse(read < layout.original());
+        assertArrayEquals(input, out.toByteArray());
+    }
+
+    private static FecLayout plan(byte[] input) throws Exception {
+        return FecLayout.plan(QdvChunkStream.chunkCount(envelopeLength(input), CHUNK), 0.2);
+    }
+
+    private static long envelopeLength(byte[] input) throws Exception {
+        try (SegmentedAesGcm.EncryptingStream envelope = SegmentedAesGcm.encrypt(
+                new ByteArrayInputStream(input), "passphrase", keyPair.getPublic(), 1024)) {
+            return envelope.envelopeLength(input.length);
+        }
+    }
+
+    private static List<byte[]> encode(byte[] input, FecLayout layout) throws Exception {
+        try (SegmentedAesGcm.EncryptingStream envelope = SegmentedAesGcm.encrypt(
+                new ByteArrayInputStream(input), "passphrase", keyPair.getPublic(), 1024)) {
+            QdvChunkStream stream = new QdvChunkStream(envelope, envelope.envelopeLength(input.length), CHUNK, layout, FecLengthHeader.MAX_QR_BYTES);
+            List<byte[]> payloads = new ArrayList<>();
+            while (stream.hasNext()) {
+                payloads.add(stream.next());
+            }
+            return payloads;
+        }
+    }
+
+    private static byte[] fecInfo(int original, int total, int groups, int perGroup) {
+        return ("FEC_INFO{\"original_chunks\":" + original + ",\"total_chunks\":" + total
+                + ",\"fec_groups\":" + groups + ",\"fec_parity_per_group\":" + perGroup + "}")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] input(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
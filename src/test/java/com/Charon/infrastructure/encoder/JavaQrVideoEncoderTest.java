@@ -0,0 +1,252 @@
+package com.Charon.infrastructure.encoder;
+
+import com.Charon.infrastructure.encoder.qr.PayloadCrypto;
+import com.Charon.infrastructure.encoder.qr.QdvChunks;
+import com.Charon.infrastructure.encoder.qr.QrFrameReader;
+import com.Charon.infrastructure.encoder.qr.RawVideoSource;
+import com.Charon.infrastructure.encoder.qr.SegmentedAesGcm;
+import com.Charon.infrastructure.fec.CrossFrameFecDecoder;
+import com.Charon.infrastructure.fec.FecLayout;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.port.QrPlan;
+import com.Charon.service.port.VideoEncodingRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the JAVA encoder against a stand-in ffmpeg that stores the raw gray frames it is fed, then
+ * reads those frames back with ZXing, rebuilds the envelope through the FEC decoder and decrypts
+ * it with the key from the private-key frame.
+ */
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class JavaQrVideoEncoderTest {
+
+    private static final int SIZE = 800;
+    private static final String FRAME_PASSWORD = "frame-secret";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static KeyPair keyPair;
+
+    @TempDir
+    Path dir;
+
+    private JavaQrVideoEncoder encoder;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        keyPair = PayloadCrypto.generateKeyPair();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void shouldReadRenderedFramesBackToInput() throws Exception {
+        byte[] input = new byte[3000];
+        new Random(3).nextBytes(input);
+        Path zip = Files.write(dir.resolve("input.zip"), input);
+        encoder = new JavaQrVideoEncoder(mock(JobRegistry.class), rawFrameFfmpeg().toString(), 2, 1024, Long.MAX_VALUE, 1);
+
+        encoder.encode(request(zip));
+
+        Decoded decoded = readBack(dir.resolve("output.mp4"));
+        int original = decoded.fecInfo().path("original_chunks").asInt();
+        int total = decoded.fecInfo().path("total_chunks").asInt();
+        Map<Integer, byte[]> chunks = decoded.chunks();
+        assertEquals(total, chunks.size(), "every QDV2 code should be readable from clean frames");
+
+        // One lost data code and one lost parity code stay within the group's parity
+        FecLayout layout = new FecLayout(original, 1, total - original);
+        chunks.remove(5);
+        chunks.remove(total - 1);
+        assertTrue(CrossFrameFecDecoder.recoverable(layout, chunks));
+        assertArrayEquals(input, decoded.decrypt(CrossFrameFecDecoder.recover(layout, chunks)));
+    }
+
+    @Test
+    void shouldJoinPartsEncodedInParallelAndRemoveIntermediateFiles() throws Exception {
+        byte[] input = new byte[3000];
+        new Random(4).nextBytes(input);
+        Path zip = Files.write(dir.resolve("input.zip"), input);
+        encoder = new JavaQrVideoEncoder(mock(JobRegistry.class), splitFfmpeg(-1).toString(), 2, 1024, 1, 3);
+
+        String result = encoder.encode(request(zip));
+
+        assertTrue(result.contains("\"parts\":3"), result);
+        List<String> calls = Files.readAllLines(dir.resolve("calls"));
+        assertEquals(4, calls.size());
+        assertEquals("concat", calls.get(3));
+        assertIntermediateFilesRemoved();
+
+        // The joined parts hold the same frame sequence a single process would have written
+        Decoded decoded = readBack(dir.resolve("output.mp4"));
+        int original = decoded.fecInfo().path("original_chunks").asInt();
+        int total = decoded.fecInfo().path("total_chunks").asInt();
+        assertEquals(total, decoded.chunks().size());
+        FecLayout layout = new FecLayout(original, 1, total - original);
+        assertArrayEquals(input, decoded.decrypt(CrossFrameFecDecoder.recover(layout, decoded.chunks())));
+    }
+
+    @Test
+    void shouldKillOtherPartsWhenOneFails() throws Exception {
+        byte[] input = new byte[3000];
+        new Random(5).nextBytes(input);
+        Path zip = Files.write(dir.resolve("input.zip"), input);
+        encoder = new JavaQrVideoEncoder(mock(JobRegistry.class), splitFfmpeg(1).toString(), 2, 1024, 1, 3);
+
+        assertThrows(IOException.class, () -> encoder.encode(request(zip)));
+
+        List<String> calls = Files.readAllLines(dir.resolve("calls"));
+        assertEquals(3, calls.size(), "no concat after a failed part");
+        // The healthy parts would keep running for a minute unless they were killed
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (String call : calls) {
+            long pid = Long.parseLong(call.substring(0, call.indexOf(' ')));
+            while (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                assertTrue(System.nanoTime() < deadline, "part " + call + " still running");
+                Thread.sleep(50);
+            }
+        }
+        assertIntermediateFilesRemoved();
+    }
+
+    private void assertIntermediateFilesRemoved() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> left = files.map(f -> f.getFileName().toString())
+                    .filter(n -> n.startsWith("part-") || n.equals("parts.ffconcat") || n.equals("envelope.spool"))
+                    .toList();
+            assertTrue(left.isEmpty(), "left behind: " + left);
+        }
+    }
+
+    private record Decoded(Map<Integer, byte[]> chunks, JsonNode fecInfo, byte[] protectedKey) {
+        byte[] decrypt(List<byte[]> envelope) throws Exception {
+            PrivateKey privateKey = PayloadCrypto.readPrivateKeyPem(PayloadCrypto.unprotectPrivateKey(protectedKey, FRAME_PASSWORD));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SegmentedAesGcm.decrypt(new SequenceInputStream(Collections.enumeration(
+                    envelope.stream().map(ByteArrayInputStream::new).toList())), out, privateKey);
+            return out.toByteArray();
+        }
+    }
+
+    private static Decoded readBack(Path video) throws Exception {
+        Map<Integer, byte[]> chunks = new HashMap<>();
+        JsonNode fecInfo = null;
+        byte[] protectedKey = null;
+        QrFrameReader reader = new QrFrameReader();
+        for (RawVideoSource.Frame frame : frames(video)) {
+            for (byte[] payload : reader.read(frame)) {
+                QdvChunks.Chunk chunk = QdvChunks.parse(payload);
+                if (chunk != null) {
+                    chunks.put(chunk.index(), chunk.blob());
+                } else if (startsWith(payload, "FEC_INFO".getBytes(StandardCharsets.US_ASCII))) {
+                    fecInfo = MAPPER.readTree(Arrays.copyOfRange(payload, 8, payload.length));
+                } else if (startsWith(payload, PayloadCrypto.PRIVKEY_MAGIC)) {
+                    protectedKey = payload;
+                }
+            }
+        }
+        assertNotNull(fecInfo, "FEC_INFO code not read");
+        assertNotNull(protectedKey, "private-key frame not read");
+        return new Decoded(chunks, fecInfo, protectedKey);
+    }
+
+    private VideoEncodingRequest request(Path zip) {
+        return new VideoEncodingRequest("job-1", zip, dir.resolve("output.mp4"), dir.resolve("manifest.json"), null,
+                2, 10, "custom", SIZE, SIZE, true, 20, "passphrase", "hint", 0, FRAME_PASSWORD, "JAVA", true,
+                keyPair, new QrPlan(13, "Q", 200, 241, 4, 0));
+    }
+
+    /**
+     * Shell script standing in for ffmpeg: whatever arrives on stdin is written to the output
+     * path, which RawVideoSink passes last.
+     */
+    private Path rawFrameFfmpeg() throws Exception {
+        Path script = dir.resolve("ffmpeg");
+        Files.writeString(script, """
+                #!/bin/sh
+                for arg; do out="$arg"; done
+                exec cat > "$out"
+                """);
+        assertTrue(script.toFile().setExecutable(true));
+        return script;
+    }
+
+    /**
+     * Stand-in ffmpeg for the split path. An encode stores its stdin like {@link #rawFrameFfmpeg()}
+     * and logs {@code <pid> <output>} to {@code calls}; the part named {@code part-<failingPart>}
+     * fails at once and the others then stay up for a minute. A concat run logs {@code concat} and
+     * writes the listed parts one after another, so the result reads like one raw stream.
+     */
+    private Path splitFfmpeg(int failingPart) throws Exception {
+        Path script = dir.resolve("ffmpeg");
+        Files.writeString(script, """
+                #!/bin/sh
+                for arg; do out="$arg"; done
+                calls="$(dirname "$0")/calls"
+                if [ "$3" = concat ]; then
+                  echo concat >> "$calls"
+                  sed -n "s/^file '\\(.*\\)'$/\\1/p" "$7" | while read -r part; do cat "$part"; done > "$out"
+                  exit 0
+                fi
+                echo "$$ $out" >> "$calls"
+                case "$out" in
+                  */part-%d.mp4) echo "encoder failed" >&2; exit 1 ;;
+                esac
+                cat > "$out"
+                if [ %d -ge 0 ]; then exec sleep 60; fi
+                """.formatted(failingPart, failingPart));
+        assertTrue(script.toFile().setExecutable(true));
+        return script;
+    }
+
+    private static List<RawVideoSource.Frame> frames(Path video) throws Exception {
+        byte[] raw = Files.readAllBytes(video);
+        int frameBytes = SIZE * SIZE;
+        assertEquals(0, raw.length % frameBytes);
+        RawVideoSource.Frame[] frames = new RawVideoSource.Frame[raw.length / frameBytes];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new RawVideoSource.Frame(i, SIZE, SIZE, Arrays.copyOfRange(raw, i * frameBytes, (i + 1) * frameBytes));
+        }
+        return List.of(frames);
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        return data.length >= prefix.length && Arrays.equals(data, 0, prefix.length, prefix, 0, prefix.length);
+    }
+}
@@ -0,0 +1,170 @@
+package com.Charon.infrastructure.encoder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PythonWorkerPoolTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<Process> started = new ArrayList<>();
+    private final List<ByteArrayOutputStream> requests = new ArrayList<>();
+    private PythonWorkerPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void shouldEncodeOverFramesAndReuseWarmWorker() throws Exception {
+        pool = pool(10, Long.MAX_VALUE, List.of(
+                frame(Map.of("type", "pong", "rss", 100)),
+                frame(Map.of("type", "line", "text", "{\"event\": \"progress\", \"stage\": \"FEC\", \"done\": 1, \"total\": 2}")),
+                frame(Map.of("type", "line", "text", "done")),
+                frame(Map.of("type", "done", "code", 0, "rss", 200))));
+
+        PythonWorkerPool.Worker worker = pool.borrow();
+        List<String> lines = new ArrayList<>();
+        assertEquals(0, worker.encode(List.of("--input", "in.zip"), lines::add));
+        pool.release(worker, true);
+
+        assertEquals(List.of("{\"event\": \"progress\", \"stage\": \"FEC\", \"done\": 1, \"total\": 2}", "done"), lines);
+        List<JsonNode> sent = decode(requests.get(0).toByteArray());
+        assertEquals("ping", sent.get(0).path("op").asText());
+        assertEquals("encode", sent.get(1).path("op").asText());
+        assertEquals("in.zip", sent.get(1).path("args").get(1).asText());
+
+        assertSame(worker, pool.borrow());
+        assertEquals(1, started.size());
+    }
+
+    @Test
+    void shouldRecycleWorkerAfterMaxJobs() throws Exception {
+        pool = pool(1, Long.MAX_VALUE, List.of(
+                frame(Map.of("type", "pong", "rss", 100)),
+                frame(Map.of("type", "done", "code", 3, "rss", 100))));
+
+        PythonWorkerPool.Worker worker = pool.borrow();
+        assertEquals(3, worker.encode(List.of(), line -> { }));
+        pool.release(worker, true);
+
+        assertEquals(0, pool.idleCount());
+        verify(started.get(0)).destroyForcibly();
+    }
+
+    @Test
+    void shouldRecycleWorkerThatOutgrewMemoryLimit() throws Exception {
+        byte[] pong = frame(Map.of("type", "pong", "rss", 100));
+        byte[] done = frame(Map.of("type", "done", "code", 0, "rss", 5000));
+        pool = pool(2, 1000, List.of(pong, done));
+
+        PythonWorkerPool.Worker worker = pool.borrow();
+        worker.encode(List.of(), line -> { });
+        pool.release(worker, true);
+
+        assertEquals(0, pool.idleCount());
+        verify(started.get(0)).destroyForcibly();
+        assertNotSame(worker, pool.borrow());
+    }
+
+    @Test
+    void shouldReplaceWorkerKilledMidJob() throws Exception {
+        // Cancelling the job kills the process: the stream ends without a done frame
+        pool = pool(10, Long.MAX_VALUE, List.of(
+                frame(Map.of("type", "pong", "rss", 100)),
+                frame(Map.of("type", "line", "text", "rendering"))));
+
+        PythonWorkerPool.Worker worker = pool.borrow();
+        assertThrows(EOFException.class, () -> worker.encode(List.of(), line -> { }));
+        pool.release(worker, false);
+
+        assertEquals(0, pool.idleCount());
+        assertNotSame(worker, pool.borrow());
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    void shouldDropIdleWorkerThatMissesHealthCheck() throws Exception {
+        pool = pool(10, Long.MAX_VALUE, List.of(frame(Map.of("type", "pong", "rss", 100))));
+        pool.release(pool.borrow(), true);
+        assertEquals(1, pool.idleCount());
+
+        pool.checkIdle();
+
+        assertEquals(0, pool.idleCount());
+        verify(started.get(0)).destroyForcibly();
+    }
+
+    @Test
+    void shouldKeepIdleWorkerThatAnswersHealthCheck() throws Exception {
+        byte[] pong = frame(Map.of("type", "pong", "rss", 100));
+        pool = pool(10, Long.MAX_VALUE, List.of(pong, pong));
+        pool.release(pool.borrow(), true);
+
+        pool.checkIdle();
+
+        assertEquals(1, pool.idleCount());
+        verify(started.get(0), never()).destroyForcibly();
+    }
+
+    /**
+     * Every launched worker answers with the same scripted frames.
+     */
+    private PythonWorkerPool pool(int maxJobs, long maxRss, List<byte[]> replies) {
+        ByteArrayOutputStream script = new ByteArrayOutputStream();
+        replies.forEach(script::writeBytes);
+        return new PythonWorkerPool(() -> {
+            Process process = mock(Process.class);
+            ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+            lenient().when(process.getOutputStream()).thenReturn(stdin);
+            lenient().when(process.getInputStream()).thenReturn(new ByteArrayInputStream(script.toByteArray()));
+            lenient().when(process.isAlive()).thenReturn(true);
+            started.add(process);
+            requests.add(stdin);
+            return process;
+        }, 1, maxJobs, maxRss, Duration.ZERO, Duration.ofSeconds(5));
+    }
+
+    private static byte[] frame(Map<String, ?> message) throws IOException {
+        byte[] body = MAPPER.writeValueAsBytes(message);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(body.length);
+        data.write(body);
+        return out.toByteArray();
+    }
+
+    private static List<JsonNode> decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<JsonNode> frames = new ArrayList<>();
+        while (in.available() > 0) {
+            frames.add(MAPPER.readTree(in.readNBytes(in.readInt())));
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,65 @@
+package com.Charon.infrastructure.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScriptProgressReaderTest {
+
+    @Test
+    void shouldSplitProgressEventsFromLog() throws Exception {
+        String out = """
+                数据分块完成: 原始10块 -> FEC后12块
+                {"event": "progress", "stage": "FEC", "done": 12, "total": 12}
+                {"event": "progress", "stage": "STREAM", "done": 5, "total": 20}
+                {"event": "progress", "stage": "STREAM", "done": 20, "total": 20
+                {"ok": true, "video": "out.mp4"}
+                """;
+        List<ScriptProgressReader.Progress> events = new ArrayList<>();
+
+        String log = ScriptProgressReader.read(
+                new ByteArrayInputStream(out.getBytes(StandardCharsets.UTF_8)), 32768, events::add);
+
+        assertEquals(List.of(new ScriptProgressReader.Progress("FEC", 12, 12),
+                new ScriptProgressReader.Progress("STREAM", 5, 20)), events);
+        assertEquals(0.25, events.get(1).fraction());
+        // Malformed event lines fall through to the log rather than being lost
+        assertEquals("""
+                数据分块完成: 原始10块 -> FEC后12块
+                {"event": "progress", "stage": "STREAM", "done": 20, "total": 20
+                {"ok": true, "video": "out.mp4"}
+                """, log);
+    }
+
+    @Test
+    void shouldReportStageTimings() throws Exception {
+        String out = """
+                {"event": "progress", "stage": "RENDER", "done": 3, "total": 3}
+                {"event": "timing", "stage": "RENDER", "seconds": 1.5, "amount": 3}
+                done
+                """;
+        List<ScriptProgressReader.Timing> timings = new ArrayList<>();
+
+        String log = ScriptProgressReader.read(
+                new ByteArrayInputStream(out.getBytes(StandardCharsets.UTF_8)), 32768, p -> { }, timings::add);
+
+        assertEquals(List.of(new ScriptProgressReader.Timing("RENDER", 1.5, 3)), timings);
+        assertEquals(1_500_000_000L, timings.get(0).nanos());
+        assertEquals("done\n", log);
+    }
+
+    @Test
+    void shouldTruncateLog() throws Exception {
+        String out = "x".repeat(100) + "\n" + "y".repeat(100) + "\n";
+
+        String log = ScriptProgressReader.read(
+                new ByteArrayInputStream(out.getBytes(StandardCharsets.UTF_8)), 150, p -> { });
+
+        assertEquals(151, log.length());
+    }
+}
@@ -0,0 +1,112 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds RawVideoSource from a stand-in ffmpeg that prints a prepared PGM stream, which arrives as
+ * the {@code -i} argument.
+ */
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class RawVideoSourceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldParseConsecutivePgmFramesWithComments() throws Exception {
+        byte[] first = pixels(4 * 3, 1);
+        byte[] second = pixels(2 * 2, 7);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes("P5\n# written by test\n4 3\n255\n".getBytes(StandardCharsets.US_ASCII));
+        stream.writeBytes(first);
+        stream.writeBytes("P5 2\n2 255\n".getBytes(StandardCharsets.US_ASCII));
+        stream.writeBytes(second);
+
+        try (RawVideoSource source = RawVideoSource.start(ffmpeg(0).toString(), pgm(stream.toByteArray()))) {
+            RawVideoSource.Frame a = source.next();
+            assertEquals(0, a.index());
+            assertEquals(4, a.width());
+            assertEquals(3, a.height());
+            assertArrayEquals(first, a.gray());
+
+            RawVideoSource.Frame b = source.next();
+            assertEquals(1, b.index());
+            assertEquals(2, b.width());
+            assertEquals(2, b.height());
+            assertArrayEquals(second, b.gray());
+
+            assertNull(source.next());
+            source.finish();
+        }
+    }
+
+    @Test
+    void shouldRejectTruncatedFrame() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes("P5\n4 3\n255\n".getBytes(StandardCharsets.US_ASCII));
+        stream.writeBytes(pixels(5, 0));
+
+        try (RawVideoSource source = RawVideoSource.start(ffmpeg(0).toString(), pgm(stream.toByteArray()))) {
+            assertThrows(EOFException.class, source::next);
+        }
+    }
+
+    @Test
+    void shouldRejectOtherFormatsAndFailedProcess() throws Exception {
+        try (RawVideoSource source = RawVideoSource.start(ffmpeg(0).toString(),
+                pgm("P6\n1 1\n255\n\0\0\0".getBytes(StandardCharsets.US_ASCII)))) {
+            assertThrows(IOException.class, source::next);
+        }
+
+        try (RawVideoSource source = RawVideoSource.start(ffmpeg(3).toString(), pgm(new byte[0]))) {
+            assertNull(source.next());
+            IOException e = assertThrows(IOException.class, source::finish);
+            assertTrue(e.getMessage().contains("code 3"), e.getMessage());
+            assertTrue(e.getMessage().contains("no such stream"), e.getMessage());
+        }
+    }
+
+    private Path pgm(byte[] content) throws IOException {
+        return Files.write(dir.resolve("frames.pgm"), content);
+    }
+
+    /**
+     * Shell script standing in for ffmpeg: prints the file given after {@code -i}, then exits
+     * with {@code exitCode}, complaining on stderr when that is not 0.
+     */
+    private Path ffmpeg(int exitCode) throws IOException {
+        Path script = dir.resolve("ffmpeg");
+        Files.writeString(script, """
+                #!/bin/sh
+                cat "$4"
+                if [ %d -ne 0 ]; then echo "no such stream" >&2; fi
+                exit %d
+                """.formatted(exitCode, exitCode));
+        assertTrue(script.toFile().setExecutable(true));
+        return script;
+    }
+
+    private static byte[] pixels(int count, int seed) {
+        byte[] gray = new byte[count];
+        for (int i = 0; i < count; i++) {
+            gray[i] = (byte) (seed + i * 17);
+        }
+        return gray;
+    }
+}
@@ -0,0 +1,113 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedAesGcmTest {
+
+    private static final int SEGMENT = 1024;
+
+    private static KeyPair keyPair;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        keyPair = PayloadCrypto.generateKeyPair();
+    }
+
+    @Test
+    void shouldRoundTripAcrossSegmentBoundaries() throws Exception {
+        Random random = new Random(5);
+        for (int size : new int[]{0, 1, SEGMENT - 1, SEGMENT, 3 * SEGMENT, 3 * SEGMENT + 7}) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+
+            assertArrayEquals(data, decrypt(encrypt(data)), "size " + size);
+        }
+    }
+
+    @Test
+    void shouldRejectTruncatedOrTamperedEnvelope() throws Exception {
+        byte[] data = new byte[3 * SEGMENT];
+        new Random(9).nextBytes(data);
+        byte[] envelope = encrypt(data);
+
+        // Dropping a whole trailing segment must not go unnoticed
+        byte[] truncated = Arrays.copyOf(envelope, envelope.length - (SEGMENT + 16));
+        assertThrows(GeneralSecurityException.class, () -> decrypt(truncated));
+
+        // The header (here: segment size field) is authenticated with every segment
+        byte[] tampered = envelope.clone();
+        tampered[SegmentedAesGcm.MAGIC.length + 16 + 7 + 3] ^= 1;
+        assertThrows(GeneralSecurityException.class, () -> decrypt(tampered));
+    }
+
+    @Test
+    void shouldRejectOversizedSegmentBeforeAllocatingIt() throws Exception {
+        byte[] envelope = encrypt(new byte[SEGMENT]);
+        int sizeField = SegmentedAesGcm.MAGIC.length + 16 + 7;
+
+        for (int size : new int[]{SegmentedAesGcm.MAX_SEGMENT_SIZE + 1, Integer.MAX_VALUE - 8, -1}) {
+            byte[] forged = envelope.clone();
+            ByteBuffer.wrap(forged, sizeField, 4).putInt(size);
+            IOException e = assertThrows(IOException.class, () -> SegmentedAesGcm.decrypting(
+                    new ByteArrayOutputStream(), keyPair.getPrivate()).write(forged), "size " + size);
+            assertInstanceOf(GeneralSecurityException.class, e.getCause());
+            assertTrue(e.getMessage().contains("segment size"), e.getMessage());
+        }
+    }
+
+    @Test
+    void shouldDecryptEnvelopeWrittenInPieces() throws Exception {
+        byte[] data = new byte[5 * SEGMENT + 100];
+        new Random(13).nextBytes(data);
+        byte[] envelope = encrypt(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SegmentedAesGcm.DecryptingStream sink = SegmentedAesGcm.decrypting(out, keyPair.getPrivate());
+        Random pieces = new Random(17);
+        for (int off = 0; off < envelope.length; ) {
+            int n = Math.min(envelope.length - off, 1 + pieces.nextInt(SEGMENT + 40));
+            sink.write(envelope, off, n);
+            off += n;
+        }
+        // The last segment is only released by finish
+        assertEquals(5 * SEGMENT, out.size());
+        sink.finish();
+        assertArrayEquals(data, out.toByteArray());
+
+        SegmentedAesGcm.DecryptingStream truncated = SegmentedAesGcm.decrypting(new ByteArrayOutputStream(), keyPair.getPrivate());
+        truncated.write(envelope, 0, envelope.length - (SEGMENT + 16) - 100);
+        IOException e = assertThrows(IOException.class, truncated::finish);
+        assertInstanceOf(GeneralSecurityException.class, e.getCause());
+    }
+
+    private static byte[] encrypt(byte[] data) throws Exception {
+        try (SegmentedAesGcm.EncryptingStream in = SegmentedAesGcm.encrypt(
+                new ByteArrayInputStream(data), "passphrase", keyPair.getPublic(), SEGMENT)) {
+            byte[] envelope = in.readAllBytes();
+            assertEquals(in.envelopeLength(data.length), envelope.length);
+            return envelope;
+        }
+    }
+
+    private static byte[] decrypt(byte[] envelope) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SegmentedAesGcm.decrypt(new ByteArrayInputStream(envelope), out, keyPair.getPrivate());
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,64 @@
+package com.Charon.infrastructure.encoder.qr;
+
+import com.Charon.infrastructure.fec.FecLayout;
+import com.Charon.infrastructure.fec.FecLengthHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpooledChunksTest {
+
+    private static final int CHUNK = 100;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldMatchStreamedChunksWhenReadOutOfOrder() throws Exception {
+        byte[] envelope = new byte[CHUNK * 600 + 37];
+        new Random(9).nextBytes(envelope);
+        FecLayout layout = FecLayout.plan(QdvChunkStream.chunkCount(envelope.length, CHUNK), 0.2);
+        QdvChunkStream stream = new QdvChunkStream(new ByteArrayInputStream(envelope), envelope.length, CHUNK, layout, FecLengthHeader.MAX_QR_BYTES);
+        List<byte[]> expected = new ArrayList<>();
+        while (stream.hasNext()) {
+            expected.add(stream.next());
+        }
+
+        Path file = dir.resolve("envelope.spool");
+        try (SpooledChunks spool = SpooledChunks.spool(new ByteArrayInputStream(envelope), envelope.length, CHUNK, layout, FecLengthHeader.MAX_QR_BYTES, file)) {
+            assertEquals(expected.size(), spool.total());
+            // Later ranges first, as parallel parts would ask for them
+            for (int first = expected.size() - (expected.size() % 4); first >= 0; first -= 4) {
+                List<byte[]> batch = spool.read(first, 4);
+                assertEquals(Math.min(4, expected.size() - first), batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    assertArrayEquals(expected.get(first + i), batch.get(i), "chunk " + (first + i));
+                }
+            }
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void shouldRejectShortEnvelopeAndRemoveSpool() {
+        byte[] envelope = new byte[CHUNK * 3];
+        FecLayout layout = FecLayout.none(5);
+        Path file = dir.resolve("envelope.spool");
+
+        assertThrows(EOFException.class,
+                () -> SpooledChunks.spool(new ByteArrayInputStream(envelope), CHUNK * 5L, CHUNK, layout, FecLengthHeader.MAX_QR_BYTES, file));
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,156 @@
+package com.Charon.infrastructure.fec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrossFrameFecTest {
+
+    private final CrossFrameFecEncoder encoder = new CrossFrameFecEncoder();
+
+    @Test
+    void shouldMatchReedsoloParity() {
+        List<byte[]> data = chunks(10, 8, 5, new Random(1));
+
+        CrossFrameFecEncoder.Result result = encoder.encode(data, 0.2, FecLengthHeader.MAX_QR_BYTES);
+
+        assertEquals(new FecLayout(10, 1, 2), result.layout());
+        // Reference values from reedsolo.RSCodec(2), column by column
+        assertEquals("5b382c20382c20382c20382c20382c20382c20382c20382c20382c20355d7c53504c49547ca9e5ac1bef42f8da",
+                HexFormat.of().formatHex(result.chunks().get(10)));
+        assertEquals("1da0d245af1333d4", HexFormat.of().formatHex(result.chunks().get(11)));
+    }
+
+    @Test
+    void shouldUseCompactLengthHeaderWhenListOutgrowsPlannedCode() {
+        int[] lengths = new int[40];
+        Arrays.fill(lengths, 200);
+        lengths[39] = 17;
+
+        // 40 lengths fit a version 40 code next to a 200-byte parity row, but not a version 13 one
+        assertEquals('[', FecLengthHeader.encode(lengths, 200, FecLengthHeader.MAX_QR_BYTES)[0]);
+        byte[] header = FecLengthHeader.encode(lengths, 200, 241);
+        assertEquals('{', header[0]);
+        FecLengthHeader.Parsed parsed = FecLengthHeader.parse(FecLengthHeader.prefix(header, new byte[200]));
+        assertArrayEquals(lengths, parsed.lengths());
+    }
+
+    @Test
+    void shouldRecoverWhenEveryGroupLosesItsFullParity() {
+        Random random = new Random(7);
+        List<byte[]> data = chunks(1000, 800, 37, random);
+
+        CrossFrameFecEncoder.Result result = encoder.encode(data, 0.2, FecLengthHeader.MAX_QR_BYTES);
+        FecLayout layout = result.layout();
+        assertEquals(5, layout.groups());
+        assertEquals(1200, layout.total());
+
+        Map<Integer, byte[]> received = new HashMap<>();
+        for (int i = 0; i < result.chunks().size(); i++) {
+            received.put(i, result.chunks().get(i));
+        }
+        for (int g = 0; g < layout.groups(); g++) {
+            int[] members = layout.members(g);
+            for (int lost = 0; lost < layout.parityPerGroup(); lost++) {
+                received.remove(members[lost]);
+            }
+        }
+
+        assertTrue(CrossFrameFecDecoder.recoverable(layout, received));
+        List<byte[]> recovered = CrossFrameFecDecoder.recover(layout, received);
+        for (int i = 0; i < data.size(); i++) {
+            assertArrayEquals(data.get(i), recovered.get(i), "chunk " + i);
+        }
+    }
+
+    @Test
+    void streamingShouldMatchBulkEncoding() {
+        List<byte[]> data = chunks(600, 800, 120, new Random(3));
+
+        CrossFrameFecEncoder.Result bulk = encoder.encode(data, 0.35, FecLengthHeader.MAX_QR_BYTES);
+        CrossFrameFecEncoder.Streaming streaming = CrossFrameFecEncoder.streaming(bulk.layout(), 800, FecLengthHeader.MAX_QR_BYTES);
+        data.forEach(streaming::accept);
+        List<byte[]> parity = streaming.finish();
+
+        assertEquals(bulk.chunks().size() - data.size(), parity.size());
+        for (int i = 0; i < parity.size(); i++) {
+            assertArrayEquals(bulk.chunks().get(data.size() + i), parity.get(i), "parity " + i);
+        }
+    }
+
+    @Test
+    void streamingDecoderShouldRecoverFromRowsInAnyOrder() {
+        Random random = new Random(11);
+        List<byte[]> data = chunks(600, 800, 120, random);
+        CrossFrameFecEncoder.Result result = encoder.encode(data, 0.2, FecLengthHeader.MAX_QR_BYTES);
+        FecLayout layout = result.layout();
+        FecLengthHeader.Parsed header = FecLengthHeader.parse(result.chunks().get(layout.firstParityIndex()));
+
+        // Group 0 loses its first data row and all but one parity row, group 1 loses nothing
+        Set<Integer> lost = new HashSet<>();
+        int[] members = layout.members(0);
+        lost.add(members[0]);
+        for (int t = 1; t < layout.parityPerGroup(); t++) {
+            lost.add(members[layout.dataCount(0) + t]);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < layout.total(); i++) {
+            if (!lost.contains(i)) {
+                order.add(i);
+            }
+        }
+        Collections.shuffle(order, random);
+
+        CrossFrameFecDecoder.Streaming decoder = CrossFrameFecDecoder.streaming(layout, 800);
+        for (int i : order) {
+            decoder.accept(i, i == layout.firstParityIndex() ? header.parity() : result.chunks().get(i));
+        }
+
+        assertTrue(decoder.recoverable(0));
+        Map<Integer, byte[]> rows = decoder.recover(0);
+        assertEquals(Set.of(members[0]), rows.keySet());
+        assertArrayEquals(data.get(members[0]), rows.get(members[0]));
+        assertFalse(decoder.recoverable(0));
+        assertTrue(decoder.recover(1).isEmpty());
+    }
+
+    @Test
+    void streamingDecoderShouldRefuseGroupWithTooManyLosses() {
+        List<byte[]> data = chunks(20, 64, 64, new Random(13));
+        CrossFrameFecEncoder.Result result = encoder.encode(data, 0.2, FecLengthHeader.MAX_QR_BYTES);
+        FecLayout layout = result.layout();
+
+        CrossFrameFecDecoder.Streaming decoder = CrossFrameFecDecoder.streaming(layout, 64);
+        for (int i = layout.parityPerGroup() + 1; i < layout.original(); i++) {
+            decoder.accept(i, result.chunks().get(i));
+        }
+
+        assertFalse(decoder.recoverable(0));
+        assertThrows(IllegalStateException.class, () -> decoder.recover(0));
+    }
+
+    private static List<byte[]> chunks(int count, int size, int last, Random random) {
+        List<byte[]> data = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] chunk = new byte[i == count - 1 ? last : size];
+            random.nextBytes(chunk);
+            data.add(chunk);
+        }
+        return data;
+    }
+}
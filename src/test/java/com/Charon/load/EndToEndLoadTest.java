@@ -0,0 +1,322 @@
+package com.Charon.load;
+
+import com.Charon.security.JwtTokenProvider;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.port.VideoEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Offline load test: the full application on a random port with H2, the embedded queue and a
+ * {@link FakeVideoEncoder} in place of Python/ffmpeg. Uploaders, status pollers and ranged
+ * downloaders run concurrently for a fixed time; then the remaining jobs are drained and the
+ * report (jobs per minute, latency percentiles, allocation rate) is printed and written to
+ * {@code target/load-test-report.json}.
+ * <p>
+ * Excluded from the default build; run with {@code mvn -Pload test}. Sizes and gates come from
+ * system properties ({@code -Dload.duration=60 -Dload.minJobsPerMinute=120 ...}); a gate set to 0
+ * is not checked. All simulated clients share one user, whose rate limit is raised far above the
+ * offered load so that throughput, not the limiter, is measured.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "spring.flyway.enabled=true",
+        "app.queue.type=embedded",
+        "app.rocketmq.consumer.enabled=false",
+        "app.result-cache.enabled=false",
+        "app.rate-limit.role-limits.USER=1000000",
+        "logging.level.com.Charon=WARN"
+})
+class EndToEndLoadTest {
+
+    private static final Path BASE = createBaseDir();
+
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration", 30);
+    private static final int UPLOADERS = Integer.getInteger("load.uploaders", 4);
+    private static final int POLLERS = Integer.getInteger("load.pollers", 16);
+    private static final int DOWNLOADERS = Integer.getInteger("load.downloaders", 4);
+    private static final int INPUT_BYTES = Integer.getInteger("load.inputBytes", 1 << 20);
+    private static final int HASH_ROUNDS = Integer.getInteger("load.hashRounds", 3);
+    private static final int DRAIN_SECONDS = Integer.getInteger("load.drainSeconds", 120);
+    private static final double MIN_JOBS_PER_MINUTE = gate("load.minJobsPerMinute");
+    private static final double MAX_SUBMIT_P99_MS = gate("load.maxSubmitP99Ms");
+    private static final double MAX_STATUS_P99_MS = gate("load.maxStatusP99Ms");
+
+    @MockBean
+    private RocketMQTemplate rocketMQTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private final List<String> submitted = new CopyOnWriteArrayList<>();
+    private final List<String> completed = new CopyOnWriteArrayList<>();
+    private final Set<String> finished = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger clientErrors = new AtomicInteger();
+
+    @TestConfiguration
+    static class FakeEncoderConfig {
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        VideoEncoder fakeVideoEncoder(JobRegistry jobRegistry) {
+            return new FakeVideoEncoder(jobRegistry, HASH_ROUNDS);
+        }
+    }
+
+    @DynamicPropertySource
+    static void directories(DynamicPropertyRegistry registry) {
+        registry.add("app.workdir", () -> BASE.resolve("work").toString());
+        registry.add("app.storage.local.base-dir", () -> BASE.resolve("store").toString());
+    }
+
+    @Test
+    void sustainedUploadPollAndDownload() throws Exception {
+        String token = "Bearer " + tokenProvider.generateToken("admin");
+        byte[] input = new byte[INPUT_BYTES];
+        new Random(42).nextBytes(input);
+
+        LatencyRecorder submit = new LatencyRecorder("submit");
+        LatencyRecorder status = new LatencyRecorder("status");
+        LatencyRecorder download = new LatencyRecorder("download");
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+
+        ExecutorService pool = Executors.newFixedThreadPool(UPLOADERS + POLLERS + DOWNLOADERS);
+        for (int i = 0; i < UPLOADERS; i++) {
+            pool.submit(() -> loop(deadline, () -> upload(token, input, submit)));
+        }
+        for (int i = 0; i < POLLERS; i++) {
+            pool.submit(() -> loop(deadline, () -> poll(token, status)));
+        }
+        for (int i = 0; i < DOWNLOADERS; i++) {
+            pool.submit(() -> loop(deadline, () -> download(token, download)));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(DURATION_SECONDS + 60, TimeUnit.SECONDS), "load threads did not stop");
+
+        drain(token);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+
+        double loadSeconds = DURATION_SECONDS;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("durationSeconds", DURATION_SECONDS);
+        report.put("elapsedSeconds", elapsed);
+        report.put("inputBytes", INPUT_BYTES);
+        report.put("jobsSubmitted", submitted.size());
+        report.put("jobsCompleted", completed.size());
+        report.put("jobsFailed", failed.get());
+        report.put("jobsPerMinute", completed.size() * 60.0 / elapsed);
+        report.put("rateLimited", rateLimited.get());
+        report.put("clientErrors", clientErrors.get());
+        report.put("allocatedBytesPerSec", allocated / elapsed);
+        int requests = submit.count() + status.count() + download.count();
+        report.put("allocatedBytesPerRequest", requests > 0 ? allocated / requests : 0);
+        report.put("latency", List.of(submit.summary(loadSeconds), status.summary(loadSeconds), download.summary(loadSeconds)));
+
+        String text = json.enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        System.out.println("=== load test report ===\n" + text);
+        Path out = Path.of("target", "load-test-report.json");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, text);
+
+        assertTrue(failed.get() == 0, failed.get() + " jobs failed");
+        assertTrue(pending().isEmpty(), "jobs left unfinished: " + pending().size());
+        assertGate("jobsPerMinute", completed.size() * 60.0 / elapsed, MIN_JOBS_PER_MINUTE, true);
+        assertGate("submit p99", submit.percentileMillis(99), MAX_SUBMIT_P99_MS, false);
+        assertGate("status p99", status.percentileMillis(99), MAX_STATUS_P99_MS, false);
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private void loop(long deadline, Step step) {
+        while (System.nanoTime() < deadline) {
+            try {
+                step.run();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                clientErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private void upload(String token, byte[] input, LatencyRecorder latency) throws Exception {
+        HttpRequest request = request("/encode?fileName=load.zip&publicKeyHint=h", token)
+                .header("Content-Type", "application/octet-stream")
+                .header("X-Passphrase", "p")
+                .header("X-Private-Key-Frame-Password", "f")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(input))
+                .build();
+        HttpResponse<String> response = timed(request, latency);
+        if (response.statusCode() == 200) {
+            submitted.add(json.readTree(response.body()).path("jobId").asText());
+        }
+    }
+
+    private void poll(String token, LatencyRecorder latency) throws Exception {
+        List<String> jobs = pending();
+        if (jobs.isEmpty()) {
+            Thread.sleep(10);
+            return;
+        }
+        String jobId = jobs.get(ThreadLocalRandom.current().nextInt(jobs.size()));
+        HttpResponse<String> response = timed(request("/status/" + jobId, token).GET().build(), latency);
+        if (response.statusCode() == 200) {
+            finish(jobId, json.readTree(response.body()).path("status").asText());
+        }
+    }
+
+    private void download(String token, LatencyRecorder latency) throws Exception {
+        if (completed.isEmpty()) {
+            Thread.sleep(10);
+            return;
+        }
+        String jobId = completed.get(ThreadLocalRandom.current().nextInt(completed.size()));
+        long from = ThreadLocalRandom.current().nextLong(Math.max(1, INPUT_BYTES - 65536));
+        HttpRequest request = request("/download/by-job/" + jobId, token)
+                .header("Range", "bytes=" + from + "-" + (from + 65535))
+                .GET()
+                .build();
+        long t = System.nanoTime();
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        record(response.statusCode(), System.nanoTime() - t, latency);
+    }
+
+    /**
+     * Waits for every submitted job to finish, using the batch status endpoint.
+     */
+    private void drain(String token) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+        while (System.nanoTime() < deadline) {
+            List<String> jobs = pending();
+            if (jobs.isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < jobs.size(); i += 500) {
+                List<String> batch = jobs.subList(i, Math.min(jobs.size(), i + 500));
+                HttpRequest request = request("/status:batch", token)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(Map.of("jobIds", batch))))
+                        .build();
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    for (JsonNode item : json.readTree(response.body())) {
+                        finish(item.path("jobId").asText(), item.path("status").asText());
+                    }
+                }
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    private void finish(String jobId, String status) {
+        boolean done = "COMPLETED".equals(status);
+        if ((done || "FAILED".equals(status)) && finished.add(jobId)) {
+            if (done) {
+                completed.add(jobId);
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private List<String> pending() {
+        List<String> jobs = new ArrayList<>(submitted);
+        jobs.removeIf(finished::contains);
+        return jobs;
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/video-code" + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", token);
+    }
+
+    private HttpResponse<String> timed(HttpRequest request, LatencyRecorder latency) throws IOException, InterruptedException {
+        long t = System.nanoTime();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        record(response.statusCode(), System.nanoTime() - t, latency);
+        return response;
+    }
+
+    private void record(int statusCode, long nanos, LatencyRecorder latency) {
+        if (statusCode == 429) {
+            rateLimited.incrementAndGet();
+        } else if (statusCode >= 400) {
+            latency.error();
+        } else {
+            latency.record(nanos);
+        }
+    }
+
+    private static void assertGate(String name, double value, double limit, boolean atLeast) {
+        if (limit > 0) {
+            assertTrue(atLeast ? value >= limit : value <= limit,
+                    name + " = " + value + (atLeast ? " below " : " above ") + limit);
+        }
+    }
+
+    private static double gate(String property) {
+        return Double.parseDouble(System.getProperty(property, "0"));
+    }
+
+    private static Path createBaseDir() {
+        try {
+            return Files.createTempDirectory("charon-load");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.Charon.load;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects request latencies (all samples, a load run is at most a few hundred thousand) and
+ * reports exact percentiles.
+ */
+final class LatencyRecorder {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count;
+    private int errors;
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    synchronized void error() {
+        errors++;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Percentile in milliseconds, nearest-rank.
+     */
+    synchronized double percentileMillis(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100.0 * count);
+        return sorted[Math.max(0, Math.min(count - 1, rank - 1))] / 1e6;
+    }
+
+    synchronized Map<String, Object> summary(double seconds) {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("name", name);
+        s.put("requests", count);
+        s.put("errors", errors);
+        s.put("throughputPerSec", seconds > 0 ? count / seconds : 0);
+        s.put("p50Ms", percentileMillis(50));
+        s.put("p90Ms", percentileMillis(90));
+        s.put("p99Ms", percentileMillis(99));
+        s.put("maxMs", percentileMillis(100));
+        return s;
+    }
+}
@@ -0,0 +1,108 @@
+package com.Charon.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class JwtAuthenticationCacheTest {
+
+    private JwtTokenProvider provider;
+    private UserDetailsService users;
+    private JwtAuthenticationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        provider = spy(new JwtTokenProvider());
+        ReflectionTestUtils.setField(provider, "jwtSecret", "9a02115a835ee03d5fb83cd8a468ea33e4090a6a2f4dd5a87b8738a41896d116");
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", 60_000);
+        users = spy(new InMemoryUserDetailsManager(User.withUsername("alice").password("x").roles("USER").build()));
+        cache = new JwtAuthenticationCache(provider, users, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(15), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void repeatTokenIsVerifiedOnce() {
+        String token = provider.generateToken("alice");
+
+        UserDetails first = cache.authenticate(token);
+        UserDetails second = cache.authenticate(token);
+
+        assertEquals("alice", first.getUsername());
+        assertSame(first, second);
+        verify(provider, times(1)).parseClaims(token);
+        verify(users, times(1)).loadUserByUsername("alice");
+    }
+
+    @Test
+    void newTokenForSameUserReusesUserDetails() {
+        String a = provider.generateToken("alice");
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", 120_000);
+        String b = provider.generateToken("alice");
+
+        cache.authenticate(a);
+        cache.authenticate(b);
+
+        verify(provider, times(2)).parseClaims(anyString());
+        verify(users, times(1)).loadUserByUsername("alice");
+    }
+
+    @Test
+    void invalidTokensAreRejectedAndNotCached() {
+        String token = provider.generateToken("alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertNull(cache.authenticate(tampered));
+        assertNull(cache.authenticate(tampered));
+        assertNull(cache.authenticate("not-a-jwt"));
+
+        verify(provider, times(2)).parseClaims(tampered);
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", -1_000);
+        String token = provider.generateToken("alice");
+
+        assertNull(cache.authenticate(token));
+    }
+
+    @Test
+    void roleChangeReachesCachedTokenOnceUserEntryExpires() {
+        InMemoryUserDetailsManager manager = (InMemoryUserDetailsManager) users;
+        // No user caching, so the next request must see the change
+        cache = new JwtAuthenticationCache(provider, users, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(15), Duration.ZERO);
+        String token = provider.generateToken("alice");
+        assertEquals(Set.of("ROLE_USER"), roles(cache.authenticate(token)));
+
+        manager.updateUser(User.withUsername("alice").password("x").roles("ADMIN").disabled(true).build());
+        UserDetails changed = cache.authenticate(token);
+
+        assertEquals(Set.of("ROLE_ADMIN"), roles(changed));
+        assertFalse(changed.isEnabled());
+        // The token itself was still verified only once
+        verify(provider, times(1)).parseClaims(token);
+    }
+
+    private static Set<String> roles(UserDetails user) {
+        return AuthorityUtils.authorityListToSet(user.getAuthorities());
+    }
+}
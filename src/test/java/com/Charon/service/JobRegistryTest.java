@@ -0,0 +1,52 @@
+package com.Charon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JobRegistryTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    @Test
+    void shouldKeepProgressWhenProcessIsDetached() {
+        JobRegistry registry = new JobRegistry(meters, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        registry.setProgress("job", 40, "ENCODING");
+        registry.remove("job");
+
+        assertEquals(new JobRegistry.JobState(40, "ENCODING", null), registry.snapshot("job"));
+        assertFalse(registry.cancel("job"));
+    }
+
+    @Test
+    void shouldExpireFinishedJobsAfterRetention() throws Exception {
+        JobRegistry registry = new JobRegistry(meters, Duration.ofHours(1), Duration.ofMillis(20), 100);
+        registry.setProgress("running", 50, "ENCODING");
+        registry.setProgress("finished", 100, "DONE");
+        assertEquals(1.0, meters.get("video.job.registry.entries").tag("state", "retained").gauge().value());
+
+        Thread.sleep(100);
+
+        assertSame(JobRegistry.JobState.EMPTY, registry.snapshot("finished"));
+        assertEquals(50, registry.getProgress("running"));
+        assertEquals(0.0, meters.get("video.job.registry.entries").tag("state", "retained").gauge().value());
+    }
+
+    @Test
+    void shouldNotifyListeners() {
+        JobRegistry registry = new JobRegistry(meters, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        StringBuilder seen = new StringBuilder();
+        registry.addListener(seen::append);
+
+        registry.setProgress("a", 1, "QUEUED");
+        registry.setProgress("b", 1, "QUEUED");
+
+        assertEquals("ab", seen.toString());
+        assertEquals(2.0, meters.get("video.job.registry.entries").tag("state", "queued").gauge().value());
+    }
+}
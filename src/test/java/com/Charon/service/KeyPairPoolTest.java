@@ -0,0 +1,60 @@
+package com.Charon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPairPoolTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void refillsInBackgroundAndHandsOutEachPairOnce() throws Exception {
+        KeyPairPool pool = new KeyPairPool(registry, 2, 1);
+        pool.start();
+        try {
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (pool.available() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, pool.available());
+
+            KeyPair first = pool.take();
+            KeyPair second = pool.take();
+
+            assertNotEquals(first.getPublic(), second.getPublic());
+            assertEquals(2048, ((RSAPublicKey) first.getPublic()).getModulus().bitLength());
+            assertEquals(2.0, registry.get("video.keypool.take").tag("result", "hit").counter().count());
+            assertTrue(registry.get("video.keypool.generate").timer().count() >= 2);
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void generatesInlineWhenEmpty() throws Exception {
+        KeyPairPool pool = new KeyPairPool(registry, 4, 1);
+
+        KeyPair keyPair = pool.take();
+
+        assertEquals("RSA", keyPair.getPublic().getAlgorithm());
+        assertEquals(1.0, registry.get("video.keypool.take").tag("result", "miss").counter().count());
+        assertEquals(1, registry.get("video.keypool.generate").timer().count());
+    }
+
+    @Test
+    void disabledPoolLeavesGenerationToEncoder() throws Exception {
+        KeyPairPool pool = new KeyPairPool(registry, 0, 1);
+        pool.start();
+
+        assertNull(pool.take());
+        assertEquals(0, pool.available());
+    }
+}
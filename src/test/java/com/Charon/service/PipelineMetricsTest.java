@@ -0,0 +1,47 @@
+package com.Charon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry);
+
+    @Test
+    void shouldNormaliseLabels() {
+        assertEquals(new PipelineMetrics.Labels("CPU", "4k", "2"), metrics.labels("cpu", "2160P", 2));
+        assertEquals(new PipelineMetrics.Labels("OTHER", "custom", "other"), metrics.labels("TPU", "800x600", 12));
+        assertEquals(new PipelineMetrics.Labels("DECODE", "none", "none"), metrics.labels("DECODE", null, 0));
+    }
+
+    @Test
+    void shouldRecordStageDurationAndThroughput() {
+        PipelineMetrics.Labels labels = metrics.labels("GPU", "1080p", 3);
+
+        metrics.record(PipelineMetrics.Stage.RENDER, labels, TimeUnit.SECONDS.toNanos(2), 120);
+        metrics.record(PipelineMetrics.Stage.RENDER, labels, TimeUnit.SECONDS.toNanos(1), 90);
+
+        var timer = registry.get("video.pipeline.stage")
+                .tags("stage", "RENDER", "mode", "GPU", "resolution", "1080p", "gridN", "3").timer();
+        assertEquals(2, timer.count());
+        assertEquals(3.0, timer.totalTime(TimeUnit.SECONDS), 1e-9);
+        assertEquals(90.0, registry.get("video.pipeline.throughput").tags("stage", "RENDER", "unit", "frames").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void shouldPreRegisterJobMeters() {
+        assertEquals(0.0, registry.get("video.job.submit").counter().count());
+
+        metrics.jobFinished("JAVA", false, 1_000);
+        metrics.jobFinished(null, true, 1_000);
+
+        assertEquals(1.0, registry.get("video.job.failure").counter().count());
+        assertEquals(1, registry.get("video.job.duration").tags("status", "failure", "mode", "JAVA").timer().count());
+        assertEquals(1, registry.get("video.job.duration").tags("status", "success", "mode", "OTHER").timer().count());
+    }
+}
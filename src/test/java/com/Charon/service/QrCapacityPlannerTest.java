@@ -0,0 +1,76 @@
+package com.Charon.service;
+
+import com.Charon.dto.JobMessage;
+import com.Charon.service.port.QrPlan;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QrCapacityPlannerTest {
+
+    private final QrCapacityPlanner planner = new QrCapacityPlanner(true, "Q", 3, 40);
+
+    @Test
+    void shouldMatchStandardByteCapacities() {
+        assertEquals(11, QrCapacityPlanner.byteCapacity(1, ErrorCorrectionLevel.Q));
+        assertEquals(151, QrCapacityPlanner.byteCapacity(10, ErrorCorrectionLevel.Q));
+        assertEquals(1663, QrCapacityPlanner.byteCapacity(40, ErrorCorrectionLevel.Q));
+        assertEquals(2953, QrCapacityPlanner.byteCapacity(40, ErrorCorrectionLevel.L));
+    }
+
+    @Test
+    void shouldFillLargeCellsWithVersion40() {
+        QrPlan plan = planner.plan(job("4k", 1, false), 1_000_000);
+
+        assertEquals(40, plan.version());
+        assertEquals(1663 - QrCapacityPlanner.CHUNK_OVERHEAD, plan.chunkSize());
+        assertEquals(1663, plan.codeBytes());
+        // 177 modules plus the quiet zone in 2160px
+        assertEquals(11, plan.boxSize());
+        assertEquals(612, plan.expectedFrames());
+    }
+
+    @Test
+    void shouldKeepMinimumModuleSizeInSmallCells() {
+        QrPlan plan = planner.plan(job("720p", 4, true), 10_000);
+
+        // 180px cells hold 60 modules of 3px: version 9 with its quiet zone
+        assertEquals(9, plan.version());
+        assertEquals(3, plan.boxSize());
+        assertEquals(130 - QrCapacityPlanner.CHUNK_OVERHEAD - QrCapacityPlanner.LENGTH_HEADER_RESERVE, plan.chunkSize());
+        assertEquals(130, plan.codeBytes());
+    }
+
+    @Test
+    void shouldNeedFewerFramesThanFixedChunksAt1080p() {
+        QrPlan plan = planner.plan(job("1080p", 2, true), 50_000_000);
+
+        assertEquals(39, plan.version());
+        assertTrue(plan.chunkSize() > 800, "chunk " + plan.chunkSize());
+        assertTrue(plan.expectedFrames() < (50_000_000 / 800) * 1.2 / 4, "frames " + plan.expectedFrames());
+    }
+
+    @Test
+    void shouldRejectGridTooFineForResolution() {
+        assertThrows(IllegalArgumentException.class, () -> planner.plan(job("720p", 8, false), 1000));
+    }
+
+    @Test
+    void shouldHonourExplicitSizeAndDisabledPlanning() {
+        JobMessage msg = job("4k", 2, false);
+        msg.setWidth(640);
+        msg.setHeight(480);
+        // 240px cells: 80 modules of 3px
+        assertEquals(14, planner.plan(msg, 1000).version());
+
+        assertNull(new QrCapacityPlanner(false, "Q", 3, 40).plan(msg, 1000));
+    }
+
+    private static JobMessage job(String resolution, int gridN, boolean fec) {
+        return JobMessage.builder().resolution(resolution).gridN(gridN).enableFec(fec).build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.Charon.service;
+
+import com.Charon.service.command.SubmitJobCommand;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTest {
+
+    private static final String SHA = "ab".repeat(32);
+
+    @TempDir
+    Path dir;
+
+    private final ResultCache cache = new ResultCache(new SimpleMeterRegistry(), true, 1 << 30, Duration.ofHours(1));
+
+    @Test
+    void shouldKeyOnParametersAndSecretsWithoutExposingSecrets() {
+        String key = cache.key(SHA, command("pass", 20, null));
+
+        assertEquals(key, cache.key(SHA, command("pass", 20, null)));
+        assertNotEquals(key, cache.key(SHA, command("other", 20, null)));
+        assertNotEquals(key, cache.key(SHA, command("pass", 30, null)));
+        assertFalse(key.contains("pass"));
+    }
+
+    @Test
+    void shouldNotCacheSubmissionsWithObfuscationFile() {
+        MockMultipartFile obf = new MockMultipartFile("obfuscationFile", "o.bin", "application/octet-stream", new byte[]{1});
+
+        assertNull(cache.key(SHA, command("pass", 20, obf)));
+    }
+
+    @Test
+    void shouldDropEntriesWhoseFilesAreGone() throws Exception {
+        Path video = Files.write(dir.resolve("v.mp4"), new byte[]{1, 2, 3});
+        String key = cache.key(SHA, command("pass", 20, null));
+        cache.put(key, new ResultCache.Entry(video.toString(), null, 3, 10));
+
+        assertTrue(cache.get(key) != null);
+        Files.delete(video);
+        assertNull(cache.get(key));
+    }
+
+    private static SubmitJobCommand command(String passphrase, int parity, MockMultipartFile obf) {
+        return new SubmitJobCommand(null, 2, 60, "1080p", null, null, true, parity, passphrase, "hint",
+                null, "frame", null, obf, "CPU", true, true, null);
+    }
+}
@@ -0,0 +1,45 @@
+package com.Charon.service;
+
+import com.Charon.common.BusinessException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingUploadTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldWriteHashAndCount() throws Exception {
+        byte[] data = "hello".getBytes(StandardCharsets.US_ASCII);
+        Path target = dir.resolve("input.zip");
+
+        StreamingUpload.Result result = StreamingUpload.copy(new ByteArrayInputStream(data), target, 0);
+
+        assertEquals(5, result.size());
+        assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824", result.sha256());
+        assertArrayEquals(data, Files.readAllBytes(target));
+    }
+
+    @Test
+    void shouldRejectOversizedBodyAndRemovePartialFile() {
+        Path target = dir.resolve("input.zip");
+
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> StreamingUpload.copy(new ByteArrayInputStream(new byte[200_000]), target, 100_000));
+
+        assertEquals("UPLOAD_TOO_LARGE", e.getCode());
+        assertFalse(Files.exists(target));
+        assertThrows(BusinessException.class, () -> StreamingUpload.checkDeclaredLength(100_001, 100_000));
+    }
+}
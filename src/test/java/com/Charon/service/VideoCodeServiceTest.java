@@ -1,25 +1,40 @@
 package com.Charon.service;
 
+import com.Charon.common.BusinessException;
 import com.Charon.dto.JobMessage;
 import com.Charon.entity.VideoRecord;
 import com.Charon.repository.VideoRecordRepository;
+import com.Charon.service.command.SubmitDecodeCommand;
 import com.Charon.service.command.SubmitJobCommand;
 import com.Charon.service.mq.JobProducer;
+import com.Charon.service.port.VideoDecoder;
+import com.Charon.service.port.VideoDecodingRequest;
 import com.Charon.service.port.VideoEncoder;
 import com.Charon.storage.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -29,6 +44,8 @@ class VideoCodeServiceTest {
     @Mock
     private VideoRecordRepository repo;
     @Mock
+    private VideoRecordCache records;
+    @Mock
     private StorageService storage;
     @Mock
     private JobRegistry jobs;
@@ -36,6 +53,12 @@ class VideoCodeServiceTest {
     private JobProducer jobProducer;
     @Mock
     private java.util.List<VideoEncoder> videoEncoders;
+    @Spy
+    private PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+    @Mock
+    private KeyPairPool keyPairs;
+    @Mock
+    private VideoDecoder videoDecoder;
 
     @InjectMocks
     private VideoCodeService service;
@@ -52,7 +75,7 @@ class VideoCodeServiceTest {
         doNothing().when(jobProducer).sendJob(any(JobMessage.class));
 
         SubmitJobCommand cmd = new SubmitJobCommand(
-                file, 2, 60, "1080p", null, null, true, 20, "pass", "hint", null, "pass", null, null, "CPU"
+                file, 2, 60, "1080p", null, null, true, 20, "pass", "hint", null, "pass", null, null, "CPU", true, false, null
         );
 
         Map<String, Object> result = service.submit(cmd);
@@ -61,4 +84,121 @@ class VideoCodeServiceTest {
         verify(repo).insert(any(VideoRecord.class));
         verify(jobProducer).sendJob(any(JobMessage.class));
     }
+
+    @Test
+    void rejectedSubmitFailsRecordAndRemovesJobDir() {
+        MockMultipartFile file = new MockMultipartFile("file", "test.zip", "application/zip", new byte[10]);
+        ArgumentCaptor<VideoRecord> inserted = ArgumentCaptor.forClass(VideoRecord.class);
+        when(repo.insert(inserted.capture())).thenReturn(1);
+        doThrow(new BusinessException("QUEUE_FULL", "Job queue is full, retry later"))
+                .when(jobProducer).sendJob(any(JobMessage.class));
+
+        SubmitJobCommand cmd = new SubmitJobCommand(
+                file, 2, 60, "1080p", null, null, true, 20, "pass", "hint", null, "pass", null, null, "CPU", true, false, null
+        );
+
+        assertThrows(BusinessException.class, () -> service.submit(cmd));
+
+        VideoRecord vr = inserted.getValue();
+        assertEquals(VideoRecord.ProcessStatus.FAILED, vr.getStatus());
+        verify(repo).updateById(vr);
+        // Cached once on insert and again once failed
+        verify(records, times(2)).put(vr);
+        assertFalse(Files.exists(Path.of(System.getProperty("java.io.tmpdir"), vr.getJobId())));
+    }
+
+    @Test
+    void oversizedDecodeUploadIsRefusedBeforeAnyRecord() {
+        ReflectionTestUtils.setField(service, "maxUploadBytes", 8L);
+        MockMultipartFile file = new MockMultipartFile("file", "video.mp4", "video/mp4", new byte[10]);
+
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> service.submitDecode(new SubmitDecodeCommand(file, "pass")));
+
+        assertEquals("UPLOAD_TOO_LARGE", e.getCode());
+        verifyNoInteractions(repo, jobProducer);
+    }
+
+    @Test
+    void runThatLosesItsLeaseRemovesWhatItStored(@TempDir Path jobDir) throws Exception {
+        VideoRecord vr = new VideoRecord();
+        vr.setJobId("j1");
+        vr.setStatus(VideoRecord.ProcessStatus.PROCESSING);
+        when(repo.findByJobId("j1")).thenReturn(Optional.of(vr));
+        AtomicBoolean owned = new AtomicBoolean(true);
+        ArgumentCaptor<VideoDecodingRequest> request = ArgumentCaptor.forClass(VideoDecodingRequest.class);
+        when(videoDecoder.decode(request.capture())).thenAnswer(inv -> {
+            Files.write(request.getValue().outputFile(), new byte[4]);
+            return "decoded";
+        });
+        when(storage.promote(any(Path.class), eq("j1"), eq("j1-node-a-2.zip"))).thenAnswer(inv -> {
+            // The lease moves to another node right after the result is stored
+            owned.set(false);
+            return "store/j1-node-a-2.zip";
+        });
+        Path video = Files.write(jobDir.resolve("input.mp4"), new byte[4]);
+        JobMessage msg = JobMessage.builder()
+                .jobId("j1")
+                .jobType(VideoRecord.JobType.DECODE.name())
+                .jobDirPath(jobDir.toString())
+                .inputVideoPath(video.toString())
+                .build();
+
+        service.executeJob(msg, owned::get, "node-a-2");
+
+        assertEquals(jobDir.resolve("node-a-2").resolve("output.zip"), request.getValue().outputFile());
+        verify(storage).delete("store/j1-node-a-2.zip");
+        assertFalse(Files.exists(jobDir.resolve("node-a-2")));
+        verify(repo, never()).updateById(any(VideoRecord.class));
+        verify(repo, never()).finishProcessing(any(VideoRecord.class));
+    }
+
+    @Test
+    void cancelledJobIsNotRun(@TempDir Path jobDir) throws Exception {
+        VideoRecord vr = new VideoRecord();
+        vr.setJobId("j1");
+        vr.fail("Cancelled");
+        when(repo.findByJobId("j1")).thenReturn(Optional.of(vr));
+        JobMessage msg = JobMessage.builder()
+                .jobId("j1")
+                .jobType(VideoRecord.JobType.DECODE.name())
+                .jobDirPath(jobDir.toString())
+                .build();
+
+        service.executeJob(msg);
+
+        verifyNoInteractions(videoDecoder, storage);
+        verify(repo, never()).updateById(any(VideoRecord.class));
+        assertFalse(Files.exists(jobDir));
+    }
+
+    @Test
+    void runCancelledWhileRunningDiscardsItsResult(@TempDir Path jobDir) throws Exception {
+        VideoRecord vr = new VideoRecord();
+        vr.setJobId("j1");
+        vr.setStatus(VideoRecord.ProcessStatus.PROCESSING);
+        when(repo.findByJobId("j1")).thenReturn(Optional.of(vr));
+        when(jobs.snapshot("j1")).thenReturn(new JobRegistry.JobState(90, "PERSISTING", null));
+        when(videoDecoder.decode(any(VideoDecodingRequest.class))).thenAnswer(inv -> {
+            Files.write(inv.getArgument(0, VideoDecodingRequest.class).outputFile(), new byte[4]);
+            return "decoded";
+        });
+        when(storage.promote(any(Path.class), eq("j1"), eq("j1.zip"))).thenReturn("store/j1.zip");
+        // The record was marked cancelled while the decode ran
+        when(repo.finishProcessing(vr)).thenReturn(false);
+        Path video = Files.write(jobDir.resolve("input.mp4"), new byte[4]);
+        JobMessage msg = JobMessage.builder()
+                .jobId("j1")
+                .jobType(VideoRecord.JobType.DECODE.name())
+                .jobDirPath(jobDir.toString())
+                .inputVideoPath(video.toString())
+                .build();
+
+        service.executeJob(msg);
+
+        verify(storage).delete("store/j1.zip");
+        verify(records, never()).put(any(VideoRecord.class));
+        verify(jobs).setProgress("j1", 90, "FAILED");
+        assertFalse(Files.exists(jobDir));
+    }
 }
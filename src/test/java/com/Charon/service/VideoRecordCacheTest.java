@@ -0,0 +1,96 @@
+package com.Charon.service;
+
+import com.Charon.entity.VideoRecord;
+import com.Charon.repository.VideoRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VideoRecordCacheTest {
+
+    private final VideoRecordRepository repo = mock(VideoRecordRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    @Test
+    void shouldReadThroughOnce() {
+        VideoRecordCache cache = new VideoRecordCache(repo, meters, Duration.ofMinutes(1), Duration.ofMinutes(10), 100);
+        when(repo.findByJobId("job")).thenReturn(Optional.of(record(7L, VideoRecord.ProcessStatus.COMPLETED)));
+
+        cache.findByJobId("job");
+        cache.findByJobId("job");
+        VideoRecord byId = cache.findById(7L).orElseThrow();
+
+        assertEquals("job", byId.getJobId());
+        verify(repo, times(1)).findByJobId("job");
+        verify(repo, never()).selectById(7L);
+        assertEquals(2.0, meters.get("cache.gets").tag("cache", "video.record").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void shouldServeWrittenRecordWithoutQuery() {
+        VideoRecordCache cache = new VideoRecordCache(repo, meters, Duration.ofMinutes(1), Duration.ofMinutes(10), 100);
+        VideoRecord vr = record(7L, VideoRecord.ProcessStatus.PROCESSING);
+        cache.put(vr);
+        vr.fail("boom");
+        cache.put(vr);
+
+        VideoRecord cached = cache.findByJobId("job").orElseThrow();
+
+        assertNotSame(vr, cached);
+        assertEquals(VideoRecord.ProcessStatus.FAILED, cached.getStatus());
+        verify(repo, never()).findByJobId("job");
+    }
+
+    @Test
+    void shouldExpireProcessingRecordsSooner() throws Exception {
+        VideoRecordCache cache = new VideoRecordCache(repo, meters, Duration.ofMillis(20), Duration.ofMinutes(10), 100);
+        when(repo.findByJobId("job")).thenReturn(Optional.of(record(7L, VideoRecord.ProcessStatus.COMPLETED)));
+        cache.put(record(7L, VideoRecord.ProcessStatus.PROCESSING));
+
+        Thread.sleep(100);
+
+        assertEquals(VideoRecord.ProcessStatus.COMPLETED, cache.findByJobId("job").orElseThrow().getStatus());
+        Thread.sleep(100);
+        assertTrue(cache.findByJobId("job").isPresent());
+        verify(repo, times(1)).findByJobId("job");
+    }
+
+    @Test
+    void shouldResolveBatchMissesWithOneQuery() {
+        VideoRecordCache cache = new VideoRecordCache(repo, meters, Duration.ofMinutes(1), Duration.ofMinutes(10), 100);
+        cache.put(record(1L, "a", VideoRecord.ProcessStatus.COMPLETED));
+        when(repo.findByJobIds(List.of("b", "c"))).thenReturn(List.of(record(2L, "b", VideoRecord.ProcessStatus.PROCESSING)));
+
+        Map<String, VideoRecord> found = cache.findByJobIds(List.of("a", "b", "c"));
+
+        assertEquals(List.of("a", "b"), List.copyOf(found.keySet()));
+        verify(repo, times(1)).findByJobIds(List.of("b", "c"));
+        assertEquals("b", cache.findById(2L).orElseThrow().getJobId());
+        verify(repo, never()).selectById(2L);
+    }
+
+    private static VideoRecord record(Long id, VideoRecord.ProcessStatus status) {
+        return record(id, "job", status);
+    }
+
+    private static VideoRecord record(Long id, String jobId, VideoRecord.ProcessStatus status) {
+        VideoRecord vr = new VideoRecord();
+        vr.setId(id);
+        vr.setJobId(jobId);
+        vr.setStatus(status);
+        return vr;
+    }
+}
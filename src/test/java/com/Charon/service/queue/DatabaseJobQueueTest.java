@@ -0,0 +1,248 @@
+package com.Charon.service.queue;
+
+import com.Charon.config.JobSchedulerProperties;
+import com.Charon.dto.JobMessage;
+import com.Charon.entity.JobLease;
+import com.Charon.entity.VideoRecord;
+import com.Charon.repository.JobLeaseRepository;
+import com.Charon.repository.VideoRecordRepository;
+import com.Charon.repository.WorkerNodeRepository;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.VideoRecordCache;
+import com.Charon.service.scheduler.JobScheduler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseJobQueueTest {
+
+    private static final String NODE = "node-a";
+
+    @Mock
+    private JobLeaseRepository leases;
+    @Mock
+    private WorkerNodeRepository nodes;
+    @Mock
+    private VideoRecordRepository records;
+    @Mock
+    private VideoRecordCache recordCache;
+    @Mock
+    private ObjectProvider<JobScheduler> schedulerProvider;
+    @Mock
+    private JobScheduler scheduler;
+    @Mock
+    private JobRegistry jobRegistry;
+
+    @TempDir
+    Path workdir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private DatabaseJobQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        JobSchedulerProperties props = new JobSchedulerProperties();
+        props.setMaxConcurrency(2);
+        queue = new DatabaseJobQueue(leases, nodes, records, recordCache, schedulerProvider, jobRegistry, props,
+                workdir.toString(), NODE, 0, Duration.ofSeconds(5), Duration.ofMinutes(1), Duration.ofSeconds(15), 3, 0,
+                Duration.ofMillis(200));
+        lenient().when(schedulerProvider.getObject()).thenReturn(scheduler);
+    }
+
+    @Test
+    void claimsUpToFreeSlotsAndReleasesLeaseWhenDone() throws Exception {
+        when(leases.findQueued(4)).thenReturn(List.of(lease("j1"), lease("j2"), lease("j3")));
+        when(leases.claim(any(), eq(NODE), any())).thenReturn(true);
+
+        queue.poll();
+
+        ArgumentCaptor<JobScheduler.Hooks> hooks = ArgumentCaptor.forClass(JobScheduler.Hooks.class);
+        ArgumentCaptor<JobMessage> messages = ArgumentCaptor.forClass(JobMessage.class);
+        verify(scheduler, times(2)).submit(messages.capture(), hooks.capture());
+        assertEquals(List.of("j1", "j2"), messages.getAllValues().stream().map(JobMessage::getJobId).toList());
+        verify(leases, never()).claim(eq("j3"), any(), any());
+
+        when(records.findByJobId("j1")).thenReturn(Optional.of(new VideoRecord()));
+        when(leases.start(eq("j1"), eq(NODE), any())).thenReturn(true);
+        JobScheduler.Hooks first = hooks.getAllValues().get(0);
+        assertTrue(first.beforeRun());
+        assertTrue(first.owned());
+        first.afterRun();
+        verify(leases).release("j1", NODE);
+    }
+
+    @Test
+    void cancelsRunningJobWhoseLeaseWasLost() throws Exception {
+        when(leases.findQueued(anyInt())).thenReturn(List.of(lease("j1"))).thenReturn(List.of());
+        when(leases.claim(eq("j1"), eq(NODE), any())).thenReturn(true);
+        queue.poll();
+        ArgumentCaptor<JobScheduler.Hooks> hooks = ArgumentCaptor.forClass(JobScheduler.Hooks.class);
+        verify(scheduler).submit(any(), hooks.capture());
+        when(leases.start(eq("j1"), eq(NODE), any())).thenReturn(true);
+        assertTrue(hooks.getValue().beforeRun());
+
+        // Another node reclaimed the job while this one could not renew
+        when(leases.findHeld(NODE)).thenReturn(List.of());
+        queue.poll();
+
+        verify(jobRegistry).cancel("j1");
+        assertFalse(hooks.getValue().owned());
+        hooks.getValue().afterRun();
+        verify(leases, never()).release(any(), any());
+    }
+
+    @Test
+    void skipsClaimStolenBeforeItStarted() throws Exception {
+        when(leases.findQueued(anyInt())).thenReturn(List.of(lease("j1")));
+        when(leases.claim(eq("j1"), eq(NODE), any())).thenReturn(true);
+        queue.poll();
+        ArgumentCaptor<JobScheduler.Hooks> hooks = ArgumentCaptor.forClass(JobScheduler.Hooks.class);
+        verify(scheduler).submit(any(), hooks.capture());
+
+        when(leases.start(eq("j1"), eq(NODE), any())).thenReturn(false);
+
+        assertFalse(hooks.getValue().beforeRun());
+        assertFalse(hooks.getValue().owned());
+    }
+
+    @Test
+    void namesEachAttemptAfterNodeAndStartCount() throws Exception {
+        JobLease retried = lease("j1");
+        retried.setAttempts(1);
+        when(leases.findQueued(anyInt())).thenReturn(List.of(lease("j0"), retried));
+        when(leases.claim(any(), eq(NODE), any())).thenReturn(true);
+
+        queue.poll();
+
+        ArgumentCaptor<JobScheduler.Hooks> hooks = ArgumentCaptor.forClass(JobScheduler.Hooks.class);
+        verify(scheduler, times(2)).submit(any(), hooks.capture());
+        assertEquals(NODE + "-1", hooks.getAllValues().get(0).attempt());
+        assertEquals(NODE + "-2", hooks.getAllValues().get(1).attempt());
+    }
+
+    @Test
+    void stopCancelsRunningJobsAndKeepsLeasesOfRunsThatDoNotEnd() throws Exception {
+        when(leases.findQueued(anyInt())).thenReturn(List.of(lease("j1"), lease("j2")));
+        when(leases.claim(any(), eq(NODE), any())).thenReturn(true);
+        queue.poll();
+        ArgumentCaptor<JobScheduler.Hooks> hooks = ArgumentCaptor.forClass(JobScheduler.Hooks.class);
+        verify(scheduler, times(2)).submit(any(), hooks.capture());
+        JobScheduler.Hooks ending = hooks.getAllValues().get(0);
+        JobScheduler.Hooks stuck = hooks.getAllValues().get(1);
+        when(leases.start(any(), eq(NODE), any())).thenReturn(true);
+        assertTrue(ending.beforeRun());
+        assertTrue(stuck.beforeRun());
+        // j1's process exits once it is killed, j2's does not
+        lenient().doAnswer(inv -> {
+            ending.afterRun();
+            return null;
+        }).when(jobRegistry).cancel("j1");
+
+        queue.stop();
+
+        verify(jobRegistry).cancel("j2");
+        assertFalse(ending.owned());
+        assertFalse(stuck.owned());
+        verify(leases).requeueAll(NODE, Set.of("j2"));
+        verify(leases, never()).release(any(), any());
+        verify(nodes, never()).deleteById(any(Serializable.class));
+        stuck.afterRun();
+        verify(leases, never()).release(any(), any());
+    }
+
+    @Test
+    void stopHandsBackClaimsThatHaveNotStarted() throws Exception {
+        when(leases.findQueued(anyInt())).thenReturn(List.of(lease("j1")));
+        when(leases.claim(eq("j1"), eq(NODE), any())).thenReturn(true);
+        queue.poll();
+        ArgumentCaptor<JobScheduler.Hooks> hooks = ArgumentCaptor.forClass(JobScheduler.Hooks.class);
+        verify(scheduler).submit(any(), hooks.capture());
+
+        queue.stop();
+
+        verify(leases).requeueAll(NODE, Set.of());
+        verify(nodes).deleteById(NODE);
+        assertFalse(hooks.getValue().beforeRun());
+        verify(leases, never()).start(any(), any(), any());
+    }
+
+    @Test
+    void stealsOldClaimsWhenNothingIsQueued() throws Exception {
+        JobLease claimed = lease("j9");
+        claimed.setStatus(JobLease.Status.CLAIMED);
+        claimed.setNodeId("node-b");
+        when(leases.findStealable(eq(NODE), any(), eq(2))).thenReturn(List.of(claimed));
+        when(leases.steal(eq(claimed), eq(NODE), any())).thenReturn(true);
+
+        queue.poll();
+
+        ArgumentCaptor<JobMessage> message = ArgumentCaptor.forClass(JobMessage.class);
+        verify(scheduler).submit(message.capture(), any(JobScheduler.Hooks.class));
+        assertEquals("j9", message.getValue().getJobId());
+    }
+
+    @Test
+    void requeuesExpiredLeasesAndFailsJobsOutOfAttempts() throws Exception {
+        JobLease retry = lease("j1");
+        retry.setStatus(JobLease.Status.RUNNING);
+        retry.setNodeId("node-b");
+        retry.setAttempts(1);
+        JobLease exhausted = lease("j2");
+        exhausted.setStatus(JobLease.Status.RUNNING);
+        exhausted.setNodeId("node-b");
+        exhausted.setAttempts(3);
+        when(leases.findExpired(any(LocalDateTime.class), anyInt())).thenReturn(List.of(retry, exhausted));
+        when(leases.requeue(eq(retry), any())).thenReturn(true);
+        when(leases.dropExpired(eq(exhausted), any())).thenReturn(true);
+        VideoRecord vr = new VideoRecord();
+        vr.setJobId("j2");
+        when(records.findByJobId("j2")).thenReturn(Optional.of(vr));
+        Path retried = Files.createDirectories(workdir.resolve("j1"));
+        Path abandoned = Files.createDirectories(workdir.resolve("j2"));
+        Files.write(abandoned.resolve("input.zip"), new byte[16]);
+
+        queue.poll();
+
+        verify(leases, never()).requeue(eq(exhausted), any());
+        assertEquals(VideoRecord.ProcessStatus.FAILED, vr.getStatus());
+        verify(records).updateById(vr);
+        verify(recordCache).put(vr);
+        assertFalse(Files.exists(abandoned));
+        assertTrue(Files.exists(retried));
+    }
+
+    private JobLease lease(String jobId) throws Exception {
+        JobLease lease = new JobLease();
+        lease.setJobId(jobId);
+        lease.setPayload(objectMapper.writeValueAsString(JobMessage.builder().jobId(jobId).build()));
+        return lease;
+    }
+}
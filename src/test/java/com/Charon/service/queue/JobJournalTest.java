@@ -0,0 +1,81 @@
+package com.Charon.service.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JobJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldReplayOnlyUnacknowledgedJobs() throws Exception {
+        Path base = dir.resolve("jobs.journal");
+        try (JobJournal journal = JobJournal.open(base, 4096, false)) {
+            journal.append("a", bytes("job-a"));
+            journal.append("b", bytes("job-b"));
+            journal.append("c", bytes("job-c"));
+            journal.ack("b");
+        }
+
+        try (JobJournal reopened = JobJournal.open(base, 4096, false)) {
+            assertEquals(List.of("job-a", "job-c"), strings(reopened.pending()));
+        }
+    }
+
+    @Test
+    void shouldCompactIntoTheOtherFileWhenFull() throws Exception {
+        Path base = dir.resolve("jobs.journal");
+        byte[] payload = new byte[300];
+        try (JobJournal journal = JobJournal.open(base, 4096, false)) {
+            // ~100 records of 300 bytes cycle through a 4 KiB file many times over
+            for (int i = 0; i < 100; i++) {
+                journal.append("job-" + i, payload);
+                if (i != 42) {
+                    journal.ack("job-" + i);
+                }
+            }
+            journal.append("last", bytes("tail"));
+        }
+
+        try (JobJournal reopened = JobJournal.open(base, 4096, false)) {
+            List<byte[]> pending = reopened.pending();
+            assertEquals(2, pending.size());
+            assertEquals("tail", new String(pending.get(1), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void shouldStopReplayAtTornRecord() throws Exception {
+        Path base = dir.resolve("jobs.journal");
+        try (JobJournal journal = JobJournal.open(base, 4096, false)) {
+            journal.append("a", bytes("job-a"));
+            journal.append("b", bytes("job-b"));
+        }
+        // Corrupt the last payload byte of the second record
+        int second = 16 + 8 + 3 + 1 + 5;
+        try (RandomAccessFile raf = new RandomAccessFile(base.resolveSibling("jobs.journal.0").toFile(), "rw")) {
+            raf.seek(second + 8 + 3 + 1 + 4);
+            raf.write('X');
+        }
+
+        try (JobJournal reopened = JobJournal.open(base, 4096, false)) {
+            assertEquals(List.of("job-a"), strings(reopened.pending()));
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> payloads) {
+        return payloads.stream().map(p -> new String(p, StandardCharsets.UTF_8)).toList();
+    }
+}
@@ -0,0 +1,92 @@
+package com.Charon.service.scheduler;
+
+import com.Charon.service.scheduler.FairJobQueue.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FairJobQueueTest {
+
+    private static final long STEP = 30_000;
+
+    @Test
+    void shouldRunSmallJobBeforeQueuedLargeOnes() {
+        FairJobQueue<String> queue = new FairJobQueue<>(STEP, owner -> 1);
+        for (int i = 0; i < 10; i++) {
+            queue.offer("4k-" + i, "alice", Priority.INTERACTIVE, true, 0);
+        }
+        queue.offer("small", "bob", Priority.INTERACTIVE, false, 1);
+
+        assertEquals("small", queue.poll(2, true).job());
+        assertEquals("4k-0", queue.poll(2, true).job());
+    }
+
+    @Test
+    void shouldInterleaveOwnersOnTheSameLevel() {
+        FairJobQueue<String> queue = new FairJobQueue<>(STEP, owner -> 1);
+        for (int i = 0; i < 3; i++) {
+            queue.offer("a" + i, "alice", Priority.BATCH, false, 0);
+        }
+        for (int i = 0; i < 3; i++) {
+            queue.offer("b" + i, "bob", Priority.BATCH, false, 0);
+        }
+
+        assertEquals(List.of("a0", "b0", "a1", "b1", "a2", "b2"), drain(queue, 0));
+    }
+
+    @Test
+    void shouldShareByWeight() {
+        FairJobQueue<String> queue = new FairJobQueue<>(STEP, owner -> "alice".equals(owner) ? 3 : 1);
+        for (int i = 0; i < 6; i++) {
+            queue.offer("a" + i, "alice", Priority.INTERACTIVE, false, 0);
+            queue.offer("b" + i, "bob", Priority.INTERACTIVE, false, 0);
+        }
+
+        List<String> first = drain(queue, 0).subList(0, 8);
+        assertEquals(6, first.stream().filter(j -> j.startsWith("a")).count());
+    }
+
+    @Test
+    void shouldPromoteLongWaitingBatchJobs() {
+        FairJobQueue<String> queue = new FairJobQueue<>(STEP, owner -> 1);
+        queue.offer("old-batch-4k", "alice", Priority.BATCH, true, 0);
+        queue.offer("fresh", "bob", Priority.INTERACTIVE, false, 4 * STEP);
+
+        assertEquals("old-batch-4k", queue.poll(4 * STEP, true).job());
+    }
+
+    @Test
+    void shouldHoldLargeJobsWhenTheirSlotsAreTaken() {
+        FairJobQueue<String> queue = new FairJobQueue<>(STEP, owner -> 1);
+        queue.offer("4k", "alice", Priority.INTERACTIVE, true, 0);
+
+        assertNull(queue.poll(0, false));
+        assertEquals("4k", queue.poll(0, true).job());
+    }
+
+    @Test
+    void shouldRemoveJobWithoutChargingItsOwner() {
+        FairJobQueue<String> queue = new FairJobQueue<>(STEP, owner -> 1);
+        queue.offer("a0", "alice", Priority.INTERACTIVE, false, 0);
+        queue.offer("a1", "alice", Priority.INTERACTIVE, false, 0);
+        queue.offer("b0", "bob", Priority.INTERACTIVE, false, 0);
+
+        assertEquals("a0", queue.remove("a0"::equals).job());
+        assertNull(queue.remove("a0"::equals));
+        assertEquals(2, queue.size());
+        assertEquals(List.of("a1", "b0"), drain(queue, 0));
+    }
+
+    private static List<String> drain(FairJobQueue<String> queue, long now) {
+        List<String> order = new ArrayList<>();
+        FairJobQueue.Entry<String> e;
+        while ((e = queue.poll(now, true)) != null) {
+            order.add(e.job());
+        }
+        return order;
+    }
+}
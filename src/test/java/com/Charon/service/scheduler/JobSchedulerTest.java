@@ -0,0 +1,113 @@
+package com.Charon.service.scheduler;
+
+import com.Charon.config.JobSchedulerProperties;
+import com.Charon.dto.JobMessage;
+import com.Charon.service.JobRegistry;
+import com.Charon.service.VideoCodeService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class JobSchedulerTest {
+
+    private final VideoCodeService videoCodeService = mock(VideoCodeService.class);
+    private final JobRegistry jobRegistry = new JobRegistry(new SimpleMeterRegistry(), Duration.ofHours(1),
+            Duration.ofMinutes(1), 100);
+    private JobScheduler scheduler;
+
+    @TempDir
+    Path workdir;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    void cancelRemovesQueuedJobWithItsDirectoryAndRunsItsAfterRunHook() throws Exception {
+        doCallRealMethod().when(videoCodeService).discard(any());
+        // Workers are never started, so submitted jobs stay queued
+        scheduler = new JobScheduler(videoCodeService, jobRegistry, new JobSchedulerProperties(),
+                new SimpleMeterRegistry());
+        AtomicInteger done = new AtomicInteger();
+        scheduler.submit(job("j1"), done::incrementAndGet);
+        scheduler.submit(job("j2"), done::incrementAndGet);
+
+        assertTrue(scheduler.cancel("j1"));
+        assertFalse(scheduler.cancel("j1"));
+        assertFalse(scheduler.cancel("unknown"));
+
+        assertEquals(1, done.get());
+        assertFalse(Files.exists(workdir.resolve("j1")));
+        assertTrue(Files.exists(workdir.resolve("j2").resolve("input.zip")));
+        assertEquals("FAILED", jobRegistry.snapshot("j1").stage());
+        assertEquals("QUEUED", jobRegistry.snapshot("j2").stage());
+        verify(videoCodeService, never()).executeJob(any(), any(), any());
+    }
+
+    @Test
+    void cancelInterruptsRunningJobWithoutReachingTheNextOne() throws Exception {
+        JobSchedulerProperties props = new JobSchedulerProperties();
+        props.setMaxConcurrency(1);
+        scheduler = new JobScheduler(videoCodeService, jobRegistry, props, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        // Stands in for in-process work that has no external process to kill
+        doAnswer(inv -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return null;
+        }).when(videoCodeService).executeJob(argThat(m -> "j1".equals(m.getJobId())), any(), isNull());
+        CountDownLatch next = new CountDownLatch(1);
+        AtomicBoolean nextInterrupted = new AtomicBoolean(true);
+        doAnswer(inv -> {
+            nextInterrupted.set(Thread.currentThread().isInterrupted());
+            next.countDown();
+            return null;
+        }).when(videoCodeService).executeJob(argThat(m -> "j2".equals(m.getJobId())), any(), isNull());
+        scheduler.start();
+
+        scheduler.submit(job("j1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(scheduler.cancel("j1"));
+        scheduler.submit(job("j2"));
+
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertFalse(nextInterrupted.get());
+        assertTrue(Files.exists(workdir.resolve("j1")), "a running job cleans up after itself");
+    }
+
+    private JobMessage job(String jobId) throws Exception {
+        Path dir = Files.createDirectories(workdir.resolve(jobId));
+        Files.write(dir.resolve("input.zip"), new byte[16]);
+        return JobMessage.builder().jobId(jobId).jobDirPath(dir.toString()).build();
+    }
+}
@@ -0,0 +1,264 @@
+package com.Charon.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Just enough of the S3 API, in memory, to exercise {@link S3StorageBackend}: object PUT/GET/HEAD
+ * with ranges, server-side copy, and multipart upload (including part copy and abort). Every
+ * request's Signature V4 is recomputed from what arrived on the wire and rejected with 403 if it
+ * differs.
+ */
+class InProcessS3Server implements AutoCloseable {
+
+    static final String ACCESS_KEY = "test-access";
+    static final String SECRET_KEY = "test-secret";
+    static final String REGION = "us-east-1";
+
+    private static final Pattern AUTH = Pattern.compile("Credential=[^/]+/\\d{8}/[^,]+, SignedHeaders=([^,]+), Signature=(\\w+)");
+    private static final Pattern PART = Pattern.compile("<PartNumber>(\\d+)</PartNumber><ETag>([^<]+)</ETag>");
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+    private final S3Signer signer = new S3Signer(ACCESS_KEY, SECRET_KEY, REGION);
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightParts = new AtomicInteger();
+    private final AtomicInteger maxInFlightParts = new AtomicInteger();
+    final AtomicInteger aborted = new AtomicInteger();
+    /**
+     * Part number that fails with 500, or 0.
+     */
+    volatile int failPart;
+
+    InProcessS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    byte[] object(String bucket, String key) {
+        return objects.get(bucket + "/" + key);
+    }
+
+    int maxParallelParts() {
+        return maxInFlightParts.get();
+    }
+
+    int openUploads() {
+        return uploads.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            byte[] body = ex.getRequestBody().readAllBytes();
+            if (!signatureMatches(ex)) {
+                respond(ex, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                return;
+            }
+            String path = URI.create("http://x" + ex.getRequestURI().getRawPath()).getPath().substring(1);
+            Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+            String method = ex.getRequestMethod();
+            String copySource = ex.getRequestHeaders().getFirst("x-amz-copy-source");
+
+            if ("POST".equals(method) && query.containsKey("uploads")) {
+                String id = UUID.randomUUID().toString();
+                uploads.put(id, new ConcurrentHashMap<>());
+                respond(ex, 200, "<InitiateMultipartUploadResult><UploadId>" + id + "</UploadId></InitiateMultipartUploadResult>");
+            } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+                complete(ex, path, query.get("uploadId"), new String(body, StandardCharsets.UTF_8));
+            } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                aborted.incrementAndGet();
+                ex.sendResponseHeaders(204, -1);
+            } else if ("DELETE".equals(method)) {
+                objects.remove(path);
+                ex.sendResponseHeaders(204, -1);
+            } else if ("PUT".equals(method) && query.containsKey("partNumber")) {
+                uploadPart(ex, query, body, copySource);
+            } else if ("PUT".equals(method)) {
+                byte[] content = copySource != null ? objects.get(URI.create("http://x" + copySource).getPath().substring(1)) : body;
+                if (content == null) {
+                    respond(ex, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                    return;
+                }
+                objects.put(path, content);
+                ex.getResponseHeaders().add("ETag", etag(content));
+                respond(ex, 200, copySource != null ? "<CopyObjectResult><ETag>" + etag(content) + "</ETag></CopyObjectResult>" : "");
+            } else if ("HEAD".equals(method) || "GET".equals(method)) {
+                get(ex, path, "HEAD".equals(method));
+            } else {
+                respond(ex, 405, "");
+            }
+        }
+    }
+
+    private void uploadPart(HttpExchange ex, Map<String, String> query, byte[] body, String copySource) throws IOException {
+        Map<Integer, byte[]> parts = uploads.get(query.get("uploadId"));
+        int number = Integer.parseInt(query.get("partNumber"));
+        if (parts == null) {
+            respond(ex, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+        int inFlight = inFlightParts.incrementAndGet();
+        maxInFlightParts.accumulateAndGet(inFlight, Math::max);
+        try {
+            // Keep parts overlapping long enough for the test to see the parallelism
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlightParts.decrementAndGet();
+        }
+        if (number == failPart) {
+            respond(ex, 500, "<Error><Code>InternalError</Code></Error>");
+            return;
+        }
+        byte[] content = body;
+        if (copySource != null) {
+            byte[] source = objects.get(URI.create("http://x" + copySource).getPath().substring(1));
+            String[] range = ex.getRequestHeaders().getFirst("x-amz-copy-source-range").substring(6).split("-");
+            content = Arrays.copyOfRange(source, Integer.parseInt(range[0]), Integer.parseInt(range[1]) + 1);
+        }
+        parts.put(number, content);
+        if (copySource != null) {
+            respond(ex, 200, "<CopyPartResult><ETag>" + etag(content) + "</ETag></CopyPartResult>");
+        } else {
+            ex.getResponseHeaders().add("ETag", etag(content));
+            respond(ex, 200, "");
+        }
+    }
+
+    private void complete(HttpExchange ex, String path, String uploadId, String xml) throws IOException {
+        Map<Integer, byte[]> parts = uploads.remove(uploadId);
+        if (parts == null) {
+            respond(ex, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Matcher m = PART.matcher(xml);
+        int expected = 1;
+        while (m.find()) {
+            byte[] part = parts.get(Integer.parseInt(m.group(1)));
+            if (Integer.parseInt(m.group(1)) != expected++ || part == null || !etag(part).equals(m.group(2))) {
+                // Real S3 reports this with a 200 status
+                respond(ex, 200, "<Error><Code>InvalidPart</Code></Error>");
+                return;
+            }
+            out.write(part);
+        }
+        objects.put(path, out.toByteArray());
+        respond(ex, 200, "<CompleteMultipartUploadResult><Key>" + path + "</Key></CompleteMultipartUploadResult>");
+    }
+
+    private void get(HttpExchange ex, String path, boolean head) throws IOException {
+        byte[] content = objects.get(path);
+        if (content == null) {
+            if (head) {
+                ex.sendResponseHeaders(404, -1);
+            } else {
+                respond(ex, 404, "<Error><Code>NoSuchKey</Code></Error>");
+            }
+            return;
+        }
+        ex.getResponseHeaders().add("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+        String range = ex.getRequestHeaders().getFirst("Range");
+        if (head) {
+            ex.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+            ex.sendResponseHeaders(200, -1);
+            return;
+        }
+        if (range == null) {
+            send(ex, 200, content);
+            return;
+        }
+        String[] bounds = range.substring(6).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Math.min(content.length - 1, Integer.parseInt(bounds[1]));
+        ex.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        send(ex, 206, Arrays.copyOfRange(content, start, end + 1));
+    }
+
+    private boolean signatureMatches(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        Matcher m = auth == null ? null : AUTH.matcher(auth);
+        if (m == null || !m.find()) {
+            return false;
+        }
+        Map<String, String> signed = new LinkedHashMap<>();
+        for (String name : m.group(1).split(";")) {
+            if (!name.equals("host") && !name.equals("x-amz-date") && !name.equals("x-amz-content-sha256")) {
+                signed.put(name, ex.getRequestHeaders().getFirst(name));
+            }
+        }
+        URI uri = URI.create("http://" + ex.getRequestHeaders().getFirst("Host") + ex.getRequestURI().getRawPath()
+                + (ex.getRequestURI().getRawQuery() == null ? "" : "?" + ex.getRequestURI().getRawQuery()));
+        Instant date = Instant.from(AMZ_DATE.parse(ex.getRequestHeaders().getFirst("x-amz-date")));
+        String expected = signer.sign(ex.getRequestMethod(), uri, signed,
+                ex.getRequestHeaders().getFirst("x-amz-content-sha256"), date).get("Authorization");
+        return auth.equals(expected);
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(eq < 0 ? pair : pair.substring(0, eq),
+                        eq < 0 ? "" : java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String etag(byte[] content) {
+        return "\"" + Integer.toHexString(Arrays.hashCode(content)) + "-" + content.length + "\"";
+    }
+
+    private static void respond(HttpExchange ex, int status, String body) throws IOException {
+        send(ex, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, int status, byte[] body) throws IOException {
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.Charon.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalStorageBackendTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void promotesOutputIntoShardedDirectoryByMove() throws Exception {
+        StorageService storage = new StorageService(new LocalStorageBackend(dir.resolve("store").toString()));
+        Path output = Files.writeString(dir.resolve("output.mp4"), "video");
+
+        String location = storage.promote(output, "job-1", "job-1.mp4");
+
+        assertFalse(Files.exists(output));
+        assertEquals(dir.resolve("store").resolve(StorageService.key("job-1", "job-1.mp4")).toString(), location);
+        assertTrue(StorageService.key("job-1", "job-1.mp4").matches("[0-9a-f]{2}/[0-9a-f]{2}/job-1\\.mp4"));
+        assertEquals("video", Files.readString(Path.of(location)));
+    }
+
+    @Test
+    void linkSharesStoredFile() throws Exception {
+        StorageService storage = new StorageService(new LocalStorageBackend(dir.resolve("store").toString()));
+        String first = storage.promote(Files.writeString(dir.resolve("output.mp4"), "video"), "job-1", "job-1.mp4");
+
+        String second = storage.link(first, "job-2", "job-2.mp4");
+
+        StoredObject object = storage.stat(second);
+        assertEquals("job-2.mp4", object.name());
+        assertEquals(5, object.size());
+        assertEquals(Path.of(second), object.localFile());
+
+        storage.delete(first);
+        storage.delete(first);
+        assertFalse(storage.exists(first));
+        assertEquals(5, storage.stat(second).size());
+    }
+
+    @Test
+    void resolvesLegacyDailyDirectoryLocations() throws Exception {
+        StorageService storage = new StorageService(new LocalStorageBackend(dir.resolve("store").toString()));
+        Path legacy = Files.createDirectories(dir.resolve("store/20240101")).resolve("old.mp4");
+        Files.writeString(legacy, "old");
+
+        assertEquals(3, storage.stat(legacy.toString()).size());
+        assertTrue(storage.exists(legacy.toString()));
+        assertNull(storage.stat(dir.resolve("store/missing.mp4").toString()));
+        assertFalse(storage.exists(dir.resolve("store/missing.mp4").toString()));
+    }
+
+    @Test
+    void rejectsKeysOutsideBaseDirectory() throws Exception {
+        LocalStorageBackend backend = new LocalStorageBackend(dir.resolve("store").toString());
+        Path output = Files.writeString(dir.resolve("output.mp4"), "video");
+
+        assertThrows(IllegalArgumentException.class, () -> backend.putFile(output, "../escape.mp4"));
+    }
+}
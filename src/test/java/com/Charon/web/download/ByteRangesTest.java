@@ -0,0 +1,65 @@
+package com.Charon.web.download;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteRangesTest {
+
+    private static final long SIZE = 1000;
+
+    @Test
+    void shouldParseClosedOpenAndSuffixRanges() {
+        assertEquals(List.of(new ByteRanges.Range(0, 499)), ByteRanges.parse("bytes=0-499", SIZE));
+        assertEquals(List.of(new ByteRanges.Range(900, 999)), ByteRanges.parse("bytes=900-", SIZE));
+        assertEquals(List.of(new ByteRanges.Range(900, 999)), ByteRanges.parse("bytes=-100", SIZE));
+        // Clamped to the file rather than rejected
+        assertEquals(List.of(new ByteRanges.Range(0, 999)), ByteRanges.parse("bytes=-5000", SIZE));
+        assertEquals(List.of(new ByteRanges.Range(500, 999)), ByteRanges.parse("bytes=500-99999999999999999999", SIZE));
+    }
+
+    @Test
+    void shouldSortAndCoalesceMultipleRanges() {
+        assertEquals(List.of(new ByteRanges.Range(0, 9), new ByteRanges.Range(100, 199), new ByteRanges.Range(990, 999)),
+                ByteRanges.parse("bytes=100-150, -10, 0-9, 140-199", SIZE));
+        assertEquals(List.of(new ByteRanges.Range(0, 19)), ByteRanges.parse("bytes=0-9,10-19", SIZE));
+    }
+
+    @Test
+    void shouldIgnoreMalformedHeaders() {
+        assertNull(ByteRanges.parse(null, SIZE));
+        assertNull(ByteRanges.parse("items=0-1", SIZE));
+        assertNull(ByteRanges.parse("bytes=5-1", SIZE));
+        assertNull(ByteRanges.parse("bytes=a-b", SIZE));
+        assertNull(ByteRanges.parse("bytes=", SIZE));
+        assertNull(ByteRanges.parse("bytes=0-1" + ",0-1".repeat(ByteRanges.MAX_RANGES), SIZE));
+    }
+
+    @Test
+    void shouldReportUnsatisfiableRanges() {
+        assertTrue(ByteRanges.parse("bytes=1000-", SIZE).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=-0", SIZE).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=0-0", 0).isEmpty());
+        // One satisfiable spec is enough
+        assertEquals(List.of(new ByteRanges.Range(0, 0)), ByteRanges.parse("bytes=2000-3000,0-0", SIZE));
+    }
+
+    @Test
+    void shouldEvaluateIfRange() {
+        long modified = 1_700_000_000_123L;
+        String etag = ByteRanges.etag(SIZE, modified);
+
+        assertTrue(ByteRanges.ifRangeMatches(null, etag, modified));
+        assertTrue(ByteRanges.ifRangeMatches(etag, etag, modified));
+        assertFalse(ByteRanges.ifRangeMatches("\"other\"", etag, modified));
+        assertFalse(ByteRanges.ifRangeMatches("W/" + etag, etag, modified));
+        assertTrue(ByteRanges.ifRangeMatches("Tue, 14 Nov 2023 22:13:20 GMT", etag, modified));
+        assertFalse(ByteRanges.ifRangeMatches("Tue, 14 Nov 2023 22:13:19 GMT", etag, modified));
+        assertFalse(ByteRanges.ifRangeMatches("not a date", etag, modified));
+    }
+}
@@ -0,0 +1,147 @@
+package com.Charon.web.download;
+
+import com.Charon.storage.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileDownloadResponderTest {
+
+    @TempDir
+    Path dir;
+
+    private final FileDownloadResponder responder = new FileDownloadResponder();
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void writeFile() throws Exception {
+        content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        file = Files.write(dir.resolve("out.mp4"), content);
+    }
+
+    @Test
+    void shouldServeSingleRangeThroughSendfileWhenSupported() throws Exception {
+        MockHttpServletRequest request = request("bytes=-60000");
+        request.setAttribute(FileDownloadResponder.SENDFILE_SUPPORT, Boolean.TRUE);
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 40000-99999/100000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(60000, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(40000L, request.getAttribute(FileDownloadResponder.SENDFILE_START));
+        assertEquals(100000L, request.getAttribute(FileDownloadResponder.SENDFILE_END));
+    }
+
+    @Test
+    void shouldCopySingleRangeWithoutSendfile() throws Exception {
+        MockHttpServletResponse response = send(request("bytes=10-19"));
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+    }
+
+    @Test
+    void shouldServeMultipleRangesAsMultipart() throws Exception {
+        MockHttpServletResponse response = send(request("bytes=0-3,50000-50003"));
+
+        assertEquals(206, response.getStatus());
+        String type = response.getContentType();
+        assertTrue(type.startsWith("multipart/byteranges; boundary="));
+        String boundary = type.substring(type.indexOf('=') + 1);
+        byte[] body = response.getContentAsByteArray();
+        assertEquals(body.length, response.getContentLengthLong());
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains("Content-Range: bytes 0-3/100000\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 0, 4), StandardCharsets.ISO_8859_1)));
+        assertTrue(text.contains("Content-Range: bytes 50000-50003/100000\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 50000, 50004), StandardCharsets.ISO_8859_1)));
+        assertTrue(text.endsWith("\r\n--" + boundary + "--\r\n"));
+    }
+
+    @Test
+    void shouldSendWholeFileWhenIfRangeIsStale() throws Exception {
+        MockHttpServletRequest request = request("bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void shouldRejectUnsatisfiableRange() throws Exception {
+        MockHttpServletResponse response = send(request("bytes=200000-"));
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void shouldStreamRemoteObjectWithRangedReads() throws Exception {
+        List<String> reads = new ArrayList<>();
+        StoredObject remote = new StoredObject() {
+            public String name() { return "out.mp4"; }
+            public long size() { return content.length; }
+            public long lastModified() { return 0; }
+            public Path localFile() { return null; }
+            public InputStream openRange(long start, long end) {
+                reads.add(start + "-" + end);
+                return new ByteArrayInputStream(content, (int) start, (int) (end - start + 1));
+            }
+        };
+        MockHttpServletRequest request = request("bytes=10-19,90000-");
+        request.setAttribute(FileDownloadResponder.SENDFILE_SUPPORT, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        responder.send(request, response, remote, "out.mp4", MediaType.APPLICATION_OCTET_STREAM);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(List.of("10-19", "90000-99999"), reads);
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+        assertNull(request.getAttribute(FileDownloadResponder.SENDFILE_FILENAME));
+    }
+
+    @Test
+    void shouldAnswerNotFoundForMissingObject() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        responder.send(request("bytes=0-9"), response, (StoredObject) null, null, MediaType.APPLICATION_OCTET_STREAM);
+
+        assertEquals(404, response.getStatus());
+    }
+
+    private static MockHttpServletRequest request(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/video-code/download/1");
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        responder.send(request, response, file, "out.mp4", MediaType.APPLICATION_OCTET_STREAM);
+        return response;
+    }
+}